@@ -65,6 +65,9 @@ public class IndexExport_p {
             prop.put("lurlexporterror", 0);
             prop.put("lurlexport_exportfile", export.file().toString());
             prop.put("lurlexport_urlcount", export.count());
+            prop.put("lurlexport_docspersecond", export.docsPerSecond());
+            prop.put("lurlexport_partitionsdone", export.partitionsDone());
+            prop.put("lurlexport_partitions", export.partitions());
             prop.put("reload", 1);
         } else {
             prop.put("lurlexport", 1);
@@ -124,6 +127,9 @@ public class IndexExport_p {
             // show result
             prop.put("lurlexport_exportfile", export.file().toString());
             prop.put("lurlexport_urlcount", export.count());
+            prop.put("lurlexport_docspersecond", export.docsPerSecond());
+            prop.put("lurlexport_partitionsdone", export.partitionsDone());
+            prop.put("lurlexport_partitions", export.partitions());
             if ((export != null) && (export.failed() == null)) {
                 prop.put("lurlexport", 2);
             }
@@ -48,6 +48,7 @@ import net.yacy.kelondro.util.MapTools;
 import net.yacy.peers.NewsDB;
 import net.yacy.peers.NewsPool;
 import net.yacy.peers.PeerActions;
+import net.yacy.peers.PeerPerformance;
 import net.yacy.peers.Protocol;
 import net.yacy.peers.Seed;
 import net.yacy.peers.operation.yacyVersion;
@@ -504,6 +505,11 @@ public class Network {
                             prop.putNum(STR_TABLE_LIST + conCount + "_ppm", PPM);
                             prop.putNum(STR_TABLE_LIST + conCount + "_qph", Math.round(6000d * QPM) / 100d);
                             prop.putHTML(STR_TABLE_LIST + conCount + "_jre", seed.get(Seed.JRE, ""));
+                            final PeerPerformance.Statistics performance = sb.peers.peerPerformance.get(seed.hash);
+                            final long latency = performance == null ? -1 : performance.latency(0.75d);
+                            prop.put(STR_TABLE_LIST + conCount + "_searchLatency", latency < 0 ? "-" : Long.toString(latency));
+                            prop.put(STR_TABLE_LIST + conCount + "_searchFailures", performance == null ? "-" : Long.toString(Math.round(100.0d * performance.failureRate())));
+                            prop.put(STR_TABLE_LIST + conCount + "_searchYield", performance == null ? "-" : Long.toString(Math.round(performance.yield())));
                             conCount++;
                         } // seed != null
                     } // while
@@ -236,6 +236,9 @@ public class PerformanceMemory_p {
         prop.putNum("namecacheMiss.Hit", Domains.cacheMiss_Hit);
         prop.putNum("namecacheMiss.Miss", Domains.cacheMiss_Miss);
         prop.putNum("namecacheMiss.Insert", Domains.cacheMiss_Insert);
+        prop.putNum("namecachePrefetch.size", Domains.prefetchQueueSize());
+        prop.putNum("namecachePrefetch.Insert", Domains.prefetch_Queued);
+        prop.putNum("namecachePrefetch.Rejected", Domains.prefetch_Rejected);
         prop.putNum("namecache.noCache", Domains.nameCacheNoCachingPatternsSize());
         prop.putNum("blacklistcache.size", Switchboard.urlBlacklist.blacklistCacheSize());
         prop.putNum("searchevent.size", SearchEventCache.size());
@@ -0,0 +1,53 @@
+// admission_p.java
+// ---------------
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+import java.util.Map;
+
+import net.yacy.cora.protocol.RequestHeader;
+import net.yacy.http.servlets.AdmissionControlFilter;
+import net.yacy.server.serverObjects;
+import net.yacy.server.serverSwitch;
+
+public class admission_p {
+
+    public static serverObjects respond(@SuppressWarnings("unused") final RequestHeader header, @SuppressWarnings("unused") final serverObjects post, @SuppressWarnings("unused") final serverSwitch env) {
+
+        final serverObjects prop = new serverObjects();
+        prop.put("enabled", AdmissionControlFilter.isEnabled() ? 1 : 0);
+        prop.put("pressure", Double.toString(Math.round(AdmissionControlFilter.currentPressure() * 100.0d) / 100.0d));
+        int c = 0;
+        for (final Map.Entry<AdmissionControlFilter.RequestClass, AdmissionControlFilter.Limit> e: AdmissionControlFilter.limits().entrySet()) {
+            final AdmissionControlFilter.Limit l = e.getValue();
+            prop.put("classes_" + c + "_name", e.getKey().name());
+            prop.put("classes_" + c + "_limit", l.limit());
+            prop.put("classes_" + c + "_active", l.active());
+            prop.put("classes_" + c + "_queued", l.queued());
+            prop.put("classes_" + c + "_latency", l.latency());
+            prop.put("classes_" + c + "_admitted", l.admitted());
+            prop.put("classes_" + c + "_rejected", l.rejected());
+            prop.put("classes_" + c + "_shed", l.shed());
+            prop.put("classes_" + c + "_timedout", l.timedOut());
+            c++;
+        }
+        prop.put("classes", c);
+
+        // return rewrite properties
+        return prop;
+    }
+
+}
@@ -0,0 +1,61 @@
+// dhtdispatcher_p.java
+// ------------
+// part of YaCy, http://yacy.net
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+import java.util.Map;
+
+import net.yacy.cora.protocol.RequestHeader;
+import net.yacy.peers.Dispatcher;
+import net.yacy.search.Switchboard;
+import net.yacy.server.serverObjects;
+import net.yacy.server.serverSwitch;
+
+public class dhtdispatcher_p {
+
+    public static serverObjects respond(@SuppressWarnings("unused") final RequestHeader header, @SuppressWarnings("unused") final serverObjects post, final serverSwitch env) {
+
+        final serverObjects prop = new serverObjects();
+        final Switchboard sb = (Switchboard) env;
+        final Dispatcher dispatcher = sb.getDHTDispatcher();
+        int c = 0;
+        if (dispatcher != null) {
+            prop.put("buffer", dispatcher.bufferSize());
+            prop.put("transmission", dispatcher.transmissionSize());
+            prop.put("retry", dispatcher.retrySize());
+            for (final Map.Entry<String, Dispatcher.TargetStatistics> e: dispatcher.targetStatistics().entrySet()) {
+                final Dispatcher.TargetStatistics statistics = e.getValue();
+                prop.putXML("targets_" + c + "_hash", e.getKey());
+                prop.putXML("targets_" + c + "_name", statistics.name());
+                prop.put("targets_" + c + "_chunks", statistics.chunks());
+                prop.put("targets_" + c + "_failures", statistics.failures());
+                prop.put("targets_" + c + "_references", statistics.references());
+                prop.put("targets_" + c + "_time", statistics.time());
+                prop.put("targets_" + c + "_throughput", Math.round(statistics.throughput()));
+                c++;
+            }
+        } else {
+            prop.put("buffer", 0);
+            prop.put("transmission", 0);
+            prop.put("retry", 0);
+        }
+        prop.put("targets", c);
+
+        // return rewrite properties
+        return prop;
+    }
+
+}
@@ -54,6 +54,9 @@ public class latency_p {
             prop.put("domains_" + c + "_average", host.average());
             prop.put("domains_" + c + "_robots", host.robotsDelay());
             prop.put("domains_" + c + "_flux", host.flux(agent.minimumDelta));
+            prop.put("domains_" + c + "_delayfactor", Double.toString(host.delayFactor()));
+            prop.put("domains_" + c + "_concurrency", host.concurrency());
+            prop.put("domains_" + c + "_errors", host.errors());
             c++;
         }
         prop.put("domains", c);
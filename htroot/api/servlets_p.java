@@ -0,0 +1,49 @@
+// servlets_p.java
+// ---------------
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+import java.util.Map;
+
+import net.yacy.cora.protocol.RequestHeader;
+import net.yacy.http.servlets.ServletDispatcher;
+import net.yacy.server.serverObjects;
+import net.yacy.server.serverSwitch;
+
+public class servlets_p {
+
+    public static serverObjects respond(@SuppressWarnings("unused") final RequestHeader header, @SuppressWarnings("unused") final serverObjects post, @SuppressWarnings("unused") final serverSwitch env) {
+
+        final serverObjects prop = new serverObjects();
+        int c = 0;
+        for (final Map.Entry<String, ServletDispatcher.Statistics> e: ServletDispatcher.statistics().entrySet()) {
+            final ServletDispatcher.Statistics s = e.getValue();
+            prop.putXML("servlets_" + c + "_name", e.getKey());
+            prop.put("servlets_" + c + "_calls", s.calls());
+            prop.put("servlets_" + c + "_errors", s.errors());
+            prop.put("servlets_" + c + "_average", s.average());
+            prop.put("servlets_" + c + "_median", s.latency(0.5d));
+            prop.put("servlets_" + c + "_p95", s.latency(0.95d));
+            prop.put("servlets_" + c + "_max", s.max());
+            c++;
+        }
+        prop.put("servlets", c);
+
+        // return rewrite properties
+        return prop;
+    }
+
+}
@@ -30,9 +30,12 @@
 import java.io.IOException;
 import java.net.InetAddress;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
+import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.protocol.Domains;
 import net.yacy.cora.protocol.HeaderFramework;
 import net.yacy.cora.protocol.RequestHeader;
@@ -40,6 +43,7 @@ import net.yacy.peers.Network;
 import net.yacy.peers.DHTSelection;
 import net.yacy.peers.Protocol;
 import net.yacy.peers.Seed;
+import net.yacy.peers.SeedSnapshot;
 import net.yacy.peers.graphics.ProfilingGraph;
 import net.yacy.search.EventTracker;
 import net.yacy.search.Switchboard;
@@ -84,6 +88,7 @@ public final class hello {
         final String key      = post.get("key", "");      // transmission key for response
         final String seed     = post.get("seed", "");
         int  count            = post.getInt("count", 0);
+        final long seedsince  = post.getLong("seedsince", 0); // the version of our seed table which the remote peer knows from the last hello
         // final long  magic     = post.getLong("magic", 0);
         // final Date remoteTime = yacyCore.parseUniversalDate(post.get(MYTIME)); // read remote time
         if (seed.length() > Seed.maxsize) {
@@ -208,14 +213,37 @@ public final class hello {
             Network.log.info("hello/server: changing remote peer '" + remoteSeed.getName() + "' " + reportedips + " peerType from '" + reportedPeerType + "' to '" + prop.get(Seed.YOURTYPE) + "'.");
         }
 
+        final SeedSnapshot snapshot = sb.peers.connectedSnapshot();
         final StringBuilder seeds = new StringBuilder(768);
+        long seedversion = snapshot.version(); // the version of the seed table which the remote peer knows after this hello
         // attach some more seeds, as requested
         if (sb.peers.sizeConnected() > 0) {
             if (count > sb.peers.sizeConnected()) { count = sb.peers.sizeConnected(); }
             if (count > 100) { count = 100; }
 
-            // latest seeds
-            final ConcurrentMap<String, Seed> ySeeds = DHTSelection.seedsByAge(sb.peers, true, count); // peerhash/yacySeed relation
+            // latest seeds; if the remote peer knows an older version of our seed table, only the seeds which changed since that version
+            ConcurrentMap<String, Seed> ySeeds = null;
+            if (seedsince > 0 && seedsince <= snapshot.version()) {
+                final List<Seed> changed = snapshot.changedSince(seedsince, count + 1); // the earliest changes first
+                if (changed.size() <= count) {
+                    // all changes fit into the response
+                    ySeeds = new ConcurrentHashMap<String, Seed>();
+                    for (final Seed s: changed) ySeeds.put(s.hash, s);
+                } else if (count > 0) {
+                    // the changes are cut; the remote peer must ask again for the changes after the last seed which is sent.
+                    // This is only possible if the cut is not inside a group of seeds which were changed in the same version.
+                    final long lastSent = snapshot.changedVersion(ASCII.getBytes(changed.get(count - 1).hash));
+                    final long firstUnsent = snapshot.changedVersion(ASCII.getBytes(changed.get(count).hash));
+                    if (lastSent < firstUnsent) {
+                        ySeeds = new ConcurrentHashMap<String, Seed>();
+                        for (final Seed s: changed.subList(0, count)) ySeeds.put(s.hash, s);
+                        seedversion = lastSent;
+                    }
+                }
+            }
+            if (ySeeds == null) {
+                ySeeds = DHTSelection.seedsByAge(sb.peers, true, count); // peerhash/yacySeed relation
+            }
 
             // attach also my own seed
             seeds.append("seed0=").append(sb.peers.mySeed().genSeedStr(key)).append(serverCore.CRLF_STRING);
@@ -244,6 +272,7 @@ public final class hello {
         }
 
         prop.put("seedlist", seeds.toString());
+        prop.put("seedversion", seedversion);
         // return rewrite properties
         prop.put("message", "ok " + seed.length());
         Network.log.info("hello/server: responded remote peer '" + remoteSeed.getName() + "' " + reportedips + " in " + (System.currentTimeMillis() - start) + " milliseconds");
@@ -28,15 +28,19 @@
 
 
 import java.io.IOException;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.document.encoding.UTF8;
 import net.yacy.cora.document.feed.RSSMessage;
 import net.yacy.cora.federate.yacy.Distribution;
+import net.yacy.cora.order.Base64Order;
 import net.yacy.cora.protocol.HeaderFramework;
 import net.yacy.cora.protocol.RequestHeader;
 import net.yacy.cora.storage.HandleSet;
@@ -44,11 +48,13 @@ import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.Memory;
 import net.yacy.cora.util.SpaceExceededException;
 import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.data.word.WordReference;
 import net.yacy.kelondro.data.word.WordReferenceRow;
 import net.yacy.kelondro.index.RowHandleSet;
 import net.yacy.kelondro.util.FileUtils;
 import net.yacy.kelondro.util.MemoryControl;
 import net.yacy.peers.EventChannel;
+import net.yacy.peers.IndexTransferCodec;
 import net.yacy.peers.Network;
 import net.yacy.peers.Protocol;
 import net.yacy.peers.Seed;
@@ -171,38 +177,52 @@ public final class transferRWI {
             final long startProcess = System.currentTimeMillis();
 
             // decode request
-            //System.out.println("STRINGS " + UTF8.String(indexes));
-            final Iterator<String> it = FileUtils.strings(indexes);
+            int blocked = 0;
+            List<Map.Entry<String, WordReference>> postings = new ArrayList<Map.Entry<String, WordReference>>();
+            if (IndexTransferCodec.FORMAT.equals(post.get("format", ""))) {
+                // binary format
+                try {
+                    postings = IndexTransferCodec.decodeRWI(Base64Order.standardCoder.decode(post.get("indexes$file", "")), 1000); // protection against flooding
+                } catch (final IOException e) {
+                    sb.getLog().warn("transferRWI: cannot decode RWIs from peer " + otherPeerName + ": " + e.getMessage());
+                    blocked = entryc;
+                }
+            } else {
+                //System.out.println("STRINGS " + UTF8.String(indexes));
+                final Iterator<String> it = FileUtils.strings(indexes);
+                String estring;
+                int p;
+                int count = 0;
+                while (it.hasNext()) {
+                    estring = it.next();
+                    count++;
+                    if (count > 1000) break; // protection against flooding
+
+                    // check if RWI entry is well-formed
+                    p = estring.indexOf('{',0);
+                    if (p < 0 || estring.indexOf("x=",0) < 0 || !(estring.indexOf("[B@",0) < 0)) {
+                        blocked++;
+                        continue;
+                    }
+                    postings.add(new AbstractMap.SimpleImmutableEntry<String, WordReference>(estring.substring(0, p), new WordReferenceRow(estring.substring(p))));
+                }
+            }
 
             // free memory
             indexes = null;
 
-            // now parse the Strings in the value-vector and write index entries
-            String estring;
-            int p;
+            // now write the index entries
             String wordHash;
             byte[] urlHash;
-            WordReferenceRow iEntry;
+            WordReference iEntry;
             final HandleSet unknownURL = new RowHandleSet(Word.commonHashLength, Word.commonHashOrder, 0);
             final ArrayList<String> wordhashes = new ArrayList<String>();
             int received = 0;
-            int blocked = 0;
-            int count = 0;
             Set<String> testids = new HashSet<String>();
-            while (it.hasNext()) {
-                estring = it.next();
-                count++;
-                if (count > 1000) break; // protection against flooding
-
-                // check if RWI entry is well-formed
-                p = estring.indexOf('{',0);
-                if (p < 0 || estring.indexOf("x=",0) < 0 || !(estring.indexOf("[B@",0) < 0)) {
-                    blocked++;
-                    continue;
-                }
-                wordHash = estring.substring(0, p);
+            for (final Map.Entry<String, WordReference> posting: postings) {
+                wordHash = posting.getKey();
                 wordhashes.add(wordHash);
-                iEntry = new WordReferenceRow(estring.substring(p));
+                iEntry = posting.getValue();
                 urlHash = iEntry.urlhash();
 
                 // block blacklisted entries
@@ -28,12 +28,15 @@
 
 import java.io.IOException;
 import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import net.yacy.cora.date.GenericFormatter;
 import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.document.feed.RSSMessage;
+import net.yacy.cora.order.Base64Order;
 import net.yacy.cora.protocol.RequestHeader;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.crawler.data.ResultURLs;
@@ -41,6 +44,7 @@ import net.yacy.crawler.data.ResultURLs.EventOrigin;
 import net.yacy.gui.Audio;
 import net.yacy.kelondro.data.meta.URIMetadataNode;
 import net.yacy.peers.EventChannel;
+import net.yacy.peers.IndexTransferCodec;
 import net.yacy.peers.Network;
 import net.yacy.peers.Protocol;
 import net.yacy.peers.Seed;
@@ -92,10 +96,20 @@ public final class transferURL {
             String urls;
             URIMetadataNode lEntry;
             Map<String, URIMetadataNode> lEm = new HashMap<String, URIMetadataNode>();
+            List<String> binaryURLs = null;
+            if (IndexTransferCodec.FORMAT.equals(post.get("format", ""))) {
+                // binary format
+                try {
+                    binaryURLs = IndexTransferCodec.decodeURLs(Base64Order.standardCoder.decode(post.get("urls$file", "")), urlc);
+                } catch (final IOException e) {
+                    Network.log.warn("transferURL: cannot decode URLs from peer " + otherPeerName + ": " + e.getMessage());
+                    binaryURLs = new ArrayList<String>(0);
+                }
+            }
             for (int i = 0; i < urlc; i++) {
 
                 // read new lurl-entry
-                urls = post.get("url" + i);
+                urls = binaryURLs == null ? post.get("url" + i) : i < binaryURLs.size() ? binaryURLs.get(i) : null;
                 if (urls == null) {
                     if (Network.log.isFine()) Network.log.fine("transferURL: got null URL-string from peer " + otherPeerName);
                     blocked++;
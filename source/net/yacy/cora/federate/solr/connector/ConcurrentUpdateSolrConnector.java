@@ -21,18 +21,28 @@
 package net.yacy.cora.federate.solr.connector;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import net.yacy.cora.sorting.ReversibleScoreMap;
 import net.yacy.cora.storage.ARC;
 import net.yacy.cora.storage.ConcurrentARC;
 import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.cora.util.Metrics;
 import net.yacy.kelondro.data.word.Word;
 import net.yacy.kelondro.util.MemoryControl;
+import net.yacy.kelondro.util.NamePrefixThreadFactory;
 import net.yacy.search.schema.CollectionSchema;
 
 import org.apache.solr.client.solrj.response.QueryResponse;
@@ -41,6 +51,7 @@ import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrDocumentList;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.SolrInputField;
 import org.apache.solr.common.params.ModifiableSolrParams;
 
 /**
@@ -48,20 +59,32 @@ import org.apache.solr.common.params.ModifiableSolrParams;
  * All time-consuming tasks like updates and deletions are done within a concurrent process
  * which is started for this class in the background.
  * To implement this, we introduce an id exist cache, a deletion id queue and a update document queue.
+ * 
+ * The update document queue is double-buffered: new documents are written to the active buffer while
+ * a swapped-out buffer is written to solr by the commit handler. The buffers are swapped when the active
+ * buffer exceeds its document count or byte limit or after the autocommit time. If the active buffer grows to
+ * twice its limits while the previous buffer is still written, producers are blocked until the buffers are swapped.
  */
 public class ConcurrentUpdateSolrConnector implements SolrConnector {
 
     private final static long AUTOCOMMIT = 3000; // milliseconds
+    private final static int FLUSH_CHUNK_MIN = 10; // minimum number of documents for each flush worker
+    private final static Metrics.Histogram flushTime = Metrics.histogram("yacy_solr_flush_duration_seconds", "time to write the update buffer of a solr connector");
     
     private class CommitHandler extends Thread {
         @Override
         public void run() {
             try {
                 while (ConcurrentUpdateSolrConnector.this.commitProcessRunning) {
-                    commitDocBuffer();
-                    try {Thread.sleep(AUTOCOMMIT);} catch (final InterruptedException e) {
-                        ConcurrentLog.logException(e);
+                    synchronized (ConcurrentUpdateSolrConnector.this.bufferLock) {
+                        if (!ConcurrentUpdateSolrConnector.this.flushRequested && ConcurrentUpdateSolrConnector.this.commitProcessRunning) {
+                            try {ConcurrentUpdateSolrConnector.this.bufferLock.wait(AUTOCOMMIT);} catch (final InterruptedException e) {
+                                ConcurrentLog.logException(e);
+                            }
+                        }
+                        ConcurrentUpdateSolrConnector.this.flushRequested = false;
                     }
+                    commitDocBuffer();
                 }
             } finally {
                 commitDocBuffer();
@@ -72,17 +95,38 @@ public class ConcurrentUpdateSolrConnector implements SolrConnector {
     private SolrConnector connector;
     private ARC<String, LoadTimeURL> metadataCache;
     //private final ARH<String> missCache;
-    private final LinkedHashMap<String, SolrInputDocument> docBuffer;
+    private final Object bufferLock; // guards docBuffer, flushBuffer, docBufferBytes and flushRequested
+    private final Object flushLock; // held while a buffer is written to solr
+    private LinkedHashMap<String, SolrInputDocument> docBuffer; // the active buffer
+    private LinkedHashMap<String, SolrInputDocument> flushBuffer; // the buffer which is currently written or null
+    private long docBufferBytes;
+    private boolean flushRequested;
     private CommitHandler processHandler;
     private final int updateCapacity;
+    private final long updateCapacityBytes;
+    private final ThreadPoolExecutor flushWorkers;
     private boolean commitProcessRunning;
     
     public ConcurrentUpdateSolrConnector(final SolrConnector connector, final int updateCapacity, final int idCacheCapacity, final int concurrency) {
         this.connector = connector;
         this.updateCapacity = updateCapacity;
+        this.updateCapacityBytes = Math.max(1024 * 1024, Math.min(64 * 1024 * 1024, MemoryControl.maxMemory() / 32));
         this.metadataCache = new ConcurrentARC<>(idCacheCapacity, concurrency);
         //this.missCache = new ConcurrentARH<>(idCacheCapacity, concurrency);
+        this.bufferLock = new Object();
+        this.flushLock = new Object();
         this.docBuffer = new LinkedHashMap<>();
+        this.flushBuffer = null;
+        this.docBufferBytes = 0;
+        this.flushRequested = false;
+        // an embedded index is written by one thread; remote shards are written concurrently
+        final int flushConcurrency = connector instanceof EmbeddedSolrConnector ? 1 : Math.max(1, Math.min(4, concurrency));
+        if (flushConcurrency > 1) {
+            this.flushWorkers = new ThreadPoolExecutor(flushConcurrency, flushConcurrency, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new NamePrefixThreadFactory(this.getClass().getSimpleName() + "_FlushWorker"));
+            this.flushWorkers.allowCoreThreadTimeOut(true);
+        } else {
+            this.flushWorkers = null;
+        }
         this.processHandler = null;
         this.commitProcessRunning = true;
         ensureAliveProcessHandler();
@@ -98,30 +142,166 @@ public class ConcurrentUpdateSolrConnector implements SolrConnector {
         return o instanceof ConcurrentUpdateSolrConnector && this.connector.equals(((ConcurrentUpdateSolrConnector) o).connector);
     }
 
+    /**
+     * swap the buffers and write the swapped-out buffer to solr.
+     * Producers may add documents to the new active buffer while this is running.
+     */
     private void commitDocBuffer() {
-        synchronized (this.docBuffer) {
-            //System.out.println("*** commit of " + this.docBuffer.size() + " documents");
-            //Thread.dumpStack();
-            if (this.docBuffer.size() > 0) try {
-                this.connector.add(this.docBuffer.values());
-            } catch (final OutOfMemoryError e) {
-                // clear and try again...
-                clearCaches();
-                try {
-                    this.connector.add(this.docBuffer.values());
-                } catch (final IOException ee) {
-                    ConcurrentLog.logException(e);
+        synchronized (this.flushLock) {
+            final LinkedHashMap<String, SolrInputDocument> batch;
+            synchronized (this.bufferLock) {
+                if (this.docBuffer.isEmpty()) return;
+                batch = this.docBuffer;
+                this.flushBuffer = batch;
+                this.docBuffer = new LinkedHashMap<>();
+                this.docBufferBytes = 0;
+                this.bufferLock.notifyAll(); // wake up blocked producers
+            }
+            //System.out.println("*** commit of " + batch.size() + " documents");
+            try {
+                flush(batch.values());
+            } finally {
+                synchronized (this.bufferLock) {
+                    this.flushBuffer = null;
                 }
-            } catch (final IOException e) {
+            }
+        }
+    }
+
+    /**
+     * write documents to solr; large batches are split among the flush workers
+     * @param docs
+     */
+    private void flush(final Collection<SolrInputDocument> docs) {
+        final long start = System.nanoTime();
+        try {
+            flushDocuments(docs);
+        } finally {
+            flushTime.recordNanos(System.nanoTime() - start);
+        }
+    }
+
+    private void flushDocuments(final Collection<SolrInputDocument> docs) {
+        final int workers = this.flushWorkers == null ? 1 : Math.min(this.flushWorkers.getMaximumPoolSize(), docs.size() / FLUSH_CHUNK_MIN);
+        if (workers <= 1) {
+            addWithRetry(docs);
+            return;
+        }
+        final List<List<SolrInputDocument>> chunks = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) chunks.add(new ArrayList<SolrInputDocument>(docs.size() / workers + 1));
+        int c = 0;
+        for (final SolrInputDocument doc: docs) chunks.get(c++ % workers).add(doc);
+        final List<Future<?>> futures = new ArrayList<>(workers);
+        for (final List<SolrInputDocument> chunk: chunks) {
+            try {
+                futures.add(this.flushWorkers.submit(new Callable<Object>() {
+                    @Override
+                    public Object call() {
+                        addWithRetry(chunk);
+                        return null;
+                    }
+                }));
+            } catch (final RejectedExecutionException e) {
+                addWithRetry(chunk); // the executor is shut down
+            }
+        }
+        for (final Future<?> future: futures) {
+            try {
+                future.get();
+            } catch (final InterruptedException e) {
                 ConcurrentLog.logException(e);
+            } catch (final ExecutionException e) {
+                ConcurrentLog.logException(e.getCause());
             }
-            this.docBuffer.clear();
+        }
+    }
+
+    private void addWithRetry(final Collection<SolrInputDocument> docs) {
+        try {
+            this.connector.add(docs);
+        } catch (final OutOfMemoryError e) {
+            // clear and try again...
+            clearCaches();
+            try {
+                this.connector.add(docs);
+            } catch (final IOException ee) {
+                ConcurrentLog.logException(e);
+            }
+        } catch (final IOException e) {
+            ConcurrentLog.logException(e);
+        }
+    }
+
+    /**
+     * wait until a running flush of the swapped-out buffer is finished
+     */
+    private void awaitFlush() {
+        synchronized (this.flushLock) {
+            // a flush holds the lock for its whole duration
+        }
+    }
+
+    /**
+     * put a document to the active buffer; the caller must hold the bufferLock
+     * @return true if the buffer reached its limits and should be written
+     */
+    private boolean putToBuffer(final String id, final SolrInputDocument solrdoc) {
+        this.docBuffer.put(id, solrdoc);
+        this.docBufferBytes += sizeOf(solrdoc);
+        return this.docBuffer.size() > this.updateCapacity || this.docBufferBytes > this.updateCapacityBytes;
+    }
+
+    /**
+     * block the calling thread while the active buffer exceeds twice its limits;
+     * this happens only if solr ingests slower than the documents are produced
+     */
+    private void awaitCapacity() {
+        synchronized (this.bufferLock) {
+            while ((this.docBuffer.size() > 2 * this.updateCapacity || this.docBufferBytes > 2 * this.updateCapacityBytes) &&
+                    this.processHandler.isAlive()) {
+                this.flushRequested = true;
+                this.bufferLock.notifyAll();
+                try {this.bufferLock.wait(1000);} catch (final InterruptedException e) {break;}
+            }
+        }
+    }
+
+    private void requestFlush() {
+        synchronized (this.bufferLock) {
+            this.flushRequested = true;
+            this.bufferLock.notifyAll();
+        }
+    }
+
+    /**
+     * a rough estimation of the heap usage of a document
+     * @param doc
+     * @return number of bytes
+     */
+    private static long sizeOf(final SolrInputDocument doc) {
+        long size = 64;
+        for (final SolrInputField field: doc) {
+            size += 48 + 2 * field.getName().length();
+            for (final Object value: field) {
+                size += value instanceof String ? 40 + 2 * ((String) value).length() : 24;
+            }
+        }
+        return size;
+    }
+
+    private SolrInputDocument getBuffered(final String id) {
+        synchronized (this.bufferLock) {
+            final SolrInputDocument doc = this.docBuffer.get(id);
+            if (doc != null || this.flushBuffer == null) return doc;
+            return this.flushBuffer.get(id);
         }
     }
     
     @Override
     public int bufferSize() {
-        return this.docBuffer.size();
+        synchronized (this.bufferLock) {
+            return this.docBuffer.size() + (this.flushBuffer == null ? 0 : this.flushBuffer.size());
+        }
     }
 
     @Override
@@ -186,7 +366,11 @@ public class ConcurrentUpdateSolrConnector implements SolrConnector {
     public void close() {
         ensureAliveProcessHandler();
         this.commitProcessRunning = false;
+        synchronized (this.bufferLock) {
+            this.bufferLock.notifyAll();
+        }
         try {this.processHandler.join();} catch (final InterruptedException e) {}
+        if (this.flushWorkers != null) this.flushWorkers.shutdown();
         this.connector.close();
         this.metadataCache.clear();
         this.connector = null;
@@ -195,7 +379,11 @@ public class ConcurrentUpdateSolrConnector implements SolrConnector {
 
     @Override
     public void clear() throws IOException {
-        this.docBuffer.clear();
+        synchronized (this.bufferLock) {
+            this.docBuffer.clear();
+            this.docBufferBytes = 0;
+        }
+        awaitFlush();
         this.connector.clear();
         this.metadataCache.clear();
         //this.missCache.clear();
@@ -205,9 +393,12 @@ public class ConcurrentUpdateSolrConnector implements SolrConnector {
     public synchronized void deleteById(String id) throws IOException {
         this.metadataCache.remove(id);
         //this.missCache.add(id);
-        synchronized (this.docBuffer) {
+        boolean flushing;
+        synchronized (this.bufferLock) {
             this.docBuffer.remove(id);
+            flushing = this.flushBuffer != null && this.flushBuffer.containsKey(id);
         }
+        if (flushing) awaitFlush(); // otherwise the document would be written after the deletion
         this.connector.deleteById(id);
     }
 
@@ -217,11 +408,14 @@ public class ConcurrentUpdateSolrConnector implements SolrConnector {
             this.metadataCache.remove(id);
             //this.missCache.add(id);
         }
-        synchronized (this.docBuffer) {
+        boolean flushing = false;
+        synchronized (this.bufferLock) {
             for (String id: ids) {
                 this.docBuffer.remove(id);
+                if (this.flushBuffer != null && this.flushBuffer.containsKey(id)) flushing = true;
             }
         }
+        if (flushing) awaitFlush(); // otherwise the documents would be written after the deletion
         this.connector.deleteByIds(ids);
     }
 
@@ -245,7 +439,7 @@ public class ConcurrentUpdateSolrConnector implements SolrConnector {
             //Thread.dumpStack();
             return md;
         }
-        SolrInputDocument doc = this.docBuffer.get(id);
+        SolrInputDocument doc = getBuffered(id);
         if (doc != null) {
             //System.out.println("*** docBuffer cache hit; docBuffer.size() = " + docBuffer.size());
             //Thread.dumpStack();
@@ -262,32 +456,46 @@ public class ConcurrentUpdateSolrConnector implements SolrConnector {
         String id = (String) solrdoc.getFieldValue(CollectionSchema.id.getSolrFieldName());
         updateCache(id, AbstractSolrConnector.getLoadTimeURL(solrdoc));
         ensureAliveProcessHandler();
-        if (this.processHandler.isAlive()) {
-            synchronized (this.docBuffer) {this.docBuffer.put(id, solrdoc);}
-        } else {
+        if (!this.processHandler.isAlive()) {
             this.connector.add(solrdoc);
+            return;
         }
-        if (MemoryControl.shortStatus() || this.docBuffer.size() > this.updateCapacity) {
+        boolean full;
+        synchronized (this.bufferLock) {
+            full = putToBuffer(id, solrdoc);
+        }
+        if (MemoryControl.shortStatus()) {
             commitDocBuffer();
+        } else if (full) {
+            requestFlush();
+            awaitCapacity();
         }
     }
 
     @Override
     public void add(Collection<SolrInputDocument> solrdocs) throws IOException, SolrException {
         ensureAliveProcessHandler();
-        synchronized (this.docBuffer) {
+        if (!this.processHandler.isAlive()) {
             for (SolrInputDocument solrdoc: solrdocs) {
                 String id = (String) solrdoc.getFieldValue(CollectionSchema.id.getSolrFieldName());
                 updateCache(id, AbstractSolrConnector.getLoadTimeURL(solrdoc));
-                if (this.processHandler.isAlive()) {
-                    this.docBuffer.put(id, solrdoc);
-                } else {
-                    this.connector.add(solrdoc);
-                }
             }
+            this.connector.add(solrdocs);
+            return;
         }
-        if (MemoryControl.shortStatus() || this.docBuffer.size() > this.updateCapacity) {
+        boolean full = false;
+        synchronized (this.bufferLock) {
+            for (SolrInputDocument solrdoc: solrdocs) {
+                String id = (String) solrdoc.getFieldValue(CollectionSchema.id.getSolrFieldName());
+                updateCache(id, AbstractSolrConnector.getLoadTimeURL(solrdoc));
+                full |= putToBuffer(id, solrdoc);
+            }
+        }
+        if (MemoryControl.shortStatus()) {
             commitDocBuffer();
+        } else if (full) {
+            requestFlush();
+            awaitCapacity();
         }
     }
     
@@ -295,7 +503,7 @@ public class ConcurrentUpdateSolrConnector implements SolrConnector {
     public SolrDocument getDocumentById(final String id, String... fields) throws IOException {
         assert id.length() == Word.commonHashLength : "wrong id: " + id;
         //if (this.missCache.contains(id)) return null;
-        SolrInputDocument idoc = this.docBuffer.get(id);
+        SolrInputDocument idoc = getBuffered(id);
         if (idoc != null) {
             //System.out.println("*** docBuffer cache hit; docBuffer.size() = " + docBuffer.size());
             //Thread.dumpStack();
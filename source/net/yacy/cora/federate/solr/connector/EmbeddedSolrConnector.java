@@ -23,21 +23,26 @@ package net.yacy.cora.federate.solr.connector;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.lang.ref.WeakReference;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import net.yacy.cora.federate.solr.instance.EmbeddedInstance;
 import net.yacy.cora.federate.solr.instance.SolrInstance;
+import net.yacy.cora.storage.ARC;
+import net.yacy.cora.storage.ConcurrentARC;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.search.schema.CollectionSchema;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.Term;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.util.BytesRef;
 import org.apache.solr.client.solrj.SolrQuery;
@@ -80,6 +85,25 @@ public class EmbeddedSolrConnector extends SolrServerConnector implements SolrCo
     //private final SuggestComponent suggestHandler;
     private final EmbeddedInstance instance;
     private final SolrCore core;
+    private volatile DocIdCache docIdCache;
+
+    /**
+     * A cache of the internal lucene document numbers of ids. Document numbers are only valid within one
+     * index searcher, therefore the cache is bound to a searcher and replaced when a new searcher is opened.
+     * A new searcher is opened with every (soft) commit, so while documents are indexed the cache lives only
+     * from one commit to the next and mostly misses; it pays off for repeated lookups between commits, i.e. in
+     * search result processing. It cannot be kept over a commit: the document numbers change when segments are
+     * merged, and a cached number may point to a document which was deleted or replaced by the commit.
+     */
+    private static class DocIdCache {
+        private static final int CACHE_SIZE = 10000;
+        private final WeakReference<SolrIndexSearcher> searcher;
+        private final ARC<String, Integer> docIds;
+        private DocIdCache(final SolrIndexSearcher searcher) {
+            this.searcher = new WeakReference<SolrIndexSearcher>(searcher);
+            this.docIds = new ConcurrentARC<String, Integer>(CACHE_SIZE, Math.max(1, Runtime.getRuntime().availableProcessors()));
+        }
+    }
 
     public EmbeddedSolrConnector(EmbeddedInstance instance) {
         super();
@@ -178,6 +202,64 @@ public class EmbeddedSolrConnector extends SolrServerConnector implements SolrCo
         // try {this.core.close();} catch (final Throwable e) {ConcurrentLog.logException(e);}
     }
 
+    /**
+     * find the lucene document number of a document id without a solr request.
+     * The id term is looked up directly in the term dictionaries of the index segments; results are cached for the given searcher.
+     * @param searcher the searcher of the current request
+     * @param id the document id
+     * @return the document number within the searcher or -1 if the document does not exist
+     * @throws IOException
+     */
+    private int docId(final SolrIndexSearcher searcher, final String id) throws IOException {
+        DocIdCache cache = this.docIdCache;
+        if (cache == null || cache.searcher.get() != searcher) {
+            cache = new DocIdCache(searcher);
+            this.docIdCache = cache;
+        }
+        Integer docId = cache.docIds.get(id);
+        if (docId != null) return docId.intValue();
+        final int d = searcher.getFirstMatch(new Term(CollectionSchema.id.getSolrFieldName(), id));
+        cache.docIds.insert(id, d);
+        return d;
+    }
+
+    /**
+     * compute the set of stored fields which shall be loaded
+     * @param fields the field names given in a request
+     * @return the field set or null if all fields shall be loaded
+     */
+    private static Set<String> fieldSet(final String... fields) {
+        if (fields == null || fields.length == 0) return null;
+        final Set<String> fieldSet = new HashSet<String>();
+        for (final String field: fields) {
+            if ("*".equals(field)) return null;
+            fieldSet.add(field);
+        }
+        return fieldSet;
+    }
+
+    /**
+     * get a document by its id without a solr request/response cycle
+     * @param id the document id
+     * @param fields the requested stored fields; all stored fields are returned if no fields are given
+     * @return the document or null if it does not exist
+     * @throws IOException
+     */
+    @Override
+    public SolrDocument getDocumentById(final String id, final String... fields) throws IOException {
+        final RefCounted<SolrIndexSearcher> refCountedIndexSearcher = this.core.getSearcher();
+        try {
+            final SolrIndexSearcher searcher = refCountedIndexSearcher.get();
+            final int docId = docId(searcher, id);
+            if (docId < 0) return null;
+            final Set<String> fieldSet = fieldSet(fields);
+            final Document doc = fieldSet == null ? searcher.doc(docId) : searcher.doc(docId, fieldSet);
+            return doc == null ? null : doc2SolrDoc(doc);
+        } finally {
+            refCountedIndexSearcher.decref();
+        }
+    }
+
     @Override
     public long getSize() {
         RefCounted<SolrIndexSearcher> refCountedIndexSearcher = this.core.getSearcher();
@@ -202,6 +284,7 @@ public class EmbeddedSolrConnector extends SolrServerConnector implements SolrCo
     
     public SolrQueryResponse query(SolrQueryRequest req) throws SolrException {
         final long startTime = System.currentTimeMillis();
+        final long startNanos = System.nanoTime();
 
         // during the solr query we set the thread name to the query string to get more debugging info in thread dumps
         String threadname = Thread.currentThread().getName();
@@ -217,6 +300,7 @@ public class EmbeddedSolrConnector extends SolrServerConnector implements SolrCo
 
         // send request to solr and create a result
         this.requestHandler.handleRequest(req, rsp);
+        embeddedQueryTime.recordNanos(System.nanoTime() - startNanos);
 
         // get statistics and add a header with that
         Exception exception = rsp.getException();
@@ -425,24 +509,19 @@ public class EmbeddedSolrConnector extends SolrServerConnector implements SolrCo
      */
     @Override
     public LoadTimeURL getLoadTimeURL(String id) throws IOException {
-        int responseCount = 0;
-        DocListSearcher docListSearcher = null;
+        final RefCounted<SolrIndexSearcher> refCountedIndexSearcher = this.core.getSearcher();
         try {
-            docListSearcher = new DocListSearcher("{!cache=false raw f=" + CollectionSchema.id.getSolrFieldName() + "}" + id, null, 0, 1, CollectionSchema.id.getSolrFieldName(), CollectionSchema.load_date_dt.getSolrFieldName());
-            responseCount = docListSearcher.response.size();
-            if (responseCount == 0) return null;
-            SolrIndexSearcher searcher = docListSearcher.request.getSearcher();
-            DocIterator iterator = docListSearcher.response.iterator();
-            //for (int i = 0; i < responseCount; i++) {
-            Document doc = searcher.doc(iterator.nextDoc(), AbstractSolrConnector.SOLR_ID_and_LOAD_DATE_FIELDS);
+            final SolrIndexSearcher searcher = refCountedIndexSearcher.get();
+            final int docId = docId(searcher, id);
+            if (docId < 0) return null;
+            Document doc = searcher.doc(docId, AbstractSolrConnector.SOLR_ID_and_LOAD_DATE_FIELDS);
             if (doc == null) return null;
             return AbstractSolrConnector.getLoadTimeURL(doc);
-            //}
         } catch (Throwable e) {
             ConcurrentLog.logException(e);
             throw new IOException(e.getMessage());
         } finally {
-            if (docListSearcher != null) docListSearcher.close();
+            refCountedIndexSearcher.decref();
         }
     }
     /*
@@ -28,6 +28,7 @@ import java.util.List;
 
 import net.yacy.cora.federate.solr.instance.ServerShard;
 import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.cora.util.Metrics;
 import net.yacy.search.schema.CollectionSchema;
 
 import org.apache.lucene.analysis.NumericTokenStream;
@@ -57,6 +58,9 @@ public abstract class SolrServerConnector extends AbstractSolrConnector implemen
     static {
         assert classLoaderSynchro != null;
     }
+    protected final static Metrics.Histogram embeddedQueryTime = Metrics.histogram("yacy_solr_query_duration_seconds", "time to execute a solr query", "connector", "embedded");
+    protected final static Metrics.Histogram remoteQueryTime = Metrics.histogram("yacy_solr_query_duration_seconds", "time to execute a solr query", "connector", "remote");
+    private final static Metrics.Counter documentsAdded = Metrics.counter("yacy_solr_documents_added", "number of documents added to the solr connectors");
     protected SolrClient server;
 
     protected SolrServerConnector() {
@@ -209,6 +213,7 @@ public abstract class SolrServerConnector extends AbstractSolrConnector implemen
     public void add(final SolrInputDocument solrdoc) throws IOException, SolrException {
         if (this.server == null) return;
         if (solrdoc.containsKey("_version_")) solrdoc.setField("_version_",0L); // prevent Solr "version conflict"
+        documentsAdded.inc();
         synchronized (this.server) {
             try {
                 this.server.add(solrdoc, -1);
@@ -251,6 +256,7 @@ public abstract class SolrServerConnector extends AbstractSolrConnector implemen
         for (SolrInputDocument solrdoc : solrdocs) {
             if (solrdoc.containsKey("_version_")) solrdoc.setField("_version_",0L); // prevent Solr "version conflict"
         }
+        documentsAdded.add(solrdocs.size());
         synchronized (this.server) {
             try {
                 this.server.add(solrdocs, -1);
@@ -312,7 +318,9 @@ public abstract class SolrServerConnector extends AbstractSolrConnector implemen
         while (retry++ < 10) {
             try {
                 if (q != null) Thread.currentThread().setName("solr query: q = " + q + (fq == null ? "" : ", fq = " + fq) + (sort == null ? "" : ", sort = " + sort) + "; retry = " + retry + "; fl = " + fl); // for debugging in Threaddump
+                final long start = System.nanoTime();
                 rsp = this.server.query(params);
+                remoteQueryTime.recordNanos(System.nanoTime() - start);
                 if (q != null) Thread.currentThread().setName(threadname);
                 if (rsp != null) if (log.isFine()) log.fine(rsp.getResults().getNumFound() + " results for q=" + q);
                 return rsp.getResults();
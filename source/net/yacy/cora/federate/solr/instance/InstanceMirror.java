@@ -32,6 +32,7 @@ import net.yacy.cora.federate.solr.connector.EmbeddedSolrConnector;
 import net.yacy.cora.federate.solr.connector.MirrorSolrConnector;
 import net.yacy.cora.federate.solr.connector.RemoteSolrConnector;
 import net.yacy.cora.federate.solr.connector.SolrConnector;
+import net.yacy.cora.util.Metrics;
 import net.yacy.kelondro.util.MemoryControl;
 
 public class InstanceMirror {
@@ -48,6 +49,9 @@ public class InstanceMirror {
         this.mirrorConnectorCache = new ConcurrentHashMap<>();
         this.embeddedConnectorCache = new ConcurrentHashMap<>();
         this.remoteConnectorCache = new ConcurrentHashMap<>();
+        Metrics.gauge("yacy_solr_update_buffer_documents", "number of documents in the update buffers of the solr connectors", new Metrics.Probe() {
+            @Override public double value() {return bufferSize();}
+        });
     }
     
     public boolean isConnectedEmbedded() {
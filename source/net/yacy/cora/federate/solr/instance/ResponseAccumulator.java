@@ -20,11 +20,21 @@
 
 package net.yacy.cora.federate.solr.instance;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 
 import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.FacetParams;
+import org.apache.solr.common.params.SolrParams;
 import org.apache.solr.common.util.NamedList;
 import org.apache.solr.common.util.SimpleOrderedMap;
 
@@ -36,15 +46,34 @@ public class ResponseAccumulator {
     final SimpleOrderedMap<Object> highlightingAcc;
     final SimpleOrderedMap<Object> headerAcc;
     final SolrDocumentList resultsAcc;
+    final List<SolrDocumentList> shardResults;
+    final Map<String, Map<String, long[]>> facetFieldsAcc;
+    final Map<String, long[]> facetQueriesAcc;
+    final boolean mergeByScore;
+    final SolrParams params;
 
     public ResponseAccumulator() {
+        this(null);
+    }
+
+    /**
+     * create an accumulator for the responses of several shards
+     * @param params the request parameters; if the result is ordered by score, the shard results are merged by score.
+     * The merged facet fields are sorted and cut according to facet.sort and facet.limit of the request.
+     */
+    public ResponseAccumulator(final SolrParams params) {
         this.fieldsAcc = new SimpleOrderedMap<Object>();
         this.index_countsAcc = new SimpleOrderedMap<Object>();
         this.facet_countsAcc = new SimpleOrderedMap<Object>();
         this.highlightingAcc = new SimpleOrderedMap<Object>();
         this.headerAcc = new SimpleOrderedMap<Object>();
         this.resultsAcc = new SolrDocumentList();
-        
+        this.shardResults = new ArrayList<SolrDocumentList>();
+        this.facetFieldsAcc = new LinkedHashMap<String, Map<String, long[]>>();
+        this.facetQueriesAcc = new LinkedHashMap<String, long[]>();
+        this.params = params;
+        final String sort = params == null ? null : params.get(CommonParams.SORT);
+        this.mergeByScore = sort == null || sort.trim().length() == 0 || sort.trim().startsWith("score desc");
     }
     
     public void addResponse(NamedList<Object> response) {
@@ -61,8 +90,7 @@ public class ResponseAccumulator {
         // accumulate the results
         SolrDocumentList results = (SolrDocumentList) response.get("response");
         if (results != null) {
-            long found = results.size();
-            for (int i = 0; i < found; i++) resultsAcc.add(results.get(i));
+            shardResults.add(results);
             resultsAcc.setNumFound(resultsAcc.getNumFound() + results.getNumFound());
             resultsAcc.setMaxScore(Math.max(resultsAcc.getMaxScore() == null ? 0f : resultsAcc.getMaxScore().floatValue(), results.getMaxScore() == null ? 0f : results.getMaxScore().floatValue()));
         }
@@ -74,11 +102,28 @@ public class ResponseAccumulator {
             for (Map.Entry<String, Object> e: highlighting) highlightingAcc.add(e.getKey(), e.getValue());
         }
         
-        // accumulate the facets (well this is not correct at this time...)
+        // accumulate the facets: counts of facet fields and facet queries are added, other facets are taken from the first response
         @SuppressWarnings("unchecked")
-        SimpleOrderedMap<Object> facet_counts = (SimpleOrderedMap<Object>) response.get("facet_counts");
+        NamedList<Object> facet_counts = (NamedList<Object>) response.get("facet_counts");
         if (facet_counts != null) {
-            for (Map.Entry<String, Object> e: facet_counts) facet_countsAcc.add(e.getKey(), e.getValue());
+            for (Map.Entry<String, Object> e: facet_counts) {
+                if ("facet_fields".equals(e.getKey()) && e.getValue() instanceof NamedList) {
+                    @SuppressWarnings("unchecked")
+                    NamedList<Object> facet_fields = (NamedList<Object>) e.getValue();
+                    for (Map.Entry<String, Object> field: facet_fields) {
+                        Map<String, long[]> counts = facetFieldsAcc.get(field.getKey());
+                        if (counts == null) {
+                            counts = new LinkedHashMap<String, long[]>();
+                            facetFieldsAcc.put(field.getKey(), counts);
+                        }
+                        if (field.getValue() instanceof NamedList) count(counts, (NamedList<?>) field.getValue());
+                    }
+                } else if ("facet_queries".equals(e.getKey()) && e.getValue() instanceof NamedList) {
+                    count(facetQueriesAcc, (NamedList<?>) e.getValue());
+                } else if (facet_countsAcc.get(e.getKey()) == null) {
+                    facet_countsAcc.add(e.getKey(), e.getValue());
+                }
+            }
         }
         
         // accumulate the index
@@ -105,7 +150,96 @@ public class ResponseAccumulator {
         }
     }
     
+    private static void count(final Map<String, long[]> counts, final NamedList<?> values) {
+        for (Map.Entry<String, ?> v: values) {
+            if (!(v.getValue() instanceof Number)) continue;
+            long[] c = counts.get(v.getKey());
+            if (c == null) {
+                c = new long[1];
+                counts.put(v.getKey(), c);
+            }
+            c[0] += ((Number) v.getValue()).longValue();
+        }
+    }
+
+    /**
+     * create the merged facet of a field with the sort order and limit of the request, like solr does for a single core:
+     * the default limit is 100, a negative limit means no limit; the default order is by count if there is a limit, otherwise by index
+     */
+    private NamedList<Object> facetField(final String field, final Map<String, long[]> counts) {
+        final int limit = this.params == null ? 100 : this.params.getFieldInt(field, FacetParams.FACET_LIMIT, 100);
+        final String sort = this.params == null ? null : this.params.getFieldParam(field, FacetParams.FACET_SORT);
+        final boolean sortByCount = sort == null ? limit > 0 : FacetParams.FACET_SORT_COUNT.equals(sort) || FacetParams.FACET_SORT_COUNT_LEGACY.equals(sort);
+        final List<Map.Entry<String, long[]>> entries = new ArrayList<Map.Entry<String, long[]>>(counts.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, long[]>>() {
+            @Override
+            public int compare(Map.Entry<String, long[]> o1, Map.Entry<String, long[]> o2) {
+                if (sortByCount) {
+                    long c1 = o1.getValue()[0], c2 = o2.getValue()[0];
+                    if (c1 != c2) return c1 > c2 ? -1 : 1;
+                }
+                return o1.getKey().compareTo(o2.getKey());
+            }
+        });
+        return facetList(limit < 0 || limit >= entries.size() ? entries : entries.subList(0, limit));
+    }
+
+    private static NamedList<Object> facetList(final Collection<Map.Entry<String, long[]>> entries) {
+        NamedList<Object> list = new SimpleOrderedMap<Object>();
+        for (Map.Entry<String, long[]> e: entries) {
+            long c = e.getValue()[0];
+            list.add(e.getKey(), c > Integer.MAX_VALUE ? Long.valueOf(c) : Integer.valueOf((int) c));
+        }
+        return list;
+    }
+
+    private static float score(final SolrDocument doc) {
+        Object score = doc.getFieldValue("score");
+        return score instanceof Number ? ((Number) score).floatValue() : Float.NaN;
+    }
+
+    /**
+     * merge the shard results: if all documents have a score and the shard results are ordered by score,
+     * the results are merged with a k-way merge, otherwise they are concatenated.
+     */
+    private void mergeResults() {
+        boolean scored = this.mergeByScore;
+        if (scored) check: for (SolrDocumentList results: this.shardResults) {
+            for (SolrDocument doc: results) if (Float.isNaN(score(doc))) {scored = false; break check;}
+        }
+        if (!scored || this.shardResults.size() < 2) {
+            for (SolrDocumentList results: this.shardResults) resultsAcc.addAll(results);
+            return;
+        }
+        // a queue with one cursor {shard, position} for each shard, ordered by the score of the document at the cursor
+        PriorityQueue<int[]> queue = new PriorityQueue<int[]>(this.shardResults.size(), new Comparator<int[]>() {
+            @Override
+            public int compare(int[] o1, int[] o2) {
+                float s1 = score(shardResults.get(o1[0]).get(o1[1])), s2 = score(shardResults.get(o2[0]).get(o2[1]));
+                return s1 > s2 ? -1 : s1 < s2 ? 1 : o1[0] - o2[0];
+            }
+        });
+        for (int i = 0; i < this.shardResults.size(); i++) if (this.shardResults.get(i).size() > 0) queue.add(new int[]{i, 0});
+        int[] cursor;
+        while ((cursor = queue.poll()) != null) {
+            SolrDocumentList results = this.shardResults.get(cursor[0]);
+            resultsAcc.add(results.get(cursor[1]));
+            if (++cursor[1] < results.size()) queue.add(cursor);
+        }
+    }
+
     public NamedList<Object> getAccumulatedResponse() {
+        mergeResults();
+        this.shardResults.clear();
+        if (this.facetQueriesAcc.size() > 0) facet_countsAcc.add("facet_queries", facetList(this.facetQueriesAcc.entrySet()));
+        if (this.facetFieldsAcc.size() > 0) {
+            NamedList<Object> facet_fields = new SimpleOrderedMap<Object>();
+            for (Map.Entry<String, Map<String, long[]>> e: this.facetFieldsAcc.entrySet()) facet_fields.add(e.getKey(), facetField(e.getKey(), e.getValue()));
+            facet_countsAcc.add("facet_fields", facet_fields);
+        }
+        this.facetQueriesAcc.clear();
+        this.facetFieldsAcc.clear();
+
         // prepare combined response
         NamedList<Object> responsesAcc = new NamedList<Object>();
         responsesAcc.add("responseHeader", headerAcc);
@@ -118,7 +252,11 @@ public class ResponseAccumulator {
     }
 
     public static QueryResponse combineResponses(Collection<QueryResponse> qrl) {
-        ResponseAccumulator acc = new ResponseAccumulator();
+        return combineResponses(qrl, null);
+    }
+
+    public static QueryResponse combineResponses(Collection<QueryResponse> qrl, SolrParams params) {
+        ResponseAccumulator acc = new ResponseAccumulator(params);
         for (final QueryResponse rsp: qrl) {
             NamedList<Object> response = rsp.getResponse();
             acc.addResponse(response);
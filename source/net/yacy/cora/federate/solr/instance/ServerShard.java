@@ -25,7 +25,13 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.apache.solr.client.solrj.SolrRequest;
 import org.apache.solr.client.solrj.SolrClient;
@@ -41,6 +47,8 @@ import org.apache.solr.common.params.SolrParams;
 import org.apache.solr.common.util.NamedList;
 
 import net.yacy.cora.federate.solr.connector.ShardSelection;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.kelondro.util.NamePrefixThreadFactory;
 
 public class ServerShard extends SolrClient {
     
@@ -51,8 +59,126 @@ public class ServerShard extends SolrClient {
         _dummyOKResponse.setResponse(new NamedList<Object>());
     }
     
+    /**
+     * all read requests to the shards are executed in this pool. If the pool is exhausted, the request is executed by the calling thread.
+     */
+    private static final ThreadPoolExecutor readExecutor = new ThreadPoolExecutor(
+            Math.max(8, Runtime.getRuntime().availableProcessors() * 4), Math.max(8, Runtime.getRuntime().availableProcessors() * 4),
+            10, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(1000),
+            new NamePrefixThreadFactory("ServerShard.read"), new ThreadPoolExecutor.CallerRunsPolicy());
+    static {
+        readExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    private static volatile long readDeadline = 30000; // the maximum time in milliseconds to wait for the responses of all shards
+    private static volatile long hedgeDelay = 0;       // the time in milliseconds after which a second request is sent to a shard that did not respond; 0 = no hedged requests
+    private static volatile int slowShardTolerance = 0; // the number of shards which may be missing in a response
+
     private final ShardSelection shards;
     private final boolean writeEnabled;
+
+    /**
+     * set the read policy for all sharded read requests
+     * @param deadline the maximum time in milliseconds to wait for the shard responses; after that time the responses which arrived so far are returned
+     * @param hedge the time in milliseconds after which a request to a shard which did not respond yet is sent again; 0 switches off hedged requests
+     * @param tolerance the number of shards which may be missing: a response is returned as soon as all but this number of shards have responded
+     */
+    public static void setReadPolicy(final long deadline, final long hedge, final int tolerance) {
+        readDeadline = deadline <= 0 ? Long.MAX_VALUE : deadline;
+        hedgeDelay = Math.max(0, hedge);
+        slowShardTolerance = Math.max(0, tolerance);
+    }
+
+    /**
+     * a read request to a single shard
+     */
+    private interface ShardRequest<T> {
+        public T request(SolrClient shard) throws SolrServerException, IOException;
+    }
+
+    /**
+     * send a read request to all given shards concurrently and collect the responses.
+     * The method returns when all shards have responded, or all but the tolerated number of slow shards,
+     * or when the read deadline is reached. Shards which did not respond within the hedge delay get
+     * a second request; the first response of a shard is used.
+     * @param qs the shards
+     * @param request the request
+     * @return the responses; the list is not empty
+     * @throws IOException if no shard responded
+     */
+    private static <T> List<T> scatter(final List<SolrClient> qs, final ShardRequest<T> request) throws SolrServerException, IOException {
+        final int n = qs.size();
+        final AtomicReferenceArray<T> responses = new AtomicReferenceArray<T>(n);
+        final AtomicIntegerArray pending = new AtomicIntegerArray(n); // the number of running requests for each shard
+        final AtomicReferenceArray<Throwable> errors = new AtomicReferenceArray<Throwable>(n);
+        final BlockingQueue<Integer> finished = new LinkedBlockingQueue<Integer>(); // shard numbers of answered (>= 0) or failed (< 0) shards
+        final List<Future<?>> futures = new ArrayList<Future<?>>(2 * n);
+        final long start = System.currentTimeMillis();
+        final long deadline = readDeadline == Long.MAX_VALUE ? Long.MAX_VALUE : start + readDeadline;
+        final long hedge = hedgeDelay;
+        final int required = Math.max(1, n - slowShardTolerance);
+        for (int i = 0; i < n; i++) futures.add(submit(qs, i, request, responses, pending, errors, finished));
+
+        int answered = 0, failed = 0;
+        boolean hedged = hedge == 0;
+        try {
+            while (answered < required && answered + failed < n) {
+                final long now = System.currentTimeMillis();
+                if (now >= deadline) break;
+                if (!hedged && now - start >= hedge) {
+                    for (int i = 0; i < n; i++) {
+                        if (responses.get(i) == null && errors.get(i) == null) futures.add(submit(qs, i, request, responses, pending, errors, finished));
+                    }
+                    hedged = true;
+                }
+                long wait = deadline - now;
+                if (!hedged) wait = Math.min(wait, start + hedge - now);
+                final Integer f = finished.poll(Math.max(1, wait), TimeUnit.MILLISECONDS);
+                if (f == null) continue;
+                if (f.intValue() >= 0) answered++; else failed++;
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // do not wait for slow shards; their requests are cancelled
+            for (final Future<?> future: futures) future.cancel(true);
+        }
+
+        final List<T> result = new ArrayList<T>(n);
+        Throwable error = null;
+        for (int i = 0; i < n; i++) {
+            final T response = responses.get(i);
+            if (response != null) result.add(response); else if (error == null) error = errors.get(i);
+        }
+        if (result.size() < n) ConcurrentLog.info("ServerShard", (n - result.size()) + " of " + n + " shards did not respond in " + (System.currentTimeMillis() - start) + " milliseconds");
+        if (result.isEmpty()) {
+            if (error instanceof SolrServerException) throw (SolrServerException) error;
+            if (error instanceof IOException) throw (IOException) error;
+            throw new IOException(error == null ? "no shard responded within the deadline" : error.getMessage());
+        }
+        return result;
+    }
+
+    private static <T> Future<?> submit(
+            final List<SolrClient> qs, final int shard, final ShardRequest<T> request,
+            final AtomicReferenceArray<T> responses, final AtomicIntegerArray pending, final AtomicReferenceArray<Throwable> errors,
+            final BlockingQueue<Integer> finished) {
+        pending.incrementAndGet(shard);
+        return readExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final T response = request.request(qs.get(shard));
+                    if (response != null && responses.compareAndSet(shard, null, response)) finished.add(shard);
+                    // a shard without a response is done as failed if no other request to the shard is running
+                    if (pending.decrementAndGet(shard) == 0 && responses.get(shard) == null && errors.compareAndSet(shard, null, new IOException("no response from shard " + shard))) finished.add(-1 - shard);
+                } catch (final Throwable e) {
+                    // a shard failed if all requests to the shard failed
+                    if (pending.decrementAndGet(shard) == 0 && responses.get(shard) == null && errors.compareAndSet(shard, null, e)) finished.add(-1 - shard);
+                }
+            }
+        });
+    }
     
     public ServerShard(ArrayList<SolrClient> server, final ShardSelection.Method method, final boolean writeEnabled) {
         this.shards = new ShardSelection(server, method);
@@ -385,29 +511,15 @@ public class ServerShard extends SolrClient {
         }
 
         // concurrently call all shards
-        final Collection<QueryResponse> qrl = new ConcurrentLinkedQueue<QueryResponse>();
-        List<Thread> t = new ArrayList<Thread>();
-        for (final SolrClient s: qs) {
-            Thread t0 = new Thread() {
-                @Override
-                public void run() {
-                    this.setName("ServerShard.query/1(" + params.toString() + ")");
-                    QueryResponse rsp;
-                    try {
-                        rsp = s.query(params);
-                    } catch (final Throwable e) {return;}
-                    qrl.add(rsp);
-                }
-            };
-            t0.start();
-            t.add(t0);
-        }
-        for (Thread t0: t) {
-            try {t0.join();} catch (final InterruptedException e) {}
-        }
-        
+        final List<QueryResponse> qrl = scatter(qs, new ShardRequest<QueryResponse>() {
+            @Override
+            public QueryResponse request(final SolrClient shard) throws SolrServerException, IOException {
+                return shard.query(params);
+            }
+        });
+
         // prepare combined response
-        return ResponseAccumulator.combineResponses(qrl);
+        return ResponseAccumulator.combineResponses(qrl, params);
     }
     
     /**
@@ -423,30 +535,16 @@ public class ServerShard extends SolrClient {
             return qs.get(0).query(params, method);
         }
 
-        final Collection<QueryResponse> qrl = new ConcurrentLinkedQueue<QueryResponse>();
         // concurrently call all shards
-        List<Thread> t = new ArrayList<Thread>();
-        for (final SolrClient s: qs) {
-            Thread t0 = new Thread() {
-                @Override
-                public void run() {
-                    this.setName("ServerShard.query/2(" + params.toString() + ")");
-                    QueryResponse rsp;
-                    try {
-                        rsp = s.query(params, method);
-                    } catch (final Throwable e) {return;}
-                    qrl.add(rsp);
-                }
-            };
-            t0.start();
-            t.add(t0);
-        }
-        for (Thread t0: t) {
-            try {t0.join();} catch (final InterruptedException e) {}
-        }
-        
+        final List<QueryResponse> qrl = scatter(qs, new ShardRequest<QueryResponse>() {
+            @Override
+            public QueryResponse request(final SolrClient shard) throws SolrServerException, IOException {
+                return shard.query(params, method);
+            }
+        });
+
         // prepare combined response
-        return ResponseAccumulator.combineResponses(qrl);
+        return ResponseAccumulator.combineResponses(qrl, params);
     }
     
 
@@ -470,9 +568,19 @@ public class ServerShard extends SolrClient {
      * SolrServer implementations need to implement how a request is actually processed
      */ 
     @Override
-    public NamedList<Object> request(@SuppressWarnings("rawtypes") SolrRequest request, String collection) throws SolrServerException, IOException {
-        ResponseAccumulator acc = new ResponseAccumulator();
-        for (SolrClient s: this.shards.server4read()) acc.addResponse(s.request(request, collection));
+    public NamedList<Object> request(@SuppressWarnings("rawtypes") final SolrRequest request, final String collection) throws SolrServerException, IOException {
+        List<SolrClient> qs = this.shards.server4read();
+        if (qs.size() == 1) {
+            return qs.get(0).request(request, collection);
+        }
+        final List<NamedList<Object>> responses = scatter(qs, new ShardRequest<NamedList<Object>>() {
+            @Override
+            public NamedList<Object> request(final SolrClient shard) throws SolrServerException, IOException {
+                return shard.request(request, collection);
+            }
+        });
+        ResponseAccumulator acc = new ResponseAccumulator(request.getParams());
+        for (NamedList<Object> response: responses) acc.addResponse(response);
         return acc.getAccumulatedResponse();  
     }
 
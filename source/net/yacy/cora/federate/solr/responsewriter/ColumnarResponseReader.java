@@ -0,0 +1,170 @@
+/**
+ *  ColumnarResponseReader
+ *  part of YaCy, http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.cora.federate.solr.responsewriter;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.yacy.cora.document.encoding.UTF8;
+
+import org.apache.solr.common.SolrDocument;
+
+/**
+ * A decoder for the format of the ColumnarResponseWriter. The documents are read block by block,
+ * so only one block of documents is held in memory.
+ */
+public class ColumnarResponseReader {
+
+    private final DataInputStream in;
+    private final List<String> dictionary;
+    private final Map<String, String> header;
+    private SolrDocument[] block;
+    private int blockPos;
+    private boolean eof;
+
+    /**
+     * open a columnar response and read its header
+     * @param in the response stream; it is not closed by the reader
+     * @throws IOException if the stream is not in the columnar format
+     */
+    public ColumnarResponseReader(final InputStream in) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in, 65536));
+        this.dictionary = new ArrayList<String>();
+        final byte[] magic = new byte[ColumnarResponseWriter.MAGIC.length];
+        this.in.readFully(magic);
+        if (!Arrays.equals(magic, ColumnarResponseWriter.MAGIC)) throw new IOException("not a columnar response");
+        final byte version = this.in.readByte();
+        if (version != ColumnarResponseWriter.VERSION) throw new IOException("unsupported version " + version);
+        final int n = (int) readVarint();
+        this.header = new LinkedHashMap<String, String>();
+        for (int i = 0; i < n; i++) {
+            final String key = readString();
+            this.header.put(key, readString());
+        }
+        this.block = new SolrDocument[0];
+        this.blockPos = 0;
+        this.eof = false;
+    }
+
+    /**
+     * @return the response header with the entries status, QTime, numFound, start and, in case of a cursor request, nextCursorMark
+     */
+    public Map<String, String> header() {
+        return this.header;
+    }
+
+    /**
+     * read the next document
+     * @return the next document or null if all documents had been read
+     * @throws IOException
+     */
+    public SolrDocument next() throws IOException {
+        while (this.blockPos >= this.block.length) {
+            if (this.eof) return null;
+            readBlock();
+        }
+        final SolrDocument doc = this.block[this.blockPos];
+        this.block[this.blockPos++] = null;
+        return doc;
+    }
+
+    private void readBlock() throws IOException {
+        final int docs = (int) readVarint();
+        if (docs == 0) {
+            this.eof = true;
+            this.block = new SolrDocument[0];
+            this.blockPos = 0;
+            return;
+        }
+        this.block = new SolrDocument[docs];
+        for (int d = 0; d < docs; d++) this.block[d] = new SolrDocument();
+        this.blockPos = 0;
+        final int columns = (int) readVarint();
+        for (int c = 0; c < columns; c++) {
+            final String name = readString();
+            final byte type = this.in.readByte();
+            for (int d = 0; d < docs; d++) {
+                final int count = (int) readVarint();
+                if (count == 0) continue;
+                if (count == 1) {
+                    this.block[d].setField(name, readValue(type));
+                } else {
+                    final List<Object> values = new ArrayList<Object>(count);
+                    for (int i = 0; i < count; i++) values.add(readValue(type));
+                    this.block[d].setField(name, values);
+                }
+            }
+        }
+    }
+
+    private long readVarint() throws IOException {
+        long v = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (shift > 63) throw new IOException("bad varint");
+            b = this.in.readByte();
+            v |= ((long) (b & 0x7F)) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return v;
+    }
+
+    private long readZigzag() throws IOException {
+        final long v = readVarint();
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private String readString() throws IOException {
+        final long ref = readVarint();
+        if (ref > 0) {
+            if (ref > this.dictionary.size()) throw new IOException("bad string reference " + ref);
+            return this.dictionary.get((int) ref - 1);
+        }
+        final byte[] b = new byte[(int) readVarint()];
+        this.in.readFully(b);
+        final String s = UTF8.String(b);
+        if (s.length() <= ColumnarResponseWriter.MAX_DICTIONARY_STRING && this.dictionary.size() < ColumnarResponseWriter.MAX_DICTIONARY) {
+            this.dictionary.add(s);
+        }
+        return s;
+    }
+
+    private Object readValue(final byte type) throws IOException {
+        switch (type) {
+            case ColumnarResponseWriter.TYPE_INT: return Integer.valueOf((int) readZigzag());
+            case ColumnarResponseWriter.TYPE_LONG: return Long.valueOf(readZigzag());
+            case ColumnarResponseWriter.TYPE_FLOAT: return Float.valueOf(this.in.readFloat());
+            case ColumnarResponseWriter.TYPE_DOUBLE: return Double.valueOf(this.in.readDouble());
+            case ColumnarResponseWriter.TYPE_BOOLEAN: return Boolean.valueOf(this.in.readByte() != 0);
+            case ColumnarResponseWriter.TYPE_DATE: return new Date(readZigzag());
+            case ColumnarResponseWriter.TYPE_STRING: return readString();
+            default: throw new IOException("unknown column type " + type);
+        }
+    }
+}
@@ -0,0 +1,282 @@
+/**
+ *  ColumnarResponseWriter
+ *  part of YaCy, http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.cora.federate.solr.responsewriter;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.yacy.cora.document.encoding.UTF8;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexableField;
+import org.apache.solr.common.params.CursorMarkParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.response.BinaryQueryResponseWriter;
+import org.apache.solr.response.ResultContext;
+import org.apache.solr.response.SolrQueryResponse;
+import org.apache.solr.schema.IndexSchema;
+import org.apache.solr.schema.SchemaField;
+import org.apache.solr.search.DocIterator;
+import org.apache.solr.search.DocList;
+import org.apache.solr.search.ReturnFields;
+import org.apache.solr.search.SolrIndexSearcher;
+
+/**
+ * A compact binary response format for clients which read large numbers of documents, i.e. to mirror the index.
+ * The documents are read from the index searcher and written in blocks; within a block the values are
+ * written column by column, numbers as variable-length integers and strings dictionary-encoded, so that
+ * repeated values like host names, mime types or languages are transmitted only once per response.
+ * Use with wt=columnar; for deep paging add cursorMark=* and continue with the nextCursorMark from the header.
+ *
+ * The stream consists of:
+ * <ul>
+ * <li>the magic bytes 'YCOL' and a version byte</li>
+ * <li>the header: the number of entries, then pairs of key and value strings (status, QTime, numFound, start, nextCursorMark)</li>
+ * <li>blocks: the number of documents in the block (0 terminates the stream), the number of columns and for each column
+ * the field name, the column type and for each document the number of values followed by the values</li>
+ * </ul>
+ * Integers are written as zigzag varints, floats and doubles in IEEE 754 format, dates as milliseconds in a zigzag varint.
+ * A string is written as a varint reference: 0 is followed by the length and the UTF-8 bytes of a new string,
+ * any other value n references the (n-1)th new string of the stream. A new string enters the dictionary if
+ * it is not longer than MAX_DICTIONARY_STRING characters and the dictionary has less than MAX_DICTIONARY entries.
+ * See ColumnarResponseReader for a decoder.
+ */
+public class ColumnarResponseWriter implements BinaryQueryResponseWriter {
+
+    public static final String CONTENT_TYPE = "application/x-yacy-columnar";
+    public static final byte[] MAGIC = new byte[]{'Y', 'C', 'O', 'L'};
+    public static final byte VERSION = 1;
+    public static final int MAX_DICTIONARY = 65536;
+    public static final int MAX_DICTIONARY_STRING = 128;
+    public static final int BLOCK_SIZE = 256;
+
+    public static final byte TYPE_STRING = 1;
+    public static final byte TYPE_INT = 2;
+    public static final byte TYPE_LONG = 3;
+    public static final byte TYPE_FLOAT = 4;
+    public static final byte TYPE_DOUBLE = 5;
+    public static final byte TYPE_BOOLEAN = 6;
+    public static final byte TYPE_DATE = 7;
+
+    private static final String SCORE_FIELD = "score";
+
+    public ColumnarResponseWriter() {
+        super();
+    }
+
+    @Override
+    public String getContentType(final SolrQueryRequest request, final SolrQueryResponse response) {
+        return CONTENT_TYPE;
+    }
+
+    @Override
+    public void init(@SuppressWarnings("rawtypes") NamedList n) {
+    }
+
+    @Override
+    public void write(final Writer writer, final SolrQueryRequest request, final SolrQueryResponse rsp) throws IOException {
+        throw new UnsupportedOperationException("the columnar format is binary, it can only be written to an OutputStream");
+    }
+
+    @Override
+    public void write(final OutputStream out, final SolrQueryRequest request, final SolrQueryResponse rsp) throws IOException {
+        final NamedList<?> values = rsp.getValues();
+        final DocList response = ((ResultContext) values.get("response")).docs;
+        final Encoder encoder = new Encoder(out);
+
+        // write the header
+        final Map<String, String> header = new LinkedHashMap<String, String>();
+        final NamedList<?> responseHeader = rsp.getResponseHeader();
+        if (responseHeader != null) {
+            final Object status = responseHeader.get("status");
+            final Object qtime = responseHeader.get("QTime");
+            if (status != null) header.put("status", status.toString());
+            if (qtime != null) header.put("QTime", qtime.toString());
+        }
+        header.put("numFound", Integer.toString(response.matches()));
+        header.put("start", Integer.toString(response.offset()));
+        final Object nextCursorMark = values.get(CursorMarkParams.CURSOR_MARK_NEXT);
+        if (nextCursorMark != null) header.put(CursorMarkParams.CURSOR_MARK_NEXT, nextCursorMark.toString());
+        encoder.out.write(MAGIC);
+        encoder.out.writeByte(VERSION);
+        encoder.writeVarint(header.size());
+        for (final Map.Entry<String, String> entry: header.entrySet()) {
+            encoder.writeString(entry.getKey());
+            encoder.writeString(entry.getValue());
+        }
+
+        // write the documents in blocks
+        final ReturnFields returnFields = rsp.getReturnFields();
+        final Set<String> fieldNames = returnFields == null ? null : returnFields.getLuceneFieldNames();
+        final boolean includeScore = returnFields != null && returnFields.wantsScore() && response.hasScores();
+        final SolrIndexSearcher searcher = request.getSearcher();
+        final IndexSchema schema = request.getSchema();
+        final DocIterator iterator = response.iterator();
+        final List<Map<String, List<Object>>> block = new ArrayList<Map<String, List<Object>>>(BLOCK_SIZE);
+        final int sz = response.size();
+        for (int i = 0; i < sz; i++) {
+            final int id = iterator.nextDoc();
+            final Map<String, List<Object>> doc = toValues(schema, searcher.doc(id, fieldNames));
+            if (includeScore) {
+                final List<Object> score = new ArrayList<Object>(1);
+                score.add(Float.valueOf(iterator.score()));
+                doc.put(SCORE_FIELD, score);
+            }
+            block.add(doc);
+            if (block.size() >= BLOCK_SIZE) {
+                encoder.writeBlock(block);
+                block.clear();
+            }
+        }
+        if (!block.isEmpty()) encoder.writeBlock(block);
+        encoder.writeVarint(0);
+        encoder.out.flush();
+    }
+
+    private static Map<String, List<Object>> toValues(final IndexSchema schema, final Document doc) {
+        final Map<String, List<Object>> values = new LinkedHashMap<String, List<Object>>();
+        for (final IndexableField field: doc.getFields()) {
+            final SchemaField sf = schema == null ? null : schema.getFieldOrNull(field.name());
+            final Object value = sf == null ? field.stringValue() : sf.getType().toObject(field);
+            if (value == null) continue;
+            List<Object> list = values.get(field.name());
+            if (list == null) {
+                list = new ArrayList<Object>(1);
+                values.put(field.name(), list);
+            }
+            list.add(value);
+        }
+        return values;
+    }
+
+    /**
+     * determine the column type of the values of a field
+     * @param values the values of all documents in a block
+     * @return the most specific type which can hold all values
+     */
+    private static byte columnType(final List<List<Object>> values) {
+        Class<?> c = null;
+        for (final List<Object> docValues: values) {
+            if (docValues == null) continue;
+            for (final Object v: docValues) {
+                if (c == null) c = v.getClass(); else if (c != v.getClass()) return TYPE_STRING;
+            }
+        }
+        if (c == Integer.class) return TYPE_INT;
+        if (c == Long.class) return TYPE_LONG;
+        if (c == Float.class) return TYPE_FLOAT;
+        if (c == Double.class) return TYPE_DOUBLE;
+        if (c == Boolean.class) return TYPE_BOOLEAN;
+        if (c == Date.class) return TYPE_DATE;
+        return TYPE_STRING;
+    }
+
+    static class Encoder {
+
+        final DataOutputStream out;
+        private final Map<String, Integer> dictionary;
+
+        Encoder(final OutputStream out) {
+            this.out = new DataOutputStream(new BufferedOutputStream(out, 65536));
+            this.dictionary = new HashMap<String, Integer>();
+        }
+
+        void writeVarint(long v) throws IOException {
+            while ((v & ~0x7FL) != 0) {
+                this.out.writeByte((int) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            this.out.writeByte((int) v);
+        }
+
+        private void writeZigzag(final long v) throws IOException {
+            writeVarint((v << 1) ^ (v >> 63));
+        }
+
+        void writeString(final String s) throws IOException {
+            final Integer ref = this.dictionary.get(s);
+            if (ref != null) {
+                writeVarint(ref.intValue() + 1);
+                return;
+            }
+            writeVarint(0);
+            final byte[] b = UTF8.getBytes(s);
+            writeVarint(b.length);
+            this.out.write(b);
+            if (s.length() <= MAX_DICTIONARY_STRING && this.dictionary.size() < MAX_DICTIONARY) {
+                this.dictionary.put(s, Integer.valueOf(this.dictionary.size()));
+            }
+        }
+
+        private void writeValue(final byte type, final Object v) throws IOException {
+            switch (type) {
+                case TYPE_INT: writeZigzag(((Integer) v).intValue()); break;
+                case TYPE_LONG: writeZigzag(((Long) v).longValue()); break;
+                case TYPE_FLOAT: this.out.writeFloat(((Float) v).floatValue()); break;
+                case TYPE_DOUBLE: this.out.writeDouble(((Double) v).doubleValue()); break;
+                case TYPE_BOOLEAN: this.out.writeByte(((Boolean) v).booleanValue() ? 1 : 0); break;
+                case TYPE_DATE: writeZigzag(((Date) v).getTime()); break;
+                default: writeString(v.toString());
+            }
+        }
+
+        void writeBlock(final List<Map<String, List<Object>>> block) throws IOException {
+            // collect the columns of the block in the order of their first appearance
+            final Map<String, List<List<Object>>> columns = new LinkedHashMap<String, List<List<Object>>>();
+            for (int d = 0; d < block.size(); d++) {
+                for (final Map.Entry<String, List<Object>> field: block.get(d).entrySet()) {
+                    List<List<Object>> column = columns.get(field.getKey());
+                    if (column == null) {
+                        column = new ArrayList<List<Object>>(block.size());
+                        for (int i = 0; i < block.size(); i++) column.add(null);
+                        columns.put(field.getKey(), column);
+                    }
+                    column.set(d, field.getValue());
+                }
+            }
+            writeVarint(block.size());
+            writeVarint(columns.size());
+            for (final Map.Entry<String, List<List<Object>>> column: columns.entrySet()) {
+                final byte type = columnType(column.getValue());
+                writeString(column.getKey());
+                this.out.writeByte(type);
+                for (final List<Object> docValues: column.getValue()) {
+                    if (docValues == null) {
+                        writeVarint(0);
+                        continue;
+                    }
+                    writeVarint(docValues.size());
+                    for (final Object v: docValues) writeValue(type, v);
+                }
+            }
+        }
+    }
+}
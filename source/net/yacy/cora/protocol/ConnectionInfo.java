@@ -30,6 +30,8 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
 
+import net.yacy.cora.util.Metrics;
+
 /**
  * Information about a connection
  * 
@@ -49,6 +51,14 @@ public class ConnectionInfo implements Comparable<ConnectionInfo> {
     
     private static int maxcount = 20;
     private static int serverMaxCount = 50;
+    static {
+        Metrics.gauge("yacy_connections", "number of open connections", "direction", "client", new Metrics.Probe() {
+            @Override public double value() {return getCount();}
+        });
+        Metrics.gauge("yacy_connections", "number of open connections", "direction", "server", new Metrics.Probe() {
+            @Override public double value() {return getServerCount();}
+        });
+    }
 
     private final String protocol;
     private final String targetHost;
@@ -24,8 +24,14 @@
 
 package net.yacy.cora.protocol;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.lang.reflect.Array;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -34,6 +40,7 @@ import java.net.InetAddress;
 import java.net.NetworkInterface;
 import java.net.SocketException;
 import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -49,6 +56,9 @@ import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -59,7 +69,9 @@ import net.yacy.cora.storage.ConcurrentARC;
 import net.yacy.cora.storage.KeyList;
 import net.yacy.cora.util.CommonPattern;
 import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.cora.util.Metrics;
 import net.yacy.kelondro.util.MemoryControl;
+import net.yacy.kelondro.util.NamePrefixThreadFactory;
 
 import com.google.common.net.InetAddresses;
 import com.google.common.util.concurrent.SimpleTimeLimiter;
@@ -76,7 +88,6 @@ public class Domains {
     private static Class<?> InetAddressLocatorClass;
     private static Method InetAddressLocatorGetLocaleInetAddressMethod;
     private static final Set<String> ccSLD_TLD = new HashSet<String>();
-    private static final String PRESENT = "";
     private static final String LOCALHOST_IPv4_PATTERN = "(127\\..*)";
     private static final String LOCALHOST_IPv6_PATTERN = "((\\[?fe80\\:.*)|(\\[?0\\:0\\:0\\:0\\:0\\:0\\:0\\:1.*)|(\\[?\\:\\:1))(/.*|%.*|\\z)";
     private static final String INTRANET_IPv4_PATTERN = "(10\\..*)|(172\\.(1[6-9]|2[0-9]|3[0-1])\\..*)|(169\\.254\\..*)|(192\\.168\\..*)";
@@ -88,13 +99,73 @@ public class Domains {
     private static final int MAX_NAME_CACHE_MISS_SIZE = 1000;
     private static final int CONCURRENCY_LEVEL = Runtime.getRuntime().availableProcessors() * 2;
 
-    // a dns cache
+    // a dns cache; the expires caches store the time when an entry must be looked up again
     private static final ARC<String, InetAddress> NAME_CACHE_HIT = new ConcurrentARC<>(MAX_NAME_CACHE_HIT_SIZE, CONCURRENCY_LEVEL);
-    private static final ARC<String, String> NAME_CACHE_MISS = new ConcurrentARC<>(MAX_NAME_CACHE_MISS_SIZE, CONCURRENCY_LEVEL);
+    private static final ARC<String, Long> NAME_CACHE_HIT_EXPIRES = new ConcurrentARC<>(MAX_NAME_CACHE_HIT_SIZE, CONCURRENCY_LEVEL);
+    private static final ARC<String, Long> NAME_CACHE_MISS = new ConcurrentARC<>(MAX_NAME_CACHE_MISS_SIZE, CONCURRENCY_LEVEL);
+    private static       long nameCacheHitTTL = 60L * 60L * 1000L, nameCacheMissTTL = 10L * 60L * 1000L;
     private static final ConcurrentHashMap<String, Object> LOOKUP_SYNC = new ConcurrentHashMap<>(100, 0.75f, Runtime.getRuntime().availableProcessors() * 2);
     private static       List<Pattern> nameCacheNoCachingPatterns = Collections.synchronizedList(new LinkedList<Pattern>());
     public static long cacheHit_Hit = 0, cacheHit_Miss = 0, cacheHit_Insert = 0; // for statistics only; do not write
     public static long cacheMiss_Hit = 0, cacheMiss_Miss = 0, cacheMiss_Insert = 0; // for statistics only; do not write
+    public static long prefetch_Queued = 0, prefetch_Rejected = 0; // for statistics only; do not write
+
+    /**
+     * A resolver does the network based name lookup. The default is the system resolver;
+     * it can be replaced with a stand-in resolver i.e. for testing.
+     */
+    public interface Resolver {
+        public InetAddress resolve(String host) throws UnknownHostException;
+    }
+
+    public static final Resolver SYSTEM_RESOLVER = new Resolver() {
+        @Override
+        public InetAddress resolve(final String host) throws UnknownHostException {
+            return InetAddress.getByName(host);
+        }
+    };
+    private static Resolver resolver = SYSTEM_RESOLVER;
+
+    // the dns prefetch: hosts which are known to be accessed soon are resolved in the background with bounded parallelism
+    private static final int PREFETCH_THREADS = 20;
+    private static final int PREFETCH_QUEUE_SIZE = 10000;
+    private static final Set<String> PREFETCH_PENDING = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private static final ThreadPoolExecutor prefetchExecutor = new ThreadPoolExecutor(
+            PREFETCH_THREADS, PREFETCH_THREADS, 10, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(PREFETCH_QUEUE_SIZE),
+            new NamePrefixThreadFactory("Domains.prefetch"));
+    static {
+        prefetchExecutor.allowCoreThreadTimeOut(true);
+        final String hitHelp = "operations on the cache of resolved host names";
+        Metrics.counter("yacy_dns_hit_cache", hitHelp, "operation", "hit", new Metrics.Probe() {
+            @Override public double value() {return cacheHit_Hit;}
+        });
+        Metrics.counter("yacy_dns_hit_cache", hitHelp, "operation", "miss", new Metrics.Probe() {
+            @Override public double value() {return cacheHit_Miss;}
+        });
+        Metrics.counter("yacy_dns_hit_cache", hitHelp, "operation", "insert", new Metrics.Probe() {
+            @Override public double value() {return cacheHit_Insert;}
+        });
+        final String missHelp = "operations on the cache of host names which cannot be resolved";
+        Metrics.counter("yacy_dns_miss_cache", missHelp, "operation", "hit", new Metrics.Probe() {
+            @Override public double value() {return cacheMiss_Hit;}
+        });
+        Metrics.counter("yacy_dns_miss_cache", missHelp, "operation", "miss", new Metrics.Probe() {
+            @Override public double value() {return cacheMiss_Miss;}
+        });
+        Metrics.counter("yacy_dns_miss_cache", missHelp, "operation", "insert", new Metrics.Probe() {
+            @Override public double value() {return cacheMiss_Insert;}
+        });
+        Metrics.counter("yacy_dns_prefetch", "host names submitted to the dns prefetch", "result", "queued", new Metrics.Probe() {
+            @Override public double value() {return prefetch_Queued;}
+        });
+        Metrics.counter("yacy_dns_prefetch", "host names submitted to the dns prefetch", "result", "rejected", new Metrics.Probe() {
+            @Override public double value() {return prefetch_Rejected;}
+        });
+        Metrics.gauge("yacy_dns_prefetch_queue_size", "number of host names waiting to be resolved by the dns prefetch", new Metrics.Probe() {
+            @Override public double value() {return prefetchQueueSize();}
+        });
+    }
 
     private static Set<InetAddress> myHostAddresses = new HashSet<InetAddress>();
     private static Set<InetAddress> localHostAddresses = new HashSet<InetAddress>(); // subset of myHostAddresses
@@ -700,9 +771,19 @@ public class Domains {
     }
 
     private static KeyList globalHosts = null;
+    private static File nameCacheDump = null;
     private static boolean noLocalCheck = false;
 
     public static void init(final File globalHostsnameCache) {
+        init(globalHostsnameCache, null);
+    }
+
+    /**
+     * initialize the host name caches
+     * @param globalHostsnameCache a file containing a list of global host names
+     * @param nameCacheDumpFile a file where the dns cache is stored on close and loaded from on init; may be null
+     */
+    public static void init(final File globalHostsnameCache, final File nameCacheDumpFile) {
         if (globalHostsnameCache == null) {
             globalHosts = null;
         } else try {
@@ -711,6 +792,107 @@ public class Domains {
         } catch (final IOException e) {
             globalHosts = null;
         }
+        nameCacheDump = nameCacheDumpFile;
+        if (nameCacheDump != null && nameCacheDump.exists()) {
+            final int count = loadNameCache(nameCacheDump);
+            log.info("loaded dns cache, " + count + " entries");
+        }
+    }
+
+    /**
+     * set the time-to-live of the dns cache entries. The java name lookup does not tell the ttl
+     * of the dns records, therefore this is applied to all entries.
+     * @param hitTTL the time in milliseconds until a resolved host is looked up again
+     * @param missTTL the time in milliseconds until a host which could not be resolved is looked up again
+     */
+    public static void setNameCacheTTL(final long hitTTL, final long missTTL) {
+        nameCacheHitTTL = hitTTL;
+        nameCacheMissTTL = missTTL;
+    }
+
+    /**
+     * replace the resolver which does the network based name lookup
+     * @param r the new resolver, use SYSTEM_RESOLVER to switch back to the system resolver
+     */
+    public static void setResolver(final Resolver r) {
+        resolver = r == null ? SYSTEM_RESOLVER : r;
+    }
+
+    /**
+     * write all valid dns cache entries to a file. Each line has the form
+     * host '\t' ip '\t' expires for resolved hosts and host '\t' '-' '\t' expires for unresolvable hosts
+     * @param file
+     * @return the number of written entries
+     */
+    public static int storeNameCache(final File file) {
+        final long now = System.currentTimeMillis();
+        int count = 0;
+        try {
+            final BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+            try {
+                for (final Map.Entry<String, InetAddress> entry: NAME_CACHE_HIT) {
+                    final Long expires = NAME_CACHE_HIT_EXPIRES.get(entry.getKey());
+                    if (expires == null || expires.longValue() < now) continue;
+                    writer.write(entry.getKey() + '\t' + entry.getValue().getHostAddress() + '\t' + expires + '\n');
+                    count++;
+                }
+                for (final Map.Entry<String, Long> entry: NAME_CACHE_MISS) {
+                    if (entry.getValue().longValue() < now) continue;
+                    writer.write(entry.getKey() + "\t-\t" + entry.getValue() + '\n');
+                    count++;
+                }
+            } finally {
+                writer.close();
+            }
+        } catch (final IOException e) {
+            log.warn("cannot write dns cache to " + file.toString(), e);
+        }
+        return count;
+    }
+
+    /**
+     * load the dns cache entries from a file which was written with storeNameCache; expired entries are ignored
+     * @param file
+     * @return the number of loaded entries
+     */
+    public static int loadNameCache(final File file) {
+        final long now = System.currentTimeMillis();
+        int count = 0;
+        try {
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    final String[] a = CommonPattern.TAB.split(line);
+                    if (a.length != 3) continue;
+                    final long expires;
+                    try {
+                        expires = Long.parseLong(a[2]);
+                    } catch (final NumberFormatException e) {
+                        continue;
+                    }
+                    if (expires < now) continue;
+                    if ("-".equals(a[1])) {
+                        NAME_CACHE_MISS.insertIfAbsent(a[0], expires);
+                    } else {
+                        if (!InetAddresses.isInetAddress(a[1])) continue;
+                        try {
+                            final InetAddress ip = InetAddress.getByAddress(a[0], InetAddresses.forString(a[1]).getAddress());
+                            NAME_CACHE_HIT.insertIfAbsent(a[0], ip);
+                            NAME_CACHE_HIT_EXPIRES.insert(a[0], expires);
+                        } catch (final UnknownHostException e) {
+                            continue;
+                        }
+                    }
+                    count++;
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (final IOException e) {
+            log.warn("cannot read dns cache from " + file.toString(), e);
+        }
+        return count;
     }
 
     /**
@@ -726,7 +908,9 @@ public class Domains {
     }
 
     public static synchronized void close() {
+        prefetchExecutor.shutdownNow();
         if (globalHosts != null) try {globalHosts.close();} catch (final IOException e) {log.warn(e);}
+        if (nameCacheDump != null) storeNameCache(nameCacheDump);
     }
 
     /**
@@ -740,14 +924,14 @@ public class Domains {
         host = host.toLowerCase().trim();
 
         // trying to resolve host by doing a name cache lookup
-        InetAddress ip = NAME_CACHE_HIT.get(host);
+        InetAddress ip = getCachedHit(host);
         if (ip != null) {
             cacheHit_Hit++;
             return ip;
         }
         cacheHit_Miss++;
 
-        if (NAME_CACHE_MISS.containsKey(host)) {
+        if (isCachedMiss(host)) {
             cacheMiss_Hit++;
             return null;
         }
@@ -755,6 +939,88 @@ public class Domains {
         throw new UnknownHostException("host not in cache");
     }
 
+    /**
+     * get a resolved address from the name cache
+     * @param host the lowercase host name
+     * @return the cached address or null if the host is not cached or the entry is expired
+     */
+    private static InetAddress getCachedHit(final String host) {
+        final InetAddress ip = NAME_CACHE_HIT.get(host);
+        if (ip == null) return null;
+        final Long expires = NAME_CACHE_HIT_EXPIRES.get(host);
+        if (expires != null && expires.longValue() < System.currentTimeMillis()) {
+            NAME_CACHE_HIT.remove(host);
+            NAME_CACHE_HIT_EXPIRES.remove(host);
+            return null;
+        }
+        return ip;
+    }
+
+    /**
+     * check if a host is cached as unresolvable
+     * @param host the lowercase host name
+     * @return true if the host could not be resolved and the entry is not expired
+     */
+    private static boolean isCachedMiss(final String host) {
+        final Long expires = NAME_CACHE_MISS.get(host);
+        if (expires == null) return false;
+        if (expires.longValue() < System.currentTimeMillis()) {
+            NAME_CACHE_MISS.remove(host);
+            return false;
+        }
+        return true;
+    }
+
+    private static void insertCachedMiss(final String host) {
+        NAME_CACHE_MISS.insertIfAbsent(host, System.currentTimeMillis() + nameCacheMissTTL);
+        cacheMiss_Insert++;
+    }
+
+    /**
+     * announce that a host will be accessed soon. The host name is resolved in the background
+     * with a bounded number of concurrent lookups, so that a later dnsResolve is answered from the cache.
+     * If the prefetch queue is full, the host is resolved on demand.
+     * @param host0 a host name
+     */
+    public static void prefetch(final String host0) {
+        if (host0 == null || host0.isEmpty() || host0.endsWith(".yacyh")) return;
+        final String host = host0.toLowerCase().trim();
+        if (InetAddresses.isInetAddress(host) || isLocalhost(host)) return;
+        if (getCachedHit(host) != null || isCachedMiss(host)) return;
+        if (!PREFETCH_PENDING.add(host)) return; // already scheduled
+        try {
+            prefetchExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        dnsResolve(host);
+                    } finally {
+                        PREFETCH_PENDING.remove(host);
+                    }
+                }
+            });
+            prefetch_Queued++;
+        } catch (final RejectedExecutionException e) {
+            PREFETCH_PENDING.remove(host);
+            prefetch_Rejected++;
+        }
+    }
+
+    /**
+     * announce a batch of hosts which will be accessed soon
+     * @param hosts a collection of host names
+     */
+    public static void prefetch(final Collection<String> hosts) {
+        for (final String host: hosts) prefetch(host);
+    }
+
+    /**
+     * @return the number of host names which are waiting to be resolved by the prefetch
+     */
+    public static int prefetchQueueSize() {
+        return prefetchExecutor.getQueue().size();
+    }
+
     public static void setNoCachingPatterns(final String patternList) throws PatternSyntaxException {
         nameCacheNoCachingPatterns = makePatterns(patternList);
     }
@@ -880,23 +1146,24 @@ public class Domains {
 
         if (MemoryControl.shortStatus()) {
             NAME_CACHE_HIT.clear();
+            NAME_CACHE_HIT_EXPIRES.clear();
             NAME_CACHE_MISS.clear();
         }
         
-        if (host0.endsWith(".yacyh")) {
+        if (host.endsWith(".yacyh")) {
             // that should not happen here
             return null;
         }
 
         // try to resolve host by doing a name cache lookup
-        InetAddress ip = NAME_CACHE_HIT.get(host);
+        InetAddress ip = getCachedHit(host);
         if (ip != null) {
             //System.out.println("DNSLOOKUP-CACHE-HIT(CONC) " + host);
             cacheHit_Hit++;
             return ip;
         }
         cacheHit_Miss++;
-        if (NAME_CACHE_MISS.containsKey(host)) {
+        if (isCachedMiss(host)) {
             //System.out.println("DNSLOOKUP-CACHE-MISS(CONC) " + host);
             cacheMiss_Hit++;
             return null;
@@ -910,7 +1177,7 @@ public class Domains {
         synchronized (sync_obj) {
             // now look again if the host is in the cache where it may be meanwhile because of the synchronization
 
-            ip = NAME_CACHE_HIT.get(host);
+            ip = getCachedHit(host);
             if (ip != null) {
                 //System.out.println("DNSLOOKUP-CACHE-HIT(SYNC) " + host);
                 LOOKUP_SYNC.remove(host);
@@ -918,7 +1185,7 @@ public class Domains {
                 return ip;
             }
             cacheHit_Miss++;
-            if (NAME_CACHE_MISS.containsKey(host)) {
+            if (isCachedMiss(host)) {
                 //System.out.println("DNSLOOKUP-CACHE-MISS(SYNC) " + host);
                 LOOKUP_SYNC.remove(host);
                 cacheMiss_Hit++;
@@ -942,10 +1209,11 @@ public class Domains {
                 }
                 Thread.currentThread().setName(oldName);
                 if (ip == null) try {
+                    final Resolver r = resolver;
                     ip = timeLimiter.callWithTimeout(new Callable<InetAddress>() {
                         @Override
                         public InetAddress call() throws Exception {
-                            return InetAddress.getByName(host);
+                            return r.resolve(host);
                         }
                     }, 3000L, TimeUnit.MILLISECONDS, false);
                     //ip = TimeoutRequest.getByName(host, 1000); // this makes the DNS request to backbone
@@ -957,16 +1225,14 @@ public class Domains {
                 //.out.println("DNSLOOKUP-*LOOKUP* " + host + ", time = " + (System.currentTimeMillis() - t) + "ms");
             } catch (final Throwable e) {
                 // add new entries
-                NAME_CACHE_MISS.insertIfAbsent(host, PRESENT);
-                cacheMiss_Insert++;
+                insertCachedMiss(host);
                 LOOKUP_SYNC.remove(host);
                 return null;
             }
 
             if (ip == null) {
                 // add new entries
-                NAME_CACHE_MISS.insertIfAbsent(host, PRESENT);
-                cacheMiss_Insert++;
+                insertCachedMiss(host);
                 LOOKUP_SYNC.remove(host);
                 return null;
             }
@@ -974,6 +1240,7 @@ public class Domains {
             if (!ip.isLoopbackAddress() && !matchesList(host, nameCacheNoCachingPatterns)) {
                 // add new ip cache entries
                 NAME_CACHE_HIT.insertIfAbsent(host, ip);
+                NAME_CACHE_HIT_EXPIRES.insert(host, System.currentTimeMillis() + nameCacheHitTTL);
                 cacheHit_Insert++;
 
                 // add also the isLocal host name caches
@@ -991,8 +1258,9 @@ public class Domains {
 
     public static void clear() {
         try {
-        	globalHosts.clear();
+        	if (globalHosts != null) globalHosts.clear();
         	NAME_CACHE_HIT.clear();
+        	NAME_CACHE_HIT_EXPIRES.clear();
         	NAME_CACHE_MISS.clear();
         } catch (final IOException e) {}
     }
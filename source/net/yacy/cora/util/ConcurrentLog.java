@@ -27,10 +27,12 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.lang.reflect.InvocationTargetException;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.FileHandler;
 import java.util.logging.Level;
 import java.util.logging.LogManager;
@@ -43,16 +45,41 @@ import java.util.logging.Logger;
  * To overcome this problem, this is a add-on to jdk logging to put log entries
  * on a concurrent message queue and log the messages one by one using a
  * separate process
+ *
+ * The queue is a lock-free ring buffer which is drained by the worker in batches.
+ * If the buffer is full, messages below WARNING are dropped and counted instead of
+ * blocking the caller; warnings and severe messages are then logged synchronously.
+ * Messages can be given as a pattern with {} placeholders and parameters; these are
+ * formatted only in the worker and only if the level is enabled.
+ * For each logger a sampling and a rate limit can be set in the logging configuration
+ * with the properties &lt;logger&gt;.sample (log only every n-th message) and
+ * &lt;logger&gt;.rateLimit (maximum number of messages per second). Both apply only to
+ * messages below WARNING; suppressed messages are counted as well.
  */
 public final class ConcurrentLog {
 
     private final static Logger ConcurrentLogLogger = Logger.getLogger("ConcurrentLog");
     private final static Message POISON_MESSAGE = new Message();
-    private final static BlockingQueue<Message> logQueue = new ArrayBlockingQueue<Message>(500);
-    private static Worker logRunnerThread = null;
+    private final static int QUEUE_SIZE = 8192; // must be a power of 2
+    private final static int BATCH_SIZE = 256; // maximum number of messages which are written in one turn of the worker
+    private final static int MAX_MESSAGE_LENGTH = 4096;
+    private final static long DROP_REPORT_INTERVAL = 10000; // milliseconds between two reports of dropped messages
+    private final static RingBuffer logQueue = new RingBuffer(QUEUE_SIZE);
+    private final static ConcurrentHashMap<String, Target> targets = new ConcurrentHashMap<String, Target>();
+    private final static AtomicLong dropped = new AtomicLong(0); // messages which were dropped because the queue was full
+    private static volatile Worker logRunnerThread = null;
 
     static {
         ensureWorkerIsRunning();
+        Metrics.counter("yacy_log_messages_dropped", "log messages which were dropped because the log queue was full", new Metrics.Probe() {
+            @Override public double value() {return droppedMessages();}
+        });
+        Metrics.counter("yacy_log_messages_suppressed", "log messages which were suppressed by sampling or rate limits", new Metrics.Probe() {
+            @Override public double value() {return suppressedMessages();}
+        });
+        Metrics.gauge("yacy_log_queue_size", "number of log messages waiting to be written", new Metrics.Probe() {
+            @Override public double value() {return queueSize();}
+        });
     }
 
     public static void ensureWorkerIsRunning() {
@@ -64,9 +91,11 @@ public final class ConcurrentLog {
     }
     
     private final Logger theLogger;
+    private final Target target;
 
     public ConcurrentLog(final String appName) {
         this.theLogger = Logger.getLogger(appName);
+        this.target = target(appName);
         //this.theLogger.setLevel(Level.FINEST); // set a default level
     }
 
@@ -75,12 +104,12 @@ public final class ConcurrentLog {
     }
 
     public final void severe(final String message) {
-        enQueueLog(this.theLogger, Level.SEVERE, message);
+        enQueueLog(this.target, Level.SEVERE, message);
     }
 
     public final void severe(final String message, final Throwable thrown) {
         if (thrown == null) return;
-        enQueueLog(this.theLogger, Level.SEVERE, message, thrown);
+        enQueueLog(this.target, Level.SEVERE, message, thrown);
     }
 
     public final boolean isSevere() {
@@ -88,17 +117,17 @@ public final class ConcurrentLog {
     }
 
     public final void warn(final String message) {
-        enQueueLog(this.theLogger, Level.WARNING, message);
+        enQueueLog(this.target, Level.WARNING, message);
     }
 
     public final void warn(final Throwable thrown) {
         if (thrown == null) return;
-        enQueueLog(this.theLogger, Level.WARNING, thrown.getMessage(), thrown);
+        enQueueLog(this.target, Level.WARNING, thrown.getMessage(), thrown);
     }
 
     public final void warn(final String message, final Throwable thrown) {
         if (thrown == null) return;
-        enQueueLog(this.theLogger, Level.WARNING, message, thrown);
+        enQueueLog(this.target, Level.WARNING, message, thrown);
     }
 
     public final boolean isWarn() {
@@ -106,12 +135,12 @@ public final class ConcurrentLog {
     }
 
     public final void config(final String message) {
-        enQueueLog(this.theLogger, Level.CONFIG, message);
+        enQueueLog(this.target, Level.CONFIG, message);
     }
 
     public final void config(final String message, final Throwable thrown) {
         if (thrown == null) return;
-        enQueueLog(this.theLogger, Level.CONFIG, message, thrown);
+        enQueueLog(this.target, Level.CONFIG, message, thrown);
     }
 
     public final boolean isConfig() {
@@ -119,12 +148,12 @@ public final class ConcurrentLog {
     }
 
     public final void info(final String message) {
-        enQueueLog(this.theLogger, Level.INFO, message);
+        enQueueLog(this.target, Level.INFO, message);
     }
 
     public final void info(final String message, final Throwable thrown) {
         if (thrown == null) return;
-        enQueueLog(this.theLogger, Level.INFO, message, thrown);
+        enQueueLog(this.target, Level.INFO, message, thrown);
     }
 
     public boolean isInfo() {
@@ -132,12 +161,12 @@ public final class ConcurrentLog {
     }
 
     public final void fine(final String message) {
-        enQueueLog(this.theLogger, Level.FINE, message);
+        enQueueLog(this.target, Level.FINE, message);
     }
 
     public final void fine(final String message, final Throwable thrown) {
         if (thrown == null) return;
-        enQueueLog(this.theLogger, Level.FINE, message, thrown);
+        enQueueLog(this.target, Level.FINE, message, thrown);
     }
 
     public final boolean isFine() {
@@ -145,12 +174,12 @@ public final class ConcurrentLog {
     }
 
     public final void finer(final String message) {
-        enQueueLog(this.theLogger, Level.FINER, message);
+        enQueueLog(this.target, Level.FINER, message);
     }
 
     public final void finer(final String message, final Throwable thrown) {
         if (thrown == null) return;
-        enQueueLog(this.theLogger, Level.FINER, message, thrown);
+        enQueueLog(this.target, Level.FINER, message, thrown);
     }
 
     public final boolean isFiner() {
@@ -158,12 +187,12 @@ public final class ConcurrentLog {
     }
 
     public final void finest(final String message) {
-        enQueueLog(this.theLogger, Level.FINEST, message);
+        enQueueLog(this.target, Level.FINEST, message);
     }
 
     public final void finest(final String message, final Throwable thrown) {
         if (thrown == null) return;
-        enQueueLog(this.theLogger, Level.FINEST, message, thrown);
+        enQueueLog(this.target, Level.FINEST, message, thrown);
     }
 
     public final boolean isFinest() {
@@ -173,11 +202,22 @@ public final class ConcurrentLog {
     public final boolean isLoggable(final Level level) {
         return this.theLogger.isLoggable(level);
     }
+
+    /**
+     * log a message with parameters. The message is formatted by the log worker and only if the level is enabled,
+     * so there is no need to guard the call with a level check. The parameters must not be changed after the call.
+     * @param level the log level
+     * @param pattern the message, each {} is replaced by the next parameter
+     * @param params the parameters; if the last parameter is a Throwable which has no placeholder, it is logged as the cause
+     */
+    public final void log(final Level level, final String pattern, final Object... params) {
+        enQueueLog(this.target, level, pattern, params);
+    }
     
     /*
     public final void logException(final Throwable thrown) {
         if (thrown == null) return;
-        enQueueLog(this.theLogger, Level.WARNING, thrown.getMessage(), thrown);
+        enQueueLog(this.target, Level.WARNING, thrown.getMessage(), thrown);
     }
     */
     
@@ -226,7 +266,7 @@ public final class ConcurrentLog {
         enQueueLog(appName, Level.FINE, message, thrown);
     }
     public final static boolean isFine(final String appName) {
-        return Logger.getLogger(appName).isLoggable(Level.FINE);
+        return target(appName).logger.isLoggable(Level.FINE);
     }
 
     public final static void finer(final String appName, final String message) {
@@ -245,104 +285,262 @@ public final class ConcurrentLog {
         enQueueLog(appName, Level.FINEST, message, thrown);
     }
     public final static boolean isFinest(final String appName) {
-        return Logger.getLogger(appName).isLoggable(Level.FINEST);
+        return target(appName).logger.isLoggable(Level.FINEST);
+    }
+
+    /**
+     * log a message with parameters, see {@link #log(Level, String, Object...)}
+     */
+    public final static void log(final String appName, final Level level, final String pattern, final Object... params) {
+        enQueueLog(target(appName), level, pattern, params);
+    }
+
+    /**
+     * @return the number of messages which were dropped because the log queue was full
+     */
+    public final static long droppedMessages() {
+        return dropped.get();
+    }
+
+    /**
+     * @return the number of messages which were suppressed by the sampling or rate limit of their logger
+     */
+    public final static long suppressedMessages() {
+        long c = 0;
+        for (final Target t: targets.values()) c += t.suppressed.get();
+        return c;
+    }
+
+    /**
+     * @return the number of messages waiting in the log queue
+     */
+    public final static int queueSize() {
+        return logQueue.size();
     }
 
     // private
-    private final static void enQueueLog(final Logger logger, final Level level, final String message, final Throwable thrown) {
-        if (!logger.isLoggable(level)) return;
-        if (logRunnerThread == null || !logRunnerThread.isAlive()) {
-            if (thrown == null) logger.log(level, "* " + message); else logger.log(level, "* " + message, thrown); // the * is inefficient, but should show up only in emergency cases
+    private final static Target target(final String loggername) {
+        Target t = targets.get(loggername);
+        if (t != null) return t;
+        t = new Target(Logger.getLogger(loggername));
+        final Target o = targets.putIfAbsent(loggername, t);
+        return o == null ? t : o;
+    }
+
+    private final static void enQueueLog(final Target target, final Level level, final String message, final Throwable thrown) {
+        if (!target.logger.isLoggable(level) || !target.admit(level)) return;
+        enQueue(new Message(target, level, message, null, thrown));
+    }
+
+    private final static void enQueueLog(final Target target, final Level level, final String message) {
+        if (!target.logger.isLoggable(level) || !target.admit(level)) return;
+        enQueue(new Message(target, level, message, null, null));
+    }
+
+    private final static void enQueueLog(final Target target, final Level level, final String pattern, final Object[] params) {
+        if (!target.logger.isLoggable(level) || !target.admit(level)) return;
+        enQueue(new Message(target, level, pattern, params, null));
+    }
+
+    private final static void enQueueLog(final String loggername, final Level level, final String message, final Throwable thrown) {
+        enQueueLog(target(loggername), level, message, thrown);
+    }
+
+    private final static void enQueueLog(final String loggername, final Level level, final String message) {
+        enQueueLog(target(loggername), level, message);
+    }
+
+    private final static void enQueue(final Message message) {
+        final Worker worker = logRunnerThread;
+        if (worker == null || !worker.isAlive()) {
+            message.publish("* "); // the * is inefficient, but should show up only in emergency cases
+            return;
+        }
+        if (logQueue.offer(message)) {
+            if (worker.waiting) LockSupport.unpark(worker);
+            return;
+        }
+        // the queue is full: do not block the caller, only important messages are logged synchronously
+        if (message.level.intValue() >= Level.WARNING.intValue()) {
+            message.publish("");
         } else {
-            try {
-            	if (thrown == null) logQueue.put(new Message(logger, level, message)); else logQueue.put(new Message(logger, level, message, thrown));
-            } catch (final InterruptedException e) {
-            	if (thrown == null) logger.log(level, message); else  logger.log(level, message, thrown);
-            }
+            dropped.incrementAndGet();
         }
     }
 
-    private final static void enQueueLog(final Logger logger, final Level level, final String message) {
-        if (!logger.isLoggable(level)) return;
-        if (logRunnerThread == null || !logRunnerThread.isAlive()) {
-            logger.log(level, "* " + message); // the * is inefficient, but should show up only in emergency cases
-        } else {
-            try {
-                logQueue.put(new Message(logger, level, message));
-            } catch (final InterruptedException e) {
-                logger.log(level, message);
-            }
+    /**
+     * replace the {} placeholders in a pattern with the parameters
+     */
+    protected final static String format(final String pattern, final Object[] params) {
+        if (pattern == null || params == null || params.length == 0) return pattern;
+        final StringBuilder sb = new StringBuilder(pattern.length() + 16 * params.length);
+        int p = 0, i = 0, q;
+        while (i < params.length && (q = pattern.indexOf("{}", p)) >= 0) {
+            sb.append(pattern, p, q);
+            final Object param = params[i++];
+            sb.append(param != null && param.getClass().isArray() ? arrayToString(param) : String.valueOf(param));
+            p = q + 2;
         }
+        sb.append(pattern, p, pattern.length());
+        return sb.toString();
     }
 
-    private final static void enQueueLog(final String loggername, final Level level, final String message, final Throwable thrown) {
-        if (logRunnerThread == null || !logRunnerThread.isAlive()) {
-        	if (thrown == null) Logger.getLogger(loggername).log(level, "* " + message); else Logger.getLogger(loggername).log(level, "* " + message, thrown); // the * is inefficient, but should show up only in emergency cases
-        } else {
+    private final static String arrayToString(final Object a) {
+        if (a instanceof Object[]) return Arrays.toString((Object[]) a);
+        if (a instanceof int[]) return Arrays.toString((int[]) a);
+        if (a instanceof long[]) return Arrays.toString((long[]) a);
+        if (a instanceof byte[]) return Arrays.toString((byte[]) a);
+        return String.valueOf(a);
+    }
+
+    /**
+     * a logger together with its sampling and rate limit
+     */
+    protected final static class Target {
+        private final Logger logger;
+        private volatile int sample; // log only every n-th message, 0 or 1 for all messages
+        private volatile int rateLimit; // maximum number of messages per second, 0 for no limit
+        private final AtomicLong count, suppressed;
+        private final AtomicInteger inSecond;
+        private volatile long second;
+
+        private Target(final Logger logger) {
+            this.logger = logger;
+            this.configure(LogManager.getLogManager());
+            this.count = new AtomicLong(0);
+            this.suppressed = new AtomicLong(0);
+            this.inSecond = new AtomicInteger(0);
+            this.second = 0;
+        }
+
+        private void configure(final LogManager manager) {
+            this.sample = intProperty(manager, this.logger.getName() + ".sample");
+            this.rateLimit = intProperty(manager, this.logger.getName() + ".rateLimit");
+        }
+
+        private static int intProperty(final LogManager manager, final String name) {
+            final String value = manager.getProperty(name);
+            if (value == null) return 0;
             try {
-            	if (thrown == null) logQueue.put(new Message(loggername, level, message)); else logQueue.put(new Message(loggername, level, message, thrown));
-            } catch (final InterruptedException e) {
-            	if (thrown == null) Logger.getLogger(loggername).log(level, message); else Logger.getLogger(loggername).log(level, message, thrown);
+                return Math.max(0, Integer.parseInt(value.trim()));
+            } catch (final NumberFormatException e) {
+                return 0;
             }
         }
-    }
 
-    private final static void enQueueLog(final String loggername, final Level level, final String message) {
-        if (logRunnerThread == null || !logRunnerThread.isAlive()) {
-            Logger.getLogger(loggername).log(level, "* " + message); // the * is inefficient, but should show up only in emergency cases
-        } else {
-            try {
-                logQueue.put(new Message(loggername, level, message));
-            } catch (final InterruptedException e) {
-                Logger.getLogger(loggername).log(level, message);
+        /**
+         * apply the sampling and the rate limit
+         * @return true if the message shall be logged
+         */
+        private boolean admit(final Level level) {
+            if (level.intValue() >= Level.WARNING.intValue()) return true;
+            if (this.sample > 1 && this.count.incrementAndGet() % this.sample != 0) {
+                this.suppressed.incrementAndGet();
+                return false;
             }
+            if (this.rateLimit > 0) {
+                final long now = System.currentTimeMillis() / 1000;
+                if (now != this.second) {
+                    this.second = now; // concurrent resets may let a few more messages pass, that is acceptable
+                    this.inSecond.set(0);
+                }
+                if (this.inSecond.incrementAndGet() > this.rateLimit) {
+                    this.suppressed.incrementAndGet();
+                    return false;
+                }
+            }
+            return true;
         }
     }
 
     protected final static class Message {
+        private final Target target;
         private final Level level;
         private final String message;
-        private Logger logger;
-        private String loggername;
-        private Throwable thrown;
-        private Message(final Level level, final String message) {
+        private final Object[] params;
+        private final Throwable thrown;
+        private Message(final Target target, final Level level, final String message, final Object[] params, final Throwable thrown) {
+            this.target = target;
             this.level = level;
-            this.message = message == null || message.length() <= 4096 ? message : message.substring(0, 4096);
-        }
-        public Message(final Logger logger, final Level level, final String message, final Throwable thrown) {
-            this(level, message);
-            this.logger = logger;
-            this.loggername = null;
+            this.message = params == null && message != null && message.length() > MAX_MESSAGE_LENGTH ? message.substring(0, MAX_MESSAGE_LENGTH) : message;
+            this.params = params;
             this.thrown = thrown;
         }
-        public Message(final Logger logger, final Level level, final String message) {
-            this(level, message);
-            this.logger = logger;
-            this.loggername = null;
-            this.thrown = null;
+        public Message() {
+            this(null, null, null, null, null);
         }
-        public Message(final String loggername, final Level level, final String message, final Throwable thrown) {
-            this(level, message);
-            this.logger = null;
-            this.loggername = loggername;
-            this.thrown = thrown;
+        private void publish(final String prefix) {
+            String text = format(this.message, this.params);
+            Throwable t = this.thrown;
+            if (t == null && this.params != null && this.params.length > 0 && this.params[this.params.length - 1] instanceof Throwable) {
+                t = (Throwable) this.params[this.params.length - 1];
+            }
+            if (text != null && text.length() > MAX_MESSAGE_LENGTH) text = text.substring(0, MAX_MESSAGE_LENGTH);
+            if (prefix.length() > 0) text = prefix + text;
+            if (t == null) this.target.logger.log(this.level, text); else this.target.logger.log(this.level, text, t);
         }
-        public Message(final String loggername, final Level level, final String message) {
-            this(level, message);
-            this.logger = null;
-            this.loggername = loggername;
-            this.thrown = null;
+    }
+
+    /**
+     * a bounded lock-free queue for many producers and one consumer.
+     * A producer claims a slot by incrementing the tail and then publishes the message into the slot;
+     * the consumer waits for a claimed slot until it is published.
+     */
+    protected final static class RingBuffer {
+        private final AtomicReferenceArray<Message> slots;
+        private final int capacity, mask;
+        private final AtomicLong tail; // the next slot to be claimed by a producer
+        private volatile long head; // the next slot to be read by the consumer, written only by the consumer
+
+        protected RingBuffer(final int capacity) {
+            assert Integer.bitCount(capacity) == 1;
+            this.slots = new AtomicReferenceArray<Message>(capacity);
+            this.capacity = capacity;
+            this.mask = capacity - 1;
+            this.tail = new AtomicLong(0);
+            this.head = 0;
         }
-        public Message() {
-            this.logger = null;
-            this.loggername = null;
-            this.level = null;
-            this.message = null;
-            this.thrown = null;
+
+        /**
+         * @return false if the queue is full
+         */
+        protected boolean offer(final Message m) {
+            long t;
+            do {
+                t = this.tail.get();
+                if (t - this.head >= this.capacity) return false;
+            } while (!this.tail.compareAndSet(t, t + 1));
+            this.slots.set((int) t & this.mask, m);
+            return true;
+        }
+
+        /**
+         * this must only be called by the consumer
+         * @return the next message or null if the queue is empty
+         */
+        protected Message poll() {
+            final long h = this.head;
+            if (h >= this.tail.get()) return null;
+            final int i = (int) h & this.mask;
+            Message m;
+            while ((m = this.slots.get(i)) == null) Thread.yield(); // the slot is claimed but not yet published
+            this.slots.lazySet(i, null);
+            this.head = h + 1;
+            return m;
+        }
+
+        protected boolean isEmpty() {
+            return this.head >= this.tail.get();
+        }
+
+        protected int size() {
+            return (int) Math.max(0, this.tail.get() - this.head);
         }
     }
 
     protected final static class Worker extends Thread {
+        private volatile boolean waiting = false;
+
         public Worker() {
             super("Log Worker");
         }
@@ -350,31 +548,40 @@ public final class ConcurrentLog {
         @Override
         public void run() {
             Message entry;
-            Map<String, Logger> loggerCache = new HashMap<String, Logger>();
+            long lastDropReport = System.currentTimeMillis();
+            long reportedDropped = dropped.get(), reportedSuppressed = 0;
             try {
-                while ((entry = logQueue.take()) != POISON_MESSAGE) {
-                    if (entry.logger == null) {
-                        assert entry.loggername != null;
-                        Logger l = loggerCache.get(entry.loggername);
-                        if (l == null) {l = Logger.getLogger(entry.loggername); loggerCache.put(entry.loggername, l);}
-                        if (entry.thrown == null) {
-                            l.log(entry.level, entry.message);
-                        } else {
-                            l.log(entry.level, entry.message, entry.thrown);
+                while (true) {
+                    int c = 0;
+                    while (c < BATCH_SIZE && (entry = logQueue.poll()) != null) {
+                        if (entry == POISON_MESSAGE) {
+                            ConcurrentLogLogger.log(Level.INFO, "terminating ConcurrentLog.Worker with " + logQueue.size() + " cached loglines.");
+                            return;
                         }
-                    } else {
-                        assert entry.loggername == null;
-                        if (entry.thrown == null) {
-                            entry.logger.log(entry.level, entry.message);
-                        } else {
-                            entry.logger.log(entry.level, entry.message, entry.thrown);
+                        entry.publish("");
+                        c++;
+                    }
+                    if (c == 0) {
+                        // wait for new messages; the producers unpark the worker if it is waiting
+                        this.waiting = true;
+                        if (logQueue.isEmpty()) LockSupport.parkNanos(this, 100000000L);
+                        this.waiting = false;
+                    }
+                    final long now = System.currentTimeMillis();
+                    if (now - lastDropReport > DROP_REPORT_INTERVAL) {
+                        lastDropReport = now;
+                        final long d = dropped.get(), s = suppressedMessages();
+                        if (d > reportedDropped || s > reportedSuppressed) {
+                            ConcurrentLogLogger.log(Level.WARNING, "ConcurrentLog: " + (d - reportedDropped) + " messages dropped because the log queue was full, " +
+                                    (s - reportedSuppressed) + " messages suppressed by sampling or rate limits");
+                            reportedDropped = d;
+                            reportedSuppressed = s;
                         }
                     }
                 }
             } catch (final Throwable e) {
                 ConcurrentLogLogger.log(Level.SEVERE, "ConcurrentLog.Worker has terminated", e);
             }
-            ConcurrentLogLogger.log(Level.INFO, "terminating ConcurrentLog.Worker with " + logQueue.size() + " cached loglines.");
         }
     }
 
@@ -387,6 +594,7 @@ public final class ConcurrentLog {
             // loading the logger configuration from file
             final LogManager logManager = LogManager.getLogManager();
             logManager.readConfiguration(fileIn);
+            for (final Target t: targets.values()) t.configure(logManager); // read the sampling and rate limits again
 
             // creating the logging directory
             String logPattern = logManager.getProperty("java.util.logging.FileHandler.pattern");
@@ -438,7 +646,8 @@ public final class ConcurrentLog {
         }
         try {
             ConcurrentLogLogger.log(Level.INFO, "shutdown of ConcurrentLog.Worker: injection of poison message");
-            logQueue.put(POISON_MESSAGE);
+            for (int i = 0; i < 100 && !logQueue.offer(POISON_MESSAGE); i++) Thread.sleep(10);
+            LockSupport.unpark(logRunnerThread);
             logRunnerThread.join(2000);
             ConcurrentLogLogger.log(Level.INFO, "shutdown of ConcurrentLog.Worker: terminated");
         } catch (final InterruptedException e) {
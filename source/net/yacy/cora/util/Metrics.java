@@ -0,0 +1,368 @@
+/**
+ *  Metrics.java
+ *  part of YaCy, http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.cora.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A registry of counters, gauges and latency histograms which can be exported in the OpenMetrics
+ * (or the older Prometheus) text format, see http://openmetrics.io
+ *
+ * Metrics are identified by a name and optionally one label; the methods to get a metric return the
+ * existing metric if it had been created before, so they can be called in static initializers or constructors.
+ * Counters and histograms are updated with atomic operations only. Values which are already counted
+ * somewhere else are registered as a Probe, which is read when the metrics are exported.
+ *
+ * Histograms record durations in log-linear buckets (eight sub-buckets for each power of two microseconds),
+ * so that percentiles can be computed with a relative error below 12.5% over a range from microseconds to days.
+ * The export uses a fixed set of bucket bounds in seconds, as required for aggregation across peers.
+ */
+public final class Metrics {
+
+    public static final String CONTENT_TYPE_OPENMETRICS = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+    public static final String CONTENT_TYPE_TEXT = "text/plain; version=0.0.4; charset=utf-8";
+
+    /** the bucket bounds of the exported histograms in seconds */
+    private static final double[] EXPORT_BOUNDS = new double[]{0.001d, 0.0025d, 0.005d, 0.01d, 0.025d, 0.05d, 0.1d, 0.25d, 0.5d, 1d, 2.5d, 5d, 10d, 30d, 60d, 300d};
+
+    public enum Type {
+        counter, gauge, histogram;
+    }
+
+    /**
+     * a value which is computed when the metrics are exported
+     */
+    public interface Probe {
+        public double value();
+    }
+
+    private static final ConcurrentSkipListMap<String, Family> families = new ConcurrentSkipListMap<String, Family>();
+
+    /**
+     * get a counter without labels
+     * @param name the metric name, without the _total suffix
+     * @param help a description of the metric
+     */
+    public static Counter counter(final String name, final String help) {
+        return counter(name, help, null, null);
+    }
+
+    /**
+     * get a counter with one label
+     * @param name the metric name, without the _total suffix
+     * @param help a description of the metric
+     * @param label the label name
+     * @param value the label value
+     */
+    public static Counter counter(final String name, final String help, final String label, final String value) {
+        final Family family = family(name, help, Type.counter);
+        final String key = labels(label, value);
+        Object c = family.children.get(key);
+        if (c instanceof Counter) return (Counter) c;
+        final Counter counter = new Counter();
+        c = family.children.putIfAbsent(key, counter);
+        return c instanceof Counter ? (Counter) c : counter;
+    }
+
+    /**
+     * register a counter which is maintained elsewhere; a probe registered before under the same name and label is replaced
+     */
+    public static void counter(final String name, final String help, final String label, final String value, final Probe probe) {
+        family(name, help, Type.counter).children.put(labels(label, value), probe);
+    }
+
+    public static void counter(final String name, final String help, final Probe probe) {
+        counter(name, help, null, null, probe);
+    }
+
+    /**
+     * register a gauge; a probe registered before under the same name and label is replaced
+     */
+    public static void gauge(final String name, final String help, final String label, final String value, final Probe probe) {
+        family(name, help, Type.gauge).children.put(labels(label, value), probe);
+    }
+
+    public static void gauge(final String name, final String help, final Probe probe) {
+        gauge(name, help, null, null, probe);
+    }
+
+    /**
+     * get a latency histogram without labels
+     * @param name the metric name, should end with _seconds
+     * @param help a description of the metric
+     */
+    public static Histogram histogram(final String name, final String help) {
+        return histogram(name, help, null, null);
+    }
+
+    /**
+     * get a latency histogram with one label
+     * @param name the metric name, should end with _seconds
+     * @param help a description of the metric
+     * @param label the label name
+     * @param value the label value
+     */
+    public static Histogram histogram(final String name, final String help, final String label, final String value) {
+        final Family family = family(name, help, Type.histogram);
+        final String key = labels(label, value);
+        Object h = family.children.get(key);
+        if (h instanceof Histogram) return (Histogram) h;
+        final Histogram histogram = new Histogram();
+        h = family.children.putIfAbsent(key, histogram);
+        return h instanceof Histogram ? (Histogram) h : histogram;
+    }
+
+    /**
+     * remove a metric, i.e. when the object which is measured is closed
+     */
+    public static void remove(final String name, final String label, final String value) {
+        final Family family = families.get(name);
+        if (family != null) family.children.remove(labels(label, value));
+    }
+
+    /**
+     * remove all metrics of a name
+     */
+    public static void remove(final String name) {
+        families.remove(name);
+    }
+
+    private static Family family(final String name, final String help, final Type type) {
+        Family family = families.get(name);
+        if (family == null) {
+            family = new Family(help, type);
+            final Family f = families.putIfAbsent(name, family);
+            if (f != null) family = f;
+        }
+        if (family.type != type) throw new IllegalArgumentException("metric " + name + " is a " + family.type);
+        return family;
+    }
+
+    private static String labels(final String label, final String value) {
+        if (label == null) return "";
+        final StringBuilder sb = new StringBuilder(label.length() + value.length() + 4);
+        sb.append(label).append("=\"");
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '\\' || c == '"') sb.append('\\').append(c);
+            else if (c == '\n') sb.append("\\n");
+            else sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * write all metrics
+     * @param out the target
+     * @param openMetrics if true, the OpenMetrics format is written, otherwise the Prometheus text format 0.0.4
+     * @throws IOException
+     */
+    public static void write(final Writer out, final boolean openMetrics) throws IOException {
+        final StringBuilder sb = new StringBuilder(256);
+        for (final Map.Entry<String, Family> entry: families.entrySet()) {
+            final String name = entry.getKey();
+            final Family family = entry.getValue();
+            if (family.children.isEmpty()) continue;
+            sb.setLength(0);
+            final String typeName = family.type == Type.counter && !openMetrics ? name + "_total" : name;
+            sb.append("# TYPE ").append(typeName).append(' ').append(family.type.name()).append('\n');
+            sb.append("# HELP ").append(typeName).append(' ').append(family.help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+            out.write(sb.toString());
+            for (final Map.Entry<String, Object> child: family.children.entrySet()) {
+                sb.setLength(0);
+                final String labels = child.getKey();
+                final Object metric = child.getValue();
+                switch (family.type) {
+                    case counter:
+                        sample(sb, name + "_total", labels, null, metric instanceof Counter ? ((Counter) metric).get() : probe((Probe) metric));
+                        break;
+                    case gauge:
+                        sample(sb, name, labels, null, probe((Probe) metric));
+                        break;
+                    case histogram:
+                        final Histogram h = (Histogram) metric;
+                        final long[] buckets = h.snapshot();
+                        final long count = buckets[buckets.length - 1];
+                        int b = 0;
+                        long cumulative = 0;
+                        for (final double bound: EXPORT_BOUNDS) {
+                            final long boundMicros = (long) (bound * 1000000.0d);
+                            while (b < buckets.length - 1 && Histogram.upperBound(b) - 1 <= boundMicros) cumulative += buckets[b++];
+                            sample(sb, name + "_bucket", labels, "le=\"" + bound + "\"", cumulative);
+                        }
+                        sample(sb, name + "_bucket", labels, "le=\"+Inf\"", count);
+                        sample(sb, name + "_count", labels, null, count);
+                        sample(sb, name + "_sum", labels, null, h.sum() / 1000000.0d);
+                        break;
+                }
+                out.write(sb.toString());
+            }
+        }
+        if (openMetrics) out.write("# EOF\n");
+        out.flush();
+    }
+
+    private static double probe(final Probe probe) {
+        try {
+            return probe.value();
+        } catch (final RuntimeException e) {
+            return Double.NaN; // the measured object may be closed
+        }
+    }
+
+    private static void sample(final StringBuilder sb, final String name, final String labels, final String extraLabel, final double value) {
+        sb.append(name);
+        if (labels.length() > 0 || extraLabel != null) {
+            sb.append('{').append(labels);
+            if (extraLabel != null) {
+                if (labels.length() > 0) sb.append(',');
+                sb.append(extraLabel);
+            }
+            sb.append('}');
+        }
+        sb.append(' ');
+        if (Double.isNaN(value)) sb.append("NaN");
+        else if (value == Math.rint(value) && Math.abs(value) < 1e15) sb.append((long) value);
+        else sb.append(value);
+        sb.append('\n');
+    }
+
+    private static final class Family {
+        private final String help;
+        private final Type type;
+        private final ConcurrentSkipListMap<String, Object> children; // label string -> Counter, Histogram or Probe
+
+        private Family(final String help, final Type type) {
+            this.help = help;
+            this.type = type;
+            this.children = new ConcurrentSkipListMap<String, Object>();
+        }
+    }
+
+    public static final class Counter {
+        private final AtomicLong count = new AtomicLong(0);
+
+        public void inc() {
+            this.count.incrementAndGet();
+        }
+
+        public void add(final long n) {
+            this.count.addAndGet(n);
+        }
+
+        public long get() {
+            return this.count.get();
+        }
+    }
+
+    public static final class Histogram {
+        private static final int SUB_BITS = 3; // 8 sub-buckets for each power of two
+        private static final int SUB = 1 << SUB_BITS;
+        private static final int MAX_BITS = 40; // 2^40 microseconds are about 12 days
+        private static final int BUCKETS = (MAX_BITS - SUB_BITS + 2) * SUB;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong(0);
+        private final AtomicLong sum = new AtomicLong(0); // microseconds
+
+        /**
+         * the bucket of a value: values below 16 have a bucket each, larger values are divided into
+         * 8 buckets for each power of two
+         */
+        protected static int index(long micros) {
+            if (micros < 0) micros = 0;
+            if (micros < 2 * SUB) return (int) micros;
+            final int msb = 63 - Long.numberOfLeadingZeros(micros);
+            if (msb > MAX_BITS) return BUCKETS - 1;
+            return (msb - SUB_BITS + 1) * SUB + (int) ((micros >>> (msb - SUB_BITS)) & (SUB - 1));
+        }
+
+        /**
+         * @return the smallest value which is not in the bucket
+         */
+        protected static long upperBound(final int index) {
+            if (index < 2 * SUB) return index + 1;
+            final int shift = index / SUB - 1;
+            return ((long) (SUB + index % SUB) << shift) + (1L << shift);
+        }
+
+        public void recordMicros(final long micros) {
+            this.buckets.incrementAndGet(index(micros));
+            this.sum.addAndGet(Math.max(0, micros));
+            this.count.incrementAndGet();
+        }
+
+        public void recordNanos(final long nanos) {
+            recordMicros(nanos / 1000);
+        }
+
+        public void recordMillis(final long millis) {
+            recordMicros(millis * 1000);
+        }
+
+        public long count() {
+            return this.count.get();
+        }
+
+        /**
+         * @return the sum of all recorded values in microseconds
+         */
+        public long sum() {
+            return this.sum.get();
+        }
+
+        /**
+         * compute a percentile
+         * @param p the percentile as a fraction, i.e. 0.95
+         * @return the upper bound of the bucket of the percentile in microseconds, or 0 if nothing was recorded
+         */
+        public long percentile(final double p) {
+            final long[] s = snapshot();
+            final long total = s[s.length - 1];
+            if (total == 0) return 0;
+            final long rank = Math.max(1, (long) Math.ceil(p * total));
+            long c = 0;
+            for (int i = 0; i < s.length - 1; i++) {
+                c += s[i];
+                if (c >= rank) return upperBound(i) - 1;
+            }
+            return upperBound(s.length - 2) - 1;
+        }
+
+        /**
+         * @return the bucket counts, followed by the total count of the buckets
+         */
+        private long[] snapshot() {
+            final long[] s = new long[BUCKETS + 1];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                s[i] = this.buckets.get(i);
+                total += s[i];
+            }
+            s[BUCKETS] = total;
+            return s;
+        }
+    }
+}
@@ -29,6 +29,7 @@ import java.net.InetAddress;
 import java.net.MalformedURLException;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
@@ -149,6 +150,7 @@ public final class CrawlStacker {
 
         // DEBUG
         if (CrawlStacker.log.isFinest()) CrawlStacker.log.finest("ENQUEUE " + entry.url() + ", referer=" + entry.referrerhash() + ", initiator=" + ((entry.initiator() == null) ? "" : ASCII.String(entry.initiator())) + ", name=" + entry.name() + ", appdate=" + entry.appdate() + ", depth=" + entry.depth());
+        Domains.prefetch(entry.url().getHost()); // the stacker and the loader need the host address; resolve it while the entry waits in the queue
         this.requestQueue.enQueue(entry);
     }
     public void enqueueEntriesAsynchronous(
@@ -171,6 +173,12 @@ public final class CrawlStacker {
             final List<AnchorURL> hyperlinks,
             final boolean replace,
             final int timezoneOffset) {
+        // resolve the hosts of the whole batch in the background while the urls are stacked
+        final Set<String> hosts = new LinkedHashSet<String>();
+        for (final AnchorURL url: hyperlinks) {
+            if (url != null && url.getHost() != null) hosts.add(url.getHost());
+        }
+        Domains.prefetch(hosts);
         if (replace) {
             // delete old entries, if exists to force a re-load of the url (thats wanted here)
             Set<String> hosthashes = new HashSet<String>();
@@ -33,6 +33,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
 
 import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.document.id.DigestURL;
@@ -41,6 +42,7 @@ import net.yacy.cora.protocol.ClientIdentification;
 import net.yacy.cora.storage.HandleMap;
 import net.yacy.cora.storage.HandleSet;
 import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.cora.util.Metrics;
 import net.yacy.cora.util.SpaceExceededException;
 import net.yacy.crawler.data.CrawlProfile;
 import net.yacy.crawler.data.Latency;
@@ -70,6 +72,9 @@ public class HostBalancer implements Balancer {
     private final Map<String, HostQueue> queues;
     private final Set<String> roundRobinHostHashes;
     private final int onDemandLimit;
+    private final String metricsName;
+    private final Metrics.Histogram popTime;
+    private final Metrics.Counter pushCount;
 
     public HostBalancer(
             final File hostsPath,
@@ -84,6 +89,15 @@ public class HostBalancer implements Balancer {
         this.queues = new ConcurrentHashMap<String, HostQueue>();
         this.roundRobinHostHashes = new HashSet<String>();
         init(); // return without wait but starts a thread to fill the queues
+        this.metricsName = hostsPath.getName();
+        this.popTime = Metrics.histogram("yacy_crawler_pop_duration_seconds", "time to get the next url from a crawl queue, including the politeness delay", "queue", this.metricsName);
+        this.pushCount = Metrics.counter("yacy_crawler_pushed_urls", "number of urls pushed to a crawl queue", "queue", this.metricsName);
+        Metrics.gauge("yacy_crawler_queue_urls", "number of urls in a crawl queue", "queue", this.metricsName, new Metrics.Probe() {
+            @Override public double value() {return size();}
+        });
+        Metrics.gauge("yacy_crawler_queue_hosts", "number of hosts in a crawl queue", "queue", this.metricsName, new Metrics.Probe() {
+            @Override public double value() {return HostBalancer.this.queues.size();}
+        });
     }
 
     /**
@@ -124,6 +138,10 @@ public class HostBalancer implements Balancer {
         }
         for (HostQueue queue: this.queues.values()) queue.close();
         this.queues.clear();
+        Metrics.remove("yacy_crawler_pop_duration_seconds", "queue", this.metricsName);
+        Metrics.remove("yacy_crawler_pushed_urls", "queue", this.metricsName);
+        Metrics.remove("yacy_crawler_queue_urls", "queue", this.metricsName);
+        Metrics.remove("yacy_crawler_queue_hosts", "queue", this.metricsName);
     }
 
     @Override
@@ -253,7 +271,9 @@ public class HostBalancer implements Balancer {
                 // profile might be null when continue crawls after YaCy restart
                 robots.ensureExist(entry.url(), profile == null ? ClientIdentification.yacyInternetCrawlerAgent : profile.getAgent(), true); // concurrently load all robots.txt
             }
-            return queue.push(entry, profile, robots);
+            final String error = queue.push(entry, profile, robots);
+            if (error == null) this.pushCount.inc();
+            return error;
         }
     }
 
@@ -271,6 +291,15 @@ public class HostBalancer implements Balancer {
      */
     @Override
     public Request pop(boolean delay, CrawlSwitchboard cs, RobotsTxt robots) throws IOException {
+        final long start = System.nanoTime();
+        try {
+            return popEntry(delay, cs, robots);
+        } finally {
+            this.popTime.recordNanos(System.nanoTime() - start);
+        }
+    }
+
+    private Request popEntry(boolean delay, CrawlSwitchboard cs, RobotsTxt robots) throws IOException {
         tryagain: while (true) try {
             HostQueue rhq = null;
             String rhh = null;
@@ -314,7 +343,7 @@ public class HostBalancer implements Balancer {
                     if (this.roundRobinHostHashes.size() == 1) {
                         if (log.isFine()) log.fine("(re-)initialized the round-robin queue with one host");
                     } else {
-                        log.info("(re-)initialized the round-robin queue; " + this.roundRobinHostHashes.size() + " hosts.");
+                        log.log(Level.INFO, "(re-)initialized the round-robin queue; {} hosts.", this.roundRobinHostHashes.size());
                     }
                 }
                 if (this.roundRobinHostHashes.size() == 0) return null;
@@ -34,8 +34,10 @@
 
 package net.yacy.crawler.data;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.util.HashMap;
 import java.util.Map;
@@ -53,16 +55,20 @@ import net.yacy.kelondro.blob.Compressor;
 import net.yacy.kelondro.blob.MapHeap;
 import net.yacy.kelondro.data.word.Word;
 import net.yacy.kelondro.index.RowHandleSet;
+import net.yacy.kelondro.util.FileUtils;
 
 
 public final class Cache {
 
     private static final String RESPONSE_HEADER_DB_NAME = "responseHeader.heap";
     private static final String FILE_DB_NAME = "file.array";
+    private static final String CONTENT_STORE_NAME = "content";
+    private static final String DIGEST_KEY = "@@DIGEST";
 
     private static MapHeap responseHeaderDB = null;
     private static Compressor fileDB = null;
     private static ArrayStack fileDBunbuffered = null;
+    private static ContentAddressedStore contentStore = null; // not null if the content-addressed mode is switched on
 
     private static long maxCacheSize = Long.MAX_VALUE;
     private static File cachePath = null;
@@ -70,6 +76,19 @@ public final class Cache {
     public static final ConcurrentLog log = new ConcurrentLog("HTCACHE");
 
     public static void init(final File htCachePath, final String peerSalt, final long CacheSizeMax) {
+        init(htCachePath, peerSalt, CacheSizeMax, false);
+    }
+
+    /**
+     * initialize the cache
+     * @param htCachePath the cache directory
+     * @param peerSalt a salt for the file names of the file database
+     * @param CacheSizeMax the maximum size of the cache content in bytes
+     * @param contentAddressed if true, the content is stored once per content digest in a content-addressed store
+     *   and the response header of each url holds a reference to the digest. Content which was stored before in the
+     *   file database can still be read.
+     */
+    public static void init(final File htCachePath, final String peerSalt, final long CacheSizeMax, final boolean contentAddressed) {
 
         cachePath = htCachePath;
         maxCacheSize = CacheSizeMax;
@@ -115,12 +134,16 @@ public final class Cache {
                 }
             }
         }
-        ConcurrentLog.info("Cache", "initialized cache database responseHeaderDB.size() = " + (responseHeaderDB == null ? "NULL" : responseHeaderDB.size()) + ", fileDB.size() = " + (fileDB == null ? "NULL" : fileDB.size()));
+        // open the content-addressed store
+        contentStore = contentAddressed ? new ContentAddressedStore(new File(cachePath, CONTENT_STORE_NAME), maxCacheSize) : null;
+        ConcurrentLog.info("Cache", "initialized cache database responseHeaderDB.size() = " + (responseHeaderDB == null ? "NULL" : responseHeaderDB.size()) + ", fileDB.size() = " + (fileDB == null ? "NULL" : fileDB.size()) + (contentStore == null ? "" : ", contentStore.size() = " + contentStore.size()));
 
         // clean up the responseHeaderDB which cannot be cleaned the same way as the cache files.
         // We do this as a concurrent job only once after start-up silently
-        if (responseHeaderDB.size() != fileDB.size()) {
-            ConcurrentLog.warn("Cache", "file and metadata size is not equal, starting a cleanup thread...");
+        // In content-addressed mode the number of header entries does not correspond to the file database,
+        // so the check runs always and a header entry is also valid if its content file exists.
+        if (contentStore != null || responseHeaderDB.size() != fileDB.size()) {
+            if (contentStore == null) ConcurrentLog.warn("Cache", "file and metadata size is not equal, starting a cleanup thread...");
             Thread startupCleanup = new Thread() {
                 @Override
                 public void run() {
@@ -132,7 +155,9 @@ public final class Cache {
                     try {
                         byte[] k;
                         while (((k = q.take()) != MapHeap.POISON_QUEUE_ENTRY)) {
-                            if (!fileDB.containsKey(k)) try { delkeys.put(k); } catch (final SpaceExceededException e) { break; }
+                            if (fileDB.containsKey(k)) continue;
+                            if (contentStore != null && contentStore.has(getDigest(k))) continue;
+                            try { delkeys.put(k); } catch (final SpaceExceededException e) { break; }
                         }
                     } catch (final InterruptedException e) {
                     } finally {
@@ -184,6 +209,7 @@ public final class Cache {
         } catch (final IOException e) {
             ConcurrentLog.logException(e);
         }
+        if (contentStore != null) contentStore.clear();
     }
 
     /**
@@ -193,6 +219,7 @@ public final class Cache {
     public static void setMaxCacheSize(final long newCacheSize) {
         maxCacheSize = newCacheSize;
         fileDBunbuffered.setMaxSize(maxCacheSize);
+        if (contentStore != null) contentStore.setMaxSize(maxCacheSize);
     }
 
     /**
@@ -200,7 +227,7 @@ public final class Cache {
      * @return
      */
     public static long getActualCacheSize() {
-        return fileDBunbuffered.length();
+        return fileDBunbuffered.length() + (contentStore == null ? 0 : contentStore.length());
     }
     
     /**
@@ -208,7 +235,34 @@ public final class Cache {
      * @return
      */
     public static long getActualCacheDocCount() {
-        return fileDBunbuffered.size();
+        return contentStore == null ? fileDBunbuffered.size() : responseHeaderDB.size();
+    }
+
+    /**
+     * get the number of distinct contents in the cache; in content-addressed mode this is less
+     * than the number of documents if several urls have the same content
+     * @return
+     */
+    public static long getActualCacheContentCount() {
+        return fileDBunbuffered.size() + (contentStore == null ? 0 : contentStore.size());
+    }
+
+    /**
+     * @return true if the cache stores the content once per content digest
+     */
+    public static boolean isContentAddressed() {
+        return contentStore != null;
+    }
+
+    /**
+     * check if store(url, responseHeader, InputStream) streams the content into the content-addressed store.
+     * If not, the stream is either read into the heap (legacy cache) or not read at all (disabled cache, noarchive).
+     * @param responseHeader the response header or null if it is not known yet
+     * @return true if the cache is content-addressed and enabled and the response header does not forbid archiving
+     */
+    public static boolean isStreamable(final ResponseHeader responseHeader) {
+        if (contentStore == null || maxCacheSize == 0) return false;
+        return responseHeader == null || !responseHeader.getXRobotsTag().contains("noarchive"); // don't cache, see http://noarchive.net/
     }
 
     /**
@@ -225,6 +279,10 @@ public final class Cache {
         if (responseHeader.getXRobotsTag().contains("noarchive")) return; // don't cache, see http://noarchive.net/
         if (file == null) throw new IOException("Cache.store of url " + url.toNormalform(false) + " not possible: file == null");
         log.info("storing content of url " + url.toNormalform(false) + ", " + file.length + " bytes");
+        if (contentStore != null) {
+            storeContentAddressed(url, responseHeader, new ByteArrayInputStream(file), -1);
+            return;
+        }
 
         // store the file
         try {
@@ -248,6 +306,80 @@ public final class Cache {
         if (log.isFine()) log.fine("stored in cache: " + url.toNormalform(true));
     }
 
+    /**
+     * store the content of an url from a stream. In content-addressed mode the content is streamed to disk
+     * without a copy in the heap, otherwise the stream is read into memory and stored with store(url, responseHeader, byte[]).
+     * @param url
+     * @param responseHeader
+     * @param source the content stream; it is read until the end but not closed
+     * @throws IOException
+     */
+    public static void store(final DigestURL url, final ResponseHeader responseHeader, final InputStream source) throws IOException {
+        store(url, responseHeader, source, -1);
+    }
+
+    /**
+     * store the content of an url from a stream with a size limit
+     * @param url
+     * @param responseHeader
+     * @param source the content stream; it is read until the end or until the limit is exceeded but not closed
+     * @param maxLength the maximum length of the content in bytes or a negative value for no limit
+     * @throws IOException if the content cannot be stored or is longer than maxLength
+     */
+    public static void store(final DigestURL url, final ResponseHeader responseHeader, final InputStream source, final long maxLength) throws IOException {
+        if (maxCacheSize == 0) return;
+        if (contentStore == null) {
+            final byte[] file = FileUtils.read(source);
+            if (maxLength >= 0 && file.length > maxLength) throw new IOException("Cache.store of url " + url.toNormalform(false) + " not possible: content exceeds the maximum length of " + maxLength + " bytes");
+            store(url, responseHeader, file);
+            return;
+        }
+        if (responseHeader == null) throw new IOException("Cache.store of url " + url.toNormalform(false) + " not possible: responseHeader == null");
+        if (responseHeader.getXRobotsTag().contains("noarchive")) return; // don't cache, see http://noarchive.net/
+        if (source == null) throw new IOException("Cache.store of url " + url.toNormalform(false) + " not possible: source == null");
+        storeContentAddressed(url, responseHeader, source, maxLength);
+    }
+
+    private static void storeContentAddressed(final DigestURL url, final ResponseHeader responseHeader, final InputStream source, final long maxLength) throws IOException {
+        final String digest;
+        try {
+            digest = contentStore.store(source, maxLength);
+        } catch (final IOException e) {
+            throw new IOException("Cache.store: cannot write to contentStore: " + e.getMessage());
+        }
+
+        // store the response header together with the content reference into the header database
+        final HashMap<String, String> hm = new HashMap<String, String>();
+        hm.putAll(responseHeader);
+        hm.put("@@URL", url.toNormalform(true));
+        hm.put(DIGEST_KEY, digest);
+        try {
+            responseHeaderDB.insert(url.hash(), hm);
+        } catch (final Exception e) {
+            throw new IOException("Cache.store: cannot write to headerDB: " + e.getMessage());
+        }
+        // remove an older version of the content which may exist in the file database
+        if (fileDB.containsKey(url.hash())) fileDB.delete(url.hash());
+        if (log.isFine()) log.fine("stored in content store: " + url.toNormalform(true) + ", digest " + digest);
+    }
+
+    /**
+     * get the digest of the content of an url in the content-addressed store
+     * @param hash the url hash
+     * @return the hex-encoded content digest or null if the content is not in the content-addressed store
+     */
+    private static String getDigest(final byte[] hash) {
+        if (contentStore == null) return null;
+        try {
+            final Map<String, String> hdb = responseHeaderDB.get(hash);
+            return hdb == null ? null : hdb.get(DIGEST_KEY);
+        } catch (final IOException e) {
+            return null;
+        } catch (final SpaceExceededException e) {
+            return null;
+        }
+    }
+
     /**
      * check if the responseHeaderDB and the fileDB has an entry for the given url
      * @param url the url of the resource
@@ -260,6 +392,9 @@ public final class Cache {
             headerExists = responseHeaderDB.containsKey(urlhash);
             fileExists = fileDB.containsKey(urlhash);
         //}
+        if (headerExists && !fileExists && contentStore != null) {
+            if (contentStore.has(getDigest(urlhash))) return true;
+        }
         if (headerExists && fileExists) return true;
         if (!headerExists && !fileExists) return false;
         // if not both is there then we do a clean-up
@@ -310,6 +445,11 @@ public final class Cache {
     public static byte[] getContent(final byte[] hash) {
         // load the url as resource from the cache
         try {
+            final String digest = getDigest(hash);
+            if (digest != null) {
+                final File f = contentStore.file(digest);
+                return f.exists() ? FileUtils.read(f) : null;
+            }
             final byte[] b = fileDB.get(hash);
             if (b == null) return null;
             return b;
@@ -328,9 +468,37 @@ public final class Cache {
         }
     }
 
+    /**
+     * Returns the content of a cached resource as stream. In content-addressed mode the content is
+     * read from its file and not copied to the heap.
+     * @param hash the url hash of the requested resource
+     * @return a stream which must be closed by the caller or null if the content is not available
+     */
+    public static InputStream getContentStream(final byte[] hash) {
+        final String digest = getDigest(hash);
+        if (digest != null) return contentStore.getStream(digest);
+        final byte[] b = getContent(hash);
+        return b == null ? null : new ByteArrayInputStream(b);
+    }
+
+    /**
+     * Returns the file which holds the content of a cached resource. This is only available in
+     * content-addressed mode and can be used to serve the content directly from the file system.
+     * The file must not be modified.
+     * @param hash the url hash of the requested resource
+     * @return the content file or null if the content is not stored in a separate file
+     */
+    public static File getContentFile(final byte[] hash) {
+        final String digest = getDigest(hash);
+        if (digest == null) return null;
+        final File f = contentStore.file(digest);
+        return f.exists() ? f : null;
+    }
+
     public static boolean hasContent(final byte[] hash) {
         // load the url as resource from the cache
         try {
+            if (contentStore != null && contentStore.has(getDigest(hash))) return true;
             return fileDB.containsKey(hash);
         } catch (final OutOfMemoryError e) {
             ConcurrentLog.logException(e);
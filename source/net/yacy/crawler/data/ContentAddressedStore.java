@@ -0,0 +1,236 @@
+/**
+ *  ContentAddressedStore.java
+ *  part of YaCy, http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.crawler.data;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.yacy.cora.order.Digest;
+import net.yacy.cora.util.ConcurrentLog;
+
+/**
+ * A file store for cache content where each file is named by the digest of its content.
+ * Identical content is therefore stored only once, no matter how many urls deliver it.
+ * Content is streamed to a temporary file while the digest is computed and then moved to
+ * its final location. The files are stored uncompressed so that they can be served directly
+ * from the file system.
+ *
+ * The directory layout is
+ *
+ *   storeDir                    (dir)
+ *      +-- tmp                  (dir, temporary files during a store)
+ *      +-- ab                   (dir, first two characters of the digest)
+ *           +-- ab01...ef       (file, named by the full digest)
+ *
+ * Files are not reference-counted: a file is removed when the store exceeds its size limit
+ * and the file is the least recently stored one. References to removed files
+ * are detected on access and treated as cache misses.
+ */
+class ContentAddressedStore {
+
+    private static final ConcurrentLog log = new ConcurrentLog("HTCACHE");
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final String TMP_DIR_NAME = "tmp";
+
+    private final File storeDir, tmpDir;
+    private final AtomicLong length;
+    private final AtomicInteger count;
+    private final AtomicInteger tmpCounter;
+    private long maxSize;
+
+    protected ContentAddressedStore(final File storeDir, final long maxSize) {
+        this.storeDir = storeDir;
+        this.tmpDir = new File(storeDir, TMP_DIR_NAME);
+        this.maxSize = maxSize;
+        this.length = new AtomicLong(0);
+        this.count = new AtomicInteger(0);
+        this.tmpCounter = new AtomicInteger(0);
+        if (!this.tmpDir.exists()) this.tmpDir.mkdirs();
+
+        // remove left-over temporary files and count the stored content
+        final String[] tmpFiles = this.tmpDir.list();
+        if (tmpFiles != null) for (final String f: tmpFiles) new File(this.tmpDir, f).delete();
+        for (final File f: listFiles()) {
+            this.length.addAndGet(f.length());
+            this.count.incrementAndGet();
+        }
+    }
+
+    protected void setMaxSize(final long maxSize) {
+        this.maxSize = maxSize;
+        cleanup();
+    }
+
+    /**
+     * store content from a stream
+     * @param source the content; the stream is read until the end but not closed
+     * @param maxLength the maximum number of bytes of the content, a negative value for no limit
+     * @return the hex-encoded digest of the content which is the key to retrieve it
+     * @throws IOException if the content cannot be written or is longer than maxLength
+     */
+    protected String store(final InputStream source, final long maxLength) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IOException(e.getMessage());
+        }
+        final File tmp = new File(this.tmpDir, Long.toString(System.currentTimeMillis()) + "_" + this.tmpCounter.incrementAndGet());
+        final OutputStream out = new FileOutputStream(tmp);
+        try {
+            final byte[] buffer = new byte[16384];
+            int c;
+            long total = 0;
+            while ((c = source.read(buffer)) > 0) {
+                total += c;
+                if (maxLength >= 0 && total > maxLength) throw new IOException("content exceeds the maximum length of " + maxLength + " bytes");
+                digest.update(buffer, 0, c);
+                out.write(buffer, 0, c);
+            }
+        } catch (final IOException e) {
+            out.close();
+            tmp.delete();
+            throw e;
+        }
+        out.close();
+
+        final String key = Digest.encodeHex(digest.digest());
+        final File target = file(key);
+        synchronized (this) {
+            if (target.exists()) {
+                // the same content is already stored; refresh its age to protect it from the cleanup
+                tmp.delete();
+                target.setLastModified(System.currentTimeMillis());
+                return key;
+            }
+            final File dir = target.getParentFile();
+            if (!dir.exists()) dir.mkdirs();
+            final long size = tmp.length();
+            if (!tmp.renameTo(target)) {
+                tmp.delete();
+                throw new IOException("cannot move content to " + target.toString());
+            }
+            this.length.addAndGet(size);
+            this.count.incrementAndGet();
+        }
+        if (this.length.get() > this.maxSize) cleanup();
+        return key;
+    }
+
+    protected boolean has(final String key) {
+        return key != null && file(key).exists();
+    }
+
+    /**
+     * get the file which holds the content for a given key
+     * @param key the hex-encoded digest
+     * @return the file; it may not exist if the content was removed
+     */
+    protected File file(final String key) {
+        return new File(new File(this.storeDir, key.substring(0, 2)), key);
+    }
+
+    /**
+     * get a stream of the content for a given key
+     * @param key the hex-encoded digest
+     * @return a stream which must be closed by the caller or null if the content does not exist
+     */
+    protected InputStream getStream(final String key) {
+        final File f = file(key);
+        try {
+            return new BufferedInputStream(new FileInputStream(f));
+        } catch (final IOException e) {
+            return null;
+        }
+    }
+
+    protected long length() {
+        return this.length.get();
+    }
+
+    protected int size() {
+        return this.count.get();
+    }
+
+    protected synchronized void clear() {
+        for (final File f: listFiles()) f.delete();
+        this.length.set(0);
+        this.count.set(0);
+    }
+
+    /**
+     * remove the oldest files until the store is smaller than 90% of its size limit
+     */
+    protected synchronized void cleanup() {
+        if (this.length.get() <= this.maxSize) return;
+        final List<File> files = listFiles();
+        final long[] modified = new long[files.size()];
+        final List<Integer> order = new ArrayList<Integer>(files.size());
+        for (int i = 0; i < modified.length; i++) {
+            modified[i] = files.get(i).lastModified();
+            order.add(i);
+        }
+        Collections.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(final Integer o1, final Integer o2) {
+                final long m1 = modified[o1.intValue()], m2 = modified[o2.intValue()];
+                return m1 < m2 ? -1 : m1 > m2 ? 1 : 0;
+            }
+        });
+        final long limit = this.maxSize / 10 * 9;
+        int deleted = 0;
+        for (final Integer i: order) {
+            if (this.length.get() <= limit) break;
+            final File f = files.get(i.intValue());
+            final long size = f.length();
+            if (f.delete()) {
+                this.length.addAndGet(-size);
+                this.count.decrementAndGet();
+                deleted++;
+            }
+        }
+        log.info("content store cleanup removed " + deleted + " files, size is now " + this.length.get() + " bytes");
+    }
+
+    private List<File> listFiles() {
+        final List<File> files = new ArrayList<File>();
+        final File[] dirs = this.storeDir.listFiles();
+        if (dirs == null) return files;
+        for (final File dir: dirs) {
+            if (!dir.isDirectory() || dir.getName().equals(TMP_DIR_NAME)) continue;
+            final File[] f = dir.listFiles();
+            if (f != null) for (final File g: f) if (g.isFile()) files.add(g);
+        }
+        return files;
+    }
+}
@@ -39,6 +39,7 @@ import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 
 import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.client.solrj.response.QueryResponse;
@@ -261,9 +262,8 @@ public class CrawlQueues {
             for (int i = 0; i < toshift; i++) {
                 this.noticeURL.shift(NoticedURL.StackType.GLOBAL, NoticedURL.StackType.LOCAL, this.sb.crawler, this.sb.robots);
             }
-            CrawlQueues.log.info("shifted " + toshift + " jobs from global crawl to local crawl (coreCrawlJobSize()=" + coreCrawlJobSize() +
-                    ", limitCrawlJobSize()=" + limitCrawlJobSize() + ", cluster.mode=" + this.sb.getConfig(SwitchboardConstants.CLUSTER_MODE, "") +
-                    ", robinsonMode=" + ((this.sb.isRobinsonMode()) ? "on" : "off"));
+            CrawlQueues.log.log(Level.INFO, "shifted {} jobs from global crawl to local crawl (coreCrawlJobSize()={}, limitCrawlJobSize()={}, cluster.mode={}, robinsonMode={})",
+                    toshift, coreCrawlJobSize(), limitCrawlJobSize(), this.sb.getConfig(SwitchboardConstants.CLUSTER_MODE, ""), this.sb.isRobinsonMode() ? "on" : "off");
         }
 
         final String queueCheckCore = loadIsPossible(NoticedURL.StackType.LOCAL);
@@ -308,7 +308,7 @@ public class CrawlQueues {
                         return true;
                     }
                     this.sb.indexingDocumentProcessor.enQueue(new IndexingQueueEntry(new Response(urlEntry, profile), null, null));
-                    ConcurrentLog.info("CrawlQueues", "placed NOLOAD URL on indexing queue: " + urlEntry.url().toNormalform(true));
+                    ConcurrentLog.log("CrawlQueues", Level.INFO, "placed NOLOAD URL on indexing queue: {}", urlEntry.url().toNormalform(true));
                     return true;
                 }
 
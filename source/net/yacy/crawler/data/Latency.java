@@ -38,6 +38,7 @@ import net.yacy.crawler.robots.RobotsTxtEntry;
 import net.yacy.kelondro.util.MemoryControl;
 import net.yacy.search.Switchboard;
 import net.yacy.search.SwitchboardConstants;
+import net.yacy.search.index.NearDuplicateIndex;
 
 
 public class Latency {
@@ -46,6 +47,9 @@ public class Latency {
     private static final int mapMaxSize = 1000;
     private static final ConcurrentHashMap<String, Host> map = new ConcurrentHashMap<String, Host>();
 
+    // hosts with a higher share of near-duplicates are crawled with a longer delay, up to the maximum factor
+    private static final double NEAR_DUPLICATE_HOST_RATIO = 0.5d, NEAR_DUPLICATE_DELAY_MAX = 4.0d;
+
     /**
      * update the latency entry after a host was selected for queueing into the loader
      * @param url
@@ -101,6 +105,25 @@ public class Latency {
         }
     }
 
+    /**
+     * update the latency entry after a host failed to deliver a file because of a server error (5xx, 429)
+     * or a network failure (time-out, connection refused). This makes the crawler back off from the host.
+     * @param url
+     * @param statusCode the http status code or -1 for a network failure
+     */
+    public static void updateAfterError(final DigestURL url, final int statusCode) {
+        final String host = url.getHost();
+        if (host == null) return;
+        String hosthash = url.hosthash();
+        Host h = map.get(hosthash);
+        if (h == null) {
+            h = new Host(host, 500, 0);
+            if (map.size() > mapMaxSize || MemoryControl.shortStatus()) map.clear();
+            map.put(hosthash, h);
+        }
+        h.error();
+    }
+
     private static Host host(final DigestURL url) {
         final String host = url.getHost();
         if (host == null) return null;
@@ -163,8 +186,11 @@ public class Latency {
         // consider so many external accesses
         waiting = Math.max(waiting, (int) (host.average() * Switchboard.getSwitchboard().getConfigFloat(SwitchboardConstants.CRAWLER_LATENCY_FACTOR, 0.5f)));
 
-        // if the number of same hosts as in the url in the loading queue is greater than MaxSameHostInQueue, then increase waiting
-        if (Switchboard.getSwitchboard().crawlQueues.hostcount(hostname) > Switchboard.getSwitchboard().getConfigInt(SwitchboardConstants.CRAWLER_MAX_SAME_HOST_IN_QUEUE, 20)) waiting += 3000;
+        // apply the adaptive rate control: faster for healthy hosts, slower after errors, but never below the minimum delta
+        waiting = Math.max(agent.minimumDelta, (int) (waiting * host.delayFactor() * nearDuplicateFactor(hosthash)));
+
+        // if the number of same hosts as in the url in the loading queue is greater than the concurrency of the host, then increase waiting
+        if (Switchboard.getSwitchboard().crawlQueues.hostcount(hostname) > host.concurrency()) waiting += 3000;
         
         // the time since last access to the domain is the basis of the remaining calculation
         final int timeSinceLastAccess = (int) (System.currentTimeMillis() - host.lastacc());
@@ -205,9 +231,12 @@ public class Latency {
 
         // use the access latency as rule how fast we can access the server
         waiting = Math.max(waiting, (int) (host.average() * Switchboard.getSwitchboard().getConfigFloat(SwitchboardConstants.CRAWLER_LATENCY_FACTOR, 0.5f)));
+
+        // apply the adaptive rate control: faster for healthy hosts, slower after errors, but never below the minimum delta
+        waiting = Math.max(agent.minimumDelta, (int) (waiting * host.delayFactor() * nearDuplicateFactor(url.hosthash())));
         
-        // if the number of same hosts as in the url in the loading queue is greater than MaxSameHostInQueue, then increase waiting
-        if (Switchboard.getSwitchboard().crawlQueues.hostcount(url.getHost()) > Switchboard.getSwitchboard().getConfigInt(SwitchboardConstants.CRAWLER_MAX_SAME_HOST_IN_QUEUE, 20)) waiting += 3000;
+        // if the number of same hosts as in the url in the loading queue is greater than the concurrency of the host, then increase waiting
+        if (Switchboard.getSwitchboard().crawlQueues.hostcount(url.getHost()) > host.concurrency()) waiting += 3000;
 
         // the time since last access to the domain is the basis of the remaining calculation
         final int timeSinceLastAccess = (int) (System.currentTimeMillis() - host.lastacc());
@@ -246,10 +275,16 @@ public class Latency {
         // consider so many external accesses
         s.append(", host.average = ").append(host.average());
         waiting = Math.max(waiting, (int) (host.average() * Switchboard.getSwitchboard().getConfigFloat(SwitchboardConstants.CRAWLER_LATENCY_FACTOR, 0.5f)));
+
+        // apply the adaptive rate control: faster for healthy hosts, slower after errors, but never below the minimum delta
+        s.append(", host.delayFactor = ").append(host.delayFactor());
+        final double nearDuplicateFactor = nearDuplicateFactor(url.hosthash());
+        if (nearDuplicateFactor > 1.0d) s.append(", nearDuplicateFactor = ").append(nearDuplicateFactor);
+        waiting = Math.max(agent.minimumDelta, (int) (waiting * host.delayFactor() * nearDuplicateFactor));
         
-        // if the number of same hosts as in the url in the loading queue is greater than MaxSameHostInQueue, then increase waiting
+        // if the number of same hosts as in the url in the loading queue is greater than the concurrency of the host, then increase waiting
         int hostcount = Switchboard.getSwitchboard().crawlQueues.hostcount(url.getHost());
-        if (hostcount > Switchboard.getSwitchboard().getConfigInt(SwitchboardConstants.CRAWLER_MAX_SAME_HOST_IN_QUEUE, 20)) {
+        if (hostcount > host.concurrency()) {
             s.append(", hostcount = ").append(hostcount);
             waiting += 5000;
         }
@@ -300,20 +335,74 @@ public class Latency {
         return sleeptime < 0 ? 0 : sleeptime;
     }
     
+    /**
+     * the initial number of urls of the same host which may be in the loader queue at the same time
+     * @return the configured value of crawler.MaxSameHostInQueue
+     */
+    private static int defaultConcurrency() {
+        final Switchboard sb = Switchboard.getSwitchboard();
+        return sb == null ? 20 : Math.max(1, sb.getConfigInt(SwitchboardConstants.CRAWLER_MAX_SAME_HOST_IN_QUEUE, 20));
+    }
+
+    /**
+     * Access statistics of a host together with an adaptive rate controller.
+     * The controller follows an additive-increase/multiplicative-decrease scheme:
+     * each fast and successful load lowers the delay factor by a small step and every tenth one raises
+     * the concurrency by one; a server error or network failure doubles the delay factor
+     * and halves the concurrency. The delay factor is applied to the computed waiting time,
+     * the crawl-delay given in the robots.txt is always respected.
+     */
+    /**
+     * compute the delay factor for hosts which delivered mostly near-duplicate documents so far
+     * @param hosthash
+     * @return 1.0 for most hosts; a factor up to NEAR_DUPLICATE_DELAY_MAX which grows with the share of near-duplicates of the host
+     */
+    private static double nearDuplicateFactor(final String hosthash) {
+        final Switchboard sb = Switchboard.getSwitchboard();
+        final NearDuplicateIndex nearDuplicates = sb == null || sb.index == null ? null : sb.index.nearDuplicates();
+        if (nearDuplicates == null) return 1.0d;
+        return nearDuplicateFactor(nearDuplicates.duplicateRatio(hosthash));
+    }
+
+    /**
+     * @param ratio the share of near-duplicate documents of a host
+     * @return the delay factor for the host
+     */
+    protected static double nearDuplicateFactor(final double ratio) {
+        if (ratio <= NEAR_DUPLICATE_HOST_RATIO) return 1.0d;
+        return 1.0d + (NEAR_DUPLICATE_DELAY_MAX - 1.0d) * (ratio - NEAR_DUPLICATE_HOST_RATIO) / (1.0d - NEAR_DUPLICATE_HOST_RATIO);
+    }
+
     public static final class Host {
+        public static final double DELAY_FACTOR_MIN = 0.5d, DELAY_FACTOR_MAX = 16.0d;
+        private static final double DELAY_FACTOR_STEP = 0.05d;
+        private static final long ERROR_RECOVERY_TIME = 60000; // no speed-up within this time after an error
+
         private AtomicLong timeacc;
         private AtomicLong lastacc;
         private AtomicInteger count;
         private final String host;
         private long robotsMinDelay;
+        private double delayFactor;
+        private int concurrency;
+        private final int concurrencyMax;
+        private final AtomicInteger errors, successes;
+        private final AtomicLong lastError;
         private Host(final String host, final long time, long robotsMinDelay) {
             this.host = host;
             this.timeacc = new AtomicLong(time);
             this.count = new AtomicInteger(1);
             this.lastacc = new AtomicLong(System.currentTimeMillis());
             this.robotsMinDelay = robotsMinDelay;
+            this.delayFactor = 1.0d;
+            this.concurrency = defaultConcurrency();
+            this.concurrencyMax = 2 * this.concurrency;
+            this.errors = new AtomicInteger(0);
+            this.successes = new AtomicInteger(0);
+            this.lastError = new AtomicLong(0);
         }
         private void update(final long time) {
+            final int average = average();
             if (this.count.get() > 100) {
                 synchronized(this) {
                     // faster adoption to new values
@@ -324,6 +413,26 @@ public class Latency {
             this.lastacc.set(System.currentTimeMillis());
             this.timeacc.addAndGet(Math.min(30000, time));
             this.count.incrementAndGet();
+
+            // additive increase: the host is healthy if it answers not much slower than on average and had no recent error
+            final int s = this.successes.incrementAndGet();
+            if (time <= 2 * average && System.currentTimeMillis() - this.lastError.get() > ERROR_RECOVERY_TIME) {
+                synchronized (this) {
+                    this.delayFactor = Math.max(DELAY_FACTOR_MIN, this.delayFactor - DELAY_FACTOR_STEP);
+                    if (s % 10 == 0) this.concurrency = Math.min(this.concurrencyMax, this.concurrency + 1);
+                }
+            }
+        }
+        private void error() {
+            // multiplicative decrease
+            this.lastacc.set(System.currentTimeMillis());
+            this.lastError.set(System.currentTimeMillis());
+            this.errors.incrementAndGet();
+            this.successes.set(0);
+            synchronized (this) {
+                this.delayFactor = Math.min(DELAY_FACTOR_MAX, this.delayFactor * 2.0d);
+                this.concurrency = Math.max(1, this.concurrency / 2);
+            }
         }
         private void update() {
             this.lastacc.set(System.currentTimeMillis());
@@ -343,6 +452,30 @@ public class Latency {
         public long robotsDelay() {
             return this.robotsMinDelay;
         }
+        /**
+         * @return the factor of the rate controller which is applied to the waiting time
+         */
+        public synchronized double delayFactor() {
+            return this.delayFactor;
+        }
+        /**
+         * @return the number of urls of this host which may be in the loader queue at the same time
+         */
+        public synchronized int concurrency() {
+            return this.concurrency;
+        }
+        /**
+         * @return the number of server errors and network failures of this host
+         */
+        public int errors() {
+            return this.errors.get();
+        }
+        /**
+         * @return the time of the last server error or network failure or 0 if there was none
+         */
+        public long lastError() {
+            return this.lastError.get();
+        }
         /**
          * Used by crawler to calculate additional access delay time for often accessed hosts
          * (access count > 10000 returns half of the range parameter) linear incrementet from 0 up to (range div 2)
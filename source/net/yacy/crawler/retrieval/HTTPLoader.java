@@ -25,6 +25,7 @@
 package net.yacy.crawler.retrieval;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -77,7 +78,7 @@ public final class HTTPLoader {
         // load fulltext of html page
         Latency.updateBeforeLoad(entry.url());
         final long start = System.currentTimeMillis();
-        final Response doc = load(entry, profile, DEFAULT_CRAWLING_RETRY_COUNT, maxFileSize, blacklistType, agent);
+        final Response doc = load(entry, profile, DEFAULT_CRAWLING_RETRY_COUNT, maxFileSize, blacklistType, agent, true);
         Latency.updateAfterLoad(entry.url(), System.currentTimeMillis() - start);
         return doc;
     }
@@ -96,6 +97,16 @@ public final class HTTPLoader {
 	public InputStream openInputStream(final Request request, CrawlProfile profile, final int retryCount,
 			final int maxFileSize, final BlacklistType blacklistType, final ClientIdentification.Agent agent)
 					throws IOException {
+		return openInputStream(request, profile, retryCount, maxFileSize, blacklistType, agent, true);
+	}
+
+	/**
+	 * @param streamToCache false if the content must not be streamed into the content-addressed cache,
+	 * i.e. because storing it failed before
+	 */
+	private InputStream openInputStream(final Request request, CrawlProfile profile, final int retryCount,
+			final int maxFileSize, final BlacklistType blacklistType, final ClientIdentification.Agent agent,
+			final boolean streamToCache) throws IOException {
 		if (retryCount < 0) {
 			this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), profile,
 					FailCategory.TEMPORARY_NETWORK_FAILURE, "retry counter exceeded", -1);
@@ -143,9 +154,15 @@ public final class HTTPLoader {
 		client.setHeader(requestHeader.entrySet());
 
 		// send request
-		client.GET(url, false);
+		try {
+			client.GET(url, false);
+		} catch (final IOException e) {
+			Latency.updateAfterError(request.url(), -1);
+			throw e;
+		}
 		final StatusLine statusline = client.getHttpResponse().getStatusLine();
 		final int statusCode = statusline.getStatusCode();
+		if (isServerError(statusCode)) Latency.updateAfterError(request.url(), statusCode);
 		final ResponseHeader responseHeader = new ResponseHeader(statusCode, client.getHttpResponse().getAllHeaders());
 		String requestURLString = request.url().toNormalform(true);
 
@@ -181,7 +198,7 @@ public final class HTTPLoader {
 
 				// retry crawling with new url
 				request.redirectURL(redirectionUrl);
-				return openInputStream(request, profile, retryCount - 1, maxFileSize, blacklistType, agent);
+				return openInputStream(request, profile, retryCount - 1, maxFileSize, blacklistType, agent, streamToCache);
 			}
 			// we don't want to follow redirects
 			this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), profile,
@@ -195,6 +212,23 @@ public final class HTTPLoader {
 			 * When content is not large (less than 1MB), we have better cache it if cache is enabled and url is not local
 			 */
 			long contentLength = client.getHttpResponse().getEntity().getContentLength();
+			if (streamToCache && profile != null && profile.storeHTCache() && Cache.isStreamable(responseHeader) && !url.isLocal()) {
+				/*
+				 * In content-addressed cache mode the content is streamed into the cache and read from its file
+				 */
+				InputStream cachedStream = null;
+				try {
+					Cache.store(url, responseHeader, client.getContentstream(), maxFileSize);
+					cachedStream = Cache.getContentStream(url.hash());
+				} catch (final IOException e) {
+					this.log.warn("cannot write " + url + " to Cache (3): " + e.getMessage(), e);
+				} finally {
+					client.finish();
+				}
+				if (cachedStream != null) return cachedStream;
+				// the stream is consumed; load the content again without the cache
+				return openInputStream(request, profile, retryCount, maxFileSize, blacklistType, agent, false);
+			}
 			if (profile != null && profile.storeHTCache() && contentLength > 0 && contentLength < (Response.CRAWLER_MAX_SIZE_TO_CACHE) && !url.isLocal()) {
 				byte[] content = null;
 				try {
@@ -289,7 +323,11 @@ public final class HTTPLoader {
 		return requestHeader;
 	}
 
-    private Response load(final Request request, CrawlProfile profile, final int retryCount, final int maxFileSize, final BlacklistType blacklistType, final ClientIdentification.Agent agent) throws IOException {
+    /**
+     * @param allowStreamToCache false if the content must not be streamed into the content-addressed cache,
+     * i.e. because storing it failed before
+     */
+    private Response load(final Request request, CrawlProfile profile, final int retryCount, final int maxFileSize, final BlacklistType blacklistType, final ClientIdentification.Agent agent, final boolean allowStreamToCache) throws IOException {
 
         if (retryCount < 0) {
             this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), profile, FailCategory.TEMPORARY_NETWORK_FAILURE, "retry counter exceeded", -1);
@@ -333,14 +371,29 @@ public final class HTTPLoader {
         client.setTimout(this.socketTimeout);
         client.setHeader(requestHeader.entrySet());
 
+        // in content-addressed cache mode the content is streamed into the cache and not loaded into the heap
+        final boolean streamToCache = allowStreamToCache && Cache.isStreamable(null) && profile != null && profile.storeHTCache() && !url.isLocal();
+
         // send request
-    	final byte[] responseBody = client.GETbytes(url, sb.getConfig(SwitchboardConstants.ADMIN_ACCOUNT_USER_NAME, "admin"), sb.getConfig(SwitchboardConstants.ADMIN_ACCOUNT_B64MD5, ""), maxFileSize, false);
+        byte[] responseBody = null;
+        try {
+            if (streamToCache) {
+                client.GET(url, false);
+            } else {
+                responseBody = client.GETbytes(url, sb.getConfig(SwitchboardConstants.ADMIN_ACCOUNT_USER_NAME, "admin"), sb.getConfig(SwitchboardConstants.ADMIN_ACCOUNT_B64MD5, ""), maxFileSize, false);
+            }
+        } catch (final IOException e) {
+            Latency.updateAfterError(request.url(), -1);
+            throw e;
+        }
         final int statusCode = client.getHttpResponse().getStatusLine().getStatusCode();
+        if (isServerError(statusCode)) Latency.updateAfterError(request.url(), statusCode);
     	final ResponseHeader responseHeader = new ResponseHeader(statusCode, client.getHttpResponse().getAllHeaders());
         String requestURLString = request.url().toNormalform(true);
 
         // check redirection
     	if (statusCode > 299 && statusCode < 310) {
+    	    if (streamToCache) client.finish();
 
     	    final DigestURL redirectionUrl = extractRedirectURL(request, profile, url, client.getHttpResponse().getStatusLine(),
 					responseHeader, requestURLString);
@@ -363,11 +416,21 @@ public final class HTTPLoader {
 
                 // retry crawling with new url
                 request.redirectURL(redirectionUrl);
-                return load(request, profile, retryCount - 1, maxFileSize, blacklistType, agent);
+                return load(request, profile, retryCount - 1, maxFileSize, blacklistType, agent, allowStreamToCache);
     	    }
             // we don't want to follow redirects
             this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), profile, FailCategory.FINAL_PROCESS_CONTEXT, "redirection not wanted", statusCode);
             throw new IOException("REJECTED UNWANTED REDIRECTION '" + client.getHttpResponse().getStatusLine() + "' for URL '" + requestURLString + "'$");
+        } else if (streamToCache) {
+            final Response cachedResponse;
+            try {
+                cachedResponse = loadToCache(request, profile, maxFileSize, client, requestHeader, responseHeader, statusCode);
+            } finally {
+                client.finish();
+            }
+            if (cachedResponse != null) return cachedResponse;
+            // the content could not be stored and the stream is consumed; load it again without the cache
+            return load(request, profile, retryCount, maxFileSize, blacklistType, agent, false);
         } else if (responseBody == null) {
     	    // no response, reject file
             this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), profile, FailCategory.TEMPORARY_NETWORK_FAILURE, "no response body", statusCode);
@@ -403,6 +466,77 @@ public final class HTTPLoader {
         }
     }
 
+    /**
+     * Stream the content of a GET response into the content-addressed cache. The returned response
+     * references the cache file and does not hold the content in the heap.
+     * @return the response or null if the content was consumed but could not be stored in the cache
+     */
+    private Response loadToCache(final Request request, final CrawlProfile profile, final int maxFileSize, final HTTPClient client,
+            final RequestHeader requestHeader, final ResponseHeader responseHeader, final int statusCode) throws IOException {
+        final String requestURLString = request.url().toNormalform(true);
+        if (statusCode != 200 && statusCode != 203) {
+            // if the response has not the right response type then reject file
+            this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), profile, FailCategory.TEMPORARY_NETWORK_FAILURE, "wrong http status code", statusCode);
+            throw new IOException("REJECTED WRONG STATUS TYPE '" + client.getHttpResponse().getStatusLine() + "' for URL '" + requestURLString + "'$");
+        }
+
+        // check the length before loading if the server has announced it
+        final long announcedLength = client.getHttpResponse().getEntity() == null ? -1 : client.getHttpResponse().getEntity().getContentLength();
+        if (maxFileSize >= 0 && announcedLength > maxFileSize) {
+            this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), profile, FailCategory.FINAL_PROCESS_CONTEXT, "file size limit exceeded", statusCode);
+            throw new IOException("REJECTED URL " + request.url() + " because file size '" + announcedLength + "' exceeds max filesize limit of " + maxFileSize + " bytes. (GET)$");
+        }
+
+        final InputStream contentStream = client.getContentstream();
+        if (contentStream == null) {
+            // no response, reject file
+            this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), profile, FailCategory.TEMPORARY_NETWORK_FAILURE, "no response body", statusCode);
+            throw new IOException("REJECTED EMPTY RESPONSE BODY '" + client.getHttpResponse().getStatusLine() + "' for URL '" + requestURLString + "'$");
+        }
+
+        final Response response = new Response(
+                request,
+                requestHeader,
+                responseHeader,
+                profile,
+                false,
+                null
+        );
+        if (response.shallStoreCacheForCrawler() == null && Cache.isStreamable(responseHeader)) {
+            // the length limit is checked again while streaming because the server may not announce it
+            try {
+                Cache.store(request.url(), responseHeader, contentStream, maxFileSize);
+            } catch (final IOException e) {
+                this.log.warn("cannot write " + request.url() + " to Cache (3): " + e.getMessage(), e);
+                return null;
+            }
+            final File contentFile = Cache.getContentFile(request.url().hash());
+            if (contentFile == null) return null;
+            ByteCount.addAccountCount(ByteCount.CRAWLER, contentFile.length());
+            response.setContentFile(contentFile);
+            return response;
+        }
+
+        // the content must not be cached, i.e. because of a noarchive header; load it into the heap
+        final byte[] content = HTTPClient.getByteArray(client.getHttpResponse().getEntity(), maxFileSize);
+        if (content == null) {
+            this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), profile, FailCategory.TEMPORARY_NETWORK_FAILURE, "no response body", statusCode);
+            throw new IOException("REJECTED EMPTY RESPONSE BODY '" + client.getHttpResponse().getStatusLine() + "' for URL '" + requestURLString + "'$");
+        }
+        ByteCount.addAccountCount(ByteCount.CRAWLER, content.length);
+        response.setContent(content);
+        return response;
+    }
+
+    /**
+     * status codes which show that the server is overloaded or broken; the crawler should back off from such hosts
+     * @param statusCode
+     * @return true for 5xx and 429 (too many requests)
+     */
+    private static boolean isServerError(final int statusCode) {
+        return statusCode >= 500 || statusCode == 429;
+    }
+
     public static Response load(final Request request, ClientIdentification.Agent agent) throws IOException {
         return load(request, agent, 3);
     }
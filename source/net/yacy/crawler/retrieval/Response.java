@@ -26,6 +26,8 @@
 
 package net.yacy.crawler.retrieval;
 
+import java.io.File;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Date;
 
@@ -39,12 +41,14 @@ import net.yacy.cora.protocol.HeaderFramework;
 import net.yacy.cora.protocol.RequestHeader;
 import net.yacy.cora.protocol.ResponseHeader;
 import net.yacy.cora.util.NumberTools;
+import net.yacy.crawler.data.Cache;
 import net.yacy.crawler.data.CrawlProfile;
 import net.yacy.crawler.data.ResultURLs.EventOrigin;
 import net.yacy.document.Document;
 import net.yacy.document.Parser;
 import net.yacy.document.TextParser;
 import net.yacy.document.VocabularyScraper;
+import net.yacy.kelondro.util.FileUtils;
 import net.yacy.search.Switchboard;
 
 public class Response {
@@ -68,6 +72,7 @@ public class Response {
     private final  ResponseHeader     responseHeader;
     private final  CrawlProfile       profile;
     private        byte[]             content;
+    private        File               contentFile;     // a file which holds the content if it is not loaded into the heap
     private        int                status;          // tracker indexing status, see status defs below
     private final  boolean            fromCache;
     
@@ -290,6 +295,7 @@ public class Response {
             return this.responseHeader.getContentLengthLong();
         }
         if (this.content != null) return this.content.length;
+        if (this.contentFile != null) return this.contentFile.length();
         // the size is unknown
         return -1;
     }
@@ -305,7 +311,38 @@ public class Response {
         }
     }
 
+    /**
+     * set a file which holds the content, i.e. a file of the content-addressed HTCache. The content is then not
+     * kept in the heap; it is parsed from the file and only read into the heap if getContent() is called.
+     * @param file the content file; it must not be modified
+     */
+    public void setContentFile(final File file) {
+        this.contentFile = file;
+        if (this.responseHeader != null && file != null && Long.parseLong(this.responseHeader.get(HeaderFramework.CONTENT_LENGTH, "0")) <= file.length()) {
+            this.responseHeader.put(HeaderFramework.CONTENT_LENGTH, Long.toString(file.length())); // repair length
+        }
+    }
+
+    /**
+     * @return the file which holds the content or null if the content is only available with getContent()
+     */
+    public File getContentFile() {
+        return this.contentFile;
+    }
+
+    /**
+     * @return true if the content is available, either in the heap or in a content file
+     */
+    public boolean hasContent() {
+        return this.content != null || (this.contentFile != null && this.contentFile.exists());
+    }
+
     public byte[] getContent() {
+        if (this.content == null && this.contentFile != null) try {
+            this.content = FileUtils.read(this.contentFile);
+        } catch (final IOException e) {
+            return null; // the file may have been removed by the cache cleanup
+        }
         return this.content;
     }
 
@@ -394,8 +431,8 @@ public class Response {
 
     public String shallStoreCacheForCrawler() {
         // check storage size: all files will be handled in RAM before storage, so they must not exceed
-        // a given size, which we consider as 1MB
-        if (size() > CRAWLER_MAX_SIZE_TO_CACHE) return "too_large_for_caching_" + size();
+        // a given size, which we consider as 1MB. The content-addressed cache streams files and has no such limit.
+        if (!Cache.isContentAddressed() && size() > CRAWLER_MAX_SIZE_TO_CACHE) return "too_large_for_caching_" + size();
 
         // check status code
         if (!validResponseStatus()) {
@@ -859,7 +896,11 @@ public class Response {
         final String supportError = TextParser.supports(url(), this.responseHeader == null ? null : this.responseHeader.getContentType());
         if (supportError != null) throw new Parser.Failure("no parser support:" + supportError, url());
         try {
-            return TextParser.parseSource(url(), this.responseHeader == null ? null : this.responseHeader.getContentType(), this.responseHeader == null ? StandardCharsets.UTF_8.name() : this.responseHeader.getCharacterEncoding(), new VocabularyScraper(), this.request.timezoneOffset(), this.request.depth(), this.content);
+            final String charset = this.responseHeader == null ? StandardCharsets.UTF_8.name() : this.responseHeader.getCharacterEncoding();
+            if (this.content == null && this.contentFile != null) {
+                return TextParser.parseSource(url(), this.responseHeader == null ? null : this.responseHeader.getContentType(), charset, new VocabularyScraper(), this.request.timezoneOffset(), this.request.depth(), this.contentFile);
+            }
+            return TextParser.parseSource(url(), this.responseHeader == null ? null : this.responseHeader.getContentType(), charset, new VocabularyScraper(), this.request.timezoneOffset(), this.request.depth(), this.content);
         } catch (final Exception e) {
             return null;
         }
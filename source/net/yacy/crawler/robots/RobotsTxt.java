@@ -30,12 +30,17 @@ import java.io.IOException;
 import java.net.MalformedURLException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
 import net.yacy.cora.document.id.DigestURL;
@@ -49,6 +54,7 @@ import net.yacy.crawler.retrieval.Request;
 import net.yacy.crawler.retrieval.Response;
 import net.yacy.data.WorkTables;
 import net.yacy.kelondro.blob.BEncodedHeap;
+import net.yacy.kelondro.util.NamePrefixThreadFactory;
 import net.yacy.repository.LoaderDispatcher;
 import net.yacy.repository.Blacklist.BlacklistType;
 
@@ -64,15 +70,44 @@ public class RobotsTxt {
     //private static final HashSet<String> loadedRobots = new HashSet<String>(); // only for debugging
     private final WorkTables tables;
     private final LoaderDispatcher loader;
+    private final RobotsTxtCache cache;
+    private final ThreadPoolExecutor prefetchExecutor;
+    private final Set<String> prefetchPending;
+
+    public static final long DEFAULT_CACHE_MAXBYTES = 32L * 1024L * 1024L;
+    public static final int DEFAULT_PREFETCH_THREADS = 20;
+    private static final int PREFETCH_QUEUE_SIZE = 10000;
+    private static final long CACHE_TTL = 24L * 60L * 60L * 1000L;
+    private static final long CACHE_NEGATIVE_TTL = 60L * 60L * 1000L;
 
     private static class DomSync {
     	private DomSync() {}
     }
 
     public RobotsTxt(final WorkTables worktables, LoaderDispatcher loader) {
+        this(worktables, loader, DEFAULT_CACHE_MAXBYTES, DEFAULT_PREFETCH_THREADS);
+    }
+
+    /**
+     * create the robots.txt access object
+     * @param worktables the tables which contain the persistent robots table
+     * @param loader the loader which is used to fetch robots.txt files
+     * @param cacheMaxBytes maximum number of bytes that the in-memory cache of parsed entries may use
+     * @param prefetchThreads maximum number of concurrent robots.txt loads triggered by ensureExist
+     */
+    public RobotsTxt(final WorkTables worktables, LoaderDispatcher loader, final long cacheMaxBytes, final int prefetchThreads) {
         this.syncObjects = new ConcurrentHashMap<String, DomSync>();
         this.tables = worktables;
         this.loader = loader;
+        this.cache = new RobotsTxtCache(cacheMaxBytes, CACHE_TTL, CACHE_NEGATIVE_TTL);
+        this.prefetchPending = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        this.prefetchExecutor = new ThreadPoolExecutor(
+                Math.max(1, prefetchThreads),
+                Math.max(1, prefetchThreads), 10,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(PREFETCH_QUEUE_SIZE),
+                new NamePrefixThreadFactory("Robots.txt:ensureExist"));
+        this.prefetchExecutor.allowCoreThreadTimeOut(true);
         try {
             this.tables.getHeap(WorkTables.TABLE_ROBOTS_NAME);
             //log.info("initiated robots table: " + this.tables.getHeap(WorkTables.TABLE_ROBOTS_NAME).getFile());
@@ -87,6 +122,7 @@ public class RobotsTxt {
     public void clear() throws IOException {
         log.info("clearing robots table");
         this.tables.getHeap(WorkTables.TABLE_ROBOTS_NAME).clear();
+        this.cache.clear();
         this.syncObjects.clear();
     }
 
@@ -94,6 +130,46 @@ public class RobotsTxt {
         return this.tables.getHeap(WorkTables.TABLE_ROBOTS_NAME).size();
     }
 
+    /**
+     * @return the number of parsed entries in the in-memory cache
+     */
+    public int cacheSize() {
+        return this.cache.size();
+    }
+
+    /**
+     * @return the number of cached entries for hosts without a loadable robots.txt
+     */
+    public int cacheNegativeSize() {
+        return this.cache.negativeSize();
+    }
+
+    /**
+     * @return the estimated number of bytes used by the in-memory cache
+     */
+    public long cacheBytes() {
+        return this.cache.bytes();
+    }
+
+    public long cacheHits() {
+        return this.cache.hits();
+    }
+
+    public long cacheMisses() {
+        return this.cache.misses();
+    }
+
+    /**
+     * @return the number of robots.txt loads which are waiting for a prefetch thread
+     */
+    public int prefetchQueueSize() {
+        return this.prefetchExecutor.getQueue().size();
+    }
+
+    public void close() {
+        this.prefetchExecutor.shutdownNow();
+    }
+
     public RobotsTxtEntry getEntry(final MultiProtocolURL theURL, final ClientIdentification.Agent agent) {
         if (theURL == null) throw new IllegalArgumentException();
         if (!theURL.getProtocol().startsWith("http")) return null;
@@ -102,88 +178,122 @@ public class RobotsTxt {
 
     public RobotsTxtEntry getEntry(final String urlHostPort, final ClientIdentification.Agent agent, final boolean fetchOnlineIfNotAvailableOrNotFresh) {
             // this method will always return a non-null value
-        RobotsTxtEntry robotsTxt4Host = null;
-        Map<String, byte[]> record;
+        RobotsTxtEntry robotsTxt4Host = this.cache.get(urlHostPort);
+        if (robotsTxt4Host != null && (!fetchOnlineIfNotAvailableOrNotFresh || isFresh(robotsTxt4Host, 7*24*60*60*1000))) {
+            return robotsTxt4Host;
+        }
+
         BEncodedHeap robotsTable = null;
         try {
             robotsTable = this.tables.getHeap(WorkTables.TABLE_ROBOTS_NAME);
         } catch (final IOException e1) {
             log.severe("tables not available", e1);
         }
-        try {
-            record = robotsTable.get(robotsTable.encodedKey(urlHostPort));
-        } catch (final SpaceExceededException e) {
-            log.warn("memory exhausted", e);
-            record = null;
-        } catch (final IOException e) {
-            log.warn("cannot get robotstxt from table", e);
-            record = null;
-        }
-        if (record != null) robotsTxt4Host = new RobotsTxtEntry(urlHostPort, record);
+        robotsTxt4Host = getTableEntry(urlHostPort, robotsTable);
 
-        if (fetchOnlineIfNotAvailableOrNotFresh && (
-             robotsTxt4Host == null ||
-             robotsTxt4Host.getLoadedDate() == null ||
-             System.currentTimeMillis() - robotsTxt4Host.getLoadedDate().getTime() > 7*24*60*60*1000
-           )) {
+        if (fetchOnlineIfNotAvailableOrNotFresh && !isFresh(robotsTxt4Host, 7*24*60*60*1000)) {
 
             // make or get a synchronization object
-        	DomSync syncObj = this.syncObjects.get(urlHostPort);
-            if (syncObj == null) {
-                syncObj = new DomSync();
-                this.syncObjects.put(urlHostPort, syncObj);
-            }
+            DomSync syncObj = getSyncObject(urlHostPort);
 
             // we can now synchronize for each host separately
             synchronized (syncObj) {
                 // if we have not found any data or the data is older than 7 days, we need to load it from the remote server
                 // check the robots table again for all threads that come here because they waited for another one
                 // to complete a download
-                try {
-                    record = robotsTable.get(robotsTable.encodedKey(urlHostPort));
-                } catch (final SpaceExceededException e) {
-                    log.warn("memory exhausted", e);
-                    record = null;
-                } catch (final IOException e) {
-                    log.warn("cannot get robotstxt from table", e);
-                    record = null;
-                }
-                if (record != null) robotsTxt4Host = new RobotsTxtEntry(urlHostPort, record);
-                if (robotsTxt4Host != null &&
-                    robotsTxt4Host.getLoadedDate() != null &&
-                    System.currentTimeMillis() - robotsTxt4Host.getLoadedDate().getTime() <= 1*24*60*60*1000) {
+                final RobotsTxtEntry reloaded = getTableEntry(urlHostPort, robotsTable);
+                if (reloaded != null) robotsTxt4Host = reloaded;
+                if (isFresh(robotsTxt4Host, 1*24*60*60*1000)) {
                     return robotsTxt4Host;
                 }
+                robotsTxt4Host = loadEntry(urlHostPort, robotsTxt4Host, robotsTable, agent);
+            }
+        }
+
+        return robotsTxt4Host;
+    }
 
-                // generating the proper url to download the robots txt
-                DigestURL robotsURL = robotsURL(urlHostPort);
+    private static boolean isFresh(final RobotsTxtEntry entry, final long maxAge) {
+        return entry != null &&
+               entry.getLoadedDate() != null &&
+               System.currentTimeMillis() - entry.getLoadedDate().getTime() <= maxAge;
+    }
 
-                Response response = null;
-                if (robotsURL != null) {
-                    if (log.isFine()) log.fine("Trying to download the robots.txt file from URL '" + robotsURL + "'.");
-                    Request request = new Request(robotsURL, null);
-                    try {
-                        response = RobotsTxt.this.loader.load(request, CacheStrategy.NOCACHE, null, agent);
-                    } catch (final Throwable e) {
-                        log.info("Trying to download the robots.txt file from URL '" + robotsURL.toNormalform(false) + "' failed - " + e.getMessage());
-                        response = null;
-                    }
-                }
+    private DomSync getSyncObject(final String urlHostPort) {
+        DomSync syncObj = this.syncObjects.get(urlHostPort);
+        if (syncObj == null) {
+            syncObj = new DomSync();
+            final DomSync other = this.syncObjects.putIfAbsent(urlHostPort, syncObj);
+            if (other != null) syncObj = other;
+        }
+        return syncObj;
+    }
 
-                if (response == null) {
-                    processOldEntry(robotsTxt4Host, robotsURL, robotsTable);
-                } else {
-                    processNewEntry(robotsURL, response, agent.robotIDs);
-                }
+    /**
+     * read an entry from the robots table and put it into the cache
+     * @param urlHostPort
+     * @param robotsTable
+     * @return the entry or null if the table does not contain an entry for the host
+     */
+    private RobotsTxtEntry getTableEntry(final String urlHostPort, final BEncodedHeap robotsTable) {
+        if (robotsTable == null) return null;
+        Map<String, byte[]> record;
+        try {
+            record = robotsTable.get(robotsTable.encodedKey(urlHostPort));
+        } catch (final SpaceExceededException e) {
+            log.warn("memory exhausted", e);
+            record = null;
+        } catch (final IOException e) {
+            log.warn("cannot get robotstxt from table", e);
+            record = null;
+        }
+        if (record == null) return null;
+        final RobotsTxtEntry entry = new RobotsTxtEntry(urlHostPort, record);
+        this.cache.put(urlHostPort, entry, false);
+        return entry;
+    }
+
+    /**
+     * load the robots.txt of a host from the remote server and store the result into the robots table and the cache.
+     * This must be called while the synchronization object of the host is held.
+     * @param urlHostPort
+     * @param oldEntry an existing entry for the host or null
+     * @param robotsTable
+     * @param agent
+     * @return the new entry or the refreshed old entry if the robots.txt could not be loaded
+     */
+    private RobotsTxtEntry loadEntry(final String urlHostPort, final RobotsTxtEntry oldEntry, final BEncodedHeap robotsTable, final ClientIdentification.Agent agent) {
+        // generating the proper url to download the robots txt
+        DigestURL robotsURL = robotsURL(urlHostPort);
+
+        Response response = null;
+        if (robotsURL != null) {
+            if (log.isFine()) log.fine("Trying to download the robots.txt file from URL '" + robotsURL + "'.");
+            Request request = new Request(robotsURL, null);
+            try {
+                response = RobotsTxt.this.loader.load(request, CacheStrategy.NOCACHE, null, agent);
+            } catch (final Throwable e) {
+                log.info("Trying to download the robots.txt file from URL '" + robotsURL.toNormalform(false) + "' failed - " + e.getMessage());
+                response = null;
             }
         }
 
-        return robotsTxt4Host;
+        final RobotsTxtEntry entry;
+        if (response == null) {
+            if (robotsURL == null || robotsTable == null) return oldEntry;
+            entry = processOldEntry(oldEntry, robotsURL, robotsTable);
+            this.cache.put(urlHostPort, entry, oldEntry == null);
+        } else {
+            entry = processNewEntry(robotsURL, response, agent.robotIDs);
+            this.cache.put(urlHostPort, entry, false);
+        }
+        return entry;
     }
-    
+
     public void delete(final MultiProtocolURL theURL) {
         final String urlHostPort = getHostPort(theURL);
         if (urlHostPort == null) return;
+        this.cache.remove(urlHostPort);
         final BEncodedHeap robotsTable;
         try {
             robotsTable = this.tables.getHeap(WorkTables.TABLE_ROBOTS_NAME);
@@ -197,11 +307,21 @@ public class RobotsTxt {
         } catch (IOException e) {
         }
     }
-    
+
+    /**
+     * make sure that a robots.txt entry for the host of the given url exists.
+     * If the entry is neither cached nor in the robots table, it is loaded.
+     * Concurrent loads are done with a bounded prefetch thread pool; if the pool queue is
+     * full the load is skipped and done on demand with the next getEntry call.
+     * @param theURL
+     * @param agent
+     * @param concurrent if true the entry is loaded in the prefetch pool, otherwise in the calling thread
+     */
     public void ensureExist(final MultiProtocolURL theURL, final ClientIdentification.Agent agent, boolean concurrent) {
         if (theURL.isLocal()) return;
         final String urlHostPort = getHostPort(theURL);
         if (urlHostPort == null) return;
+        if (this.cache.get(urlHostPort) != null) return;
         final BEncodedHeap robotsTable;
         try {
             robotsTable = this.tables.getHeap(WorkTables.TABLE_ROBOTS_NAME);
@@ -209,47 +329,35 @@ public class RobotsTxt {
             log.severe("tables not available", e1);
             return;
         }
-        if (robotsTable != null && robotsTable.containsKey(robotsTable.encodedKey(urlHostPort))) return;
-        Thread t = new Thread() {
+        if (robotsTable == null || robotsTable.containsKey(robotsTable.encodedKey(urlHostPort))) return;
+        if (!this.prefetchPending.add(urlHostPort)) return; // a load for this host is already scheduled
+        final Runnable load = new Runnable() {
             @Override
             public void run(){
-                this.setName("Robots.txt:ensureExist(" + theURL.toNormalform(true) + ")");
-                // make or get a synchronization object
-                DomSync syncObj = RobotsTxt.this.syncObjects.get(urlHostPort);
-                if (syncObj == null) {
-                    syncObj = new DomSync();
-                    RobotsTxt.this.syncObjects.put(urlHostPort, syncObj);
-                }
-                // we can now synchronize for each host separately
-                synchronized (syncObj) {
-                    if (robotsTable.containsKey(robotsTable.encodedKey(urlHostPort))) return;
-
-                    // generating the proper url to download the robots txt
-                    DigestURL robotsURL = robotsURL(urlHostPort);
-                    
-                    Response response = null;
-                    if (robotsURL != null) {
-                        if (log.isFine()) log.fine("Trying to download the robots.txt file from URL '" + robotsURL + "'.");
-                        Request request = new Request(robotsURL, null);
-                        try {
-                            response = RobotsTxt.this.loader.load(request, CacheStrategy.NOCACHE, null, agent);
-                        } catch (final IOException e) {
-                            response = null;
-                        }
-                    }
-
-                    if (response == null) {
-                        processOldEntry(null, robotsURL, robotsTable);
-                    } else {
-                        processNewEntry(robotsURL, response, agent.robotIDs);
+                try {
+                    // we can now synchronize for each host separately
+                    synchronized (getSyncObject(urlHostPort)) {
+                        if (robotsTable.containsKey(robotsTable.encodedKey(urlHostPort))) return;
+                        loadEntry(urlHostPort, null, robotsTable, agent);
                     }
+                } finally {
+                    RobotsTxt.this.prefetchPending.remove(urlHostPort);
                 }
             }
         };
-        if (concurrent) t.start(); else t.run();
+        if (concurrent) {
+            try {
+                this.prefetchExecutor.execute(load);
+            } catch (final RejectedExecutionException e) {
+                // the prefetch queue is full; the entry is loaded on demand with the next getEntry call
+                this.prefetchPending.remove(urlHostPort);
+            }
+        } else {
+            load.run();
+        }
     }
 
-    private void processOldEntry(RobotsTxtEntry robotsTxt4Host, DigestURL robotsURL, BEncodedHeap robotsTable) {
+    private RobotsTxtEntry processOldEntry(RobotsTxtEntry robotsTxt4Host, DigestURL robotsURL, BEncodedHeap robotsTable) {
         // no robots.txt available, make an entry to prevent that the robots loading is done twice
         if (robotsTxt4Host == null) {
             // generate artificial entry
@@ -275,9 +383,10 @@ public class RobotsTxt {
             try {clear();} catch (final IOException e) {}
             addEntry(robotsTxt4Host);
         }
+        return robotsTxt4Host;
     }
     
-    private void processNewEntry(DigestURL robotsURL, Response response, final String[] thisAgents) {
+    private RobotsTxtEntry processNewEntry(DigestURL robotsURL, Response response, final String[] thisAgents) {
         final byte[] robotsTxt = response.getContent();
         //Log.logInfo("RobotsTxt", "robots of " + robotsURL.toNormalform(true, true) + ":\n" + ((robotsTxt == null) ? "null" : UTF8.String(robotsTxt))); // debug TODO remove
         RobotsTxtParser parserResult;
@@ -307,6 +416,7 @@ public class RobotsTxt {
                     parserResult.crawlDelayMillis(),
                     parserResult.agentName());
         addEntry(robotsTxt4Host);
+        return robotsTxt4Host;
     }
     
     private String addEntry(final RobotsTxtEntry entry) {
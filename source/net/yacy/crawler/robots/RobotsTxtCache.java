@@ -0,0 +1,154 @@
+/**
+ *  RobotsTxtCache.java
+ *  part of YaCy, http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.crawler.robots;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-memory cache of parsed robots.txt entries.
+ * The robots table in the WorkTables stores the entries in bencoded form, which must be decoded
+ * and parsed again for each access. This cache holds the parsed objects, is limited by the
+ * estimated heap usage of the entries and evicts the least recently used entries first.
+ * Entries for hosts where no robots.txt could be loaded (404, timeout, connection refused)
+ * are stored as negative entries with their own, shorter time-to-live.
+ */
+class RobotsTxtCache {
+
+    private static class Item {
+        private final RobotsTxtEntry entry;
+        private final long expires;
+        private final int size;
+        private final boolean negative;
+        private Item(final RobotsTxtEntry entry, final long expires, final int size, final boolean negative) {
+            this.entry = entry;
+            this.expires = expires;
+            this.size = size;
+            this.negative = negative;
+        }
+    }
+
+    private final LinkedHashMap<String, Item> map;
+    private final long maxBytes, ttl, negativeTtl;
+    private long bytes;
+    private long hits, misses, negativeCount;
+
+    /**
+     * create a robots.txt cache
+     * @param maxBytes the maximum estimated number of bytes that the cached entries may allocate
+     * @param ttl time-to-live of entries in milliseconds
+     * @param negativeTtl time-to-live of negative entries in milliseconds
+     */
+    protected RobotsTxtCache(final long maxBytes, final long ttl, final long negativeTtl) {
+        this.map = new LinkedHashMap<String, Item>(1000, 0.75f, true); // access order for the LRU eviction
+        this.maxBytes = maxBytes;
+        this.ttl = ttl;
+        this.negativeTtl = negativeTtl;
+        this.bytes = 0;
+        this.hits = 0;
+        this.misses = 0;
+        this.negativeCount = 0;
+    }
+
+    /**
+     * get an entry from the cache
+     * @param hostPort the host:port key of the entry
+     * @return the cached entry or null if the entry is not cached or expired
+     */
+    protected synchronized RobotsTxtEntry get(final String hostPort) {
+        final Item item = this.map.get(hostPort);
+        if (item == null) {
+            this.misses++;
+            return null;
+        }
+        if (item.expires < System.currentTimeMillis()) {
+            removeItem(hostPort);
+            this.misses++;
+            return null;
+        }
+        this.hits++;
+        return item.entry;
+    }
+
+    /**
+     * put an entry into the cache
+     * @param hostPort the host:port key of the entry
+     * @param entry the parsed robots.txt entry
+     * @param negative true if the entry was generated because no robots.txt could be loaded
+     */
+    protected synchronized void put(final String hostPort, final RobotsTxtEntry entry, final boolean negative) {
+        if (entry == null || this.maxBytes <= 0) return;
+        final int size = entry.estimatedMemory() + 2 * hostPort.length();
+        if (size > this.maxBytes) return;
+        removeItem(hostPort);
+        final long expires = System.currentTimeMillis() + (negative ? this.negativeTtl : this.ttl);
+        this.map.put(hostPort, new Item(entry, expires, size, negative));
+        this.bytes += size;
+        if (negative) this.negativeCount++;
+
+        // evict least recently used entries until the memory limit is respected
+        final Iterator<Map.Entry<String, Item>> i = this.map.entrySet().iterator();
+        while (this.bytes > this.maxBytes && i.hasNext()) {
+            final Item evicted = i.next().getValue();
+            this.bytes -= evicted.size;
+            if (evicted.negative) this.negativeCount--;
+            i.remove();
+        }
+    }
+
+    protected synchronized void remove(final String hostPort) {
+        removeItem(hostPort);
+    }
+
+    private void removeItem(final String hostPort) {
+        final Item item = this.map.remove(hostPort);
+        if (item != null) {
+            this.bytes -= item.size;
+            if (item.negative) this.negativeCount--;
+        }
+    }
+
+    protected synchronized void clear() {
+        this.map.clear();
+        this.bytes = 0;
+        this.negativeCount = 0;
+    }
+
+    protected synchronized int size() {
+        return this.map.size();
+    }
+
+    protected synchronized int negativeSize() {
+        return (int) this.negativeCount;
+    }
+
+    protected synchronized long bytes() {
+        return this.bytes;
+    }
+
+    protected synchronized long hits() {
+        return this.hits;
+    }
+
+    protected synchronized long misses() {
+        return this.misses;
+    }
+}
@@ -28,7 +28,9 @@
 
 package net.yacy.crawler.robots;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
@@ -58,7 +60,8 @@ public class RobotsTxtEntry {
     private final Map<String, byte[]> mem;
     private final List<String> allowPathList, denyPathList, sitemapList;
     private final String hostName, agentName;
-    private String info; // this is filled if robots disallowed access; then the reason is noted there;
+    private String[] denyPrefixes; // sorted and prefix-free compilation of the denyPathList
+    private volatile String info; // this is filled if robots disallowed access; then the reason is noted there;
 
     protected RobotsTxtEntry(final String hostName, final Map<String, byte[]> mem) {
         this.hostName = hostName.toLowerCase();
@@ -72,6 +75,7 @@ public class RobotsTxtEntry {
         this.sitemapList = new LinkedList<String>();
         fillMultiValue(this.sitemapList, SITEMAP_LIST);
         this.agentName = this.mem.containsKey(AGENT_NAME) ? UTF8.String(this.mem.get(AGENT_NAME)) : null;
+        this.denyPrefixes = compilePrefixes(this.denyPathList);
     }
 
     private void fillMultiValue(List<String> list, String listName) {
@@ -116,6 +120,28 @@ public class RobotsTxtEntry {
         readMultiValue(allowPathList,    this.allowPathList, ALLOW_PATH_LIST);
         readMultiValue(disallowPathList, this.denyPathList,  DISALLOW_PATH_LIST);
         readMultiValue(sitemapList,      this.sitemapList,   SITEMAP_LIST);
+        this.denyPrefixes = compilePrefixes(this.denyPathList);
+    }
+
+    /**
+     * compile a list of path prefixes into a sorted array where no element is a prefix of another element.
+     * In such an array the only candidate for a prefix of a given path is the greatest element which is
+     * less or equal to the path; the match can therefore be done with a single binary search.
+     * @param pathList the list of prefixes
+     * @return a sorted and prefix-free array of the prefixes
+     */
+    private static String[] compilePrefixes(final List<String> pathList) {
+        if (pathList.isEmpty()) return new String[0];
+        final List<String> sorted = new ArrayList<String>(pathList);
+        Collections.sort(sorted);
+        final List<String> compiled = new ArrayList<String>(sorted.size());
+        String last = null;
+        for (final String element: sorted) {
+            if (last != null && element.startsWith(last)) continue; // already covered by a shorter prefix
+            compiled.add(element);
+            last = element;
+        }
+        return compiled.toArray(new String[compiled.size()]);
     }
 
     private void readMultiValue(List<String> externallist, List<String> internallist, String listName) {
@@ -168,6 +194,22 @@ public class RobotsTxtEntry {
         return this.sitemapList;
     }
 
+    /**
+     * estimate the heap space which is used by this entry
+     * @return the number of bytes which are approximately allocated by this object
+     */
+    protected int estimatedMemory() {
+        int m = 64 + 2 * this.hostName.length();
+        for (Map.Entry<String, byte[]> entry: this.mem.entrySet()) {
+            m += 48 + 2 * entry.getKey().length() + entry.getValue().length;
+        }
+        // the path lists hold each value again as string, the compiled prefixes share the strings
+        for (final String s: this.allowPathList) m += 40 + 2 * s.length();
+        for (final String s: this.denyPathList) m += 40 + 2 * s.length();
+        for (final String s: this.sitemapList) m += 40 + 2 * s.length();
+        return m + 8 * this.denyPrefixes.length;
+    }
+
     protected Date getLoadedDate() {
         if (this.mem.containsKey(LOADED_DATE)) {
             return new Date(ByteArray.parseDecimal(this.mem.get(LOADED_DATE)));
@@ -225,13 +267,12 @@ public class RobotsTxtEntry {
         // escaping all occurences of ; because this char is used as special char in the Robots DB
         else  path = RobotsTxt.ROBOTS_DB_PATH_SEPARATOR_MATCHER.matcher(path).replaceAll("%3B");
 
-        for (final String element : this.denyPathList) {
-
-            // disallow rule
-            if (path.startsWith(element)) {
-                this.info = "path '" + path + "' starts with '" + element + "' from deny path list = " + this.denyPathList.toString();
-                return true;
-            }
+        // disallow rule: find the greatest prefix which is less or equal to the path
+        int p = Arrays.binarySearch(this.denyPrefixes, path);
+        if (p < 0) p = -p - 2; // the insertion point minus one
+        if (p >= 0 && path.startsWith(this.denyPrefixes[p])) {
+            this.info = "path '" + path + "' starts with '" + this.denyPrefixes[p] + "' from deny path list = " + this.denyPathList.toString();
+            return true;
         }
         this.info = "path '" + path + "' does not start with any element from deny path list";
         return false;
@@ -79,6 +79,10 @@ public class Jetty9YaCySecurityHandler extends ConstraintSecurityHandler {
         if (!protectedPage && !sb.getConfigBool(SwitchboardConstants.PUBLIC_SEARCHPAGE, true)) { 
             protectedPage = pathInContext.startsWith("/solr/") || pathInContext.startsWith("/gsa/");                        
         }
+        // the metrics are only public if this is configured
+        if (!protectedPage && pathInContext.equals("/metrics")) {
+            protectedPage = !sb.getConfigBool(SwitchboardConstants.SERVER_METRICS_PUBLIC, false);
+        }
 
         if (protectedPage) {
             if (grantedForLocalhost) {
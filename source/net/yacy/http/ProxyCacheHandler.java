@@ -24,7 +24,11 @@
 //
 package net.yacy.http;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Map.Entry;
 
 import javax.servlet.ServletException;
@@ -32,6 +36,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import net.yacy.cora.document.id.DigestURL;
+import net.yacy.cora.protocol.HeaderFramework;
 import net.yacy.cora.protocol.RequestHeader;
 import net.yacy.cora.protocol.ResponseHeader;
 import net.yacy.crawler.data.Cache;
@@ -39,6 +44,7 @@ import net.yacy.crawler.retrieval.Response;
 import net.yacy.http.servlets.YaCyDefaultServlet;
 
 import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.HttpOutput;
 import org.eclipse.jetty.server.Request;
 
 /**
@@ -46,14 +52,44 @@ import org.eclipse.jetty.server.Request;
  */
 public class ProxyCacheHandler extends AbstractRemoteHandler implements Handler {
 
-    private void handleRequestFromCache(@SuppressWarnings("unused") HttpServletRequest request, HttpServletResponse response, ResponseHeader cachedResponseHeader, byte[] content) throws IOException {
-
+    private static void sendCachedResponseHeader(HttpServletResponse response, ResponseHeader cachedResponseHeader) {
         // TODO: check if-modified
         for (Entry<String, String> entry : cachedResponseHeader.entrySet()) {
             response.addHeader(entry.getKey(), entry.getValue());
         }
         response.setStatus(HttpServletResponse.SC_NON_AUTHORITATIVE_INFORMATION);
-        response.getOutputStream().write(content);
+    }
+
+    private void handleRequestFromCache(@SuppressWarnings("unused") HttpServletRequest request, HttpServletResponse response, ResponseHeader cachedResponseHeader, byte[] content) throws IOException {
+        sendCachedResponseHeader(response, cachedResponseHeader);
+        if (response.getOutputStream() instanceof HttpOutput) {
+            ((HttpOutput) response.getOutputStream()).sendContent(ByteBuffer.wrap(content));
+        } else {
+            response.getOutputStream().write(content);
+        }
+        // we handled this request, break out of handler chain
+    }
+
+    /**
+     * serve a cache entry which is stored in a separate file (content-addressed cache) by a transfer
+     * from the file channel, without reading the content into the heap
+     */
+    private void handleRequestFromCache(@SuppressWarnings("unused") HttpServletRequest request, HttpServletResponse response, ResponseHeader cachedResponseHeader, File content) throws IOException {
+        final FileInputStream fis = new FileInputStream(content);
+        try {
+            final FileChannel channel = fis.getChannel();
+            sendCachedResponseHeader(response, cachedResponseHeader);
+            response.setHeader(HeaderFramework.CONTENT_LENGTH, Long.toString(channel.size()));
+            if (response.getOutputStream() instanceof HttpOutput) {
+                ((HttpOutput) response.getOutputStream()).sendContent(channel);
+            } else {
+                final byte[] buffer = new byte[65536];
+                int c;
+                while ((c = fis.read(buffer)) > 0) response.getOutputStream().write(buffer, 0, c);
+            }
+        } finally {
+            fis.close();
+        }
         // we handled this request, break out of handler chain
     }
     
@@ -84,8 +120,15 @@ public class ProxyCacheHandler extends AbstractRemoteHandler implements Handler
                         sb.crawler.defaultProxyProfile,
                         false,
                         null);
+                if (!cachedResponse.isFreshForProxy()) return;
+                final File cacheFile = Cache.getContentFile(url.hash());
+                if (cacheFile != null) {
+                    handleRequestFromCache(request, response, cachedResponseHeader, cacheFile);
+                    baseRequest.setHandled(true);
+                    return;
+                }
                 byte[] cacheContent = Cache.getContent(url.hash());
-                if (cacheContent != null && cachedResponse.isFreshForProxy()) {
+                if (cacheContent != null) {
                     handleRequestFromCache(request, response, cachedResponseHeader, cacheContent);
                     baseRequest.setHandled(true);
                 }
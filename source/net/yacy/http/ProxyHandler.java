@@ -25,11 +25,15 @@
 
 package net.yacy.http;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.SocketException;
 import java.util.Date;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -47,8 +51,11 @@ import net.yacy.document.TextParser;
 import net.yacy.crawler.data.Cache;
 import net.yacy.crawler.retrieval.Response;
 import net.yacy.http.servlets.YaCyDefaultServlet;
+import net.yacy.kelondro.util.NamePrefixThreadFactory;
+import net.yacy.search.SwitchboardConstants;
 import net.yacy.server.http.HTTPDProxyHandler;
 import net.yacy.server.http.MultiOutputStream;
+import net.yacy.server.http.SpoolOutputStream;
 
 import org.apache.http.Header;
 import org.apache.http.HttpResponse;
@@ -62,11 +69,30 @@ import org.eclipse.jetty.server.Request;
 public class ProxyHandler extends AbstractRemoteHandler implements Handler {
 
     protected int timeout = 10000;
+    private int spoolMemory = 262144;
+    private long spoolMaxSize = 268435456L;
+    private ThreadPoolExecutor storeExecutor = null; // writes the spooled responses to the cache and the indexer
 
     @Override
     protected void doStart() throws Exception {
         super.doStart();
         timeout = sb.getConfigInt("proxy.clientTimeout", 10000);
+        spoolMemory = sb.getConfigInt(SwitchboardConstants.PROXY_CACHE_SPOOL_MEMORY, 262144);
+        spoolMaxSize = sb.getConfigLong(SwitchboardConstants.PROXY_CACHE_SPOOL_MAXSIZE, 268435456L);
+        final int storeThreads = Math.max(1, sb.getConfigInt(SwitchboardConstants.PROXY_CACHE_STORE_THREADS, 2));
+        storeExecutor = new ThreadPoolExecutor(
+                storeThreads,
+                storeThreads, 10,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(Math.max(1, sb.getConfigInt(SwitchboardConstants.PROXY_CACHE_STORE_QUEUESIZE, 200))),
+                new NamePrefixThreadFactory("ProxyHandler.storeToCache"));
+        storeExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        if (storeExecutor != null) storeExecutor.shutdown();
+        super.doStop();
     }
 
 	private void convertHeaderToJetty(HttpResponse in, HttpServletResponse out) {
@@ -98,29 +124,68 @@ public class ProxyHandler extends AbstractRemoteHandler implements Handler {
         }
 	}
 	
-    private void storeToCache(final Response yacyResponse, final byte[] cacheArray) {
-        final Thread t = new Thread() {
-	    @Override
-            public void run() {
-                if (yacyResponse == null) return;
-	        this.setName("ProxyHandler.storeToCache(" + yacyResponse.url().toNormalform(true) + ")");
-	           
-	        // the cache does either not exist or is (supposed to be) stale
-	        deleteFromCache(yacyResponse.url().hash());
-	           
-	        if (cacheArray == null || cacheArray.length <= 0) return;
-	           
-	        yacyResponse.setContent(cacheArray);
-	        try {
-	            Cache.store(yacyResponse.url(), yacyResponse.getResponseHeader(), cacheArray);
-	            sb.toIndexer(yacyResponse);
-	        } catch (IOException e) {
-	            //log.logWarning("cannot write " + response.url() + " to Cache (1): " + e.getMessage(), e);
-	        }
-	    }
-	};
-	t.setPriority(Thread.MIN_PRIORITY);
-	t.start();
+    /**
+     * schedule the storage of a proxied response to the cache and the indexer.
+     * If too many responses are waiting for storage, the response is not cached.
+     * @param yacyResponse the response
+     * @param spool the spooled content of the response; it is discarded after storage
+     */
+    private void storeToCache(final Response yacyResponse, final SpoolOutputStream spool) {
+        spool.close();
+        if (yacyResponse == null || spool.isDiscarded()) {
+            spool.discard();
+            return;
+        }
+        try {
+            storeExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        storeSpool(yacyResponse, spool);
+                    } finally {
+                        spool.discard();
+                    }
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            spool.discard();
+            HTTPDProxyHandler.proxyLog.fine("cache store queue full, not cached: " + yacyResponse.url().toNormalform(true));
+        }
+    }
+
+    private void storeSpool(final Response yacyResponse, final SpoolOutputStream spool) {
+        // the cache does either not exist or is (supposed to be) stale
+        deleteFromCache(yacyResponse.url().hash());
+
+        if (spool.length() <= 0) return;
+
+        try {
+            if (spool.isInMemory() || !Cache.isStreamable(yacyResponse.getResponseHeader())) {
+                // the legacy cache and the indexer hold the whole content in the heap; do not load huge spool files
+                if (!spool.isInMemory() && spool.length() > sb.getConfigLong("crawler.http.maxFileSize", 10485760L)) {
+                    HTTPDProxyHandler.proxyLog.fine("response too large, not cached: " + yacyResponse.url().toNormalform(true));
+                    return;
+                }
+                final byte[] cacheArray = spool.getBytes();
+                yacyResponse.setContent(cacheArray);
+                Cache.store(yacyResponse.url(), yacyResponse.getResponseHeader(), cacheArray);
+            } else {
+                // large content is streamed from the spool file to the content-addressed cache; the indexer reads it from the cache
+                final InputStream source = spool.getInputStream();
+                try {
+                    Cache.store(yacyResponse.url(), yacyResponse.getResponseHeader(), source);
+                } finally {
+                    source.close();
+                }
+                if (!Cache.hasContent(yacyResponse.url().hash())) {
+                    if (spool.length() > sb.getConfigLong("crawler.http.maxFileSize", 10485760L)) return;
+                    yacyResponse.setContent(spool.getBytes());
+                }
+            }
+            sb.toIndexer(yacyResponse);
+        } catch (IOException e) {
+            //log.logWarning("cannot write " + response.url() + " to Cache (1): " + e.getMessage(), e);
+        }
     }
 
 	@Override
@@ -193,16 +258,21 @@ public class ProxyHandler extends AbstractRemoteHandler implements Handler {
                      */
                     ((storeHTCache) || (supportError != null))
             ) {
-                // we don't write actually into a file, only to RAM, and schedule writing the file.
-            	int l = responseHeaderLegacy.size();
-                final ByteArrayOutputStream byteStream = new ByteArrayOutputStream((l < 32) ? 32 : l);                
-                final OutputStream toClientAndMemory = new MultiOutputStream(new OutputStream[] {response.getOutputStream(), byteStream});
+                // the content is spooled to memory or a temporary file while it is sent to the client; writing to the cache is scheduled afterwards
+                final long l = responseHeaderLegacy.getContentLengthLong();
+                final SpoolOutputStream spool = new SpoolOutputStream(l < 0 || l > Integer.MAX_VALUE ? 0 : (int) l, spoolMemory, spoolMaxSize);
+                final OutputStream toClientAndSpool = new MultiOutputStream(new OutputStream[] {response.getOutputStream(), spool});
                 convertHeaderToJetty(clientresponse, response);
                 response.setStatus(statusCode);
-                client.writeTo(toClientAndMemory);
+                try {
+                    client.writeTo(toClientAndSpool);
+                } catch (final IOException e) {
+                    spool.discard();
+                    throw e;
+                }
                 
                 // cached bytes
-                storeToCache(yacyResponse, byteStream.toByteArray());
+                storeToCache(yacyResponse, spool);
             } else {
                 // no caching
                 /*if (log.isFine()) log.logFine(reqID +" "+ url.toString() + " not cached." +
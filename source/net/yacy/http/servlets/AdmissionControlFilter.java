@@ -0,0 +1,382 @@
+/**
+ *  AdmissionControlFilter
+ *  part of YaCy, http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.http.servlets;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import net.yacy.cora.protocol.Domains;
+import net.yacy.cora.util.Memory;
+import net.yacy.kelondro.util.MemoryControl;
+import net.yacy.search.Switchboard;
+import net.yacy.search.SwitchboardConstants;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.ContextHandler;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+/**
+ * Admission control for the requests to the web server. Each request is assigned to a request class;
+ * each class has its own concurrency limit and waiting queue, so that i.e. a burst of DHT transfers cannot
+ * occupy the threads which are needed to answer the search requests of users and other peers.
+ *
+ * The concurrency limit of a class adapts to the measured response time: it is decreased if the average
+ * response time exceeds the target latency of the class and increased again while the class is saturated
+ * and fast enough. If the system load per core or the memory situation indicates an overload, the classes
+ * with a low priority are shed first: their requests are only admitted up to the minimum concurrency and
+ * further requests are rejected with 503 instead of being queued. Requests from localhost are never shed.
+ *
+ * A request which waits in a queue holds a thread of the web server. Therefore the concurrency limits and the
+ * queues of all classes are sized as shares of the thread pool of the web server which sum up to the pool size
+ * (less some threads for the connectors): waiting requests of a low-priority class can never occupy the threads
+ * which are reserved for the searches.
+ *
+ * The filter is switched on with server.admission = true and configured in web.xml.
+ */
+public class AdmissionControlFilter implements Filter {
+
+    public static enum RequestClass {
+        // the order is the priority: the first class is shed last.
+        // The maximum limit and the queue size are given in percent of the server threads; all shares sum up to 100.
+        SEARCH(       4, 30, 10, 2000, Double.MAX_VALUE), // user searches from the web interface and the search apis
+        PEER_SEARCH(  4, 20, 10, 3000, Double.MAX_VALUE), // remote searches and the other peer-to-peer protocol calls like hello
+        ADMIN(        2,  8,  4, 3000, 1.0),              // servlets of the web interface and the administration apis
+        STATIC(       4,  8,  4,  500, 1.0),              // files like images, style sheets and scripts
+        DHT_TRANSFER( 1,  4,  2, 5000, 0.75);             // index transfers from other peers
+
+        private final int minLimit, maxShare, queueShare, targetLatency;
+        private final double shedLoad; // the share of the maximum load at which the class is shed
+
+        private RequestClass(final int minLimit, final int maxShare, final int queueShare, final int targetLatency, final double shedLoad) {
+            this.minLimit = minLimit;
+            this.maxShare = maxShare;
+            this.queueShare = queueShare;
+            this.targetLatency = targetLatency;
+            this.shedLoad = shedLoad;
+        }
+    }
+
+    private static final long LOAD_CHECK_INTERVAL = 1000; // milliseconds between two measurements of the system load
+    private static final long DECREASE_INTERVAL = 1000; // minimum time between two decreases of a limit
+    private static final double DECREASE_FACTOR = 0.8;
+    private static final String[] STATIC_EXTENSIONS = new String[]{".css", ".js", ".png", ".gif", ".jpg", ".jpeg", ".ico", ".svg", ".woff", ".woff2", ".ttf", ".eot", ".map", ".txt"};
+
+    private static final int DEFAULT_SERVER_THREADS = 200; // the default size of the jetty thread pool
+    private static final int CONNECTOR_THREADS = 16; // threads of the thread pool which are used by the acceptors and selectors of the connectors
+
+    private static volatile Map<RequestClass, Limit> limits = limits(DEFAULT_SERVER_THREADS);
+    private static volatile boolean enabled = false;
+    private static volatile double maxLoad = 2.0d; // the system load per core which is regarded as overload
+    private static volatile long maxWait = 10000; // the maximum time that a request waits in a queue
+    private static volatile double pressure = 0.0d; // the current system load per core relative to maxLoad
+    private static volatile long pressureTime = 0;
+
+    /**
+     * the adaptive concurrency limit and the queue of one request class
+     */
+    public static class Limit {
+        private final RequestClass requestClass;
+        private final int minLimit, maxLimit, queueSize, targetLatency;
+        private final double shedLoad;
+        private double limit, latency;
+        private int active, queued;
+        private long lastDecrease;
+        private final AtomicLong admitted, rejected, shed, timedOut;
+
+        Limit(final RequestClass requestClass, final int minLimit, final int maxLimit, final int queueSize, final int targetLatency, final double shedLoad) {
+            this.requestClass = requestClass;
+            this.minLimit = Math.max(1, minLimit);
+            this.maxLimit = Math.max(this.minLimit, maxLimit);
+            this.queueSize = Math.max(0, queueSize);
+            this.targetLatency = targetLatency;
+            this.shedLoad = shedLoad;
+            this.limit = this.maxLimit;
+            this.latency = 0.0d;
+            this.active = 0;
+            this.queued = 0;
+            this.lastDecrease = 0;
+            this.admitted = new AtomicLong(0);
+            this.rejected = new AtomicLong(0);
+            this.shed = new AtomicLong(0);
+            this.timedOut = new AtomicLong(0);
+        }
+
+        /**
+         * admit a request
+         * @param pressure the current load relative to the maximum load
+         * @param sheddable true if the request may be shed
+         * @param maxWait the maximum time to wait in the queue
+         * @return true if the request is admitted and release() must be called after it is processed
+         * @throws InterruptedException
+         */
+        synchronized boolean acquire(final double pressure, final boolean sheddable, final long maxWait) throws InterruptedException {
+            final boolean overload = sheddable && pressure >= this.shedLoad;
+            final int currentLimit = overload ? this.minLimit : (int) this.limit;
+            if (this.active < currentLimit) {
+                this.active++;
+                this.admitted.incrementAndGet();
+                return true;
+            }
+            if (overload) {
+                this.shed.incrementAndGet();
+                return false;
+            }
+            if (this.queued >= this.queueSize) {
+                this.rejected.incrementAndGet();
+                return false;
+            }
+            this.queued++;
+            try {
+                final long deadline = System.currentTimeMillis() + maxWait;
+                while (this.active >= (int) this.limit) {
+                    final long wait = deadline - System.currentTimeMillis();
+                    if (wait <= 0) {
+                        this.timedOut.incrementAndGet();
+                        return false;
+                    }
+                    this.wait(wait);
+                }
+                this.active++;
+                this.admitted.incrementAndGet();
+                return true;
+            } finally {
+                this.queued--;
+            }
+        }
+
+        /**
+         * release a request and adapt the limit to its response time
+         * @param time the response time in milliseconds
+         */
+        synchronized void release(final long time) {
+            final boolean saturated = this.queued > 0 || this.active >= (int) this.limit;
+            this.active--;
+            this.latency = this.latency == 0.0d ? time : 0.9d * this.latency + 0.1d * time;
+            final long now = System.currentTimeMillis();
+            if (this.latency > this.targetLatency) {
+                if (now - this.lastDecrease >= DECREASE_INTERVAL) {
+                    this.limit = Math.max(this.minLimit, this.limit * DECREASE_FACTOR);
+                    this.lastDecrease = now;
+                }
+            } else if (saturated) {
+                this.limit = Math.min(this.maxLimit, this.limit + 1.0d / this.limit);
+            }
+            this.notify();
+        }
+
+        public RequestClass requestClass() {
+            return this.requestClass;
+        }
+
+        public synchronized int limit() {
+            return (int) this.limit;
+        }
+
+        public synchronized int active() {
+            return this.active;
+        }
+
+        public synchronized int queued() {
+            return this.queued;
+        }
+
+        public int queueSize() {
+            return this.queueSize;
+        }
+
+        /**
+         * @return the average response time in milliseconds (exponentially weighted)
+         */
+        public synchronized long latency() {
+            return (long) this.latency;
+        }
+
+        public long admitted() {
+            return this.admitted.get();
+        }
+
+        /**
+         * @return the number of requests which were rejected because the queue was full
+         */
+        public long rejected() {
+            return this.rejected.get();
+        }
+
+        /**
+         * @return the number of requests which were rejected because of overload
+         */
+        public long shed() {
+            return this.shed.get();
+        }
+
+        /**
+         * @return the number of requests which waited too long in the queue
+         */
+        public long timedOut() {
+            return this.timedOut.get();
+        }
+    }
+
+    @Override
+    public void init(final FilterConfig filterConfig) throws ServletException {
+        limits = limits(serverThreads(filterConfig));
+        final Switchboard sb = Switchboard.getSwitchboard();
+        if (sb == null) return;
+        enabled = sb.getConfigBool(SwitchboardConstants.SERVER_ADMISSION, true);
+        maxLoad = Math.max(0.1d, Double.parseDouble(sb.getConfig(SwitchboardConstants.SERVER_ADMISSION_MAXLOAD, "2.0")));
+        maxWait = sb.getConfigLong(SwitchboardConstants.SERVER_ADMISSION_MAXWAIT, 10000);
+    }
+
+    @Override
+    public void doFilter(final ServletRequest request, final ServletResponse response, final FilterChain chain) throws IOException, ServletException {
+        if (!enabled || !(request instanceof HttpServletRequest)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        final HttpServletRequest hrequest = (HttpServletRequest) request;
+        final RequestClass requestClass = classify(hrequest);
+        if (requestClass == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        final Limit limit = limits.get(requestClass);
+        final boolean sheddable = !Domains.isLocalhost(hrequest.getRemoteAddr());
+        final boolean admitted;
+        try {
+            admitted = limit.acquire(pressure(), sheddable, maxWait);
+        } catch (final InterruptedException e) {
+            ((HttpServletResponse) response).sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "interrupted");
+            return;
+        }
+        if (!admitted) {
+            final HttpServletResponse hresponse = (HttpServletResponse) response;
+            hresponse.setHeader("Retry-After", "5");
+            hresponse.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "server busy");
+            return;
+        }
+        final long start = System.currentTimeMillis();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            limit.release(System.currentTimeMillis() - start);
+        }
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+    /**
+     * assign a request to a request class
+     * @param request
+     * @return the request class or null if the request is not subject to admission control
+     */
+    public static RequestClass classify(final HttpServletRequest request) {
+        final String path = request.getRequestURI() == null ? "/" : request.getRequestURI();
+        if (path.startsWith("/yacysearch.stream")) return null; // long-living event streams would distort the response time
+        if (path.equals("/metrics")) return null; // the monitoring must be answered especially when the server is overloaded
+        if (path.startsWith("/yacy/")) {
+            if (path.startsWith("/yacy/transferRWI") || path.startsWith("/yacy/transferURL")) return RequestClass.DHT_TRANSFER;
+            return RequestClass.PEER_SEARCH;
+        }
+        if (path.startsWith("/solr/")) {
+            // remote searches of other peers are marked with a partitions attribute
+            return request.getParameter("partitions") == null ? RequestClass.SEARCH : RequestClass.PEER_SEARCH;
+        }
+        if (path.startsWith("/yacysearch") || path.startsWith("/yacyinteractive") || path.startsWith("/suggest") ||
+            path.startsWith("/gsa/") || path.startsWith("/opensearch") || path.startsWith("/index.")) return RequestClass.SEARCH;
+        final String lower = path.toLowerCase();
+        for (final String ext: STATIC_EXTENSIONS) {
+            if (lower.endsWith(ext)) return RequestClass.STATIC;
+        }
+        return RequestClass.ADMIN;
+    }
+
+    /**
+     * create the limits of the request classes for a server thread pool
+     * @param serverThreads the maximum number of threads of the web server
+     * @return the limits of all request classes, ordered by their priority
+     */
+    static Map<RequestClass, Limit> limits(final int serverThreads) {
+        final int threads = Math.max(serverThreads - Math.max(CONNECTOR_THREADS, serverThreads / 10), RequestClass.values().length);
+        final Map<RequestClass, Limit> l = new EnumMap<RequestClass, Limit>(RequestClass.class);
+        for (final RequestClass rc: RequestClass.values()) {
+            l.put(rc, new Limit(rc, rc.minLimit, threads * rc.maxShare / 100, threads * rc.queueShare / 100, rc.targetLatency, rc.shedLoad));
+        }
+        return l;
+    }
+
+    /**
+     * @param filterConfig
+     * @return the maximum number of threads of the web server which runs the filter
+     */
+    private static int serverThreads(final FilterConfig filterConfig) {
+        final ContextHandler context = filterConfig == null ? null : ContextHandler.getContextHandler(filterConfig.getServletContext());
+        final Server server = context == null ? null : context.getServer();
+        if (server != null && server.getThreadPool() instanceof ThreadPool.SizedThreadPool) {
+            return ((ThreadPool.SizedThreadPool) server.getThreadPool()).getMaxThreads();
+        }
+        return DEFAULT_SERVER_THREADS;
+    }
+
+    /**
+     * compute the load of the system relative to the maximum load. If the memory is short, the system is regarded as overloaded.
+     * @return the load relative to maxLoad
+     */
+    private static double pressure() {
+        final long now = System.currentTimeMillis();
+        if (now - pressureTime < LOAD_CHECK_INTERVAL) return pressure;
+        pressureTime = now;
+        final double load = Memory.load();
+        double p = load < 0 ? 0.0d : load / Memory.cores() / maxLoad;
+        if (MemoryControl.shortStatus()) p = Math.max(p, 1.0d);
+        pressure = p;
+        return p;
+    }
+
+    /**
+     * @return the limits of all request classes, ordered by their priority
+     */
+    public static Map<RequestClass, Limit> limits() {
+        return limits;
+    }
+
+    /**
+     * @return the current load of the system relative to the maximum load
+     */
+    public static double currentPressure() {
+        return pressure();
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+}
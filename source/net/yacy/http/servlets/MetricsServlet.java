@@ -0,0 +1,53 @@
+/**
+ *  MetricsServlet.java
+ *  part of YaCy, http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.http.servlets;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import net.yacy.cora.util.Metrics;
+
+/**
+ * Exports the metrics of the Metrics registry for monitoring servers like Prometheus.
+ * The OpenMetrics format is written if the client accepts application/openmetrics-text,
+ * otherwise the Prometheus text format 0.0.4.
+ * Access is restricted to the admin, unless server.metrics.public is true (see Jetty9YaCySecurityHandler).
+ */
+public class MetricsServlet extends HttpServlet {
+
+    private static final long serialVersionUID = -3120527476350735126L;
+
+    @Override
+    protected void doGet(final HttpServletRequest request, final HttpServletResponse response) throws ServletException, IOException {
+        final String accept = request.getHeader("Accept");
+        final boolean openMetrics = accept != null && accept.contains("application/openmetrics-text");
+        response.setContentType(openMetrics ? Metrics.CONTENT_TYPE_OPENMETRICS : Metrics.CONTENT_TYPE_TEXT);
+        response.setHeader("Cache-Control", "no-cache");
+        final Writer out = new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8);
+        Metrics.write(out, openMetrics);
+    }
+}
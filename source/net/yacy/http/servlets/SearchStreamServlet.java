@@ -0,0 +1,190 @@
+/**
+ *  SearchStreamServlet.java
+ *  part of YaCy, http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.http.servlets;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import net.yacy.cora.date.ISO8601Formatter;
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.sorting.ScoreMap;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.cora.util.JSONException;
+import net.yacy.cora.util.JSONObject;
+import net.yacy.kelondro.data.meta.URIMetadataNode;
+import net.yacy.search.query.SearchEvent;
+import net.yacy.search.query.SearchEventCache;
+import net.yacy.search.snippet.TextSnippet;
+
+/**
+ * Streams the results of a search event as server-sent events (text/event-stream).
+ * A search page opens one stream for the result positions of a page instead of requesting each
+ * result with a separate yacysearchitem request. The results are written as soon as the search event
+ * has them, together with updates of the navigators:
+ * <ul>
+ * <li>event: result - one search result, including its snippet; the id is the result position</li>
+ * <li>event: navigation - the top entries of the navigators</li>
+ * <li>event: done - the end of the stream with the result counts</li>
+ * </ul>
+ * Parameters are the eventID of the search event (as given to yacysearchitem), the offset of the first
+ * result position, the number of results (count) and the maximum time of the stream in milliseconds (timeout).
+ */
+public class SearchStreamServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 7960138632207431372L;
+
+    private static final int MAX_COUNT = 100;
+    private static final long MAX_TIMEOUT = 30000;
+    private static final long NAVIGATION_INTERVAL = 1000; // the minimum time between two navigation updates in milliseconds
+    private static final int NAVIGATION_MAXCOUNT = 10;
+
+    @Override
+    protected void doGet(final HttpServletRequest request, final HttpServletResponse response) throws ServletException, IOException {
+        final SearchEvent event = SearchEventCache.getEvent(request.getParameter("eventID") == null ? "" : request.getParameter("eventID"));
+        if (event == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "search event not found");
+            return;
+        }
+        final int offset = Math.max(0, getInt(request, "offset", event.query.offset));
+        final int count = Math.max(1, Math.min(MAX_COUNT, getInt(request, "count", event.query.itemsPerPage())));
+        final long timeout = Math.max(1000, Math.min(MAX_TIMEOUT, getInt(request, "timeout", 10000)));
+
+        response.setContentType("text/event-stream");
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader("Cache-Control", "no-cache");
+        response.setStatus(HttpServletResponse.SC_OK);
+        final Writer out = new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8);
+
+        final long deadline = System.currentTimeMillis() + timeout;
+        long navigationVersion = -1, navigationTime = 0;
+        int position = offset;
+        try {
+            while (position < offset + count) {
+                final long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) break;
+                final URIMetadataNode node = event.oneResult(position, remaining);
+                if (node == null) break;
+                writeEvent(out, "result", Integer.toString(position), result(event, node, position));
+                position++;
+                final long now = System.currentTimeMillis();
+                if (now - navigationTime >= NAVIGATION_INTERVAL) {
+                    final long version = event.resultVersion();
+                    if (version != navigationVersion) {
+                        writeEvent(out, "navigation", null, navigation(event));
+                        navigationVersion = version;
+                        navigationTime = now;
+                    }
+                }
+                out.flush();
+            }
+            writeEvent(out, "navigation", null, navigation(event));
+            final JSONObject done = new JSONObject();
+            done.put("itemscount", position - offset);
+            done.put("totalcount", event.getResultCount());
+            done.put("localResourceSize", event.local_rwi_stored.get() + event.local_solr_stored.get());
+            done.put("remoteResourceSize", event.remote_rwi_stored.get() + event.remote_solr_stored.get());
+            done.put("remotePeerCount", event.remote_rwi_peerCount.get() + event.remote_solr_peerCount.get());
+            writeEvent(out, "done", null, done);
+            out.flush();
+        } catch (final JSONException e) {
+            ConcurrentLog.logException(e);
+        } catch (final IOException e) {
+            // the client closed the connection
+        } finally {
+            out.close();
+        }
+    }
+
+    private static int getInt(final HttpServletRequest request, final String key, final int dflt) {
+        final String s = request.getParameter(key);
+        if (s == null) return dflt;
+        try {
+            return Integer.parseInt(s.trim());
+        } catch (final NumberFormatException e) {
+            return dflt;
+        }
+    }
+
+    private static void writeEvent(final Writer out, final String type, final String id, final JSONObject data) throws IOException {
+        out.write("event: ");
+        out.write(type);
+        out.write('\n');
+        if (id != null) {
+            out.write("id: ");
+            out.write(id);
+            out.write('\n');
+        }
+        out.write("data: ");
+        out.write(data.toString()); // JSON strings do not contain line breaks
+        out.write("\n\n");
+    }
+
+    private static JSONObject result(final SearchEvent event, final URIMetadataNode node, final int position) throws JSONException {
+        final JSONObject result = new JSONObject();
+        result.put("position", position);
+        result.put("urlhash", ASCII.String(node.hash()));
+        result.put("link", node.urlstring());
+        result.put("title", node.title());
+        final TextSnippet snippet = node.textSnippet();
+        result.put("description", snippet == null ? "" : snippet.descriptionline(event.query.getQueryGoal()));
+        result.put("host", node.url().getHost() == null ? "" : node.url().getHost());
+        result.put("mimetype", node.mime() == null ? "" : node.mime());
+        result.put("size", node.filesize());
+        result.put("date", ISO8601Formatter.FORMATTER.format(node.moddate()));
+        result.put("ranking", node.score());
+        return result;
+    }
+
+    private static JSONObject navigation(final SearchEvent event) throws JSONException {
+        final JSONObject navigation = new JSONObject();
+        navigator(navigation, "hosts", event.hostNavigator);
+        navigator(navigation, "authors", event.authorNavigator);
+        navigator(navigation, "collections", event.collectionNavigator);
+        navigator(navigation, "namespace", event.namespaceNavigator);
+        navigator(navigation, "protocol", event.protocolNavigator);
+        navigator(navigation, "filetype", event.filetypeNavigator);
+        navigator(navigation, "language", event.languageNavigator);
+        for (final Map.Entry<String, ScoreMap<String>> vocabulary: event.vocabularyNavigator.entrySet()) {
+            navigator(navigation, "vocabulary_" + vocabulary.getKey(), vocabulary.getValue());
+        }
+        return navigation;
+    }
+
+    private static void navigator(final JSONObject navigation, final String name, final ScoreMap<String> navigator) throws JSONException {
+        if (navigator == null || navigator.isEmpty()) return;
+        final JSONObject entries = new JSONObject();
+        final Iterator<String> i = navigator.keys(false);
+        int c = 0;
+        while (c++ < NAVIGATION_MAXCOUNT && i.hasNext()) {
+            final String key = i.next();
+            entries.put(key, navigator.get(key));
+        }
+        navigation.put(name, entries);
+    }
+}
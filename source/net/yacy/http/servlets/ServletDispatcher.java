@@ -0,0 +1,201 @@
+/**
+ *  ServletDispatcher.java
+ *  part of YaCy, http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.http.servlets;
+
+import java.io.File;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import net.yacy.cora.protocol.RequestHeader;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.server.serverClassLoader;
+import net.yacy.server.serverObjects;
+import net.yacy.server.serverSwitch;
+
+/**
+ * The dispatcher of the htroot servlet classes. The respond(RequestHeader, serverObjects, serverSwitch) method
+ * of each servlet class is resolved once into a method handle which is held for the runtime of the peer, so that
+ * a request neither loads the class again nor calls the method by reflection with an argument array.
+ * For each servlet the dispatcher records the number of calls, the errors and a histogram of the response times.
+ */
+public final class ServletDispatcher {
+
+    private static final long[] BUCKET_LIMITS = new long[]{1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, Long.MAX_VALUE}; // upper limits of the time buckets in milliseconds
+    private static final MethodType RESPOND = MethodType.methodType(Object.class, RequestHeader.class, serverObjects.class, serverSwitch.class);
+
+    private static final serverClassLoader provider = new serverClassLoader(/*this.getClass().getClassLoader()*/);
+    private static final ConcurrentHashMap<File, Servlet> servlets = new ConcurrentHashMap<File, Servlet>();
+
+    /**
+     * the response time statistics of a servlet
+     */
+    public static class Statistics {
+        private final AtomicLong calls, errors, time, maxTime;
+        private final AtomicLongArray histogram;
+
+        private Statistics() {
+            this.calls = new AtomicLong(0);
+            this.errors = new AtomicLong(0);
+            this.time = new AtomicLong(0);
+            this.maxTime = new AtomicLong(0);
+            this.histogram = new AtomicLongArray(BUCKET_LIMITS.length);
+        }
+
+        private void add(final long time, final boolean error) {
+            this.calls.incrementAndGet();
+            if (error) this.errors.incrementAndGet();
+            this.time.addAndGet(time);
+            long max;
+            while (time > (max = this.maxTime.get()) && !this.maxTime.compareAndSet(max, time)) {}
+            int b = 0;
+            while (time > BUCKET_LIMITS[b]) b++;
+            this.histogram.incrementAndGet(b);
+        }
+
+        public long calls() {
+            return this.calls.get();
+        }
+
+        public long errors() {
+            return this.errors.get();
+        }
+
+        /**
+         * @return the average response time in milliseconds
+         */
+        public long average() {
+            final long calls = this.calls.get();
+            return calls == 0 ? 0 : this.time.get() / calls;
+        }
+
+        /**
+         * @return the maximum response time in milliseconds
+         */
+        public long max() {
+            return this.maxTime.get();
+        }
+
+        /**
+         * estimate a response time from the histogram
+         * @param quantile the share of calls which are expected to be answered in the returned time
+         * @return the upper limit of the histogram bucket where the quantile is reached
+         */
+        public long latency(final double quantile) {
+            long total = 0;
+            for (int i = 0; i < this.histogram.length(); i++) total += this.histogram.get(i);
+            if (total == 0) return 0;
+            long sum = 0;
+            for (int i = 0; i < this.histogram.length() - 1; i++) {
+                sum += this.histogram.get(i);
+                if (sum >= total * quantile) return BUCKET_LIMITS[i];
+            }
+            return this.maxTime.get();
+        }
+    }
+
+    private static class Servlet {
+        private final String name;
+        private final MethodHandle respond;
+        private final Statistics statistics;
+
+        private Servlet(final String name, final MethodHandle respond) {
+            this.name = name;
+            this.respond = respond;
+            this.statistics = new Statistics();
+        }
+    }
+
+    /**
+     * resolve the respond method of a servlet class; the method is resolved only once for each class file
+     * @param classFile the servlet class file
+     * @param name the name of the servlet for the statistics
+     * @return the servlet
+     * @throws InvocationTargetException if the class or the respond method does not exist
+     */
+    private static Servlet servlet(final File classFile, final String name) throws InvocationTargetException {
+        Servlet servlet = servlets.get(classFile);
+        if (servlet != null) return servlet;
+        try {
+            final Class<?> c = provider.loadClass(classFile);
+            final Method m = c.getMethod("respond", RequestHeader.class, serverObjects.class, serverSwitch.class);
+            servlet = new Servlet(name, MethodHandles.publicLookup().unreflect(m).asType(RESPOND));
+        } catch (final ClassNotFoundException e) {
+            ConcurrentLog.severe("FILEHANDLER","YaCyDefaultServlet: class " + classFile + " is missing:" + e.getMessage());
+            throw new InvocationTargetException(e, "class " + classFile + " is missing:" + e.getMessage());
+        } catch (final NoSuchMethodException e) {
+            ConcurrentLog.severe("FILEHANDLER","YaCyDefaultServlet: method 'respond' not found in class " + classFile + ": " + e.getMessage());
+            throw new InvocationTargetException(e, "method 'respond' not found in class " + classFile + ": " + e.getMessage());
+        } catch (final IllegalAccessException e) {
+            ConcurrentLog.severe("FILEHANDLER","YaCyDefaultServlet: method 'respond' not accessible in class " + classFile + ": " + e.getMessage());
+            throw new InvocationTargetException(e, "method 'respond' not accessible in class " + classFile + ": " + e.getMessage());
+        }
+        final Servlet s0 = servlets.putIfAbsent(classFile, servlet);
+        return s0 == null ? servlet : s0;
+    }
+
+    /**
+     * call the respond method of a servlet
+     * @param classFile the servlet class file
+     * @param name the name of the servlet for the statistics, i.e. the path of the servlet
+     * @param header the request header
+     * @param post the request arguments
+     * @param env the switchboard
+     * @return the result of the servlet
+     * @throws InvocationTargetException if the servlet cannot be resolved or throws an exception
+     */
+    public static Object invoke(final File classFile, final String name, final RequestHeader header, final serverObjects post, final serverSwitch env) throws InvocationTargetException {
+        final Servlet servlet = servlet(classFile, name);
+        final long start = System.nanoTime();
+        boolean error = true;
+        try {
+            final Object result = servlet.respond.invokeExact(header, post, env);
+            error = false;
+            return result;
+        } catch (final Throwable e) {
+            throw new InvocationTargetException(e);
+        } finally {
+            servlet.statistics.add((System.nanoTime() - start) / 1000000L, error);
+        }
+    }
+
+    /**
+     * @return the statistics of all servlets which had been called, ordered by the servlet name
+     */
+    public static Map<String, Statistics> statistics() {
+        final Map<String, Statistics> statistics = new TreeMap<String, Statistics>();
+        for (final Servlet servlet: servlets.values()) statistics.put(servlet.name, servlet.statistics);
+        return statistics;
+    }
+
+    /**
+     * @return the number of resolved servlets
+     */
+    public static int size() {
+        return servlets.size();
+    }
+}
@@ -31,6 +31,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
@@ -42,6 +43,7 @@ import javax.servlet.http.HttpServletResponse;
 import net.yacy.cora.federate.solr.Ranking;
 import net.yacy.cora.federate.solr.connector.EmbeddedSolrConnector;
 import net.yacy.cora.federate.solr.connector.SolrConnector;
+import net.yacy.cora.federate.solr.responsewriter.ColumnarResponseWriter;
 import net.yacy.cora.federate.solr.responsewriter.EnhancedXMLResponseWriter;
 import net.yacy.cora.federate.solr.responsewriter.GSAResponseWriter;
 import net.yacy.cora.federate.solr.responsewriter.GrepHTMLResponseWriter;
@@ -63,6 +65,7 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.solr.common.SolrDocumentList;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.CursorMarkParams;
 import org.apache.solr.common.params.DisMaxParams;
 import org.apache.solr.common.params.MultiMapSolrParams;
 import static org.apache.solr.common.params.MultiMapSolrParams.addParam;
@@ -70,7 +73,7 @@ import org.apache.solr.common.util.NamedList;
 import org.apache.solr.core.SolrCore;
 import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.request.SolrRequestInfo;
-import org.apache.solr.response.BinaryResponseWriter;
+import org.apache.solr.response.BinaryQueryResponseWriter;
 import org.apache.solr.response.QueryResponseWriter;
 import org.apache.solr.response.ResultContext;
 import org.apache.solr.response.SolrQueryResponse;
@@ -106,8 +109,12 @@ public class SolrSelectServlet extends HttpServlet {
         RESPONSE_WRITER.put("opensearch", opensearchResponseWriter); //try http://localhost:8090/solr/select?wt=rss&q=olympia&hl=true&hl.fl=text_t,h1,h2
         RESPONSE_WRITER.put("yjson", new YJsonResponseWriter()); //try http://localhost:8090/solr/select?wt=json&q=olympia&hl=true&hl.fl=text_t,h1,h2
         RESPONSE_WRITER.put("gsa", new GSAResponseWriter());
+        RESPONSE_WRITER.put("columnar", new ColumnarResponseWriter()); // a compact binary format for bulk reads, try http://localhost:8090/solr/select?q=*:*&rows=1000&wt=columnar&cursorMark=*
     }
 
+    private final static String ID_FIELD = CollectionSchema.id.getSolrFieldName();
+    private final static Pattern ID_SORT = Pattern.compile("(^|,)\\s*" + ID_FIELD + "\\s+(asc|desc)");
+
     @Override
     public void service(ServletRequest request, ServletResponse response) throws IOException, ServletException {
 
@@ -161,6 +168,17 @@ public class SolrSelectServlet extends HttpServlet {
             } 
             mmsp.getMap().put(CommonParams.ROWS, new String[]{Integer.toString(Math.min(mmsp.getInt(CommonParams.ROWS, 10), (authenticated) ? 100000000 : 100))});            
             
+            // deep paging with a cursor requires a sort on the unique key and start = 0
+            if (mmsp.getMap().containsKey(CursorMarkParams.CURSOR_MARK_PARAM)) {
+                final String sort = mmsp.get(CommonParams.SORT, "").trim();
+                if (sort.length() == 0) {
+                    mmsp.getMap().put(CommonParams.SORT, new String[]{ID_FIELD + " asc"});
+                } else if (!ID_SORT.matcher(sort).find()) {
+                    mmsp.getMap().put(CommonParams.SORT, new String[]{sort + "," + ID_FIELD + " asc"});
+                }
+                mmsp.getMap().put(CommonParams.START, new String[]{"0"});
+            }
+
             // set ranking according to profile number if ranking attributes are not given in the request
             Ranking ranking = sb.index.fulltext().getDefaultConfiguration().getRanking(profileNr);
             if (!mmsp.getMap().containsKey(CommonParams.SORT) && !mmsp.getMap().containsKey(DisMaxParams.BQ) && !mmsp.getMap().containsKey(DisMaxParams.BF) && !mmsp.getMap().containsKey("boost")) {
@@ -252,8 +270,8 @@ public class SolrSelectServlet extends HttpServlet {
                 }
 
                 // write response body
-                if (responseWriter instanceof BinaryResponseWriter) {
-                    ((BinaryResponseWriter) responseWriter).write(response.getOutputStream(), req, rsp);
+                if (responseWriter instanceof BinaryQueryResponseWriter) {
+                    ((BinaryQueryResponseWriter) responseWriter).write(response.getOutputStream(), req, rsp);
                 } else {
                     out = new FastWriter(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8));
                     responseWriter.write(out, req, rsp);
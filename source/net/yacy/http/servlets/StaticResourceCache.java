@@ -0,0 +1,280 @@
+/**
+ *  StaticResourceCache.java
+ *  part of YaCy, http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.http.servlets;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import net.yacy.cora.order.Digest;
+import net.yacy.kelondro.util.FileUtils;
+
+import org.eclipse.jetty.http.DateGenerator;
+import org.eclipse.jetty.http.HttpContent;
+import org.eclipse.jetty.http.MimeTypes;
+import org.eclipse.jetty.util.resource.Resource;
+
+/**
+ * A cache for static files of the htroot (skins, scripts, images). A file is read once and kept in memory
+ * together with a gzip-compressed variant, if the mime type is compressible and the compression pays off.
+ * Each variant has a strong ETag computed from the content, so that clients can revalidate without
+ * a transfer. An entry is invalidated when the last modification date or the length of the file changes,
+ * so a file change costs only one stat call per request to detect.
+ * The variants implement the jetty HttpContent interface and can be sent with HttpOutput.sendContent
+ * from a shared read-only buffer without copying the content for every request.
+ */
+public class StaticResourceCache {
+
+    private static final double MIN_COMPRESSION_GAIN = 0.9d; // the gzip variant is only stored if it is smaller than 90% of the file
+
+    private final ConcurrentHashMap<String, Entry> cache;
+    private final MimeTypes mimeTypes;
+    private final long maxSize, maxFileSize;
+    private final AtomicLong size, hits, misses;
+
+    /**
+     * @param maxSize the maximum number of bytes of all cached variants; if it is exceeded, the cache is cleared
+     * @param maxFileSize files which are larger are not cached
+     * @param mimeTypes the mime type mapping for file extensions
+     */
+    public StaticResourceCache(final long maxSize, final long maxFileSize, final MimeTypes mimeTypes) {
+        this.cache = new ConcurrentHashMap<String, Entry>();
+        this.mimeTypes = mimeTypes;
+        this.maxSize = maxSize;
+        this.maxFileSize = Math.min(maxFileSize, Integer.MAX_VALUE);
+        this.size = new AtomicLong(0);
+        this.hits = new AtomicLong(0);
+        this.misses = new AtomicLong(0);
+    }
+
+    /**
+     * get the cache entry of a file; the file is loaded if it is not in the cache or if it has been changed
+     * @param file a static file
+     * @return the cache entry or null if the file does not exist or is too large to be cached
+     * @throws IOException if the file cannot be read
+     */
+    public Entry get(final File file) throws IOException {
+        if (this.maxSize <= 0) return null;
+        final long lastModified = file.lastModified();
+        final long length = file.length();
+        if (lastModified == 0 || length > this.maxFileSize || !file.isFile()) return null;
+        final String path = file.getAbsolutePath();
+        Entry entry = this.cache.get(path);
+        if (entry != null && entry.lastModified == lastModified && entry.length == length) {
+            this.hits.incrementAndGet();
+            return entry;
+        }
+        this.misses.incrementAndGet();
+        entry = new Entry(file, lastModified, FileUtils.read(file), this.mimeTypes.getMimeByExtension(file.getName()));
+        if (entry.length != length) return entry; // the file was changed while it was read, serve but do not cache it
+        if (this.size.addAndGet(entry.size()) > this.maxSize) {
+            this.clear();
+            this.size.addAndGet(entry.size());
+        }
+        final Entry old = this.cache.put(path, entry);
+        if (old != null) this.size.addAndGet(-old.size());
+        return entry;
+    }
+
+    /**
+     * remove all entries
+     */
+    public void clear() {
+        this.cache.clear();
+        this.size.set(0);
+    }
+
+    /**
+     * @return the number of cached files
+     */
+    public int size() {
+        return this.cache.size();
+    }
+
+    /**
+     * @return the number of bytes of all cached variants
+     */
+    public long byteSize() {
+        return this.size.get();
+    }
+
+    public long hits() {
+        return this.hits.get();
+    }
+
+    public long misses() {
+        return this.misses.get();
+    }
+
+    /**
+     * decide if content of a mime type is worth to be compressed; images, fonts and archives are already compressed
+     * @param mime the mime type, may be null
+     * @return true if the content is text
+     */
+    public static boolean isCompressible(final String mime) {
+        if (mime == null) return false;
+        return mime.startsWith("text/") ||
+               mime.startsWith("application/javascript") ||
+               mime.startsWith("application/x-javascript") ||
+               mime.startsWith("application/json") ||
+               mime.startsWith("application/xml") ||
+               mime.startsWith("application/rss+xml") ||
+               mime.startsWith("application/xhtml+xml") ||
+               mime.startsWith("image/svg+xml") ||
+               mime.startsWith("image/x-icon") ||
+               mime.startsWith("image/vnd.microsoft.icon");
+    }
+
+    private static byte[] gzip(final byte[] b) {
+        try {
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream(b.length / 2 + 64);
+            final GZIPOutputStream out = new GZIPOutputStream(baos, 8192);
+            out.write(b);
+            out.close();
+            return baos.toByteArray();
+        } catch (final IOException e) {
+            return null; // does not happen with a ByteArrayOutputStream
+        }
+    }
+
+    /**
+     * a cached file with the identity variant and, if available, the gzip variant
+     */
+    public static class Entry {
+
+        private final long lastModified, length;
+        private final Content identity, gzip;
+
+        private Entry(final File file, final long lastModified, final byte[] content, final String mime) {
+            this.lastModified = lastModified;
+            this.length = content.length;
+            final String lastModifiedString = DateGenerator.formatDate(lastModified);
+            final String hash = Digest.encodeMD5Hex(content);
+            this.identity = new Content(file, mime, lastModifiedString, "\"" + hash + "\"", content);
+            final byte[] compressed = isCompressible(mime) && content.length > 256 ? StaticResourceCache.gzip(content) : null;
+            this.gzip = compressed == null || compressed.length >= content.length * MIN_COMPRESSION_GAIN ? null :
+                new Content(file, mime, lastModifiedString, "\"" + hash + "-gzip\"", compressed);
+        }
+
+        public long lastModified() {
+            return this.lastModified;
+        }
+
+        /**
+         * @return the uncompressed content
+         */
+        public Content identity() {
+            return this.identity;
+        }
+
+        /**
+         * @return the gzip compressed content or null if there is no compressed variant
+         */
+        public Content gzip() {
+            return this.gzip;
+        }
+
+        private long size() {
+            return this.identity.length + (this.gzip == null ? 0 : this.gzip.length);
+        }
+    }
+
+    /**
+     * one variant of a cached file. The content is held only in a heap array which is shared by all requests
+     * as a read-only buffer; there is no direct buffer copy, which would double the memory outside of the cache size limit.
+     */
+    public static class Content implements HttpContent {
+
+        private final File file;
+        private final String mime, lastModified, etag;
+        private final byte[] content;
+        private final int length;
+
+        private Content(final File file, final String mime, final String lastModified, final String etag, final byte[] content) {
+            this.file = file;
+            this.mime = mime;
+            this.lastModified = lastModified;
+            this.etag = etag;
+            this.content = content;
+            this.length = content.length;
+        }
+
+        public byte[] getBytes() {
+            return this.content;
+        }
+
+        @Override
+        public String getContentType() {
+            return this.mime;
+        }
+
+        @Override
+        public String getLastModified() {
+            return this.lastModified;
+        }
+
+        @Override
+        public ByteBuffer getIndirectBuffer() {
+            return ByteBuffer.wrap(this.content).asReadOnlyBuffer();
+        }
+
+        @Override
+        public ByteBuffer getDirectBuffer() {
+            return null; // jetty falls back to the indirect buffer
+        }
+
+        @Override
+        public String getETag() {
+            return this.etag;
+        }
+
+        @Override
+        public Resource getResource() {
+            return Resource.newResource(this.file);
+        }
+
+        @Override
+        public long getContentLength() {
+            return this.length;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return new ByteArrayInputStream(this.content);
+        }
+
+        @Override
+        public ReadableByteChannel getReadableByteChannel() throws IOException {
+            return Channels.newChannel(getInputStream());
+        }
+
+        @Override
+        public void release() {
+        }
+    }
+}
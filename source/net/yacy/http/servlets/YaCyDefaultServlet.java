@@ -21,7 +21,6 @@ package net.yacy.http.servlets;
 import java.awt.Image;
 import java.awt.image.BufferedImage;
 import java.io.BufferedInputStream;
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -29,10 +28,7 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.lang.ref.SoftReference;
-import java.lang.reflect.Array;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.AbstractMap;
@@ -42,7 +38,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -75,9 +70,9 @@ import net.yacy.peers.graphics.EncodedImage;
 import net.yacy.peers.operation.yacyBuildProperties;
 import net.yacy.search.Switchboard;
 import net.yacy.search.SwitchboardConstants;
+import net.yacy.server.http.CompiledTemplate;
 import net.yacy.server.http.HTTPDFileHandler;
 import net.yacy.server.http.TemplateEngine;
-import net.yacy.server.serverClassLoader;
 import net.yacy.server.serverObjects;
 import net.yacy.server.serverSwitch;
 import net.yacy.server.servletProperties;
@@ -91,6 +86,7 @@ import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.http.MimeTypes;
 import org.eclipse.jetty.io.WriterOutputStream;
+import org.eclipse.jetty.server.HttpOutput;
 import org.eclipse.jetty.server.InclusiveByteRange;
 import org.eclipse.jetty.util.MultiPartOutputStream;
 import org.eclipse.jetty.util.URIUtil;
@@ -139,11 +135,10 @@ public class YaCyDefaultServlet extends HttpServlet  {
     protected Resource _resourceBase;
     protected MimeTypes _mimeTypes;
     protected String[] _welcomes;    
+    protected StaticResourceCache _staticCache;
     
     protected File _htLocalePath;
     protected File _htDocsPath;    
-    protected static final serverClassLoader provider = new serverClassLoader(/*this.getClass().getClassLoader()*/);
-    protected ConcurrentHashMap<File, SoftReference<Method>> templateMethodCache = null;
     // settings for multipart/form-data
     protected static final File TMPDIR = new File(System.getProperty("java.io.tmpdir"));
     protected static final int SIZE_FILE_THRESHOLD = 1024 * 1024 * 1024; // 1GB is a lot but appropriate for multi-document pushed using the push_p.json servlet
@@ -170,6 +165,10 @@ public class YaCyDefaultServlet extends HttpServlet  {
         _pathInfoOnly = getInitBoolean("pathInfoOnly", _pathInfoOnly);
 
         Resource.setDefaultUseCaches(false); // caching is handled internally (prevent double caching)
+        _staticCache = new StaticResourceCache(
+                sb.getConfigLong(SwitchboardConstants.SERVER_STATICCACHE_MAXSIZE, 16L * 1024L * 1024L),
+                sb.getConfigLong(SwitchboardConstants.SERVER_STATICCACHE_MAXFILESIZE, 1024L * 1024L),
+                _mimeTypes);
 
         String rb = getInitParameter("resourceBase");
         try {
@@ -186,7 +185,6 @@ public class YaCyDefaultServlet extends HttpServlet  {
         if (ConcurrentLog.isFine("FILEHANDLER")) {
             ConcurrentLog.fine("FILEHANDLER","YaCyDefaultServlet: resource base = " + _resourceBase);
         }
-        templateMethodCache = new ConcurrentHashMap<File, SoftReference<Method>>();
     }
 
 
@@ -314,7 +312,7 @@ public class YaCyDefaultServlet extends HttpServlet  {
                 } else {
                     if (hasClass) { // this is a YaCy servlet, handle the template
                         handleTemplate(pathInfo, request, response);
-                    } else {
+                    } else if (included || reqRanges != null || !sendCachedData(request, response, resource)) {
                         if (included || passConditionalHeaders(request, response, resource)) {
                             sendData(request, response, included, resource, reqRanges);
                         }
@@ -629,6 +627,80 @@ public class YaCyDefaultServlet extends HttpServlet  {
         }
     }
 
+    /* ------------------------------------------------------------ */
+    /**
+     * send static content from the static resource cache. If the client accepts gzip and there is
+     * a compressed variant, the compressed content is sent. Conditional requests are answered with
+     * the strong ETag of the variant or the last modification date of the file.
+     *
+     * @param request
+     * @param response
+     * @param resource the static content
+     * @return true if the request was handled, false if the resource is not cacheable
+     * @throws IOException
+     */
+    protected boolean sendCachedData(HttpServletRequest request, HttpServletResponse response, Resource resource) throws IOException {
+        final File file = resource.getFile();
+        if (file == null) return false;
+        final StaticResourceCache.Entry entry = _staticCache.get(file);
+        if (entry == null) return false;
+
+        final StaticResourceCache.Content content;
+        if (entry.gzip() != null) {
+            response.setHeader(HeaderFramework.VARY, HeaderFramework.ACCEPT_ENCODING);
+            content = acceptsGzip(request) ? entry.gzip() : entry.identity();
+        } else {
+            content = entry.identity();
+        }
+
+        // conditional request: if-none-match takes precedence over if-modified-since
+        final String ifNoneMatch = request.getHeader(HttpHeader.IF_NONE_MATCH.asString());
+        if (ifNoneMatch != null) {
+            if (ifNoneMatch.trim().equals("*") || ifNoneMatch.contains(content.getETag())) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                response.setHeader(HeaderFramework.ETAG, content.getETag());
+                response.setDateHeader(HeaderFramework.EXPIRES, System.currentTimeMillis() + 600000);
+                return true;
+            }
+        } else if (!passConditionalHeaders(request, response, resource)) {
+            return true;
+        }
+
+        response.setDateHeader(HeaderFramework.EXPIRES, System.currentTimeMillis() + 600000); // expires ten minutes in the future
+        response.setHeader(HeaderFramework.LAST_MODIFIED, content.getLastModified());
+        response.setHeader(HeaderFramework.ETAG, content.getETag());
+        if (content.getContentType() != null && response.getContentType() == null) response.setContentType(content.getContentType());
+        if (content != entry.identity()) response.setHeader(HeaderFramework.CONTENT_ENCODING, HeaderFramework.CONTENT_ENCODING_GZIP);
+        response.setContentLength((int) content.getContentLength());
+        if (_acceptRanges) response.setHeader(HeaderFramework.ACCEPT_RANGES, "bytes");
+        if (request.getMethod().equals(HttpMethod.HEAD.asString())) return true;
+
+        final OutputStream out = response.getOutputStream();
+        if (out instanceof HttpOutput) {
+            ((HttpOutput) out).sendContent(content);
+        } else {
+            out.write(content.getBytes());
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the Accept-Encoding header of the request allows gzip
+     */
+    private static boolean acceptsGzip(HttpServletRequest request) {
+        final Enumeration<String> headers = request.getHeaders(HeaderFramework.ACCEPT_ENCODING);
+        if (headers == null) return false;
+        while (headers.hasMoreElements()) {
+            for (String coding: headers.nextElement().split(",")) {
+                coding = coding.trim().toLowerCase();
+                if (!coding.startsWith(HeaderFramework.CONTENT_ENCODING_GZIP)) continue;
+                final int q = coding.indexOf("q=");
+                return q < 0 || !coding.substring(q + 2).trim().matches("0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
     /* ------------------------------------------------------------ */
     protected void writeHeaders(HttpServletResponse response, Resource resource, long count) {
         if (response.getContentType() == null) {
@@ -658,7 +730,9 @@ public class YaCyDefaultServlet extends HttpServlet  {
 
     
     protected Object invokeServlet(final File targetClass, final RequestHeader request, final serverObjects args) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
-        return rewriteMethod(targetClass).invoke(null, new Object[]{request, args, Switchboard.getSwitchboard()}); // add switchboard
+        final String target = request.get(HeaderFramework.CONNECTION_PROP_PATH, targetClass.getName());
+        final int p = target.lastIndexOf('.');
+        return ServletDispatcher.invoke(targetClass, p < 0 ? target : target.substring(0, p), request, args, Switchboard.getSwitchboard()); // add switchboard
     }
 
     /**
@@ -755,44 +829,6 @@ public class YaCyDefaultServlet extends HttpServlet  {
         }
     }
 
-    protected Method rewriteMethod(final File classFile) throws InvocationTargetException {
-        Method m = null;
-        // now make a class out of the stream
-        try {
-            final SoftReference<Method> ref = templateMethodCache.get(classFile);
-            if (ref != null) {
-                m = ref.get();
-                if (m == null) {
-                    templateMethodCache.remove(classFile);
-                } else {
-                    return m;
-                }
-            }
-
-            final Class<?> c = provider.loadClass(classFile);
-            
-            final Class<?>[] params = (Class<?>[]) Array.newInstance(Class.class, 3);
-            params[0]=  RequestHeader.class;
-            params[1] = serverObjects.class;
-            params[2] = serverSwitch.class;
-            m = c.getMethod("respond", params);
-
-            if (MemoryControl.shortStatus()) {
-                templateMethodCache.clear();
-            } else {
-                // store the method into the cache
-                templateMethodCache.put(classFile, new SoftReference<Method>(m));
-            }
-        } catch (final ClassNotFoundException e) {
-            ConcurrentLog.severe("FILEHANDLER","YaCyDefaultServlet: class " + classFile + " is missing:" + e.getMessage());
-            throw new InvocationTargetException(e, "class " + classFile + " is missing:" + e.getMessage());
-        } catch (final NoSuchMethodException e) {
-            ConcurrentLog.severe("FILEHANDLER","YaCyDefaultServlet: method 'respond' not found in class " + classFile + ": " + e.getMessage());
-            throw new InvocationTargetException(e, "method 'respond' not found in class " + classFile + ": " + e.getMessage());
-        }
-        return m;
-    }
-
     protected void handleTemplate(String target,  HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
         Switchboard sb = Switchboard.getSwitchboard();
 
@@ -977,16 +1013,29 @@ public class YaCyDefaultServlet extends HttpServlet  {
                 
                 String mimeType = Classification.ext2mime(targetExt, MimeTypes.Type.TEXT_HTML.asString());
 
-                InputStream fis;
                 long fileSize = targetFile.length();
 
                 if (fileSize <= Math.min(4 * 1024 * 1204, MemoryControl.available() / 100)) {
-                    // read file completely into ram, avoid that too many files are open at the same time
-                    fis = new ByteArrayInputStream(FileUtils.read(targetFile));
-                } else {
-                    fis = new BufferedInputStream(new FileInputStream(targetFile));
+                    // the template is parsed once and then taken from the cache of compiled templates
+                    final CompiledTemplate template = CompiledTemplate.get(targetFile);
+                    response.setContentType(mimeType);
+                    response.setStatus(HttpServletResponse.SC_OK);
+                    if (template.hasIncludes()) {
+                        // SSI must be resolved in the rendered page
+                        ByteArrayOutputStream bas = new ByteArrayOutputStream(4096);
+                        template.write(bas, templatePatterns);
+                        parseSSI (bas.toByteArray(),request,response);
+                    } else {
+                        // stream the rendered page directly to the client
+                        final OutputStream out = response.getOutputStream();
+                        template.write(out, templatePatterns);
+                        out.close();
+                    }
+                    return;
                 }
 
+                InputStream fis = new BufferedInputStream(new FileInputStream(targetFile));
+
                 // set response header
                 response.setContentType(mimeType);
                 response.setStatus(HttpServletResponse.SC_OK);
@@ -34,6 +34,7 @@ import java.util.Map;
 import java.util.TreeMap;
 
 import net.yacy.cora.order.CloneableIterator;
+import net.yacy.cora.util.Metrics;
 import net.yacy.cora.util.SpaceExceededException;
 import net.yacy.kelondro.index.Row.Entry;
 import net.yacy.kelondro.util.MemoryControl;
@@ -53,6 +54,35 @@ public final class Cache implements Index, Iterable<Row.Entry> {
     private static final TreeMap<String, Cache> objectTracker = new TreeMap<String, Cache>();
     private static final long memStopGrow    = 40 * 1024 * 1024; // a limit for the node cache to stop growing if less than this memory amount is available
     private static final long memStartShrink = 20 * 1024 * 1024; // a limit for the node cache to start with shrinking if less than this memory amount is available
+    static {
+        // the metrics are the sum over all caches
+        Metrics.counter("yacy_index_cache_reads", "reads from the index caches", "result", "hit", new Metrics.Probe() {
+            @Override public double value() {
+                long c = 0;
+                synchronized (objectTracker) {for (final Cache cache: objectTracker.values()) c += cache.readHit;}
+                return c;
+            }
+        });
+        Metrics.counter("yacy_index_cache_reads", "reads from the index caches", "result", "miss", new Metrics.Probe() {
+            @Override public double value() {
+                long c = 0;
+                synchronized (objectTracker) {for (final Cache cache: objectTracker.values()) c += cache.readMiss;}
+                return c;
+            }
+        });
+        Metrics.gauge("yacy_index_cache_bytes", "memory used by the hit caches of the index caches", new Metrics.Probe() {
+            @Override public double value() {
+                long c = 0;
+                synchronized (objectTracker) {
+                    for (final Cache cache: objectTracker.values()) {
+                        final RowSet hitCache = cache.readHitCache;
+                        if (hitCache != null) c += (long) hitCache.rowdef.objectsize * hitCache.size();
+                    }
+                }
+                return c;
+            }
+        });
+    }
 
     // class objects
     private final Index index;         // the back-end of the cache
@@ -75,7 +105,9 @@ public final class Cache implements Index, Iterable<Row.Entry> {
         this.hitLimit = hitLimit;
         this.missLimit = missLimit;
         init();
-        objectTracker.put(backupIndex.filename(), this);
+        synchronized (objectTracker) {
+            objectTracker.put(backupIndex.filename(), this);
+        }
     }
 
     private void init() {
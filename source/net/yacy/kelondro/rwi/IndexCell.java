@@ -42,6 +42,7 @@ import net.yacy.cora.storage.ComparableARC;
 import net.yacy.cora.storage.HandleSet;
 import net.yacy.cora.util.ByteArray;
 import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.cora.util.Metrics;
 import net.yacy.cora.util.SpaceExceededException;
 import net.yacy.kelondro.data.word.Word;
 import net.yacy.kelondro.index.RowHandleSet;
@@ -80,6 +81,9 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
     private final Map<byte[], HandleSet>                 removeDelayedURLs; // mapping from word hashes to a list of url hashes
     private       boolean                                flushShallRun;
     private final Thread                                 flushThread;
+    private final String                                 prefix;
+    private final Metrics.Histogram                      getTime;
+    private final Metrics.Counter                        addCount;
 
     public IndexCell(
             final File cellPath,
@@ -109,6 +113,18 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
         this.flushShallRun = true;
         this.flushThread = new FlushThread(cellPath.toString());
         this.flushThread.start();
+        this.prefix = prefix;
+        this.getTime = Metrics.histogram("yacy_rwi_get_duration_seconds", "time to read a reference container from ram and the index files", "cell", prefix);
+        this.addCount = Metrics.counter("yacy_rwi_references_added", "number of references added to the ram buffer", "cell", prefix);
+        Metrics.gauge("yacy_rwi_buffer_terms", "number of terms in the ram buffer", "cell", prefix, new Metrics.Probe() {
+            @Override public double value() {return getBufferSize();}
+        });
+        Metrics.gauge("yacy_rwi_files", "number of index files", "cell", prefix, new Metrics.Probe() {
+            @Override public double value() {return IndexCell.this.array.entries();}
+        });
+        Metrics.gauge("yacy_rwi_merge_queue_length", "number of dump and merge jobs waiting for the io dispatcher", "cell", prefix, new Metrics.Probe() {
+            @Override public double value() {return IndexCell.this.merger == null ? 0 : IndexCell.this.merger.queueLength();}
+        });
     }
 
     private class FlushThread extends Thread {
@@ -270,6 +286,7 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
      */
     @Override
     public void add(final ReferenceContainer<ReferenceType> newEntries) throws IOException, SpaceExceededException {
+        this.addCount.add(newEntries.size());
         try {
             this.ram.add(newEntries);
             final long t = System.currentTimeMillis();
@@ -285,6 +302,7 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
 
     @Override
     public void add(final byte[] termHash, final ReferenceType entry) throws IOException, SpaceExceededException {
+        this.addCount.inc();
         try {
             this.ram.add(termHash, entry);
             final long t = System.currentTimeMillis();
@@ -349,6 +367,7 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
      */
     @Override
     public ReferenceContainer<ReferenceType> get(final byte[] termHash, final HandleSet urlselection) throws IOException {
+        final long start = System.nanoTime();
         final ReferenceContainer<ReferenceType> c0 = this.ram.get(termHash, null);
         ReferenceContainer<ReferenceType> c1 = null;
         try {
@@ -374,12 +393,14 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
         } else if (c1 != null) {
             result = c1;
         }
-        if (result == null) return null;
-        // remove the failed urls
-        synchronized (this.removeDelayedURLs) {
-            final HandleSet s = this.removeDelayedURLs.get(termHash);
-            if (s != null) result.removeEntries(s);
+        if (result != null) {
+            // remove the failed urls
+            synchronized (this.removeDelayedURLs) {
+                final HandleSet s = this.removeDelayedURLs.get(termHash);
+                if (s != null) result.removeEntries(s);
+            }
         }
+        this.getTime.recordNanos(System.nanoTime() - start);
         return result;
     }
 
@@ -602,6 +623,11 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
         if (this.flushThread != null) try { this.flushThread.join(); } catch (final InterruptedException e) {}
         this.ram.close();
         this.array.close();
+        Metrics.remove("yacy_rwi_get_duration_seconds", "cell", this.prefix);
+        Metrics.remove("yacy_rwi_references_added", "cell", this.prefix);
+        Metrics.remove("yacy_rwi_buffer_terms", "cell", this.prefix);
+        Metrics.remove("yacy_rwi_files", "cell", this.prefix);
+        Metrics.remove("yacy_rwi_merge_queue_length", "cell", this.prefix);
     }
 
     public boolean isEmpty() {
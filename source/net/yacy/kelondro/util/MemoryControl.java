@@ -28,6 +28,7 @@ package net.yacy.kelondro.util;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.cora.util.Metrics;
 
 /**
  * Use this to get information about memory usage or try to free some memory
@@ -38,6 +39,21 @@ public class MemoryControl {
     private static boolean simulatedShortStatus = false, usingStandardStrategy = true;
     private static MemoryStrategy strategy;
 
+    static {
+        Metrics.gauge("yacy_memory_used_bytes", "memory that is currently bound in objects", new Metrics.Probe() {
+            @Override public double value() {return used();}
+        });
+        Metrics.gauge("yacy_memory_available_bytes", "memory that is available including increasing total memory up to maximum", new Metrics.Probe() {
+            @Override public double value() {return available();}
+        });
+        Metrics.gauge("yacy_memory_max_bytes", "maximum memory the Java virtual machine will allocate", new Metrics.Probe() {
+            @Override public double value() {return maxMemory();}
+        });
+        Metrics.gauge("yacy_memory_short", "1 if the last memory request failed", new Metrics.Probe() {
+            @Override public double value() {return shortStatus() ? 1 : 0;}
+        });
+    }
+
     private static MemoryStrategy getStrategy() {
     	if (strategy == null || MemoryStrategy.hasError()) {
     		if (!usingStandardStrategy) {
@@ -34,6 +34,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.cora.util.Metrics;
 import net.yacy.kelondro.util.NamePrefixThreadFactory;
 
 
@@ -52,6 +53,7 @@ public class WorkflowProcessor<J extends WorkflowJob> {
     private final String[] childs;
     private long blockTime, execTime, passOnTime;
     private long execCount;
+    private final Metrics.Histogram jobTime;
 
     public WorkflowProcessor(
             final String name, final String description, final String[] childnames,
@@ -80,11 +82,44 @@ public class WorkflowProcessor<J extends WorkflowJob> {
         this.execTime = 0;
         this.passOnTime = 0;
         this.execCount = 0;
+        this.jobTime = Metrics.histogram("yacy_workflow_job_duration_seconds", "execution time of the jobs of a workflow processor", "processor", this.processName);
+        registerMetrics();
 
         // store this object for easy monitoring
         processMonitor.add(this);
     }
 
+    private void registerMetrics() {
+        Metrics.gauge("yacy_workflow_queue_size", "number of jobs in the input queue of a workflow processor", "processor", this.processName, new Metrics.Probe() {
+            @Override public double value() {return getQueueSize();}
+        });
+        Metrics.gauge("yacy_workflow_executors", "number of running executors of a workflow processor", "processor", this.processName, new Metrics.Probe() {
+            @Override public double value() {return getExecutors();}
+        });
+        Metrics.counter("yacy_workflow_jobs", "number of executed jobs of a workflow processor", "processor", this.processName, new Metrics.Probe() {
+            @Override public double value() {return getExecCount();}
+        });
+        Metrics.counter("yacy_workflow_exec_seconds", "time spent in the execution of jobs", "processor", this.processName, new Metrics.Probe() {
+            @Override public double value() {return getExecTime() / 1000.0d;}
+        });
+        Metrics.counter("yacy_workflow_block_seconds", "time spent waiting for jobs in the input queue", "processor", this.processName, new Metrics.Probe() {
+            @Override public double value() {return getBlockTime() / 1000.0d;}
+        });
+        Metrics.counter("yacy_workflow_passon_seconds", "time spent waiting to pass jobs to the next processor", "processor", this.processName, new Metrics.Probe() {
+            @Override public double value() {return getPassOnTime() / 1000.0d;}
+        });
+    }
+
+    private void removeMetrics() {
+        Metrics.remove("yacy_workflow_queue_size", "processor", this.processName);
+        Metrics.remove("yacy_workflow_executors", "processor", this.processName);
+        Metrics.remove("yacy_workflow_jobs", "processor", this.processName);
+        Metrics.remove("yacy_workflow_exec_seconds", "processor", this.processName);
+        Metrics.remove("yacy_workflow_block_seconds", "processor", this.processName);
+        Metrics.remove("yacy_workflow_passon_seconds", "processor", this.processName);
+        Metrics.remove("yacy_workflow_job_duration_seconds", "processor", this.processName);
+    }
+
     public Object getEnvironment() {
         return this.environment;
     }
@@ -243,6 +278,7 @@ public class WorkflowProcessor<J extends WorkflowJob> {
         ConcurrentLog.info("serverProcessor", "queue " + this.processName + ": shutdown.");
         this.executor = null;
         this.input = null;
+        removeMetrics();
         // remove entry from monitor
         final Iterator<WorkflowProcessor<?>> i = processes();
         WorkflowProcessor<?> p;
@@ -262,6 +298,7 @@ public class WorkflowProcessor<J extends WorkflowJob> {
     protected void increaseJobTime(final long time) {
         this.execTime += time;
         this.execCount++;
+        this.jobTime.recordMillis(time);
     }
 
     public String getName() {
@@ -182,7 +182,7 @@ public class DHTSelection {
      * @param verticalPosition the verical position, thats the number of the partition 0 <= verticalPosition < seedDB.scheme.verticalPartitions()
      * @return a list of seeds for the redundant positions
      */
-    private static ArrayList<Seed> selectVerticalDHTPositions(final SeedDB seedDB, final byte[] wordhash, final int minage, final int redundancy, int verticalPosition) {
+    protected static ArrayList<Seed> selectVerticalDHTPositions(final SeedDB seedDB, final byte[] wordhash, final int minage, final int redundancy, int verticalPosition) {
         // this method is called from the search target computation
         ArrayList<Seed> seeds = new ArrayList<Seed>(redundancy);
         final long dhtVerticalTarget = seedDB.scheme.verticalDHTPosition(wordhash, verticalPosition);
@@ -388,26 +388,13 @@ public class DHTSelection {
      * @param count number of wanted peers
      * @return a hash map of peer hashes to seed object
      */
-    public static ConcurrentMap<String, Seed> seedsByAge(final SeedDB seedDB, final boolean up, int count) {
-        if (count > seedDB.sizeConnected()) count = seedDB.sizeConnected();
-        Seed ys;
-        //long age;
-        final Iterator<Seed> s = seedDB.seedsSortedConnected(!up, Seed.LASTSEEN);
-        try {
-            final ConcurrentMap<String, Seed> result = new ConcurrentHashMap<String, Seed>();
-            while (s.hasNext() && count-- > 0) {
-                ys = s.next();
-                if (ys != null && ys.hash != null) {
-                    //age = (System.currentTimeMillis() - ys.getLastSeenUTC()) / 1000 / 60;
-                    //System.out.println("selected seedsByAge up=" + up + ", age/min = " + age);
-                    result.put(ys.hash, ys);
-                }
-            }
-            return result;
-        } catch (final kelondroException e) {
-            Network.log.severe("Internal Error at yacySeedDB.seedsByAge: " + e.getMessage(), e);
-            return null;
+    public static ConcurrentMap<String, Seed> seedsByAge(final SeedDB seedDB, final boolean up, final int count) {
+        // the peers are taken from the snapshot of the connected peers which is already sorted in memory
+        final ConcurrentMap<String, Seed> result = new ConcurrentHashMap<String, Seed>();
+        for (final Seed ys: seedDB.connectedSnapshot().byLastSeen(up, count)) {
+            if (ys != null && ys.hash != null) result.put(ys.hash, ys);
         }
+        return result;
     }
 
 }
\ No newline at end of file
@@ -28,10 +28,16 @@ package net.yacy.peers;
 import java.io.IOException;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.order.Base64Order;
@@ -80,8 +86,65 @@ public class Dispatcher {
      * 9   concurrency ends for the transmission, if the wanted number of redundant peers received the entry,
      *     or the target queue runs out of entries. If the target queue is empty, the transmission is
      *     called failed. In case of a fail, the RWI fragment is put back into the backend index structure
+     * Several chunks are in transmission at the same time, but only a limited number for each target peer.
+     * A failed chunk is given to peers at the next redundant DHT positions (up to indexDistribution.maxChunkFails times)
+     * before it is put back into the backend index structure.
      */
 
+    /**
+     * transmission statistics for one target peer
+     */
+    public static class TargetStatistics {
+        private final String name;
+        private int chunks, failures;
+        private long references, time;
+
+        private TargetStatistics(final String name) {
+            this.name = name;
+            this.chunks = 0;
+            this.failures = 0;
+            this.references = 0;
+            this.time = 0;
+        }
+
+        private synchronized void add(final int references, final long time, final boolean success) {
+            this.time += time;
+            if (success) {
+                this.chunks++;
+                this.references += references;
+            } else {
+                this.failures++;
+            }
+        }
+
+        public String name() {
+            return this.name;
+        }
+
+        public synchronized int chunks() {
+            return this.chunks;
+        }
+
+        public synchronized int failures() {
+            return this.failures;
+        }
+
+        public synchronized long references() {
+            return this.references;
+        }
+
+        public synchronized long time() {
+            return this.time;
+        }
+
+        /**
+         * @return the number of successfully transmitted references per second of transmission time
+         */
+        public synchronized double throughput() {
+            return this.time == 0 ? 0.0d : this.references * 1000.0d / this.time;
+        }
+    }
+
     /**
      * A transmission buffer is a write buffer for the rwi objects (indices) that wait to be transmitted.
      * The String-key is the primary target as contained in the chunk entry.
@@ -103,6 +166,17 @@ public class Dispatcher {
     // transmission object
     private final Transmission transmission;
 
+    // failed chunks which shall be transmitted to alternative targets
+    private final Queue<Transmission.Chunk> retryQueue;
+
+    // the number of queued and running transmissions for each target peer
+    private final ConcurrentHashMap<String, AtomicInteger> inFlight;
+
+    // the transmission statistics for each target peer
+    private final ConcurrentHashMap<String, TargetStatistics> targetStatistics;
+
+    private final int concurrentSender;
+
     public Dispatcher(
             final Segment segment,
             final SeedDB seeds,
@@ -120,12 +194,17 @@ public class Dispatcher {
             gzipBody,
             timeout);
 
-        final int concurrentSender = Math.min(8, WorkflowProcessor.availableCPU);
+        this.retryQueue = new ConcurrentLinkedQueue<Transmission.Chunk>();
+        this.inFlight = new ConcurrentHashMap<String, AtomicInteger>();
+        this.targetStatistics = new ConcurrentHashMap<String, TargetStatistics>();
+
+        // transmissions are network-bound, therefore more senders than CPUs are used
+        this.concurrentSender = Math.min(16, Math.max(4, 2 * WorkflowProcessor.availableCPU));
         this.indexingTransmissionProcessor = new WorkflowProcessor<Transmission.Chunk>(
                 "transferDocumentIndex",
                 "This is the RWI transmission process",
                 new String[]{"RWI/Cache/Collections"},
-                this, "transferDocumentIndex", concurrentSender * 3, null, concurrentSender);
+                this, "transferDocumentIndex", this.concurrentSender * 3, null, this.concurrentSender);
     }
 
     public int bufferSize() {
@@ -136,6 +215,37 @@ public class Dispatcher {
     	return (this.indexingTransmissionProcessor == null) ? 0 : this.indexingTransmissionProcessor.getQueueSize();
     }
 
+    public int retrySize() {
+        return this.retryQueue.size();
+    }
+
+    /**
+     * @return the transmission statistics for each target peer; the key is the peer hash
+     */
+    public Map<String, TargetStatistics> targetStatistics() {
+        return this.targetStatistics;
+    }
+
+    private int inFlight(final String target) {
+        final AtomicInteger c = this.inFlight.get(target);
+        return c == null ? 0 : c.get();
+    }
+
+    private void acquire(final String target) {
+        AtomicInteger c = this.inFlight.get(target);
+        if (c == null) {
+            c = new AtomicInteger(0);
+            final AtomicInteger c0 = this.inFlight.putIfAbsent(target, c);
+            if (c0 != null) c = c0;
+        }
+        c.incrementAndGet();
+    }
+
+    private void release(final String target) {
+        final AtomicInteger c = this.inFlight.get(target);
+        if (c != null && c.decrementAndGet() <= 0) this.inFlight.remove(target);
+    }
+
     /**
      * PROCESS(1)
      * Select a number of index containers from the RWI index.
@@ -332,25 +442,45 @@ public class Dispatcher {
 
     /**
      * PROCESS(5)
-     * take the largest container from the write buffer and put it into the 'next' array,
-     * where it waits to be processed.
+     * take the largest containers from the write buffer and put them into the 'next' array,
+     * where they wait to be processed. As many chunks are dequeued as transmission slots are free;
+     * chunks for targets which have reached their concurrency limit are left in the buffer.
+     * Chunks which failed and have an alternative target are dequeued first.
      * This method returns true if a container was dequeued, false if not
      */
     public boolean dequeueContainer() {
     	if (this.transmissionBuffer == null) return false;
-        if (this.indexingTransmissionProcessor.getQueueSize() > this.indexingTransmissionProcessor.getMaxConcurrency()) return false;
-        String maxtarget = null;
-        int maxsize = -1;
-        for (final Map.Entry<String, Transmission.Chunk> chunk: this.transmissionBuffer.entrySet()) {
-            if (chunk.getValue().containersSize() > maxsize) {
-                maxsize = chunk.getValue().containersSize();
-                maxtarget = chunk.getKey();
+        final int perPeer = Math.max(1, Switchboard.getSwitchboard().getConfigInt(SwitchboardConstants.INDEX_DIST_MAX_CONCURRENT_PER_PEER, 1));
+        boolean dequeued = false;
+        while (this.indexingTransmissionProcessor.getQueueSize() <= this.indexingTransmissionProcessor.getMaxConcurrency()) {
+            Transmission.Chunk chunk = null;
+            final Iterator<Transmission.Chunk> r = this.retryQueue.iterator();
+            while (r.hasNext()) {
+                final Transmission.Chunk c = r.next();
+                if (inFlight(c.dhtTarget().hash) < perPeer) {
+                    r.remove();
+                    chunk = c;
+                    break;
+                }
+            }
+            if (chunk == null) {
+                String maxtarget = null;
+                int maxsize = -1;
+                for (final Map.Entry<String, Transmission.Chunk> c: this.transmissionBuffer.entrySet()) {
+                    if (c.getValue().containersSize() > maxsize && inFlight(c.getKey()) < perPeer) {
+                        maxsize = c.getValue().containersSize();
+                        maxtarget = c.getKey();
+                    }
+                }
+                if (maxsize < 0) break;
+                chunk = this.transmissionBuffer.remove(maxtarget);
+                if (chunk == null) continue;
             }
+            acquire(chunk.dhtTarget().hash);
+            this.indexingTransmissionProcessor.enQueue(chunk);
+            dequeued = true;
         }
-        if (maxsize < 0) return false;
-        final Transmission.Chunk chunk = this.transmissionBuffer.remove(maxtarget);
-        this.indexingTransmissionProcessor.enQueue(chunk);
-        return true;
+        return dequeued;
     }
 
     /**
@@ -361,22 +491,94 @@ public class Dispatcher {
      * @return
      */
     public Transmission.Chunk transferDocumentIndex(final Transmission.Chunk chunk) {
-
-        // try to keep the system healthy; sleep as long as System load is too high
-        while (Protocol.metadataRetrievalRunning.get() > 0) try {Thread.sleep(1000);} catch (InterruptedException e) {break;}
-        
-        // we must test this here again
-        while (Memory.load() > Switchboard.getSwitchboard().getConfigFloat(SwitchboardConstants.INDEX_DIST_LOADPREREQ, 2.0f)) try {Thread.sleep(10000);} catch (InterruptedException e) {break;}
-        
-        // do the transmission
-        final boolean success = chunk.transmit();
+        final Seed target = chunk.dhtTarget();
+        final int references = chunk.referencesSize();
+        final long start;
+        final boolean success;
+        try {
+            // try to keep the system healthy; sleep as long as System load is too high
+            // the metadata retrieval in transferURL is io-intensive, therefore only a part of the senders may do this at the same time
+            while (Protocol.metadataRetrievalRunning.get() >= Math.max(1, this.concurrentSender / 2)) try {Thread.sleep(1000);} catch (InterruptedException e) {break;}
+
+            // we must test this here again
+            while (Memory.load() > Switchboard.getSwitchboard().getConfigFloat(SwitchboardConstants.INDEX_DIST_LOADPREREQ, 2.0f)) try {Thread.sleep(10000);} catch (InterruptedException e) {break;}
+
+            // do the transmission
+            start = System.currentTimeMillis();
+            success = chunk.transmit();
+        } finally {
+            release(target.hash);
+        }
+        TargetStatistics statistics = this.targetStatistics.get(target.hash);
+        if (statistics == null) {
+            statistics = new TargetStatistics(target.getName());
+            final TargetStatistics s0 = this.targetStatistics.putIfAbsent(target.hash, statistics);
+            if (s0 != null) statistics = s0;
+        }
+        statistics.add(references, System.currentTimeMillis() - start, success);
         if (success) return chunk;
 
-        this.log.info("STORE: Chunk " + chunk.dhtTarget().getName() + " does not respond or accept the dht index, putting back index to backend");
+        if (chunk.failedTargets().size() <= Switchboard.getSwitchboard().getConfigInt(SwitchboardConstants.INDEX_DIST_CHUNK_FAILS_MAX, 1)) {
+            this.log.info("STORE: Chunk " + target.getName() + " does not respond or accept the dht index, trying alternative targets");
+            retarget(chunk);
+            return null;
+        }
+        this.log.info("STORE: Chunk " + target.getName() + " does not respond or accept the dht index, putting back index to backend");
         chunk.restore();
         return null;
     }
 
+    /**
+     * distribute the containers of a failed chunk to alternative targets. An alternative target is a peer at the
+     * next redundant DHT position of the container which is not a regular target and did not fail to receive the chunk before.
+     * Containers without an alternative target are put back to the backend.
+     * @param chunk the failed chunk
+     */
+    private void retarget(final Transmission.Chunk chunk) {
+        final Set<String> failed = chunk.failedTargets();
+        final int redundancy = this.seeds.redundancy();
+        final Map<String, Transmission.Chunk> alternatives = new HashMap<String, Transmission.Chunk>();
+        for (final ReferenceContainer<WordReference> container: chunk) {
+            Seed alternative = null;
+            final Iterator<WordReference> i = container.entries();
+            if (i.hasNext()) {
+                // all references of a container in a chunk have the same vertical position
+                final int vertical = this.seeds.scheme.verticalDHTPosition(i.next().urlhash());
+                final Set<String> regular = new HashSet<String>();
+                for (final Seed s: DHTSelection.selectVerticalDHTPositions(this.seeds, container.getTermHash(), 3, redundancy, vertical)) regular.add(s.hash);
+                for (final Seed s: DHTSelection.selectVerticalDHTPositions(this.seeds, container.getTermHash(), 3, redundancy + failed.size(), vertical)) {
+                    if (!regular.contains(s.hash) && !failed.contains(s.hash)) {
+                        alternative = s;
+                        break;
+                    }
+                }
+            }
+            if (alternative == null) {
+                try {
+                    this.segment.storeRWI(container);
+                } catch (final Exception e) {
+                    ConcurrentLog.logException(e);
+                }
+                continue;
+            }
+            Transmission.Chunk c = alternatives.get(alternative.hash);
+            if (c == null) {
+                c = this.transmission.newChunk(alternative);
+                c.failedTargets().addAll(failed);
+                alternatives.put(alternative.hash, c);
+            }
+            try {
+                c.add(container);
+            } catch (final SpaceExceededException e) {
+                ConcurrentLog.logException(e);
+            }
+        }
+        for (final Transmission.Chunk c: alternatives.values()) {
+            this.log.info("retrying chunk with " + c.containersSize() + " containers at alternative target " + c.dhtTarget().getName());
+            this.retryQueue.add(c);
+        }
+    }
+
     public void close() {
         // removes all entries from the dispatcher and puts them back to a RAMRI
         if (this.indexingTransmissionProcessor != null) this.indexingTransmissionProcessor.shutdown();
@@ -391,6 +593,8 @@ public class Dispatcher {
         	}
         	this.transmissionBuffer.clear();
         }
+        Transmission.Chunk chunk;
+        while ((chunk = this.retryQueue.poll()) != null) chunk.restore();
         this.transmissionBuffer = null;
         if (this.indexingTransmissionProcessor != null) {
         	this.indexingTransmissionProcessor.clear();
@@ -0,0 +1,277 @@
+/**
+ *  IndexTransferCodec.java
+ *  part of YaCy, http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.peers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.document.encoding.UTF8;
+import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.data.word.WordReference;
+import net.yacy.kelondro.data.word.WordReferenceRow;
+import net.yacy.kelondro.index.Row;
+import net.yacy.kelondro.rwi.ReferenceContainer;
+import net.yacy.kelondro.rwi.ReferenceContainerCache;
+import net.yacy.search.index.Segment;
+
+/**
+ * A binary encoding of index transmissions (transferRWI and transferURL) between peers.
+ * A transmission chunk is encoded as one frame: a header of four bytes ('Y', 'I', 'T', version)
+ * followed by the deflate-compressed body.
+ *
+ * The RWI body contains the term hashes in ascending order; each term hash is prefix-coded against
+ * the previous one (number of shared bytes, then the remaining bytes). For each term follows the number
+ * of postings, the url hashes of the postings in ascending order, also prefix-coded, and then the
+ * attributes of the postings (the remaining bytes of the WordReferenceRow) in column order: first the
+ * first attribute byte of all postings, then the second and so on. Postings of the same term have
+ * many identical attribute values which are compressed very well in that order.
+ *
+ * The URL body contains the number of entries, followed by the length and the UTF-8 bytes of each
+ * entry in the same property form which is used in the text format.
+ *
+ * Peers announce that they are able to receive this format with the binary index transfer flag of their seed,
+ * which is exchanged during the hello; peers without the flag get the text format.
+ */
+public final class IndexTransferCodec {
+
+    public static final byte VERSION = 1;
+    public static final String FORMAT = "binary" + VERSION; // value of the 'format' post attribute
+    public static final String FILENAME = "indexes.gz"; // the '.gz' suffix causes that the receiver base64-encodes the content in the post arguments
+
+    private static final byte[] MAGIC = new byte[]{'Y', 'I', 'T'};
+    private static final int HASHLENGTH = Word.commonHashLength;
+    private static final int ROWSIZE = WordReferenceRow.urlEntryRow.objectsize;
+
+    private static final Comparator<byte[]> unsignedOrder = new Comparator<byte[]>() {
+        @Override
+        public int compare(final byte[] a, final byte[] b) {
+            final int l = Math.min(a.length, b.length);
+            for (int i = 0; i < l; i++) {
+                final int c = (a[i] & 0xff) - (b[i] & 0xff);
+                if (c != 0) return c;
+            }
+            return a.length - b.length;
+        }
+    };
+
+    private IndexTransferCodec() {}
+
+    /**
+     * encode the references of a transmission chunk
+     * @param indexes the references
+     * @return the encoded frame
+     * @throws IOException
+     */
+    public static byte[] encodeRWI(final ReferenceContainerCache<WordReference> indexes) throws IOException {
+        final List<ReferenceContainer<WordReference>> containers = new ArrayList<ReferenceContainer<WordReference>>(indexes.size());
+        for (final ReferenceContainer<WordReference> ic: indexes) if (ic.size() > 0) containers.add(ic);
+        Collections.sort(containers, new Comparator<ReferenceContainer<WordReference>>() {
+            @Override
+            public int compare(final ReferenceContainer<WordReference> o1, final ReferenceContainer<WordReference> o2) {
+                return unsignedOrder.compare(o1.getTermHash(), o2.getTermHash());
+            }
+        });
+
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream(containers.size() * 512 + 16);
+        final DataOutputStream out = openFrame(baos);
+        writeVarInt(out, containers.size());
+        byte[] lastTerm = null;
+        for (final ReferenceContainer<WordReference> ic: containers) {
+            final byte[] term = ic.getTermHash();
+            writePrefixCoded(out, lastTerm, term);
+            lastTerm = term;
+
+            final List<byte[]> rows = new ArrayList<byte[]>(ic.size());
+            final Iterator<Row.Entry> i = ic.iterator();
+            while (i.hasNext()) rows.add(i.next().bytes());
+            Collections.sort(rows, unsignedOrder); // the url hash is the first column, this sorts by url hash
+            writeVarInt(out, rows.size());
+            byte[] lastUrl = null;
+            for (final byte[] row: rows) {
+                final byte[] url = new byte[HASHLENGTH];
+                System.arraycopy(row, 0, url, 0, HASHLENGTH);
+                writePrefixCoded(out, lastUrl, url);
+                lastUrl = url;
+            }
+            for (int c = HASHLENGTH; c < ROWSIZE; c++) {
+                for (final byte[] row: rows) out.write(row[c]);
+            }
+        }
+        out.close();
+        return baos.toByteArray();
+    }
+
+    /**
+     * decode the references of a transmission chunk
+     * @param frame the encoded frame
+     * @param maxEntries the maximum number of postings to decode; further postings are ignored
+     * @return a list of postings: term hash and reference
+     * @throws IOException if the frame is not well-formed or has an unknown version
+     */
+    public static List<Map.Entry<String, WordReference>> decodeRWI(final byte[] frame, final int maxEntries) throws IOException {
+        final DataInputStream in = readFrame(frame);
+        final List<Map.Entry<String, WordReference>> postings = new ArrayList<Map.Entry<String, WordReference>>();
+        try {
+            final int termCount = readVarInt(in);
+            byte[] term = null;
+            for (int t = 0; t < termCount && postings.size() < maxEntries; t++) {
+                term = readPrefixCoded(in, term);
+                final String termHash = ASCII.String(term);
+                final int count = readVarInt(in);
+                if (count > maxEntries * 10) throw new IOException("too many postings in frame: " + count);
+                final byte[][] rows = new byte[count][];
+                byte[] url = null;
+                for (int r = 0; r < count; r++) {
+                    url = readPrefixCoded(in, url);
+                    rows[r] = new byte[ROWSIZE];
+                    System.arraycopy(url, 0, rows[r], 0, HASHLENGTH);
+                }
+                for (int c = HASHLENGTH; c < ROWSIZE; c++) {
+                    for (int r = 0; r < count; r++) rows[r][c] = readByte(in);
+                }
+                for (int r = 0; r < count && postings.size() < maxEntries; r++) {
+                    final WordReference reference = Segment.wordReferenceFactory.produceSlow(WordReferenceRow.urlEntryRow.newEntry(rows[r]));
+                    postings.add(new AbstractMap.SimpleImmutableEntry<String, WordReference>(termHash, reference));
+                }
+            }
+        } finally {
+            in.close();
+        }
+        return postings;
+    }
+
+    /**
+     * encode the url entries of a transmission chunk
+     * @param urls the url entries in property form
+     * @return the encoded frame
+     * @throws IOException
+     */
+    public static byte[] encodeURLs(final List<String> urls) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream(urls.size() * 300 + 16);
+        final DataOutputStream out = openFrame(baos);
+        writeVarInt(out, urls.size());
+        for (final String url: urls) {
+            final byte[] b = UTF8.getBytes(url);
+            writeVarInt(out, b.length);
+            out.write(b);
+        }
+        out.close();
+        return baos.toByteArray();
+    }
+
+    /**
+     * decode the url entries of a transmission chunk
+     * @param frame the encoded frame
+     * @param maxEntries the maximum number of entries to decode
+     * @return the url entries in property form
+     * @throws IOException if the frame is not well-formed or has an unknown version
+     */
+    public static List<String> decodeURLs(final byte[] frame, final int maxEntries) throws IOException {
+        final DataInputStream in = readFrame(frame);
+        final List<String> urls = new ArrayList<String>();
+        try {
+            final int count = Math.min(readVarInt(in), maxEntries);
+            for (int i = 0; i < count; i++) {
+                final int length = readVarInt(in);
+                if (length > 1024 * 1024) throw new IOException("url entry too large: " + length);
+                final byte[] b = new byte[length];
+                in.readFully(b);
+                urls.add(UTF8.String(b));
+            }
+        } finally {
+            in.close();
+        }
+        return urls;
+    }
+
+    private static DataOutputStream openFrame(final OutputStream os) throws IOException {
+        os.write(MAGIC);
+        os.write(VERSION);
+        return new DataOutputStream(new DeflaterOutputStream(os, new Deflater(Deflater.BEST_SPEED), 8192));
+    }
+
+    private static DataInputStream readFrame(final byte[] frame) throws IOException {
+        if (frame == null || frame.length < MAGIC.length + 1) throw new IOException("frame too short");
+        for (int i = 0; i < MAGIC.length; i++) if (frame[i] != MAGIC[i]) throw new IOException("not an index transfer frame");
+        if (frame[MAGIC.length] != VERSION) throw new IOException("unsupported index transfer version " + frame[MAGIC.length]);
+        final InputStream is = new ByteArrayInputStream(frame, MAGIC.length + 1, frame.length - MAGIC.length - 1);
+        return new DataInputStream(new InflaterInputStream(is));
+    }
+
+    private static void writePrefixCoded(final DataOutputStream out, final byte[] previous, final byte[] hash) throws IOException {
+        int shared = 0;
+        if (previous != null) while (shared < hash.length && shared < previous.length && hash[shared] == previous[shared]) shared++;
+        out.write(shared);
+        out.write(hash, shared, hash.length - shared);
+    }
+
+    private static byte[] readPrefixCoded(final DataInputStream in, final byte[] previous) throws IOException {
+        final int shared = in.readUnsignedByte();
+        if (shared > HASHLENGTH || (previous == null && shared > 0)) throw new IOException("bad prefix length " + shared);
+        final byte[] hash = new byte[HASHLENGTH];
+        if (shared > 0) System.arraycopy(previous, 0, hash, 0, shared);
+        in.readFully(hash, shared, HASHLENGTH - shared);
+        return hash;
+    }
+
+    private static byte readByte(final DataInputStream in) throws IOException {
+        final int b = in.read();
+        if (b < 0) throw new EOFException();
+        return (byte) b;
+    }
+
+    private static void writeVarInt(final DataOutputStream out, int v) throws IOException {
+        while ((v & ~0x7f) != 0) {
+            out.write((v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        out.write(v);
+    }
+
+    private static int readVarInt(final DataInputStream in) throws IOException {
+        int v = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final int b = in.readUnsignedByte();
+            v |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                if (v < 0) throw new IOException("negative length");
+                return v;
+            }
+        }
+        throw new IOException("malformed varint");
+    }
+}
@@ -0,0 +1,303 @@
+/**
+ *  PeerPerformance.java
+ *  part of YaCy, http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.peers;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Performance statistics of remote peers as search targets.
+ * For each peer the response times of remote searches are counted in a histogram with exponentially growing buckets,
+ * together with the number of requests, failures and returned results. All counters decay exponentially with time,
+ * so that the statistics follow changes of a peer and a peer that failed some time ago gets another chance.
+ * The statistics are used to rank search targets: peers which answer fast and with results are preferred,
+ * peers which fail consistently are not asked again until their statistics have decayed.
+ */
+public class PeerPerformance {
+
+    private static final long[] BUCKET_LIMITS = new long[]{100, 250, 500, 1000, 2000, 4000, 8000, Long.MAX_VALUE}; // upper limits of the response time buckets in milliseconds
+    private static final long HALF_LIFE = 60L * 60L * 1000L; // the counters are halved each hour
+    private static final long UNKNOWN_LATENCY = 500; // the assumed latency of peers without statistics; optimistic to give new peers a chance
+    private static final double LATENCY_QUANTILE = 0.75d;
+    private static final int MAX_PEERS = 10000;
+    private static final double FAILING_MIN_REQUESTS = 5.0d;
+    private static final double FAILING_RATE = 0.8d;
+
+    public static class Statistics {
+        private final double[] histogram;
+        private double requests, failures, results;
+        private long last;
+
+        private Statistics(final long now) {
+            this.histogram = new double[BUCKET_LIMITS.length];
+            this.requests = 0.0d;
+            this.failures = 0.0d;
+            this.results = 0.0d;
+            this.last = now;
+        }
+
+        private void decay(final long now) {
+            if (now <= this.last) return;
+            final double f = Math.pow(0.5d, ((double) (now - this.last)) / HALF_LIFE);
+            for (int i = 0; i < this.histogram.length; i++) this.histogram[i] *= f;
+            this.requests *= f;
+            this.failures *= f;
+            this.results *= f;
+            this.last = now;
+        }
+
+        private void addTime(final long time) {
+            int b = 0;
+            while (time > BUCKET_LIMITS[b]) b++;
+            this.histogram[b] += 1.0d;
+        }
+
+        /**
+         * @return the (decayed) number of requests to the peer
+         */
+        public synchronized double requests() {
+            decay(System.currentTimeMillis());
+            return this.requests;
+        }
+
+        /**
+         * @return the share of requests which failed, from 0.0 to 1.0
+         */
+        public synchronized double failureRate() {
+            return this.requests <= 0.0d ? 0.0d : this.failures / this.requests;
+        }
+
+        /**
+         * @return the average number of results of successful requests
+         */
+        public synchronized double yield() {
+            final double successes = this.requests - this.failures;
+            return successes <= 0.0d ? 0.0d : this.results / successes;
+        }
+
+        /**
+         * estimate the response time from the histogram
+         * @param quantile the share of requests which are expected to be answered in the returned time
+         * @return the upper limit of the histogram bucket where the quantile is reached, or -1 if there are no response times
+         */
+        public synchronized long latency(final double quantile) {
+            double total = 0.0d;
+            for (final double h: this.histogram) total += h;
+            if (total <= 0.0d) return -1;
+            double sum = 0.0d;
+            for (int i = 0; i < this.histogram.length - 1; i++) {
+                sum += this.histogram[i];
+                if (sum >= total * quantile) return BUCKET_LIMITS[i];
+            }
+            return BUCKET_LIMITS[BUCKET_LIMITS.length - 2] * 2;
+        }
+
+        /**
+         * @return a copy of the (decayed) response time histogram
+         */
+        public synchronized double[] histogram() {
+            return this.histogram.clone();
+        }
+    }
+
+    private final ConcurrentHashMap<String, Statistics> peers;
+    private final int maxPeers;
+
+    public PeerPerformance() {
+        this(MAX_PEERS);
+    }
+
+    /**
+     * @param maxPeers the maximum number of peers with statistics; when it is reached, the least recently used statistics are removed
+     */
+    protected PeerPerformance(final int maxPeers) {
+        this.peers = new ConcurrentHashMap<String, Statistics>();
+        this.maxPeers = maxPeers;
+    }
+
+    private Statistics statistics(final String peerhash) {
+        Statistics s = this.peers.get(peerhash);
+        if (s == null) {
+            if (this.peers.size() >= this.maxPeers) evict();
+            s = new Statistics(System.currentTimeMillis());
+            final Statistics s0 = this.peers.putIfAbsent(peerhash, s);
+            if (s0 != null) s = s0;
+        }
+        return s;
+    }
+
+    /**
+     * remove the statistics of the peers which were not asked for the longest time,
+     * so that a tenth of the capacity becomes free
+     */
+    private synchronized void evict() {
+        if (this.peers.size() < this.maxPeers) return; // another thread did the eviction already
+        // copy the access times first because they may change while sorting
+        final List<Map.Entry<String, Long>> access = new ArrayList<Map.Entry<String, Long>>(this.peers.size());
+        for (final Map.Entry<String, Statistics> entry: this.peers.entrySet()) {
+            final long last;
+            synchronized (entry.getValue()) {
+                last = entry.getValue().last;
+            }
+            access.add(new AbstractMap.SimpleImmutableEntry<String, Long>(entry.getKey(), last));
+        }
+        Collections.sort(access, new Comparator<Map.Entry<String, Long>>() {
+            @Override
+            public int compare(final Map.Entry<String, Long> e1, final Map.Entry<String, Long> e2) {
+                return e1.getValue().compareTo(e2.getValue());
+            }
+        });
+        final int remove = access.size() - this.maxPeers * 9 / 10;
+        for (int i = 0; i < remove; i++) this.peers.remove(access.get(i).getKey());
+    }
+
+    /**
+     * record an answer of a peer
+     * @param peerhash the hash of the peer
+     * @param time the response time in milliseconds
+     * @param results the number of results which the peer returned
+     */
+    public void success(final String peerhash, final long time, final int results) {
+        final Statistics s = statistics(peerhash);
+        synchronized (s) {
+            s.decay(System.currentTimeMillis());
+            s.addTime(time);
+            s.requests += 1.0d;
+            s.results += Math.max(0, results);
+        }
+    }
+
+    /**
+     * record a request which did not get an answer
+     * @param peerhash the hash of the peer
+     * @param time the time until the request failed in milliseconds
+     */
+    public void failure(final String peerhash, final long time) {
+        final Statistics s = statistics(peerhash);
+        synchronized (s) {
+            s.decay(System.currentTimeMillis());
+            s.addTime(time);
+            s.requests += 1.0d;
+            s.failures += 1.0d;
+        }
+    }
+
+    /**
+     * record a request which was cancelled because enough other peers answered first.
+     * This is not a failure of the peer, but the time is a lower bound of its response time.
+     * @param peerhash the hash of the peer
+     * @param time the time until the request was cancelled in milliseconds
+     */
+    public void cancelled(final String peerhash, final long time) {
+        final Statistics s = statistics(peerhash);
+        synchronized (s) {
+            s.decay(System.currentTimeMillis());
+            s.addTime(time);
+        }
+    }
+
+    /**
+     * get the statistics of a peer
+     * @param peerhash the hash of the peer
+     * @return the statistics or null if the peer was never asked
+     */
+    public Statistics get(final String peerhash) {
+        return this.peers.get(peerhash);
+    }
+
+    /**
+     * @return a copy of the statistics of all peers
+     */
+    public Map<String, Statistics> statistics() {
+        return new HashMap<String, Statistics>(this.peers);
+    }
+
+    public int size() {
+        return this.peers.size();
+    }
+
+    public void clear() {
+        this.peers.clear();
+    }
+
+    /**
+     * check if a peer failed on most of the recent requests
+     */
+    public boolean isFailing(final String peerhash) {
+        final Statistics s = this.peers.get(peerhash);
+        return s != null && s.requests() >= FAILING_MIN_REQUESTS && s.failureRate() >= FAILING_RATE;
+    }
+
+    /**
+     * compute a score for a peer; the score is the expected response time in milliseconds,
+     * increased for peers which fail or do not return results. A lower score is better.
+     */
+    public double score(final String peerhash) {
+        final Statistics s = this.peers.get(peerhash);
+        if (s == null) return UNKNOWN_LATENCY;
+        final long latency = s.latency(LATENCY_QUANTILE);
+        double score = latency < 0 ? UNKNOWN_LATENCY : latency;
+        score *= 1.0d + 4.0d * s.failureRate();
+        if (s.requests() - s.requests() * s.failureRate() >= 2.0d && s.yield() < 1.0d) score *= 2.0d;
+        return score;
+    }
+
+    /**
+     * sort peers by their score; peers which fail consistently are removed if enough other peers remain.
+     * The scores are randomized by +/-25% to distribute the load among peers with a similar performance.
+     * @param seeds the candidate peers
+     * @param minimum the minimum number of peers to keep, even if they are failing
+     * @param random a random source
+     * @return the peers, the best first
+     */
+    public List<Seed> rank(final Collection<Seed> seeds, final int minimum, final Random random) {
+        final List<Seed> ranked = new ArrayList<Seed>(seeds.size());
+        final List<Seed> failing = new ArrayList<Seed>();
+        final Map<String, Double> scores = new HashMap<String, Double>();
+        for (final Seed seed: seeds) {
+            if (seed == null || seed.hash == null) continue;
+            if (isFailing(seed.hash)) failing.add(seed); else ranked.add(seed);
+            scores.put(seed.hash, score(seed.hash) * (0.75d + 0.5d * random.nextDouble()));
+        }
+        final Comparator<Seed> comparator = new Comparator<Seed>() {
+            @Override
+            public int compare(final Seed s1, final Seed s2) {
+                return scores.get(s1.hash).compareTo(scores.get(s2.hash));
+            }
+        };
+        Collections.sort(ranked, comparator);
+        if (ranked.size() < minimum) {
+            Collections.sort(failing, comparator);
+            for (final Seed seed: failing) {
+                if (ranked.size() >= minimum) break;
+                ranked.add(seed);
+            }
+        }
+        return ranked;
+    }
+}
@@ -51,6 +51,7 @@ import java.net.InetAddress;
 import java.net.MalformedURLException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -87,6 +88,7 @@ import net.yacy.cora.federate.solr.connector.SolrConnector;
 import net.yacy.cora.federate.solr.instance.RemoteInstance;
 import net.yacy.cora.order.Base64Order;
 import net.yacy.cora.order.Digest;
+import net.yacy.cora.protocol.ByteArrayBody;
 import net.yacy.cora.protocol.ClientIdentification;
 import net.yacy.cora.protocol.Domains;
 import net.yacy.cora.protocol.http.HTTPClient;
@@ -166,6 +168,15 @@ public final class Protocol {
 
     }
     
+    // the seed table versions of remote peers from their last hello response; used to request only the changed seeds
+    private static final int SEEDVERSIONS_MAX = 1000;
+    private static final Map<String, Long> seedVersions = Collections.synchronizedMap(new LinkedHashMap<String, Long>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+        @Override protected boolean removeEldestEntry(final Map.Entry<String, Long> eldest) {
+            return size() > SEEDVERSIONS_MAX; // forget the least recently contacted peer
+        }
+    });
+
     /**
      * this is called to enrich the seed information by - own address (if peer is behind a nat/router) - check
      * peer type (virgin/junior/senior/principal) to do this, we send a 'Hello' to another peer this carries
@@ -196,6 +207,8 @@ public final class Protocol {
             parts.put("count", UTF8.StringBody("20"));
             parts.put("magic", UTF8.StringBody(Long.toString(Network.magic)));
             parts.put("seed", UTF8.StringBody(mySeed.genSeedStr(salt)));
+            final Long seedsince = targetHash == null ? null : seedVersions.get(targetHash);
+            if (seedsince != null) parts.put("seedsince", UTF8.StringBody(seedsince.toString()));
             // send request
             final long start = System.currentTimeMillis();
             // final byte[] content = HTTPConnector.getConnector(MultiProtocolURI.yacybotUserAgent).post(new MultiProtocolURI("http://" + address + "/yacy/hello.html"), 30000, yacySeed.b64Hash2hexHash(otherHash) + ".yacyh", parts);
@@ -222,6 +235,11 @@ public final class Protocol {
                 + ((result == null) ? "result null" : ("result=" + result.toString())));
             return null;
         }
+        // remember the seed table version of the remote peer for the next hello
+        final String seedversion = result.get("seedversion");
+        if (targetHash != null && seedversion != null && seedversion.length() > 0) try {
+            seedVersions.put(targetHash, Long.parseLong(seedversion));
+        } catch (final NumberFormatException e) {}
         Network.log.info("yacyClient.hello thread '" + Thread.currentThread().getName() + "' contacted peer at " + targetAddress + ", received " + ((content == null) ? "null" : content.length) + " bytes, time = " + responseTime + " milliseconds");
 
         // check consistency with expectation
@@ -1557,20 +1575,7 @@ public final class Protocol {
         }
 
         int indexcount = 0;
-        final StringBuilder entrypost = new StringBuilder(indexes.size() * 73);
-        Iterator<WordReference> eenum;
-        Reference entry;
-        for ( final ReferenceContainer<WordReference> ic : indexes ) {
-            eenum = ic.entries();
-            while ( eenum.hasNext() ) {
-                entry = eenum.next();
-                entrypost
-                    .append(ASCII.String(ic.getTermHash()))
-                    .append(entry.toPropertyForm())
-                    .append(serverCore.CRLF_STRING);
-                indexcount++;
-            }
-        }
+        for ( final ReferenceContainer<WordReference> ic : indexes ) indexcount += ic.size();
 
         if ( indexcount == 0 ) {
             // nothing to do but everything ok
@@ -1583,7 +1588,31 @@ public final class Protocol {
             final Map<String, ContentBody> parts = basicRequestParts(Switchboard.getSwitchboard(), targetSeed.hash, salt);
             parts.put("wordc", UTF8.StringBody(Integer.toString(indexes.size())));
             parts.put("entryc", UTF8.StringBody(Integer.toString(indexcount)));
-            parts.put("indexes", UTF8.StringBody(entrypost.toString()));
+            final int payloadSize;
+            if (useBinaryIndexTransfer(targetSeed)) {
+                // the binary format is already compressed
+                final byte[] frame = IndexTransferCodec.encodeRWI(indexes);
+                parts.put("format", UTF8.StringBody(IndexTransferCodec.FORMAT));
+                parts.put("indexes", new ByteArrayBody(frame, IndexTransferCodec.FILENAME));
+                payloadSize = frame.length;
+                gzipBody = false;
+            } else {
+                final StringBuilder entrypost = new StringBuilder(indexcount * 160);
+                Iterator<WordReference> eenum;
+                Reference entry;
+                for ( final ReferenceContainer<WordReference> ic : indexes ) {
+                    eenum = ic.entries();
+                    while ( eenum.hasNext() ) {
+                        entry = eenum.next();
+                        entrypost
+                            .append(ASCII.String(ic.getTermHash()))
+                            .append(entry.toPropertyForm())
+                            .append(serverCore.CRLF_STRING);
+                    }
+                }
+                parts.put("indexes", UTF8.StringBody(entrypost.toString()));
+                payloadSize = entrypost.length();
+            }
             // final byte[] content = HTTPConnector.getConnector(MultiProtocolURI.yacybotUserAgent).post(new MultiProtocolURI("http://" + address + "/yacy/transferRWI.html"), timeout, targetSeed.getHexHash() + ".yacyh", parts, gzipBody);
             final HTTPClient httpClient = new HTTPClient(ClientIdentification.yacyInternetCrawlerAgent, timeout);
             final byte[] content =
@@ -1597,7 +1626,7 @@ public final class Protocol {
 
             final Map<String, String> result = FileUtils.table(v);
             // return the transfered index data in bytes (for debugging only)
-            result.put("indexPayloadSize", Integer.toString(entrypost.length()));
+            result.put("indexPayloadSize", Integer.toString(payloadSize));
             return result;
         } catch (final Exception e ) {
             Network.log.info("yacyClient.transferRWI to " + address + " error: " + e.getMessage());
@@ -1636,6 +1665,8 @@ public final class Protocol {
         String resource;
         int urlc = 0;
         int urlPayloadSize = 0;
+        final boolean binary = useBinaryIndexTransfer(targetSeed);
+        final List<String> resources = new ArrayList<String>(uhs.length);
         metadataRetrievalRunning.incrementAndGet();
         for (int i = 0; i < uhs.length; i++) {
         	key = ASCII.getBytes(uhs[i]);
@@ -1648,7 +1679,7 @@ public final class Protocol {
                 resource = url.toString();
                 //System.out.println("*** DEBUG resource = " + resource);
                 if ( resource != null && resource.indexOf(0) == -1 ) {
-                    parts.put("url" + urlc, UTF8.StringBody(resource));
+                    if (binary) resources.add(resource); else parts.put("url" + urlc, UTF8.StringBody(resource));
                     urlPayloadSize += resource.length();
                     urlc++;
                 }
@@ -1658,6 +1689,13 @@ public final class Protocol {
         
         try {
             parts.put("urlc", UTF8.StringBody(Integer.toString(urlc)));
+            if (binary) {
+                final byte[] frame = IndexTransferCodec.encodeURLs(resources);
+                parts.put("format", UTF8.StringBody(IndexTransferCodec.FORMAT));
+                parts.put("urls", new ByteArrayBody(frame, IndexTransferCodec.FILENAME));
+                urlPayloadSize = frame.length;
+                gzipBody = false;
+            }
             // final byte[] content = HTTPConnector.getConnector(MultiProtocolURI.yacybotUserAgent).post(new MultiProtocolURI("http://" + address + "/yacy/transferURL.html"), timeout, targetSeed.getHexHash() + ".yacyh", parts, gzipBody);
             final HTTPClient httpClient = new HTTPClient(ClientIdentification.yacyInternetCrawlerAgent, timeout);
             final byte[] content =
@@ -1678,6 +1716,15 @@ public final class Protocol {
         }
     }
 
+    /**
+     * check if an index transmission to the target peer shall use the binary format
+     * @param targetSeed the target peer
+     * @return true if the target peer announced that it accepts the binary format and the binary format is not switched off
+     */
+    private static boolean useBinaryIndexTransfer(final Seed targetSeed) {
+        return targetSeed.getFlagBinaryIndexTransfer() && Switchboard.getSwitchboard().getConfigBool(SwitchboardConstants.INDEX_DIST_BINARY_FORMAT, true);
+    }
+
     public static Map<String, String> getProfile(final Seed targetSeed) {
         // ReferenceContainerCache<HostReference> ref = loadIDXHosts(targetSeed);
 
@@ -26,8 +26,11 @@ package net.yacy.peers;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.SortedSet;
@@ -36,6 +39,7 @@ import org.apache.solr.client.solrj.SolrQuery;
 
 import net.yacy.cora.document.analysis.Classification.ContentDomain;
 import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.federate.yacy.Distribution;
 import net.yacy.cora.protocol.Domains;
 import net.yacy.cora.storage.HandleSet;
 import net.yacy.cora.util.ConcurrentLog;
@@ -48,13 +52,14 @@ import net.yacy.search.SwitchboardConstants;
 import net.yacy.search.index.Segment;
 import net.yacy.search.query.QueryParams;
 import net.yacy.search.query.SearchEvent;
+import net.yacy.search.query.SearchTask;
 import net.yacy.search.query.SecondarySearchSuperviser;
 
 
-public class RemoteSearch extends Thread {
+public class RemoteSearch extends SearchTask {
 
-    private static final ThreadGroup ysThreadGroup = new ThreadGroup("yacySearchThreadGroup");
     public static final ConcurrentLog log = new ConcurrentLog("DHT");
+    private static final long DEADLINE_EXTRA = 5000; // time in addition to the search time after which a search to a remote peer is interrupted
     
     final private SearchEvent event;
     final private String wordhashes, excludehashes;
@@ -63,7 +68,8 @@ public class RemoteSearch extends Thread {
     final private SecondarySearchSuperviser secondarySearchSuperviser;
     final private Blacklist blacklist;
     final private Seed targetPeer;
-    private int urls;
+    private volatile int urls;
+    private volatile boolean hedgeCancelled; // set when the search was cancelled because other peers have already answered
     private final int count, maxDistance;
     private final long time;
     final private String language;
@@ -81,7 +87,7 @@ public class RemoteSearch extends Thread {
               final Seed targetPeer,
               final SecondarySearchSuperviser secondarySearchSuperviser,
               final Blacklist blacklist) {
-        super(ysThreadGroup, "yacySearch_" + targetPeer.getName());
+        super("yacySearch_" + targetPeer.getName(), event.scope);
         this.event = event;
         this.wordhashes = wordhashes;
         this.excludehashes = excludehashes;
@@ -92,14 +98,16 @@ public class RemoteSearch extends Thread {
         this.blacklist = blacklist;
         this.targetPeer = targetPeer;
         this.urls = -1;
+        this.hedgeCancelled = false;
         this.count = count;
         this.time = time;
         this.maxDistance = maxDistance;
     }
 
     @Override
-    public void run() {
+    protected void execute() {
         this.event.oneFeederStarted();
+        final long start = System.currentTimeMillis();
         try {
             this.urls = Protocol.primarySearch(
                         this.event,
@@ -118,11 +126,21 @@ public class RemoteSearch extends Thread {
                 // urls is an array of url hashes. this is only used for log output
                 this.event.peers.mySeed().incRI(this.urls);
                 this.event.peers.mySeed().incRU(this.urls);
+                this.event.peers.peerPerformance.success(this.targetPeer.hash, System.currentTimeMillis() - start, this.urls);
+            } else if (this.hedgeCancelled) {
+                this.event.peers.peerPerformance.cancelled(this.targetPeer.hash, System.currentTimeMillis() - start);
             } else {
                 Network.log.info("REMOTE SEARCH - no answer from remote peer " + this.targetPeer.hash + ":" + this.targetPeer.getName());
+                this.event.peers.peerPerformance.failure(this.targetPeer.hash, System.currentTimeMillis() - start);
             }
         } catch(InterruptedException e) {
         	Network.log.info("REMOTE SEARCH - interrupted search to remote peer " + this.targetPeer.hash + ":" + this.targetPeer.getName());
+        	// only a cancellation by cancelWhenAnswered is not the fault of the peer; a deadline expiry is a failure
+        	if (this.hedgeCancelled) {
+        	    this.event.peers.peerPerformance.cancelled(this.targetPeer.hash, System.currentTimeMillis() - start);
+        	} else {
+        	    this.event.peers.peerPerformance.failure(this.targetPeer.hash, System.currentTimeMillis() - start);
+        	}
         } catch (final Exception e) {
             ConcurrentLog.logException(e);
         } finally {
@@ -173,6 +191,7 @@ public class RemoteSearch extends Thread {
         // prepare seed targets and threads
         Random random = new Random(System.currentTimeMillis());
         Collection<Seed> dhtPeers = null;
+        HandleSet dhtWords = null; // the words which determine the dht positions of the selected peers; null for a random selection
         if (clusterselection != null) {
             dhtPeers = DHTSelection.selectClusterPeers(event.peers, clusterselection);
         } else {
@@ -180,9 +199,10 @@ public class RemoteSearch extends Thread {
                 if (event.query.modifier.sitehost != null && event.query.modifier.sitehost.length() > 0) {
                     // select peers according to host name, not the query goal
                     String newGoal = Domains.getSmartSLD(event.query.modifier.sitehost);
+                    dhtWords = QueryParams.hashes2Set(ASCII.String(Word.word2hash(newGoal)));
                     dhtPeers = DHTSelection.selectDHTSearchTargets(
                             event.peers,
-                            QueryParams.hashes2Set(ASCII.String(Word.word2hash(newGoal))),
+                            dhtWords,
                             minage,
                             redundancy, event.peers.redundancy(),
                             random);
@@ -191,33 +211,40 @@ public class RemoteSearch extends Thread {
                     dhtPeers = DHTSelection.seedsByAge(event.peers, false, event.peers.redundancy()).values();
                 }
             } else {
+                dhtWords = event.query.getQueryGoal().getIncludeHashes();
                 dhtPeers = DHTSelection.selectDHTSearchTargets(
                                 event.peers,
-                                event.query.getQueryGoal().getIncludeHashes(),
+                                dhtWords,
                                 minage,
                                 redundancy, event.peers.redundancy(),
                                 random);
-                // this set of peers may be too large and consume too many threads if more than one word is searched.
-                // to prevent overloading, we do a subset collection based on random to prevent the death of the own peer
-                // and to do a distributed load-balancing on the target peers
-                long targetSize = 1 + redundancy * event.peers.scheme.verticalPartitions(); // this is the maximum for one word plus one
-                if (dhtPeers.size() > targetSize) {
-                    ArrayList<Seed> pa = new ArrayList<Seed>(dhtPeers.size());
-                    pa.addAll(dhtPeers);
-                    dhtPeers.clear();
-                    for (int i = 0; i < targetSize; i++) dhtPeers.add(pa.remove(random.nextInt(pa.size())));
-                }
             }
         }
         if (dhtPeers == null) dhtPeers = new HashSet<Seed>();
 
+        // the set of dht peers may be too large and consume too many threads if more than one word is searched.
+        // to prevent overloading, we do a subset collection of the peers with the best performance record. The ranking is randomized
+        // to do a distributed load-balancing on the target peers. Some more peers than needed are selected; when enough of them
+        // have answered, the search to the remaining (slowest) peers is cancelled.
+        final PeerPerformance performance = event.peers.peerPerformance;
+        final float hedgeFactor = Math.max(0.0f, sb.getConfigFloat(SwitchboardConstants.REMOTESEARCH_HEDGE_FACTOR, 0.25f));
+        int needed = dhtPeers.size();
+        if (clusterselection == null) {
+            final int targetSize = 1 + redundancy * event.peers.scheme.verticalPartitions(); // this is the maximum for one word plus one
+            final List<Seed> ranked = performance.rank(dhtPeers, 1, random);
+            final int selectSize = Math.min(ranked.size(), (int) Math.ceil(targetSize * (1.0f + hedgeFactor)));
+            dhtPeers = new ArrayList<Seed>(ranked.subList(0, selectSize));
+            needed = Math.max(1, (int) Math.ceil(selectSize / (1.0f + hedgeFactor)));
+        }
+
         // select node targets
-        final Collection<Seed> robinsonPeers = DHTSelection.selectExtraTargets(event.peers, event.query.getQueryGoal().getIncludeHashes(), minage, dhtPeers, robinsoncount, random);
+        final Collection<Seed> robinsonPeers = performance.rank(DHTSelection.selectExtraTargets(event.peers, event.query.getQueryGoal().getIncludeHashes(), minage, dhtPeers, robinsoncount, random), 1, random);
         
         if (event.peers != null) {
             if (sb.getConfigBool(SwitchboardConstants.DEBUG_SEARCH_REMOTE_DHT_TESTLOCAL, false)) {
                 dhtPeers.clear();
                 dhtPeers.add(event.peers.mySeed());
+                needed = 1;
             }
             
             if (sb.getConfigBool(SwitchboardConstants.DEBUG_SEARCH_REMOTE_SOLR_TESTLOCAL, false)) {
@@ -227,7 +254,7 @@ public class RemoteSearch extends Thread {
         }
         
         log.info("preparing remote search: shortmem=" + (shortmem ? "true" : "false") + ", indexingQueueSize=" + indexingQueueSize +
-                ", redundancy=" + redundancy + ", minage=" + minage + ", dhtPeers=" + dhtPeers.size() + ", robinsonpeers=" + robinsonPeers.size() + ", health: " + (healthMessage.length() > 0 ? healthMessage.substring(2) : "perfect"));
+                ", redundancy=" + redundancy + ", minage=" + minage + ", dhtPeers=" + dhtPeers.size() + ", needed=" + needed + ", robinsonpeers=" + robinsonPeers.size() + ", health: " + (healthMessage.length() > 0 ? healthMessage.substring(2) : "perfect"));
         
         
         // start solr searches
@@ -236,13 +263,14 @@ public class RemoteSearch extends Thread {
             final SolrQuery solrQuery = event.query.solrQuery(event.getQuery().contentdom, start == 0, event.excludeintext_image);
             for (Seed s: robinsonPeers) {
                 if (MemoryControl.shortStatus() || Memory.load() > sb.getConfigFloat(SwitchboardConstants.REMOTESEARCH_MAXLOAD_SOLR, 4.0f)) continue;
-                Thread t = solrRemoteSearch(event, solrQuery, start, count, s, targets, blacklist);
+                SearchTask t = solrRemoteSearch(event, solrQuery, start, count, s, targets, blacklist);
                 event.nodeSearchThreads.add(t);
             }
         }
         
         // start search to YaCy DHT peers
         if (!sb.getConfigBool(SwitchboardConstants.DEBUG_SEARCH_REMOTE_DHT_OFF, false)) {
+            final List<RemoteSearch> started = new ArrayList<RemoteSearch>(dhtPeers.size());
             for (Seed dhtPeer: dhtPeers) {
                 if (dhtPeer == null || dhtPeer.hash == null) continue;
                 if (MemoryControl.shortStatus() || Memory.load() > sb.getConfigFloat(SwitchboardConstants.REMOTESEARCH_MAXLOAD_RWI, 8.0f)) continue;
@@ -260,17 +288,103 @@ public class RemoteSearch extends Thread {
                         dhtPeer,
                         event.secondarySearchSuperviser,
                         blacklist);
-                    rs.start();
+                    rs.start(time + DEADLINE_EXTRA);
                     event.primarySearchThreadsL.add(rs);
+                    started.add(rs);
                 } catch (final OutOfMemoryError e) {
                     ConcurrentLog.logException(e);
                     break;
                 }
             }
+            if (needed < started.size()) cancelWhenAnswered(event, started, needed, time, dhtWords);
+        }
+    }
+
+    /**
+     * start a thread which cancels the remaining searches as soon as enough peers have answered.
+     * A search is only cancelled if the vertical dht partitions of its peer have already been answered by other peers,
+     * so that no part of the index is missing in the result.
+     * The thread is only started if the search thread pool has a free thread, because it must not block the thread which
+     * starts the remote searches; otherwise all searches run until they answer or time out.
+     * @param searchThreads the started searches
+     * @param needed the number of answers which are sufficient
+     * @param time the time budget of the search in milliseconds
+     * @param dhtWords the words which determined the selection of the peers or null if the peers were selected at random
+     */
+    private static void cancelWhenAnswered(final SearchEvent event, final List<RemoteSearch> searchThreads, final int needed, final long time, final HandleSet dhtWords) {
+        final Map<RemoteSearch, Set<Long>> partitions = new HashMap<RemoteSearch, Set<Long>>();
+        for (final RemoteSearch searchThread: searchThreads) {
+            partitions.put(searchThread, dhtPartitions(event.peers.scheme, dhtWords, searchThread.targetPeer.hash));
+        }
+        if (!new SearchTask("RemoteSearch.cancelWhenAnswered", event.scope) {
+            @Override
+            protected void execute() {
+                final long timeout = System.currentTimeMillis() + time;
+                final Set<RemoteSearch> cancelled = new HashSet<RemoteSearch>();
+                while (System.currentTimeMillis() < timeout) {
+                    int answered = 0, alive = 0;
+                    final Set<Long> answeredPartitions = new HashSet<Long>();
+                    for (final RemoteSearch searchThread: searchThreads) {
+                        if (searchThread.isAlive()) {
+                            if (!cancelled.contains(searchThread)) alive++;
+                        } else if (searchThread.urls >= 0) {
+                            answered++;
+                            answeredPartitions.addAll(partitions.get(searchThread));
+                        }
+                    }
+                    if (alive == 0) return;
+                    if (answered >= needed) {
+                        int c = 0;
+                        for (final RemoteSearch searchThread: searchThreads) {
+                            if (!searchThread.isAlive() || cancelled.contains(searchThread)) continue;
+                            if (!answeredPartitions.containsAll(partitions.get(searchThread))) continue; // this peer is still needed for its partition
+                            searchThread.hedgeCancelled = true;
+                            searchThread.interrupt();
+                            cancelled.add(searchThread);
+                            c++;
+                        }
+                        if (c > 0) log.info("remote search: " + answered + " peers answered, cancelled search to " + c + " slower peers");
+                        if (c == alive) return;
+                    }
+                    try {
+                        Thread.sleep(50);
+                    } catch (final InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        }.tryStart(0)) log.info("remote search: no free search thread, searching all " + searchThreads.size() + " peers without cancellation");
+    }
+
+    /**
+     * compute the vertical dht partitions to which a peer belongs for the given words: for each word that is the partition
+     * with the nearest target position before the position of the peer. Peers are selected clockwise from these positions.
+     * @param scheme the dht distribution
+     * @param words the word hashes or null if the peers were not selected by their dht position
+     * @param peerhash the hash of the peer
+     * @return a set of partition numbers combined with the index of the word
+     */
+    protected static Set<Long> dhtPartitions(final Distribution scheme, final HandleSet words, final String peerhash) {
+        final Set<Long> p = new HashSet<Long>();
+        if (words == null) return p;
+        final long peerPosition = Distribution.horizontalDHTPosition(ASCII.getBytes(peerhash));
+        long w = 0;
+        for (final byte[] word: words) {
+            int nearest = 0;
+            long distance = Long.MAX_VALUE;
+            for (int verticalPosition = 0; verticalPosition < scheme.verticalPartitions(); verticalPosition++) {
+                final long d = Distribution.horizontalDHTDistance(scheme.verticalDHTPosition(word, verticalPosition), peerPosition);
+                if (d < distance) {
+                    distance = d;
+                    nearest = verticalPosition;
+                }
+            }
+            p.add((w++ << 32) | nearest);
         }
+        return p;
     }
 
-    public static Thread secondaryRemoteSearch(
+    public static SearchTask secondaryRemoteSearch(
     		final SearchEvent event,
             final Set<String> wordhashes,
             final String urlhashes,
@@ -286,10 +400,9 @@ public class RemoteSearch extends Thread {
         // prepare seed targets and threads
         final Seed targetPeer = event.peers.getConnected(targethash);
         if (targetPeer == null || targetPeer.hash == null) return null;
-        Thread secondary = new Thread() {
+        SearchTask secondary = new SearchTask("RemoteSearch.secondaryRemoteSearch(" + wordhashes + " to " + targethash + ")", event.scope) {
             @Override
-            public void run() {
-                this.setName("RemoteSearch.secondaryRemoteSearch(" + wordhashes + " to " + targethash + ")");
+            protected void execute() {
                 event.oneFeederStarted();
                 try {
                     int urls = Protocol.secondarySearch(
@@ -320,11 +433,11 @@ public class RemoteSearch extends Thread {
                 }
             }
         };
-        secondary.start();
+        secondary.start(time + DEADLINE_EXTRA);
         return secondary;
     }
 
-    public static Thread solrRemoteSearch(
+    public static SearchTask solrRemoteSearch(
                     final SearchEvent event,
                     final SolrQuery solrQuery,
                     final int start,
@@ -339,11 +452,11 @@ public class RemoteSearch extends Thread {
         // check own peer status
         if (event.peers.mySeed() == null) { return null; }
         // prepare threads
-        Thread solr = new Thread() {
+        SearchTask solr = new SearchTask("RemoteSearch.solrRemoteSearch(" + solrQuery.getQuery() + " to " + (targetPeer == null ? "myself" : targetPeer.hash) + ")", event.scope) {
             @Override
-            public void run() {
-                this.setName("RemoteSearch.solrRemoteSearch(" + solrQuery.getQuery() + " to " + (targetPeer == null ? "myself" : targetPeer.hash) + ")");
+            protected void execute() {
                     int urls = 0;
+                    final long timer = System.currentTimeMillis();
                     try {
                         event.oneFeederStarted();
                         urls = Protocol.solrQuery(
@@ -358,9 +471,11 @@ public class RemoteSearch extends Thread {
                             // urls is an array of url hashes. this is only used for log output
                             event.peers.mySeed().incRI(urls);
                             event.peers.mySeed().incRU(urls);
+                            if (targetPeer != null) event.peers.peerPerformance.success(targetPeer.hash, System.currentTimeMillis() - timer, urls);
                         } else {
                             if (targetPeer != null) {
                                 Network.log.info("REMOTE SEARCH - no answer from remote peer " + targetPeer.hash + ":" + targetPeer.getName());
+                                event.peers.peerPerformance.failure(targetPeer.hash, System.currentTimeMillis() - timer);
                             }
                         }
                     } catch (final InterruptedException e) {
@@ -40,6 +40,7 @@ import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.document.encoding.UTF8;
@@ -91,6 +92,7 @@ public final class SeedDB implements AlternativeDomainNames {
     protected String lastSeedUpload_myIP = "";
 
     public  PeerActions peerActions;
+    public  PeerPerformance peerPerformance;
     public  NewsPool newsPool;
 
     private int netRedundancy;
@@ -98,6 +100,11 @@ public final class SeedDB implements AlternativeDomainNames {
 
     private Seed mySeed; // my own seed
 
+    // an in-memory copy of the connected peers table; it is created on demand and replaced with each update
+    private volatile SeedSnapshot connectedSnapshot = null;
+    // the version counter of the snapshots; it starts with the current time so that versions are increasing across restarts
+    private final AtomicLong snapshotVersion = new AtomicLong(System.currentTimeMillis());
+
     public SeedDB(
             final File networkRoot,
             final String seedActiveDBFileName,
@@ -131,6 +138,7 @@ public final class SeedDB implements AlternativeDomainNames {
 
         // deploy peer actions
         this.peerActions = new PeerActions(this, this.newsPool);
+        this.peerPerformance = new PeerPerformance();
     }
 
     public void relocate(
@@ -165,6 +173,7 @@ public final class SeedDB implements AlternativeDomainNames {
         this.seedActiveDB = openSeedTable(this.seedActiveDBFile);
         this.seedPassiveDB = openSeedTable(this.seedPassiveDBFile);
         this.seedPotentialDB = openSeedTable(this.seedPotentialDBFile);
+        this.connectedSnapshot = null;
 
         initMySeed();
         this.mySeed.setName(peername);
@@ -179,6 +188,7 @@ public final class SeedDB implements AlternativeDomainNames {
 
         // deploy peer actions
         this.peerActions = new PeerActions(this, this.newsPool);
+        this.peerPerformance = new PeerPerformance();
     }
 
     private synchronized void initMySeed() {
@@ -278,6 +288,7 @@ public final class SeedDB implements AlternativeDomainNames {
             this.seedActiveDB.delete(mySeedHash);
             this.seedPassiveDB.delete(mySeedHash);
             this.seedPotentialDB.delete(mySeedHash);
+            snapshotRemove(mySeedHash);
         } catch (final IOException e) { ConcurrentLog.warn("yacySeedDB", "could not remove hash ("+ e.getClass() +"): "+ e.getMessage()); }
     }
 
@@ -323,6 +334,7 @@ public final class SeedDB implements AlternativeDomainNames {
         	ConcurrentLog.warn("yacySeedDB", "could not delete file "+ seedDBFile);
         // create new seed database
         seedDB = openSeedTable(seedDBFile);
+        this.connectedSnapshot = null;
         return seedDB;
     }
 
@@ -399,8 +411,32 @@ public final class SeedDB implements AlternativeDomainNames {
     }
 
     public Iterator<Seed> seedsConnected(final boolean up, final boolean rot, final byte[] firstHash, final double minVersion) {
-        // enumerates seed-type objects: all seeds sequentially without order
-        return new seedEnum(up, rot, (firstHash == null) ? null : firstHash, null, this.seedActiveDB, minVersion);
+        // enumerates seed-type objects: all seeds sequentially in the order of their hashes
+        return connectedSnapshot().iterator(up, rot, firstHash, minVersion);
+    }
+
+    /**
+     * get an immutable copy of the connected peers table. The copy is created from the database on first access
+     * and then replaced with each change of the connected peers.
+     * @return the current snapshot of the connected peers
+     */
+    public SeedSnapshot connectedSnapshot() {
+        final SeedSnapshot snapshot = this.connectedSnapshot;
+        if (snapshot != null) return snapshot;
+        synchronized (this) {
+            if (this.connectedSnapshot == null) {
+                this.connectedSnapshot = SeedSnapshot.build(new seedEnum(true, false, null, null, this.seedActiveDB, 0.0d), this.snapshotVersion.incrementAndGet());
+            }
+            return this.connectedSnapshot;
+        }
+    }
+
+    private synchronized void snapshotPut(final Seed seed) {
+        if (this.connectedSnapshot != null) this.connectedSnapshot = this.connectedSnapshot.with(seed, this.snapshotVersion.incrementAndGet());
+    }
+
+    private synchronized void snapshotRemove(final byte[] hash) {
+        if (this.connectedSnapshot != null) this.connectedSnapshot = this.connectedSnapshot.without(hash, this.snapshotVersion.incrementAndGet());
     }
 
     public Iterator<Seed> seedsDisconnected(final boolean up, final boolean rot, final byte[] firstHash, final double minVersion) {
@@ -471,6 +507,7 @@ public final class SeedDB implements AlternativeDomainNames {
                 this.seedActiveDB.insert(ASCII.getBytes(seed.hash), seedPropMap);
                 this.seedPassiveDB.delete(ASCII.getBytes(seed.hash));
                 this.seedPotentialDB.delete(ASCII.getBytes(seed.hash));
+                snapshotPut(seed);
             } catch (final Exception e) {
                 Network.log.severe("ERROR add: seed.db corrupt (" + e.getMessage() + "); resetting seed.db", e);
                 resetActiveTable();
@@ -484,6 +521,7 @@ public final class SeedDB implements AlternativeDomainNames {
             try {
                 this.seedActiveDB.delete(ASCII.getBytes(seed.hash));
                 this.seedPotentialDB.delete(ASCII.getBytes(seed.hash));
+                snapshotRemove(ASCII.getBytes(seed.hash));
             } catch (final Exception e) { ConcurrentLog.warn("yacySeedDB", "could not remove hash ("+ e.getClass() +"): "+ e.getMessage()); }
             //seed.put(yacySeed.LASTSEEN, yacyCore.shortFormatter.format(new Date(yacyCore.universalTime())));
             try {
@@ -503,6 +541,7 @@ public final class SeedDB implements AlternativeDomainNames {
             try {
                 this.seedActiveDB.delete(ASCII.getBytes(seed.hash));
                 this.seedPassiveDB.delete(ASCII.getBytes(seed.hash));
+                snapshotRemove(ASCII.getBytes(seed.hash));
             } catch (final Exception e) { ConcurrentLog.warn("yacySeedDB", "could not remove hash ("+ e.getClass() +"): "+ e.getMessage()); }
             //seed.put(yacySeed.LASTSEEN, yacyCore.shortFormatter.format(new Date(yacyCore.universalTime())));
             try {
@@ -621,6 +660,7 @@ public final class SeedDB implements AlternativeDomainNames {
         synchronized (this) {
             if (this.seedActiveDB.containsKey(ASCII.getBytes(seed.hash))) try {
                 this.seedActiveDB.insert(ASCII.getBytes(seed.hash), seedPropMap);
+                snapshotPut(seed);
             } catch (final Exception e) {
                 Network.log.severe("ERROR add: seed.db corrupt (" + e.getMessage() + "); resetting seed.db", e);
                 resetActiveTable();
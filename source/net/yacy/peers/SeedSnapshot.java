@@ -0,0 +1,296 @@
+/**
+ *  SeedSnapshot.java
+ *  part of YaCy, http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.peers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.order.Base64Order;
+
+/**
+ * An immutable, in-memory table of the connected peers, ordered by peer hash, which is also the order of the DHT.
+ * The fields which are used to select and order peers (last-seen time and peer version) are stored in primitive columns,
+ * so that the iteration does not need to parse the property maps of the seeds. A snapshot is never changed: an update
+ * creates a new snapshot (copy-on-write), so that readers can iterate over a snapshot without synchronization while the seed database is updated.
+ *
+ * Each snapshot carries a version number which is increased with each update. For each peer the snapshot stores the
+ * version in which the peer was changed the last time; this makes it possible to compute the peers which changed since
+ * a given version and to exchange only these peers with other peers.
+ */
+public final class SeedSnapshot {
+
+    private final long version;
+    private final Seed[] seeds;
+    private final byte[][] hashes;
+    private final long[] lastSeen, changed;
+    private final double[] peerVersion;
+
+    private SeedSnapshot(final long version, final int size) {
+        this.version = version;
+        this.seeds = new Seed[size];
+        this.hashes = new byte[size][];
+        this.lastSeen = new long[size];
+        this.changed = new long[size];
+        this.peerVersion = new double[size];
+    }
+
+    private void set(final int i, final Seed original, final long changedVersion) {
+        // store a copy, because the seed object of the seed database may be changed after the snapshot was taken
+        final Seed seed = original.clone();
+        this.seeds[i] = seed;
+        this.hashes[i] = ASCII.getBytes(seed.hash);
+        this.lastSeen[i] = seed.getLastSeenUTC();
+        this.changed[i] = changedVersion;
+        this.peerVersion[i] = seed.getVersion();
+    }
+
+    private void copy(final SeedSnapshot from, final int fromIndex, final int toIndex, final int length) {
+        System.arraycopy(from.seeds, fromIndex, this.seeds, toIndex, length);
+        System.arraycopy(from.hashes, fromIndex, this.hashes, toIndex, length);
+        System.arraycopy(from.lastSeen, fromIndex, this.lastSeen, toIndex, length);
+        System.arraycopy(from.changed, fromIndex, this.changed, toIndex, length);
+        System.arraycopy(from.peerVersion, fromIndex, this.peerVersion, toIndex, length);
+    }
+
+    /**
+     * create a snapshot from seeds
+     * @param seeds the seeds, in any order; seeds with the same hash replace each other
+     * @param version the version of the snapshot; all seeds are marked as changed in this version
+     * @return the snapshot
+     */
+    public static SeedSnapshot build(final Iterator<Seed> seeds, final long version) {
+        final List<Seed> list = new ArrayList<Seed>();
+        while (seeds.hasNext()) {
+            final Seed seed = seeds.next();
+            if (seed != null && seed.hash != null) list.add(seed);
+        }
+        final Seed[] sorted = list.toArray(new Seed[list.size()]);
+        Arrays.sort(sorted, new Comparator<Seed>() {
+            @Override
+            public int compare(final Seed s1, final Seed s2) {
+                return Base64Order.enhancedCoder.compare(ASCII.getBytes(s1.hash), ASCII.getBytes(s2.hash));
+            }
+        });
+        int size = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (size > 0 && sorted[size - 1].hash.equals(sorted[i].hash)) size--;
+            sorted[size++] = sorted[i];
+        }
+        final SeedSnapshot s = new SeedSnapshot(version, size);
+        for (int i = 0; i < size; i++) s.set(i, sorted[i], version);
+        return s;
+    }
+
+    /**
+     * create a snapshot which contains a new or changed seed
+     * @param seed the seed
+     * @param newVersion the version of the new snapshot
+     * @return the new snapshot
+     */
+    public SeedSnapshot with(final Seed seed, final long newVersion) {
+        final int p = indexOf(ASCII.getBytes(seed.hash));
+        final SeedSnapshot s;
+        if (p >= 0) {
+            s = new SeedSnapshot(newVersion, this.seeds.length);
+            s.copy(this, 0, 0, this.seeds.length);
+            s.set(p, seed, newVersion);
+        } else {
+            final int q = -p - 1;
+            s = new SeedSnapshot(newVersion, this.seeds.length + 1);
+            s.copy(this, 0, 0, q);
+            s.set(q, seed, newVersion);
+            s.copy(this, q, q + 1, this.seeds.length - q);
+        }
+        return s;
+    }
+
+    /**
+     * create a snapshot without a seed
+     * @param hash the hash of the seed
+     * @param newVersion the version of the new snapshot
+     * @return the new snapshot or this snapshot if it does not contain the seed
+     */
+    public SeedSnapshot without(final byte[] hash, final long newVersion) {
+        final int p = indexOf(hash);
+        if (p < 0) return this;
+        final SeedSnapshot s = new SeedSnapshot(newVersion, this.seeds.length - 1);
+        s.copy(this, 0, 0, p);
+        s.copy(this, p + 1, p, this.seeds.length - p - 1);
+        return s;
+    }
+
+    /**
+     * find a peer hash
+     * @param hash the peer hash
+     * @return the index of the peer if it is contained in the snapshot or (-(insertion point) - 1) if not
+     */
+    public int indexOf(final byte[] hash) {
+        int low = 0, high = this.hashes.length - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int c = Base64Order.enhancedCoder.compare(this.hashes[mid], hash);
+            if (c < 0) low = mid + 1;
+            else if (c > 0) high = mid - 1;
+            else return mid;
+        }
+        return -(low + 1);
+    }
+
+    public long version() {
+        return this.version;
+    }
+
+    public int size() {
+        return this.seeds.length;
+    }
+
+    public boolean contains(final byte[] hash) {
+        return indexOf(hash) >= 0;
+    }
+
+    public Seed get(final byte[] hash) {
+        final int p = indexOf(hash);
+        return p < 0 ? null : this.seeds[p];
+    }
+
+    /**
+     * get the peers which were added or changed after a given version in the order of their changes
+     * @param since the version
+     * @param count the maximum number of peers
+     * @return the seeds, the earliest change first
+     */
+    public List<Seed> changedSince(final long since, final int count) {
+        final List<Integer> index = new ArrayList<Integer>();
+        for (int i = 0; i < this.changed.length; i++) if (this.changed[i] > since) index.add(i);
+        Collections.sort(index, new Comparator<Integer>() {
+            @Override
+            public int compare(final Integer o1, final Integer o2) {
+                final long c1 = SeedSnapshot.this.changed[o1.intValue()], c2 = SeedSnapshot.this.changed[o2.intValue()];
+                return c1 < c2 ? -1 : c1 > c2 ? 1 : 0;
+            }
+        });
+        final List<Seed> result = new ArrayList<Seed>(Math.min(count, index.size()));
+        for (final Integer i: index) {
+            if (result.size() >= count) break;
+            result.add(this.seeds[i.intValue()]);
+        }
+        return result;
+    }
+
+    /**
+     * get the version in which a peer was added or changed the last time
+     * @param hash the peer hash
+     * @return the version or -1 if the snapshot does not contain the peer
+     */
+    public long changedVersion(final byte[] hash) {
+        final int p = indexOf(hash);
+        return p < 0 ? -1 : this.changed[p];
+    }
+
+    /**
+     * get the peers ordered by the time when they had been seen the last time
+     * @param youngest if true, the most recently seen peers come first, otherwise the oldest
+     * @param count the maximum number of peers
+     * @return the seeds
+     */
+    public List<Seed> byLastSeen(final boolean youngest, final int count) {
+        final List<Integer> index = new ArrayList<Integer>(this.seeds.length);
+        for (int i = 0; i < this.seeds.length; i++) index.add(i);
+        return byLastSeen(index, youngest, count);
+    }
+
+    private List<Seed> byLastSeen(final List<Integer> index, final boolean youngest, final int count) {
+        Collections.sort(index, new Comparator<Integer>() {
+            @Override
+            public int compare(final Integer o1, final Integer o2) {
+                final long l1 = SeedSnapshot.this.lastSeen[o1.intValue()], l2 = SeedSnapshot.this.lastSeen[o2.intValue()];
+                final int c = l1 < l2 ? -1 : l1 > l2 ? 1 : 0;
+                return youngest ? -c : c;
+            }
+        });
+        final List<Seed> result = new ArrayList<Seed>(Math.min(count, index.size()));
+        for (final Integer i: index) {
+            if (result.size() >= count) break;
+            result.add(this.seeds[i.intValue()]);
+        }
+        return result;
+    }
+
+    /**
+     * iterate over the seeds in the order of their hashes
+     * @param up true for ascending order
+     * @param rot if true, the iteration continues at the other end of the table until all seeds are enumerated
+     * @param firstHash the hash where the iteration starts or null to start at the beginning
+     * @param minVersion the minimum version of the peers; peers with version 0 (developer peers) are always included
+     * @return an iterator of seeds
+     */
+    public Iterator<Seed> iterator(final boolean up, final boolean rot, final byte[] firstHash, final double minVersion) {
+        final int size = this.seeds.length;
+        int first;
+        if (firstHash == null) {
+            first = up ? 0 : size - 1;
+        } else {
+            final int p = indexOf(firstHash);
+            first = p >= 0 ? p : up ? -p - 1 : -p - 2;
+        }
+        if (rot && size > 0) first = (first % size + size) % size;
+        final int start = first;
+        return new Iterator<Seed>() {
+            private int p = start, steps = rot ? size : (up ? size - start : start + 1);
+            private Seed next = advance();
+
+            private Seed advance() {
+                while (this.steps > 0 && this.p >= 0 && this.p < size) {
+                    final int i = this.p;
+                    this.steps--;
+                    this.p += up ? 1 : -1;
+                    if (rot) this.p = (this.p + size) % size;
+                    final double v = SeedSnapshot.this.peerVersion[i];
+                    if (v >= minVersion || v == 0.0d) return SeedSnapshot.this.seeds[i];
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return this.next != null;
+            }
+
+            @Override
+            public Seed next() {
+                if (this.next == null) throw new NoSuchElementException();
+                final Seed seed = this.next;
+                this.next = advance();
+                return seed;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
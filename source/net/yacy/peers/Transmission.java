@@ -88,6 +88,7 @@ public class Transmission {
         private final ReferenceContainerCache<WordReference> containers;
         private final HandleSet                      references;
         private final HandleSet                      badReferences;
+        private final Set<String>                    failedTargets; // hashes of peers which did not accept this chunk
 
         /**
          * generate a new dispatcher target. such a target is defined with a primary target and
@@ -101,6 +102,7 @@ public class Transmission {
             this.containers = new ReferenceContainerCache<WordReference>(Segment.wordReferenceFactory, Segment.wordOrder, Word.commonHashLength);
             this.references = new RowHandleSet(WordReferenceRow.urlEntryRow.primaryKeyLength, WordReferenceRow.urlEntryRow.objectOrder, 0);
             this.badReferences = new RowHandleSet(WordReferenceRow.urlEntryRow.primaryKeyLength, WordReferenceRow.urlEntryRow.objectOrder, 0);
+            this.failedTargets = new HashSet<String>();
         }
 
         /*
@@ -203,6 +205,22 @@ public class Transmission {
             return this.containers.size();
         }
 
+        /**
+         * @return the number of references in all containers of this chunk
+         */
+        public int referencesSize() {
+            int c = 0;
+            for (final ReferenceContainer<WordReference> ic : this) c += ic.size();
+            return c;
+        }
+
+        /**
+         * @return the hashes of the peers which failed to receive this chunk, including the current target if it failed
+         */
+        public Set<String> failedTargets() {
+            return this.failedTargets;
+        }
+
         public Seed dhtTarget() {
             return this.dhtTarget;
         }
@@ -237,6 +255,7 @@ public class Transmission {
                 Transmission.this.log.info("Transfer finished of chunk to target " + this.dhtTarget.hash + "/" + this.dhtTarget.getName());
                 return true;
             }
+            this.failedTargets.add(this.dhtTarget.hash);
             Transmission.this.log.info(
                     "Index transfer to peer " + this.dhtTarget.getName() + ":" + this.dhtTarget.hash +
                     " failed: " + error);
@@ -51,6 +51,7 @@ import net.yacy.cora.protocol.HeaderFramework;
 import net.yacy.cora.protocol.RequestHeader;
 import net.yacy.cora.protocol.ResponseHeader;
 import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.cora.util.Metrics;
 import net.yacy.crawler.data.Cache;
 import net.yacy.crawler.data.CrawlProfile;
 import net.yacy.crawler.retrieval.FTPLoader;
@@ -71,6 +72,8 @@ public final class LoaderDispatcher {
     private final static int accessTimeMaxsize = 1000;
     private final static ConcurrentLog log = new ConcurrentLog("LOADER");
     private static final ConcurrentHashMap<String, Long> accessTime = new ConcurrentHashMap<String, Long>(); // to protect targets from DDoS
+    private static final Metrics.Counter cacheHits = Metrics.counter("yacy_loader_cache_hits", "number of resources which had been loaded from the cache");
+    private static final Metrics.Counter loadErrors = Metrics.counter("yacy_loader_errors", "number of resources which could not be loaded");
 
     private final Switchboard sb;
     private final HashSet<String> supportedProtocols;
@@ -90,6 +93,9 @@ public final class LoaderDispatcher {
         this.smbLoader = new SMBLoader(sb, LoaderDispatcher.log);
         this.fileLoader = new FileLoader(sb, LoaderDispatcher.log);
         this.loaderSteering = new ConcurrentHashMap<DigestURL, Semaphore>();
+        Metrics.gauge("yacy_loader_active", "number of urls which are loaded at the moment", new Metrics.Probe() {
+            @Override public double value() {return LoaderDispatcher.this.loaderSteering.size();}
+        });
     }
 
     public boolean isSupportedProtocol(final String protocol) {
@@ -181,6 +187,7 @@ public final class LoaderDispatcher {
             // finally block cleans up loaderSteering and semaphore
             return response;
         } catch (final Throwable e) {
+            loadErrors.inc();
             throw new IOException(e);
         } finally {
             // release the semaphore anyway
@@ -213,6 +220,7 @@ public final class LoaderDispatcher {
         // check if we have the page in the cache
         Response response = loadFromCache(request, cacheStrategy, agent, url, crawlProfile);
         if(response != null) {
+            cacheHits.inc();
         	return response;
         }
 
@@ -235,21 +243,28 @@ public final class LoaderDispatcher {
         }
 
         // load resource from the internet
-        if (protocol.equals("http") || protocol.equals("https")) {
-            response = this.httpLoader.load(request, crawlProfile, maxFileSize, blacklistType, agent);
-        } else if (protocol.equals("ftp")) {
-            response = this.ftpLoader.load(request, true);
-        } else if (protocol.equals("smb")) {
-            response = this.smbLoader.load(request, true);
-        } else if (protocol.equals("file")) {
-            response = this.fileLoader.load(request, true);
-        } else {
-            throw new IOException("Unsupported protocol '" + protocol + "' in url " + url);
+        final long start = System.nanoTime();
+        try {
+            if (protocol.equals("http") || protocol.equals("https")) {
+                response = this.httpLoader.load(request, crawlProfile, maxFileSize, blacklistType, agent);
+            } else if (protocol.equals("ftp")) {
+                response = this.ftpLoader.load(request, true);
+            } else if (protocol.equals("smb")) {
+                response = this.smbLoader.load(request, true);
+            } else if (protocol.equals("file")) {
+                response = this.fileLoader.load(request, true);
+            } else {
+                throw new IOException("Unsupported protocol '" + protocol + "' in url " + url);
+            }
+        } finally {
+            if (this.supportedProtocols.contains(protocol)) {
+                Metrics.histogram("yacy_loader_fetch_duration_seconds", "time to load a resource which was not in the cache", "protocol", protocol).recordNanos(System.nanoTime() - start);
+            }
         }
         if (response == null) {
             throw new IOException("no response (NULL) for url " + url);
         }
-        if (response.getContent() == null) {
+        if (!response.hasContent()) {
             throw new IOException("empty response (code " + response.getStatus() + ") for url " + url.toNormalform(true));
         }
 
@@ -259,6 +274,10 @@ public final class LoaderDispatcher {
             // no caching wanted. Thats ok, do not write any message
             return response;
         }
+        if (response.getContentFile() != null) {
+            // the loader has already streamed the content into the content-addressed cache
+            return response;
+        }
         // second check tells us if the protocol tells us something about caching
         final String storeError = response.shallStoreCacheForCrawler();
         if (storeError == null) {
@@ -312,10 +331,8 @@ public final class LoaderDispatcher {
                 // check which caching strategy shall be used
                 if (cacheStrategy == CacheStrategy.IFEXIST || cacheStrategy == CacheStrategy.CACHEONLY) {
                     // well, just take the cache and don't care about freshness of the content
-                    final byte[] content = Cache.getContent(url.hash());
-                    if (content != null) {
+                    if (setCachedContent(response, url)) {
                         LoaderDispatcher.log.info("cache hit/useall for: " + url.toNormalform(true));
-                        response.setContent(content);
                         return response;
                     }
                 }
@@ -323,10 +340,8 @@ public final class LoaderDispatcher {
                 // now the cacheStrategy must be CACHE_STRATEGY_IFFRESH, that means we should do a proxy freshness test
                 //assert cacheStrategy == CacheStrategy.IFFRESH : "cacheStrategy = " + cacheStrategy;
                 if (response.isFreshForProxy()) {
-                    final byte[] content = Cache.getContent(url.hash());
-                    if (content != null) {
+                    if (setCachedContent(response, url)) {
                         LoaderDispatcher.log.info("cache hit/fresh for: " + url.toNormalform(true));
-                        response.setContent(content);
                         return response;
                     }
                 }
@@ -337,6 +352,23 @@ public final class LoaderDispatcher {
         }
 		return response;
 	}
+
+    /**
+     * Attach the cached content of an url to a response. Content in the content-addressed cache is attached
+     * as file and not read into the heap.
+     * @return true if the content was available in the cache
+     */
+    private static boolean setCachedContent(final Response response, final DigestURL url) {
+        final File contentFile = Cache.getContentFile(url.hash());
+        if (contentFile != null) {
+            response.setContentFile(contentFile);
+            return true;
+        }
+        final byte[] content = Cache.getContent(url.hash());
+        if (content == null) return false;
+        response.setContent(content);
+        return true;
+    }
     
     /**
      * Open an InputStream on a resource from the web, from ftp, from smb or a file
@@ -365,6 +397,11 @@ public final class LoaderDispatcher {
         // check if we have the page in the cache
         Response cachedResponse = loadFromCache(request, cacheStrategy, agent, url, crawlProfile);
         if(cachedResponse != null) {
+            if (cachedResponse.getContentFile() != null) {
+                // stream the content-addressed cache file instead of reading it into the heap
+                final InputStream contentStream = Cache.getContentStream(url.hash());
+                if (contentStream != null) return contentStream;
+            }
         	return new ByteArrayInputStream(cachedResponse.getContent());
         }
 
@@ -516,7 +553,7 @@ public final class LoaderDispatcher {
         if (response == null) throw new IOException("no Response for url " + url);
 
         // if it is still not available, report an error
-        if (response.getContent() == null || response.getResponseHeader() == null) throw new IOException("no Content available for url " + url);
+        if (!response.hasContent() || response.getResponseHeader() == null) throw new IOException("no Content available for url " + url);
 
         // parse resource
         Document[] documents = response.parse();
@@ -537,7 +574,7 @@ public final class LoaderDispatcher {
         if (response == null) throw new IOException("no Response for url " + url);
 
         // if it is still not available, report an error
-        if (response.getContent() == null || response.getResponseHeader() == null) throw new IOException("no Content available for url " + url);
+        if (!response.hasContent() || response.getResponseHeader() == null) throw new IOException("no Content available for url " + url);
 
         // parse resource
         try {
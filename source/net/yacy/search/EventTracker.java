@@ -28,6 +28,7 @@ package net.yacy.search;
 
 import java.text.ParseException;
 import java.util.Date;
+import java.util.EnumMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Queue;
@@ -35,6 +36,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 
 import net.yacy.cora.date.GenericFormatter;
+import net.yacy.cora.util.Metrics;
 import net.yacy.peers.graphics.ProfilingGraph;
 
 
@@ -55,6 +57,12 @@ public class EventTracker {
 
     private final static Map<EClass, Queue<Event>> historyMaps = new ConcurrentHashMap<EClass, Queue<Event>>();
     private final static Map<EClass, Long> eventAccess = new ConcurrentHashMap<EClass, Long>(); // value: last time when this was accessed
+    private final static Map<EClass, Metrics.Counter> eventCounter = new EnumMap<EClass, Metrics.Counter>(EClass.class);
+    static {
+        for (final EClass c: EClass.values()) {
+            eventCounter.put(c, Metrics.counter("yacy_events", "number of tracked events, including those which are not stored because of access protection", "class", c.name().toLowerCase()));
+        }
+    }
 
     public final static void delete(final EClass eventName) {
         historyMaps.remove(eventName);
@@ -62,6 +70,12 @@ public class EventTracker {
     }
 
     public final static void update(final EClass eventName, final Object eventPayload, final boolean useProtection) {
+        eventCounter.get(eventName).inc();
+        if (eventPayload instanceof ProfilingGraph.EventSearch) {
+            final ProfilingGraph.EventSearch event = (ProfilingGraph.EventSearch) eventPayload;
+            Metrics.histogram("yacy_search_phase_duration_seconds", "duration of the phases of a search event", "phase", event.processName.name().toLowerCase()).recordMillis(event.duration);
+        }
+
         // check protection against too heavy access
         if (useProtection) {
             final Long lastAcc = eventAccess.get(eventName);
@@ -104,6 +104,7 @@ import net.yacy.cora.federate.solr.SchemaConfiguration;
 import net.yacy.cora.federate.solr.connector.ShardSelection;
 import net.yacy.cora.federate.solr.connector.SolrConnector.LoadTimeURL;
 import net.yacy.cora.federate.solr.instance.RemoteInstance;
+import net.yacy.cora.federate.solr.instance.ServerShard;
 import net.yacy.cora.federate.yacy.CacheStrategy;
 import net.yacy.cora.lod.vocabulary.Tagging;
 import net.yacy.cora.order.Base64Order;
@@ -202,6 +203,7 @@ import net.yacy.search.index.Segment.ReferenceReportCache;
 import net.yacy.search.query.AccessTracker;
 import net.yacy.search.query.SearchEvent;
 import net.yacy.search.query.SearchEventCache;
+import net.yacy.search.query.SearchTask;
 import net.yacy.search.ranking.RankingProfile;
 import net.yacy.search.schema.CollectionConfiguration;
 import net.yacy.search.schema.CollectionSchema;
@@ -407,8 +409,8 @@ public final class Switchboard extends serverSwitch {
             }
         }.start();
 
-        // init global host name cache
-        Domains.init(new File(this.workPath, "globalhosts.list"));
+        // init global host name cache and the dns cache
+        Domains.init(new File(this.workPath, "globalhosts.list"), new File(this.workPath, "dnscache.list"));
 
         // init sessionid name file
         final String sessionidNamesFile = getConfig("sessionidNamesFile", "defaults/sessionid.names");
@@ -553,6 +555,12 @@ public final class Switchboard extends serverSwitch {
             try {this.index.fulltext().connectLocalSolr();} catch (final IOException e) {ConcurrentLog.logException(e);}
         }
         this.index.fulltext().setUseWebgraph(this.getConfigBool(SwitchboardConstants.CORE_SERVICE_WEBGRAPH, false));
+        if (this.getConfigBool(SwitchboardConstants.CORE_SERVICE_NEARDUPLICATES, false)) {
+            this.index.connectNearDuplicates(this.getConfigInt(SwitchboardConstants.CORE_SERVICE_NEARDUPLICATES_MAXDOCUMENTS, 200000), this.getConfigInt(SwitchboardConstants.CORE_SERVICE_NEARDUPLICATES_MAXDISTANCE, 3));
+        }
+        if (this.getConfigBool(SwitchboardConstants.CORE_SERVICE_SNIPPETSTORE, true)) try {
+            this.index.connectSnippetStore(this.getConfigLong(SwitchboardConstants.CORE_SERVICE_SNIPPETSTORE_MAXSIZE, 1024) * 1024L * 1024L);
+        } catch (final IOException e) {ConcurrentLog.logException(e);}
 
         // set up the solr interface
         final String solrurls = getConfig(SwitchboardConstants.FEDERATED_SERVICE_SOLR_INDEXING_URL, "http://127.0.0.1:8983/solr");
@@ -565,6 +573,10 @@ public final class Switchboard extends serverSwitch {
                 ArrayList<RemoteInstance> instances = RemoteInstance.getShardInstances(solrurls, null, null, solrtimeout);
                 String shardMethodName = getConfig(SwitchboardConstants.FEDERATED_SERVICE_SOLR_INDEXING_SHARDING, ShardSelection.Method.MODULO_HOST_MD5.name());
                 ShardSelection.Method shardMethod = ShardSelection.Method.valueOf(shardMethodName);
+                ServerShard.setReadPolicy(
+                        getConfigLong(SwitchboardConstants.FEDERATED_SERVICE_SOLR_INDEXING_READDEADLINE, 30000),
+                        getConfigLong(SwitchboardConstants.FEDERATED_SERVICE_SOLR_INDEXING_HEDGEDELAY, 0),
+                        getConfigInt(SwitchboardConstants.FEDERATED_SERVICE_SOLR_INDEXING_SLOWSHARDTOLERANCE, 0));
                 this.index.fulltext().connectRemoteSolr(instances, shardMethod, writeEnabled);
             } catch (final IOException e ) {
                 ConcurrentLog.logException(e);
@@ -621,6 +633,9 @@ public final class Switchboard extends serverSwitch {
                 true,
                 10000);
 
+        // set the size of the thread pool for search tasks
+        SearchTask.setMaxThreads(getConfigInt(SwitchboardConstants.SEARCH_THREADS_MAX, 200));
+
         // set up local robots.txt
         this.robotstxtConfig = RobotsTxtConfig.init(this);
 
@@ -715,7 +730,7 @@ public final class Switchboard extends serverSwitch {
         this.log.info("HTCACHE Path = " + this.htCachePath.getAbsolutePath());
         final long maxCacheSize =
             1024L * 1024L * Long.parseLong(getConfig(SwitchboardConstants.PROXY_CACHE_SIZE, "2")); // this is megabyte
-        Cache.init(this.htCachePath, this.peers.mySeed().hash, maxCacheSize);
+        Cache.init(this.htCachePath, this.peers.mySeed().hash, maxCacheSize, getConfigBool(SwitchboardConstants.PROXY_CACHE_CONTENT_ADDRESSED, false));
         final File transactiondir = new File(this.htCachePath, "snapshots");
         Transactions.init(transactiondir);
 
@@ -861,7 +876,9 @@ public final class Switchboard extends serverSwitch {
         
         // load the robots.txt db
         this.log.config("Initializing robots.txt DB");
-        this.robots = new RobotsTxt(this.tables, this.loader);
+        this.robots = new RobotsTxt(this.tables, this.loader,
+                getConfigLong(SwitchboardConstants.CRAWLER_ROBOTS_CACHE_MAXBYTES, RobotsTxt.DEFAULT_CACHE_MAXBYTES),
+                getConfigInt(SwitchboardConstants.CRAWLER_ROBOTS_PREFETCH_THREADS, RobotsTxt.DEFAULT_PREFETCH_THREADS));
         try {
             this.log.config("Loaded robots.txt DB: " + this.robots.size() + " entries");
         } catch (final IOException e) {
@@ -910,7 +927,10 @@ public final class Switchboard extends serverSwitch {
         } catch (final IOException e ) {
         }
 
-        // init nameCacheNoCachingList
+        // init nameCacheNoCachingList and the dns cache time-to-live
+        Domains.setNameCacheTTL(
+                getConfigLong(SwitchboardConstants.HTTPC_NAME_CACHE_HIT_TTL, 60L * 60L * 1000L),
+                getConfigLong(SwitchboardConstants.HTTPC_NAME_CACHE_MISS_TTL, 10L * 60L * 1000L));
         try {
             Domains.setNoCachingPatterns(getConfig(SwitchboardConstants.HTTPC_NAME_CACHE_CACHING_PATTERNS_NO, ""));
         } catch (final PatternSyntaxException pse) {
@@ -1376,6 +1396,12 @@ public final class Switchboard extends serverSwitch {
                 this.index.fulltext().connectLocalSolr();
             }
             this.index.fulltext().setUseWebgraph(this.getConfigBool(SwitchboardConstants.CORE_SERVICE_WEBGRAPH, false));
+            if (this.getConfigBool(SwitchboardConstants.CORE_SERVICE_NEARDUPLICATES, false)) {
+                this.index.connectNearDuplicates(this.getConfigInt(SwitchboardConstants.CORE_SERVICE_NEARDUPLICATES_MAXDOCUMENTS, 200000), this.getConfigInt(SwitchboardConstants.CORE_SERVICE_NEARDUPLICATES_MAXDISTANCE, 3));
+            }
+            if (this.getConfigBool(SwitchboardConstants.CORE_SERVICE_SNIPPETSTORE, true)) {
+                this.index.connectSnippetStore(this.getConfigLong(SwitchboardConstants.CORE_SERVICE_SNIPPETSTORE_MAXSIZE, 1024) * 1024L * 1024L);
+            }
 
             // set up the solr interface
             final String solrurls = getConfig(SwitchboardConstants.FEDERATED_SERVICE_SOLR_INDEXING_URL, "http://127.0.0.1:8983/solr");
@@ -1388,6 +1414,10 @@ public final class Switchboard extends serverSwitch {
                     ArrayList<RemoteInstance> instances = RemoteInstance.getShardInstances(solrurls, null, null, solrtimeout);
                     String shardMethodName = getConfig(SwitchboardConstants.FEDERATED_SERVICE_SOLR_INDEXING_SHARDING, ShardSelection.Method.MODULO_HOST_MD5.name());
                     ShardSelection.Method shardMethod = ShardSelection.Method.valueOf(shardMethodName);
+                    ServerShard.setReadPolicy(
+                            getConfigLong(SwitchboardConstants.FEDERATED_SERVICE_SOLR_INDEXING_READDEADLINE, 30000),
+                            getConfigLong(SwitchboardConstants.FEDERATED_SERVICE_SOLR_INDEXING_HEDGEDELAY, 0),
+                            getConfigInt(SwitchboardConstants.FEDERATED_SERVICE_SOLR_INDEXING_SLOWSHARDTOLERANCE, 0));
                     this.index.fulltext().connectRemoteSolr(instances, shardMethod, writeEnabled);
                 } catch (final IOException e ) {
                     ConcurrentLog.logException(e);
@@ -1848,6 +1878,7 @@ public final class Switchboard extends serverSwitch {
         this.crawlStacker.announceClose();
         this.crawlStacker.close();
         this.crawlQueues.close();
+        this.robots.close();
         this.indexingDocumentProcessor.shutdown();
         this.indexingCondensementProcessor.shutdown();
         this.indexingAnalysisProcessor.shutdown();
@@ -2692,20 +2723,34 @@ public final class Switchboard extends serverSwitch {
 
         // PARSE CONTENT
         final long parsingStartTime = System.currentTimeMillis();
-        if ( response.getContent() == null ) {
-            // fetch the document from cache
-            response.setContent(Cache.getContent(response.url().hash()));
-            if ( response.getContent() == null ) {
+        if ( !response.hasContent() ) {
+            // fetch the document from cache; a content-addressed cache file is parsed without reading it into the heap
+            final File contentFile = Cache.getContentFile(response.url().hash());
+            if ( contentFile != null ) {
+                response.setContentFile(contentFile);
+            } else {
+                response.setContent(Cache.getContent(response.url().hash()));
+            }
+            if ( !response.hasContent() ) {
                 this.log.warn("the resource '" + response.url() + "' is missing in the cache.");
                 // create a new errorURL DB entry
                 this.crawlQueues.errorURL.push(response.url(), response.depth(), response.profile(), FailCategory.FINAL_LOAD_CONTEXT, "missing in cache", -1);
                 return null;
             }
         }
-        assert response.getContent() != null;
+        assert response.hasContent();
         try {
             // parse the document
-            documents =
+            final File contentFile = response.getContentFile();
+            documents = contentFile == null ?
+                TextParser.parseSource(
+                    new AnchorURL(response.url()),
+                    response.getMimeType(),
+                    response.getCharacterEncoding(),
+                    response.profile().scraper(),
+                    response.profile().timezoneOffset(),
+                    response.depth(),
+                    response.getContent()) :
                 TextParser.parseSource(
                     new AnchorURL(response.url()),
                     response.getMimeType(),
@@ -2713,10 +2758,14 @@ public final class Switchboard extends serverSwitch {
                     response.profile().scraper(),
                     response.profile().timezoneOffset(),
                     response.depth(),
-                    response.getContent());
+                    contentFile);
             if ( documents == null ) {
                 throw new Parser.Failure("Parser returned null.", response.url());
             }
+        } catch (final InterruptedException e ) {
+            this.log.warn("Parsing of the resource '" + response.url().toNormalform(true) + "' was interrupted.");
+            this.crawlQueues.errorURL.push(response.url(), response.depth(), response.profile(), FailCategory.TEMPORARY_NETWORK_FAILURE, "parser interrupted", -1);
+            return null;
         } catch (final Parser.Failure e ) {
             this.log.warn("Unable to parse the resource '" + response.url().toNormalform(true) + "'. " + e.getMessage());
             // create a new errorURL DB entry
@@ -3332,7 +3381,7 @@ public final class Switchboard extends serverSwitch {
                         if (response == null) {
                             throw new IOException("response == null");
                         }
-                        if (response.getContent() == null) {
+                        if (!response.hasContent()) {
                             throw new IOException("content == null");
                         }
                         if (response.getResponseHeader() == null) {
@@ -3608,6 +3657,13 @@ public final class Switchboard extends serverSwitch {
         return null; // this means; yes, please do dht transfer
     }
 
+    /**
+     * @return the DHT transmission dispatcher or null if there is no dispatcher because the peer is not connected
+     */
+    public Dispatcher getDHTDispatcher() {
+        return this.dhtDispatcher;
+    }
+
     public boolean dhtTransferJob() {
         if ( this.dhtDispatcher == null ) {
             return false;
@@ -3900,6 +3956,7 @@ public final class Switchboard extends serverSwitch {
         mySeed.put(Seed.UTC, GenericFormatter.UTCDiffString());
         mySeed.setFlagAcceptRemoteCrawl(getConfigBool(SwitchboardConstants.CRAWLJOB_REMOTE, false));
         mySeed.setFlagAcceptRemoteIndex(getConfigBool(SwitchboardConstants.INDEX_RECEIVE_ALLOW, true));
+        mySeed.setFlagBinaryIndexTransfer(true);
         mySeed.setFlagSSLAvailable(this.getHttpServer() != null && this.getHttpServer().withSSL() && getConfigBool("server.https", false));
         if (mySeed.getFlagSSLAvailable()) mySeed.put(Seed.PORTSSL, Integer.toString(getPublicPort("port.ssl", 8443)));
 
@@ -193,6 +193,7 @@ public final class SwitchboardConstants {
      */
     public static final String INDEX_DIST_CHUNK_SIZE_MAX        = "indexDistribution.maxChunkSize";
     public static final String INDEX_DIST_CHUNK_FAILS_MAX       = "indexDistribution.maxChunkFails";
+    public static final String INDEX_DIST_MAX_CONCURRENT_PER_PEER = "indexDistribution.maxConcurrentPerPeer";
     /**
      * <p><code>public static final String <strong>INDEX_DIST_TIMEOUT</strong> = "indexDistribution.timeout"</code></p>
      * <p>Name of the setting how long the timeout for an Index Distribution shall be in milliseconds</p>
@@ -203,6 +204,11 @@ public final class SwitchboardConstants {
      * <p>Name of the setting whether DHT chunks shall be transferred gzip-encodedly</p>
      */
     public static final String INDEX_DIST_GZIP_BODY             = "indexDistribution.gzipBody";
+    /**
+     * <p><code>public static final String <strong>INDEX_DIST_BINARY_FORMAT</strong> = "indexDistribution.binaryFormat"</code></p>
+     * <p>Name of the setting whether DHT chunks shall be transferred in the binary format to peers which support it</p>
+     */
+    public static final String INDEX_DIST_BINARY_FORMAT         = "indexDistribution.binaryFormat";
     /**
      * <p><code>public static final String <strong>INDEX_DIST_ALLOW</strong> = "allowDistributeIndex"</code></p>
      * <p>Name of the setting whether Index Distribution shall be allowed (and the DHT-thread therefore started) or not</p>
@@ -247,6 +253,11 @@ public final class SwitchboardConstants {
     public static final String PROXY_INDEXING_LOCAL_TEXT        = "proxyIndexingLocalText";
     public static final String PROXY_INDEXING_LOCAL_MEDIA       = "proxyIndexingLocalMedia";
     public static final String PROXY_CACHE_SIZE                 = "proxyCacheSize";
+    public static final String PROXY_CACHE_CONTENT_ADDRESSED    = "proxyCacheContentAddressed";
+    public static final String PROXY_CACHE_SPOOL_MEMORY         = "proxy.cache.spoolMemory";
+    public static final String PROXY_CACHE_SPOOL_MAXSIZE        = "proxy.cache.spoolMaxSize";
+    public static final String PROXY_CACHE_STORE_THREADS        = "proxy.cache.storeThreads";
+    public static final String PROXY_CACHE_STORE_QUEUESIZE      = "proxy.cache.storeQueueSize";
     /**
      * <p><code>public static final String <strong>PROXY_CACHE_LAYOUT</strong> = "proxyCacheLayout"</code></p>
      * <p>Name of the setting which file-/folder-layout the proxy cache shall use. Possible values are {@link #PROXY_CACHE_LAYOUT_TREE}
@@ -291,6 +302,8 @@ public final class SwitchboardConstants {
     public static final String REMOTESEARCH_RESULT_STORE_MAXSIZE= "remotesearch.result.store.maxsize";
     public static final String REMOTESEARCH_MAXLOAD_RWI         = "remotesearch.maxload.rwi";
     public static final String REMOTESEARCH_MAXLOAD_SOLR        = "remotesearch.maxload.solr";
+    public static final String SEARCH_THREADS_MAX               = "search.threads.max"; // size of the thread pool for local and remote search tasks
+    public static final String REMOTESEARCH_HEDGE_FACTOR        = "remotesearch.hedge.factor"; // share of additional dht peers which are asked; the slowest are cancelled
 
     public static final String FEDERATED_SERVICE_SOLR_INDEXING_ENABLED      = "federated.service.solr.indexing.enabled";
     public static final String FEDERATED_SERVICE_SOLR_INDEXING_URL          = "federated.service.solr.indexing.url";
@@ -298,11 +311,19 @@ public final class SwitchboardConstants {
     public static final String FEDERATED_SERVICE_SOLR_INDEXING_LAZY         = "federated.service.solr.indexing.lazy";
     public static final String FEDERATED_SERVICE_SOLR_INDEXING_TIMEOUT      = "federated.service.solr.indexing.timeout";
     public static final String FEDERATED_SERVICE_SOLR_INDEXING_WRITEENABLED = "federated.service.solr.indexing.writeEnabled";
+    public static final String FEDERATED_SERVICE_SOLR_INDEXING_READDEADLINE = "federated.service.solr.indexing.readDeadline";
+    public static final String FEDERATED_SERVICE_SOLR_INDEXING_HEDGEDELAY   = "federated.service.solr.indexing.hedgeDelay";
+    public static final String FEDERATED_SERVICE_SOLR_INDEXING_SLOWSHARDTOLERANCE = "federated.service.solr.indexing.slowShardTolerance";
 
     public static final String CORE_SERVICE_FULLTEXT            = "core.service.fulltext";
     public static final String CORE_SERVICE_RWI                 = "core.service.rwi.tmp";
     public static final String CORE_SERVICE_CITATION            = "core.service.citation.tmp";
     public static final String CORE_SERVICE_WEBGRAPH            = "core.service.webgraph.tmp";
+    public static final String CORE_SERVICE_NEARDUPLICATES      = "core.service.nearduplicates";
+    public static final String CORE_SERVICE_NEARDUPLICATES_MAXDOCUMENTS = "core.service.nearduplicates.maxDocuments";
+    public static final String CORE_SERVICE_NEARDUPLICATES_MAXDISTANCE  = "core.service.nearduplicates.maxDistance";
+    public static final String CORE_SERVICE_SNIPPETSTORE        = "core.service.snippetstore";
+    public static final String CORE_SERVICE_SNIPPETSTORE_MAXSIZE = "core.service.snippetstore.maxSize";
 
     /**
      * <p><code>public static final String <strong>CRAWLER_THREADS_ACTIVE_MAX</strong> = "crawler.MaxActiveThreads"</code></p>
@@ -313,6 +334,8 @@ public final class SwitchboardConstants {
     public static final String CRAWLER_MAX_SAME_HOST_IN_QUEUE   = "crawler.MaxSameHostInQueue";
     public static final String CRAWLER_FOLLOW_REDIRECTS         = "crawler.http.FollowRedirects"; // ignore the target url and follow to the redirect
     public static final String CRAWLER_RECORD_REDIRECTS         = "crawler.http.RecordRedirects"; // record the ignored redirected page to the index store
+    public static final String CRAWLER_ROBOTS_CACHE_MAXBYTES    = "crawler.robots.cache.maxBytes"; // memory limit of the parsed robots.txt cache
+    public static final String CRAWLER_ROBOTS_PREFETCH_THREADS  = "crawler.robots.prefetch.threads"; // number of threads which load robots.txt of new hosts
     
     public static final String CRAWLER_USER_AGENT_NAME          = "crawler.userAgent.name";
     public static final String CRAWLER_USER_AGENT_STRING        = "crawler.userAgent.string";
@@ -336,8 +359,16 @@ public final class SwitchboardConstants {
      */
     public static final String WORDCACHE_MAX_COUNT              = "wordCacheMaxCount";
     public static final String HTTPC_NAME_CACHE_CACHING_PATTERNS_NO = "httpc.nameCacheNoCachingPatterns";
+    public static final String HTTPC_NAME_CACHE_HIT_TTL         = "httpc.nameCacheHitTTL";
+    public static final String HTTPC_NAME_CACHE_MISS_TTL        = "httpc.nameCacheMissTTL";
     public static final String ROBOTS_TXT                       = "httpd.robots.txt";
     public static final String ROBOTS_TXT_DEFAULT               = RobotsTxtConfig.LOCKED + "," + RobotsTxtConfig.DIRS;
+    public static final String SERVER_ADMISSION                 = "server.admission";
+    public static final String SERVER_ADMISSION_MAXLOAD         = "server.admission.maxLoad";
+    public static final String SERVER_ADMISSION_MAXWAIT         = "server.admission.maxWait";
+    public static final String SERVER_STATICCACHE_MAXSIZE       = "server.staticCache.maxSize";
+    public static final String SERVER_STATICCACHE_MAXFILESIZE   = "server.staticCache.maxFileSize";
+    public static final String SERVER_METRICS_PUBLIC            = "server.metrics.public";
 
     /**
      * <p><code>public static final String <strong>BLACKLIST_CLASS_DEFAULT</strong> = "de.anomic.plasma.urlPattern.defaultURLPattern"</code></p>
@@ -24,13 +24,18 @@ package net.yacy.search.index;
 
 import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.lang.reflect.Array;
 import java.net.MalformedURLException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
@@ -39,6 +44,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 import java.util.zip.Deflater;
@@ -47,6 +58,7 @@ import java.util.zip.GZIPOutputStream;
 import net.yacy.cora.date.GenericFormatter;
 import net.yacy.cora.date.ISO8601Formatter;
 import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.document.encoding.UTF8;
 import net.yacy.cora.document.id.DigestURL;
 import net.yacy.cora.document.id.MultiProtocolURL;
 import net.yacy.cora.federate.solr.connector.AbstractSolrConnector;
@@ -59,6 +71,7 @@ import net.yacy.cora.federate.solr.instance.InstanceMirror;
 import net.yacy.cora.federate.solr.instance.RemoteInstance;
 import net.yacy.cora.federate.solr.instance.ShardInstance;
 import net.yacy.cora.federate.solr.responsewriter.EnhancedXMLResponseWriter;
+import net.yacy.cora.order.Base64Order;
 import net.yacy.cora.protocol.HeaderFramework;
 import net.yacy.cora.sorting.ReversibleScoreMap;
 import net.yacy.cora.sorting.WeakPriorityBlockingQueue;
@@ -69,7 +82,9 @@ import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.document.parser.html.CharacterCoding;
 import net.yacy.kelondro.data.meta.URIMetadataNode;
 import net.yacy.kelondro.data.word.WordReferenceVars;
+import net.yacy.kelondro.util.FileUtils;
 import net.yacy.kelondro.util.MemoryControl;
+import net.yacy.kelondro.util.NamePrefixThreadFactory;
 import net.yacy.search.Switchboard;
 import net.yacy.search.schema.CollectionConfiguration;
 import net.yacy.search.schema.CollectionSchema;
@@ -628,7 +643,75 @@ public final class Fulltext {
     }
     
     public final static String yacy_dump_prefix = "yacy_dump_";
+    private final static String EXPORT_CHECKPOINT_EXT = ".checkpoint";
+    private final static int EXPORT_PARTITIONS = 16; // number of id ranges of an export; this is the granularity of the checkpoints
+
+    // the readers of all exports share one bounded pool
+    private final static ThreadPoolExecutor exportReaders = new ThreadPoolExecutor(
+            Math.max(1, Runtime.getRuntime().availableProcessors()), Math.max(1, Runtime.getRuntime().availableProcessors()),
+            10, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new NamePrefixThreadFactory("Fulltext.Export.reader"));
+    static {
+        exportReaders.allowCoreThreadTimeOut(true);
+    }
+
+    private static File exportChunkFile(final File target, final int partition) {
+        return new File(target.getAbsolutePath() + ".part" + (partition < 10 ? "0" : "") + partition);
+    }
+
+    /**
+     * remove the chunks and the checkpoint of an unfinished export
+     * @param target the export file
+     */
+    private static void deleteExportChunks(final File target) {
+        for (int i = 0; i < EXPORT_PARTITIONS; i++) {
+            FileUtils.deletedelete(exportChunkFile(target, i));
+            FileUtils.deletedelete(new File(exportChunkFile(target, i).getAbsolutePath() + ".tmp"));
+        }
+        FileUtils.deletedelete(new File(target.getAbsolutePath() + EXPORT_CHECKPOINT_EXT));
+    }
+
+    /**
+     * read the header of an export checkpoint file; the header lines have the form '#name\tvalue'
+     * @param checkpoint
+     * @return a map from the parameter name to its value
+     */
+    private static Map<String, String> readExportCheckpointHeader(final File checkpoint) {
+        final Map<String, String> header = new HashMap<String, String>();
+        for (final String line: FileUtils.getListArray(checkpoint)) {
+            if (!line.startsWith("#")) continue;
+            final int p = line.indexOf('\t');
+            if (p > 0) header.put(line.substring(1, p), line.substring(p + 1));
+        }
+        return header;
+    }
+
+    private static String oneLine(final String s) {
+        return s == null ? "" : s.replace('\n', ' ').replace('\r', ' ');
+    }
+
     public Export export(Fulltext.ExportFormat format, String filter, String query, final int maxseconds, File path, boolean dom, boolean text) throws IOException {
+        if ((this.exportthread != null) && (this.exportthread.isAlive())) {
+            ConcurrentLog.warn("LURL-EXPORT", "cannot start another export thread, already one running");
+            return this.exportthread;
+        }
+        
+        // an unfinished export of the same request is resumed with its file and query
+        final String request = (query == null ? AbstractSolrConnector.CATCHALL_QUERY : query) + (maxseconds > 0 ? " maxseconds=" + maxseconds : "");
+        final File[] unfinished = path.listFiles();
+        if (unfinished != null) for (final File checkpoint: unfinished) {
+            if (!checkpoint.getName().startsWith(yacy_dump_prefix) || !checkpoint.getName().endsWith(EXPORT_CHECKPOINT_EXT)) continue;
+            final Map<String, String> header = readExportCheckpointHeader(checkpoint);
+            final String target = checkpoint.getAbsolutePath().substring(0, checkpoint.getAbsolutePath().length() - EXPORT_CHECKPOINT_EXT.length());
+            final String fname = format == ExportFormat.solr && target.endsWith(".gz") ? target.substring(0, target.length() - 3) : target;
+            if (format.name().equals(header.get("format")) && oneLine(filter).equals(header.get("filter")) &&
+                oneLine(request).equals(header.get("request")) && Boolean.toString(dom).equals(header.get("dom")) &&
+                Boolean.toString(text).equals(header.get("text")) && header.get("query") != null) {
+                return export(new File(fname), filter, header.get("query"), format, dom, text, request);
+            }
+            // there is only one export at a time; an unfinished export with other parameters is abandoned
+            ConcurrentLog.info("Fulltext", "removing unfinished export " + target);
+            deleteExportChunks(new File(target));
+        }
         
         // modify query according to maxseconds
         long now = System.currentTimeMillis();
@@ -674,16 +757,20 @@ public final class Fulltext {
         final File f = new File(s);
         f.getParentFile().mkdirs();
         
-        return export(f, filter, query, format, dom, text);
+        return export(f, filter, query, format, dom, text, request);
     }
     
     // export methods
     public Export export(final File f, final String filter, final String query, final ExportFormat format, final boolean dom, final boolean text) {
+        return export(f, filter, query, format, dom, text, query == null ? AbstractSolrConnector.CATCHALL_QUERY : query);
+    }
+
+    private Export export(final File f, final String filter, final String query, final ExportFormat format, final boolean dom, final boolean text, final String request) {
         if ((this.exportthread != null) && (this.exportthread.isAlive())) {
             ConcurrentLog.warn("LURL-EXPORT", "cannot start another export thread, already one running");
             return this.exportthread;
         }
-        this.exportthread = new Export(f, filter, query, format, dom, text);
+        this.exportthread = new Export(f, filter, query, format, dom, text, request);
         this.exportthread.start();
         return this.exportthread;
     }
@@ -692,125 +779,67 @@ public final class Fulltext {
         return this.exportthread;
     }
 
+    /**
+     * The export reads the documents in partitions of the id space; the partitions are read in parallel
+     * and each one is written to its own chunk file (compressed for the solr format). A finished chunk is
+     * recorded in a checkpoint file. The checkpoint starts with a header containing the export parameters;
+     * an interrupted export with the same parameters is resumed with the missing partitions only.
+     * At the end the chunks are concatenated into the export file; gzip members can be concatenated.
+     */
     public class Export extends Thread {
+        private static final int PARTITIONS = EXPORT_PARTITIONS;
         private final File f;
         private final Pattern pattern;
-        private int count;
+        private final AtomicInteger count, partitionsDone;
         private String failure, query;
+        private final String request;
         private final ExportFormat format;
         private final boolean dom, text;
+        private long startTime, endTime;
 
-        private Export(final File f, final String filter, final String query, final ExportFormat format, final boolean dom, final boolean text) {
+        private Export(final File f, final String filter, final String query, final ExportFormat format, final boolean dom, final boolean text, final String request) {
             // format: 0=text, 1=html, 2=rss/xml
             this.f = f;
             this.pattern = filter == null ? null : Pattern.compile(filter);
             this.query = query == null? AbstractSolrConnector.CATCHALL_QUERY : query;
-            this.count = 0;
+            this.request = request;
+            this.count = new AtomicInteger(0);
+            this.partitionsDone = new AtomicInteger(0);
             this.failure = null;
             this.format = format;
             this.dom = dom;
             this.text = text;
+            this.startTime = System.currentTimeMillis();
+            this.endTime = 0;
             //if ((dom) && (format == 2)) dom = false;
         }
 
         @Override
         public void run() {
+            this.startTime = System.currentTimeMillis();
             try {
                 final File parentf = this.f.getParentFile();
                 if (parentf != null) parentf.mkdirs();
-                OutputStream os = new FileOutputStream(this.format == ExportFormat.solr ? new File(this.f.getAbsolutePath() + ".gz") : this.f);
-                if (this.format == ExportFormat.solr) os = new GZIPOutputStream(os, 65536){{def.setLevel(Deflater.BEST_COMPRESSION);}};
-                final PrintWriter pw = new PrintWriter(new BufferedOutputStream(os));
-                if (this.format == ExportFormat.html) {
-                    pw.println("<html><head></head><body>");
-                }
-                if (this.format == ExportFormat.rss) {
-                    pw.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
-                    pw.println("<?xml-stylesheet type='text/xsl' href='/yacysearch.xsl' version='1.0'?>");
-                    pw.println("<rss version=\"2.0\" xmlns:yacy=\"http://www.yacy.net/\" xmlns:opensearch=\"http://a9.com/-/spec/opensearch/1.1/\" xmlns:atom=\"http://www.w3.org/2005/Atom\">");
-                    pw.println("<channel>");
-                    pw.println("<title>YaCy Peer-to-Peer - Web-Search URL Export</title>");
-                    pw.println("<description></description>");
-                    pw.println("<link>http://yacy.net</link>");
-                }
-                if (this.format == ExportFormat.solr) {
-                    pw.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
-                    pw.println("<response>");
-                    pw.println("<result>");
-                }
+                final File target = this.format == ExportFormat.solr ? new File(this.f.getAbsolutePath() + ".gz") : this.f;
                 if (this.dom) {
+                    final StringBuilder body = new StringBuilder();
                     Map<String, ReversibleScoreMap<String>> scores = Fulltext.this.getDefaultConnector().getFacets(this.query + " AND " + CollectionSchema.httpstatus_i.getSolrFieldName() + ":200", 100000000, CollectionSchema.host_s.getSolrFieldName());
                     ReversibleScoreMap<String> stats = scores.get(CollectionSchema.host_s.getSolrFieldName());
                     for (final String host: stats) {
                         if (this.pattern != null && !this.pattern.matcher(host).matches()) continue;
-                        if (this.format == ExportFormat.text) pw.println(host);
-                        if (this.format == ExportFormat.html) pw.println("<a href=\"http://" + host + "\">" + host + "</a><br>");
-                        this.count++;
+                        if (this.format == ExportFormat.text) body.append(host).append('\n');
+                        if (this.format == ExportFormat.html) body.append("<a href=\"http://").append(host).append("\">").append(host).append("</a><br>\n");
+                        this.count.incrementAndGet();
                     }
-                } else {
-                    if (this.format == ExportFormat.solr || (this.text && this.format == ExportFormat.text)) {
-                        BlockingQueue<SolrDocument> docs = Fulltext.this.getDefaultConnector().concurrentDocumentsByQuery(this.query + " AND " + CollectionSchema.httpstatus_i.getSolrFieldName() + ":200", null, 0, 100000000, Long.MAX_VALUE, 100, 1, true);
-                        SolrDocument doc;
-                        while ((doc = docs.take()) != AbstractSolrConnector.POISON_DOCUMENT) {
-                            String url = getStringFrom(doc.getFieldValue(CollectionSchema.sku.getSolrFieldName()));
-                            if (this.pattern != null && !this.pattern.matcher(url).matches()) continue;
-                            CRIgnoreWriter sw = new CRIgnoreWriter();
-                            if (this.text) sw.write((String) doc.getFieldValue(CollectionSchema.text_t.getSolrFieldName())); else EnhancedXMLResponseWriter.writeDoc(sw, doc);
-                            sw.close();
-                            String d = sw.toString();
-                            pw.println(d);
-                            this.count++;
-                        }
-                    } else {
-                        BlockingQueue<SolrDocument> docs = Fulltext.this.getDefaultConnector().concurrentDocumentsByQuery(this.query + " AND " + CollectionSchema.httpstatus_i.getSolrFieldName() + ":200", null, 0, 100000000, Long.MAX_VALUE, 100, 1, true, 
-                                CollectionSchema.id.getSolrFieldName(), CollectionSchema.sku.getSolrFieldName(), CollectionSchema.title.getSolrFieldName(),
-                                CollectionSchema.author.getSolrFieldName(), CollectionSchema.description_txt.getSolrFieldName(), CollectionSchema.size_i.getSolrFieldName(), CollectionSchema.last_modified.getSolrFieldName());
-                        SolrDocument doc;
-                        String url, hash, title, author, description;
-                        Integer size;
-                        Date date;
-                        while ((doc = docs.take()) != AbstractSolrConnector.POISON_DOCUMENT) {
-                            hash = getStringFrom(doc.getFieldValue(CollectionSchema.id.getSolrFieldName()));
-                            url = getStringFrom(doc.getFieldValue(CollectionSchema.sku.getSolrFieldName()));
-                            title = getStringFrom(doc.getFieldValue(CollectionSchema.title.getSolrFieldName()));
-                            author = getStringFrom(doc.getFieldValue(CollectionSchema.author.getSolrFieldName()));
-                            description = getStringFrom(doc.getFieldValue(CollectionSchema.description_txt.getSolrFieldName()));
-                            size = (Integer) doc.getFieldValue(CollectionSchema.size_i.getSolrFieldName());
-                            date = (Date) doc.getFieldValue(CollectionSchema.last_modified.getSolrFieldName());
-                            if (this.pattern != null && !this.pattern.matcher(url).matches()) continue;
-                            if (this.format == ExportFormat.text) {
-                                pw.println(url);
-                            }
-                            if (this.format == ExportFormat.html) {
-                                if (title != null) pw.println("<a href=\"" + MultiProtocolURL.escape(url) + "\">" + CharacterCoding.unicode2xml(title, true) + "</a>");
-                            }
-                            if (this.format == ExportFormat.rss) {
-                                pw.println("<item>");
-                                if (title != null) pw.println("<title>" + CharacterCoding.unicode2xml(title, true) + "</title>");
-                                pw.println("<link>" + MultiProtocolURL.escape(url) + "</link>");
-                                if (author != null && !author.isEmpty()) pw.println("<author>" + CharacterCoding.unicode2xml(author, true) + "</author>");
-                                if (description != null && !description.isEmpty()) pw.println("<description>" + CharacterCoding.unicode2xml(description, true) + "</description>");
-                                if (date != null) pw.println("<pubDate>" + HeaderFramework.formatRFC1123(date) + "</pubDate>");
-                                if (size != null) pw.println("<yacy:size>" + size.intValue() + "</yacy:size>");
-                                pw.println("<guid isPermaLink=\"false\">" + hash + "</guid>");
-                                pw.println("</item>");
-                            }
-                            this.count++;
-                        }
+                    final OutputStream os = new BufferedOutputStream(new FileOutputStream(target));
+                    try {
+                        writeChunk(os, header() + body.toString() + footer());
+                    } finally {
+                        os.close();
                     }
+                } else {
+                    exportPartitions(target);
                 }
-                if (this.format == ExportFormat.html) {
-                    pw.println("</body></html>");
-                }
-                if (this.format == ExportFormat.rss) {
-                    pw.println("</channel>");
-                    pw.println("</rss>");
-                }
-                if (this.format == ExportFormat.solr) {
-                    pw.println("</result>");
-                    pw.println("</response>");
-                }
-                pw.close();
             } catch (final IOException e) {
                 ConcurrentLog.logException(e);
                 this.failure = e.getMessage();
@@ -818,9 +847,272 @@ public final class Fulltext {
                 ConcurrentLog.logException(e);
                 this.failure = e.getMessage();
             }
+            this.endTime = System.currentTimeMillis();
             // terminate process
         }
 
+        /**
+         * read all partitions in parallel, then merge the chunks into the target file
+         * @param target
+         * @throws IOException
+         * @throws InterruptedException
+         */
+        private void exportPartitions(final File target) throws IOException, InterruptedException {
+            // load the checkpoints of a previous, interrupted export if it was done with the same parameters
+            final File checkpoint = new File(target.getAbsolutePath() + EXPORT_CHECKPOINT_EXT);
+            final boolean[] done = new boolean[PARTITIONS];
+            if (checkpoint.exists() && !checkpointHeader().equals(readExportCheckpointHeader(checkpoint))) {
+                ConcurrentLog.info("Fulltext", "discarding the checkpoint of a different export to " + target.toString());
+                deleteExportChunks(target);
+            }
+            if (checkpoint.exists()) {
+                for (final String line: FileUtils.getListArray(checkpoint)) {
+                    if (line.startsWith("#")) continue;
+                    final int p = line.indexOf('\t');
+                    if (p < 0) continue;
+                    try {
+                        final int partition = Integer.parseInt(line.substring(0, p));
+                        if (partition >= 0 && partition < PARTITIONS && chunkFile(target, partition).exists()) {
+                            done[partition] = true;
+                            this.count.addAndGet(Integer.parseInt(line.substring(p + 1)));
+                            this.partitionsDone.incrementAndGet();
+                        }
+                    } catch (final NumberFormatException e) {
+                        continue;
+                    }
+                }
+                if (this.partitionsDone.get() > 0) ConcurrentLog.info("Fulltext", "resuming export to " + target.toString() + " with " + this.partitionsDone.get() + " finished partitions");
+            } else {
+                final PrintWriter cw = new PrintWriter(new OutputStreamWriter(new FileOutputStream(checkpoint), StandardCharsets.UTF_8));
+                for (final Map.Entry<String, String> entry: checkpointHeader().entrySet()) cw.println("#" + entry.getKey() + "\t" + entry.getValue());
+                cw.close();
+            }
+            // remove the chunks of unfinished partitions, they are written again
+            for (int i = 0; i < PARTITIONS; i++) if (!done[i]) {
+                FileUtils.deletedelete(chunkFile(target, i));
+                FileUtils.deletedelete(new File(chunkFile(target, i).getAbsolutePath() + ".tmp"));
+            }
+
+            // read the partitions in parallel
+            final List<Future<Integer>> readers = new ArrayList<Future<Integer>>(PARTITIONS);
+            for (int i = 0; i < PARTITIONS; i++) if (!done[i]) {
+                final int partition = i;
+                readers.add(exportReaders.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        if (Export.this.failure != null || Export.this.isInterrupted()) return 0;
+                        final int c = exportPartition(target, partition);
+                        synchronized (checkpoint) {
+                            final PrintWriter cw = new PrintWriter(new OutputStreamWriter(new FileOutputStream(checkpoint, true), StandardCharsets.UTF_8));
+                            cw.println(partition + "\t" + c);
+                            cw.close();
+                        }
+                        Export.this.partitionsDone.incrementAndGet();
+                        return c;
+                    }
+                }));
+            }
+            try {
+                for (final Future<Integer> reader: readers) {
+                    try {
+                        reader.get();
+                    } catch (final ExecutionException e) {
+                        final Throwable cause = e.getCause() == null ? e : e.getCause();
+                        ConcurrentLog.logException(cause);
+                        if (this.failure == null) this.failure = cause.getMessage() == null ? cause.toString() : cause.getMessage();
+                    }
+                }
+            } finally {
+                // stop the remaining readers if the export was interrupted
+                for (final Future<Integer> reader: readers) reader.cancel(true);
+            }
+            if (this.failure != null) return; // the finished chunks and the checkpoint are kept for a resume
+
+            // merge the chunks
+            final OutputStream os = new BufferedOutputStream(new FileOutputStream(target), 65536);
+            try {
+                writeChunk(os, header());
+                final byte[] buffer = new byte[65536];
+                for (int i = 0; i < PARTITIONS; i++) {
+                    final InputStream is = new FileInputStream(chunkFile(target, i));
+                    try {
+                        int l;
+                        while ((l = is.read(buffer)) > 0) os.write(buffer, 0, l);
+                    } finally {
+                        is.close();
+                    }
+                }
+                writeChunk(os, footer());
+            } finally {
+                os.close();
+            }
+            deleteExportChunks(target);
+        }
+
+        /**
+         * the header of the checkpoint file; a checkpoint is only used for an export with the same header
+         * @return the header lines as map from the parameter name to its value
+         */
+        private Map<String, String> checkpointHeader() {
+            final Map<String, String> header = new HashMap<String, String>();
+            header.put("format", this.format.name());
+            header.put("filter", oneLine(this.pattern == null ? null : this.pattern.pattern()));
+            header.put("query", oneLine(this.query));
+            header.put("request", oneLine(this.request));
+            header.put("dom", Boolean.toString(this.dom));
+            header.put("text", Boolean.toString(this.text));
+            return header;
+        }
+
+        /**
+         * export all documents within one partition of the id space to a chunk file
+         * @param target the export file
+         * @param partition the partition number
+         * @return the number of exported documents
+         * @throws IOException
+         * @throws InterruptedException
+         */
+        private int exportPartition(final File target, final int partition) throws IOException, InterruptedException {
+            final File chunk = chunkFile(target, partition);
+            final File tmp = new File(chunk.getAbsolutePath() + ".tmp");
+            OutputStream os = new FileOutputStream(tmp);
+            if (this.format == ExportFormat.solr) os = new GZIPOutputStream(os, 65536){{def.setLevel(Deflater.BEST_COMPRESSION);}};
+            final PrintWriter pw = new PrintWriter(new OutputStreamWriter(new BufferedOutputStream(os), StandardCharsets.UTF_8));
+            int c = 0;
+            try {
+                final String q = this.query + " AND " + CollectionSchema.httpstatus_i.getSolrFieldName() + ":200 AND " + partitionQuery(partition);
+                final BlockingQueue<SolrDocument> docs;
+                if (this.format == ExportFormat.solr || (this.text && this.format == ExportFormat.text)) {
+                    docs = Fulltext.this.getDefaultConnector().concurrentDocumentsByQuery(q, null, 0, 100000000, Long.MAX_VALUE, 100, 1, true);
+                } else {
+                    docs = Fulltext.this.getDefaultConnector().concurrentDocumentsByQuery(q, null, 0, 100000000, Long.MAX_VALUE, 100, 1, true,
+                            CollectionSchema.id.getSolrFieldName(), CollectionSchema.sku.getSolrFieldName(), CollectionSchema.title.getSolrFieldName(),
+                            CollectionSchema.author.getSolrFieldName(), CollectionSchema.description_txt.getSolrFieldName(), CollectionSchema.size_i.getSolrFieldName(), CollectionSchema.last_modified.getSolrFieldName());
+                }
+                SolrDocument doc;
+                while ((doc = docs.take()) != AbstractSolrConnector.POISON_DOCUMENT) {
+                    final String record = record(doc);
+                    if (record == null) continue;
+                    pw.print(record);
+                    c++;
+                    this.count.incrementAndGet();
+                }
+            } finally {
+                pw.close();
+            }
+            if (pw.checkError()) throw new IOException("cannot write export chunk " + tmp.toString());
+            if (chunk.exists()) FileUtils.deletedelete(chunk);
+            if (!tmp.renameTo(chunk)) throw new IOException("cannot rename export chunk " + tmp.toString());
+            return c;
+        }
+
+        private File chunkFile(final File target, final int partition) {
+            return exportChunkFile(target, partition);
+        }
+
+        /**
+         * compute a range query for a partition of the id space.
+         * The partitions are defined by the first character of the id; ids are base64 encoded hashes and therefore evenly distributed.
+         * @param partition
+         * @return a solr range query on the id field
+         */
+        private String partitionQuery(final int partition) {
+            final byte[] alpha = Base64Order.alpha_enhanced.clone();
+            Arrays.sort(alpha); // the range query uses the natural order of the characters
+            final int width = alpha.length / PARTITIONS;
+            final String from = partition == 0 ? "*" : "\"" + (char) alpha[partition * width] + "\"";
+            final String to = partition == PARTITIONS - 1 ? "*" : "\"" + (char) alpha[(partition + 1) * width] + "\"";
+            return CollectionSchema.id.getSolrFieldName() + ":[" + from + " TO " + to + (partition == PARTITIONS - 1 ? "]" : "}");
+        }
+
+        /**
+         * write a string to the export; for the solr format the string is written as a separate gzip member
+         * @param os
+         * @param s
+         * @throws IOException
+         */
+        private void writeChunk(final OutputStream os, final String s) throws IOException {
+            final byte[] b = UTF8.getBytes(s);
+            if (this.format == ExportFormat.solr) {
+                final GZIPOutputStream gz = new GZIPOutputStream(os, 65536){{def.setLevel(Deflater.BEST_COMPRESSION);}};
+                gz.write(b);
+                gz.finish();
+            } else {
+                os.write(b);
+            }
+        }
+
+        private String header() {
+            final StringBuilder sb = new StringBuilder();
+            if (this.format == ExportFormat.html) {
+                sb.append("<html><head></head><body>\n");
+            }
+            if (this.format == ExportFormat.rss) {
+                sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+                sb.append("<?xml-stylesheet type='text/xsl' href='/yacysearch.xsl' version='1.0'?>\n");
+                sb.append("<rss version=\"2.0\" xmlns:yacy=\"http://www.yacy.net/\" xmlns:opensearch=\"http://a9.com/-/spec/opensearch/1.1/\" xmlns:atom=\"http://www.w3.org/2005/Atom\">\n");
+                sb.append("<channel>\n");
+                sb.append("<title>YaCy Peer-to-Peer - Web-Search URL Export</title>\n");
+                sb.append("<description></description>\n");
+                sb.append("<link>http://yacy.net</link>\n");
+            }
+            if (this.format == ExportFormat.solr) {
+                sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+                sb.append("<response>\n");
+                sb.append("<result>\n");
+            }
+            return sb.toString();
+        }
+
+        private String footer() {
+            if (this.format == ExportFormat.html) return "</body></html>\n";
+            if (this.format == ExportFormat.rss) return "</channel>\n</rss>\n";
+            if (this.format == ExportFormat.solr) return "</result>\n</response>\n";
+            return "";
+        }
+
+        /**
+         * format a document according to the export format
+         * @param doc
+         * @return the formatted record including the line end or null if the document is filtered out
+         * @throws IOException
+         */
+        private String record(final SolrDocument doc) throws IOException {
+            final String url = getStringFrom(doc.getFieldValue(CollectionSchema.sku.getSolrFieldName()));
+            if (this.pattern != null && !this.pattern.matcher(url).matches()) return null;
+            if (this.format == ExportFormat.solr || (this.text && this.format == ExportFormat.text)) {
+                CRIgnoreWriter sw = new CRIgnoreWriter();
+                if (this.text) sw.write((String) doc.getFieldValue(CollectionSchema.text_t.getSolrFieldName())); else EnhancedXMLResponseWriter.writeDoc(sw, doc);
+                sw.close();
+                return sw.toString() + "\n";
+            }
+            final String hash = getStringFrom(doc.getFieldValue(CollectionSchema.id.getSolrFieldName()));
+            final String title = getStringFrom(doc.getFieldValue(CollectionSchema.title.getSolrFieldName()));
+            final String author = getStringFrom(doc.getFieldValue(CollectionSchema.author.getSolrFieldName()));
+            final String description = getStringFrom(doc.getFieldValue(CollectionSchema.description_txt.getSolrFieldName()));
+            final Integer size = (Integer) doc.getFieldValue(CollectionSchema.size_i.getSolrFieldName());
+            final Date date = (Date) doc.getFieldValue(CollectionSchema.last_modified.getSolrFieldName());
+            final StringBuilder sb = new StringBuilder(200);
+            if (this.format == ExportFormat.text) {
+                sb.append(url).append('\n');
+            }
+            if (this.format == ExportFormat.html) {
+                if (title != null) sb.append("<a href=\"").append(MultiProtocolURL.escape(url)).append("\">").append(CharacterCoding.unicode2xml(title, true)).append("</a>\n");
+            }
+            if (this.format == ExportFormat.rss) {
+                sb.append("<item>\n");
+                if (title != null) sb.append("<title>").append(CharacterCoding.unicode2xml(title, true)).append("</title>\n");
+                sb.append("<link>").append(MultiProtocolURL.escape(url)).append("</link>\n");
+                if (author != null && !author.isEmpty()) sb.append("<author>").append(CharacterCoding.unicode2xml(author, true)).append("</author>\n");
+                if (description != null && !description.isEmpty()) sb.append("<description>").append(CharacterCoding.unicode2xml(description, true)).append("</description>\n");
+                if (date != null) sb.append("<pubDate>").append(HeaderFramework.formatRFC1123(date)).append("</pubDate>\n");
+                if (size != null) sb.append("<yacy:size>").append(size.intValue()).append("</yacy:size>\n");
+                sb.append("<guid isPermaLink=\"false\">").append(hash).append("</guid>\n");
+                sb.append("</item>\n");
+            }
+            return sb.toString();
+        }
+
         public File file() {
             return this.f;
         }
@@ -830,7 +1122,26 @@ public final class Fulltext {
         }
 
         public int count() {
-            return this.count;
+            return this.count.get();
+        }
+
+        /**
+         * @return the number of finished partitions of the id space
+         */
+        public int partitionsDone() {
+            return this.partitionsDone.get();
+        }
+
+        public int partitions() {
+            return PARTITIONS;
+        }
+
+        /**
+         * @return the throughput of the export in documents per second
+         */
+        public int docsPerSecond() {
+            final long time = (this.endTime == 0 ? System.currentTimeMillis() : this.endTime) - this.startTime;
+            return time <= 0 ? 0 : (int) (1000L * this.count.get() / time);
         }
         
         @SuppressWarnings("unchecked")
@@ -0,0 +1,306 @@
+/**
+ *  NearDuplicateIndex.java
+ *  part of YaCy, http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.search.index;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.kelondro.data.word.Word;
+
+/**
+ * An index of SimHash signatures of document texts to detect near-duplicate documents at indexing time.
+ * The signature of a document is a 64 bit SimHash computed from the words of the document, weighted by
+ * their number of occurrences. Two documents are near-duplicates if the hamming distance of their signatures
+ * is not greater than a given maximum distance.
+ * To find candidates without comparing a signature with all others, the signature is split into
+ * (maxDistance + 1) bands; two signatures with a distance not greater than maxDistance must have at least
+ * one identical band (pigeonhole principle). The bands are used as keys of buckets which hold the ids of the documents.
+ *
+ * The index holds a bounded number of documents; the oldest documents are removed first. It is stored to
+ * a dump file when it is closed and loaded again on startup. The index also counts duplicates for each host,
+ * which can be used to deprioritize hosts that deliver mostly duplicate content.
+ */
+public class NearDuplicateIndex {
+
+    private static final ConcurrentLog log = new ConcurrentLog("NearDuplicateIndex");
+
+    public static final int MIN_WORDS = 50; // documents with less words are not checked because their signatures are not significant
+    private static final int HOST_MIN_DOCUMENTS = 20; // the minimum number of documents of a host before a duplicate ratio is computed
+    private static final int HOST_MAX_COUNT = 10000; // the maximum number of hosts for the duplicate statistics
+
+    private final File dumpFile;
+    private final int maxDocuments, maxDistance;
+    private final int[] bandShift, bandWidth;
+    private final LinkedHashMap<String, Long> signatures; // a mapping from document id to signature in insertion order
+    private final HashMap<Long, List<String>> buckets; // a mapping from band keys to document ids
+    private final ConcurrentHashMap<String, int[]> hostStatistics; // a mapping from host hash to {documents, duplicates}
+    private final AtomicLong checks, duplicates;
+
+    /**
+     * create a near-duplicate index
+     * @param dumpFile the file where the index is stored on close; if it exists, the index is initialized with the content of the file
+     * @param maxDocuments the maximum number of documents in the index
+     * @param maxDistance the maximum hamming distance of two signatures of near-duplicate documents
+     */
+    public NearDuplicateIndex(final File dumpFile, final int maxDocuments, final int maxDistance) {
+        this.dumpFile = dumpFile;
+        this.maxDocuments = Math.max(1, maxDocuments);
+        this.maxDistance = Math.max(0, Math.min(15, maxDistance));
+        final int bands = this.maxDistance + 1;
+        this.bandShift = new int[bands];
+        this.bandWidth = new int[bands];
+        int shift = 0;
+        for (int b = 0; b < bands; b++) {
+            this.bandWidth[b] = 64 / bands + (b < 64 % bands ? 1 : 0);
+            this.bandShift[b] = shift;
+            shift += this.bandWidth[b];
+        }
+        this.signatures = new LinkedHashMap<String, Long>();
+        this.buckets = new HashMap<Long, List<String>>();
+        this.hostStatistics = new ConcurrentHashMap<String, int[]>();
+        this.checks = new AtomicLong(0);
+        this.duplicates = new AtomicLong(0);
+        if (dumpFile != null && dumpFile.exists()) load();
+    }
+
+    /**
+     * compute the SimHash signature of a document
+     * @param words the words of the document with their occurrences, as produced by the Condenser
+     * @return a 64 bit signature
+     */
+    public static long simhash(final Map<String, Word> words) {
+        final int[] v = new int[64];
+        for (final Map.Entry<String, Word> entry: words.entrySet()) {
+            final long h = hash(entry.getKey());
+            final int weight = entry.getValue().occurrences();
+            for (int i = 0; i < 64; i++) {
+                if (((h >>> i) & 1L) != 0) v[i] += weight; else v[i] -= weight;
+            }
+        }
+        long simhash = 0;
+        for (int i = 0; i < 64; i++) if (v[i] > 0) simhash |= 1L << i;
+        return simhash;
+    }
+
+    /**
+     * a 64 bit FNV-1a hash with a final avalanche step, so that all bits of the hash are well distributed
+     */
+    private static long hash(final String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * check if a document is a near-duplicate of a document in the index.
+     * If it is not a near-duplicate, the document is added to the index.
+     * @param id the document id (url hash)
+     * @param words the words of the document, as produced by the Condenser
+     * @return the id of the document of which the given document is a near-duplicate or null if the document is unique
+     */
+    public String check(final String id, final Map<String, Word> words) {
+        if (id.length() != Word.commonHashLength || words.size() < MIN_WORDS) return null;
+        final long signature = simhash(words);
+        final String hosthash = id.substring(6);
+        this.checks.incrementAndGet();
+        final String canonical;
+        synchronized (this) {
+            // a document which was indexed before is replaced by the new version
+            remove(id);
+            canonical = find(signature);
+            if (canonical == null) add(id, signature);
+        }
+        if (canonical != null) this.duplicates.incrementAndGet();
+        count(hosthash, canonical != null);
+        return canonical;
+    }
+
+    private String find(final long signature) {
+        for (int b = 0; b < this.bandShift.length; b++) {
+            final List<String> ids = this.buckets.get(bandKey(b, signature));
+            if (ids == null) continue;
+            for (final String candidate: ids) {
+                final Long s = this.signatures.get(candidate);
+                if (s != null && Long.bitCount(s.longValue() ^ signature) <= this.maxDistance) return candidate;
+            }
+        }
+        return null;
+    }
+
+    private void add(final String id, final long signature) {
+        this.signatures.put(id, signature);
+        for (int b = 0; b < this.bandShift.length; b++) {
+            final Long key = bandKey(b, signature);
+            List<String> ids = this.buckets.get(key);
+            if (ids == null) {
+                ids = new ArrayList<String>(1);
+                this.buckets.put(key, ids);
+            }
+            ids.add(id);
+        }
+
+        // remove the oldest documents if the index is too large
+        final Iterator<Map.Entry<String, Long>> i = this.signatures.entrySet().iterator();
+        while (this.signatures.size() > this.maxDocuments && i.hasNext()) {
+            final Map.Entry<String, Long> oldest = i.next();
+            i.remove();
+            removeFromBuckets(oldest.getKey(), oldest.getValue().longValue());
+        }
+    }
+
+    private void remove(final String id) {
+        final Long signature = this.signatures.remove(id);
+        if (signature != null) removeFromBuckets(id, signature.longValue());
+    }
+
+    private void removeFromBuckets(final String id, final long signature) {
+        for (int b = 0; b < this.bandShift.length; b++) {
+            final Long key = bandKey(b, signature);
+            final List<String> ids = this.buckets.get(key);
+            if (ids == null) continue;
+            ids.remove(id);
+            if (ids.isEmpty()) this.buckets.remove(key);
+        }
+    }
+
+    /**
+     * the bucket key of a band: the band number in the upper 8 bits and the band value in the lower bits
+     */
+    private Long bandKey(final int band, final long signature) {
+        final long mask = this.bandWidth[band] == 64 ? -1L : (1L << this.bandWidth[band]) - 1;
+        return Long.valueOf(((long) band << 56) ^ ((signature >>> this.bandShift[band]) & mask));
+    }
+
+    private void count(final String hosthash, final boolean duplicate) {
+        int[] c = this.hostStatistics.get(hosthash);
+        if (c == null) {
+            if (this.hostStatistics.size() >= HOST_MAX_COUNT) this.hostStatistics.clear();
+            c = new int[2];
+            final int[] c0 = this.hostStatistics.putIfAbsent(hosthash, c);
+            if (c0 != null) c = c0;
+        }
+        synchronized (c) {
+            c[0]++;
+            if (duplicate) c[1]++;
+        }
+    }
+
+    /**
+     * get the share of near-duplicate documents of all checked documents of a host
+     * @param hosthash the host hash (the last 6 characters of the url hash)
+     * @return a value from 0.0 to 1.0; 0.0 if not enough documents of the host have been checked
+     */
+    public double duplicateRatio(final String hosthash) {
+        final int[] c = this.hostStatistics.get(hosthash);
+        if (c == null) return 0.0d;
+        synchronized (c) {
+            if (c[0] < HOST_MIN_DOCUMENTS) return 0.0d;
+            return ((double) c[1]) / ((double) c[0]);
+        }
+    }
+
+    public synchronized int size() {
+        return this.signatures.size();
+    }
+
+    public long checks() {
+        return this.checks.get();
+    }
+
+    public long duplicates() {
+        return this.duplicates.get();
+    }
+
+    public synchronized void clear() {
+        this.signatures.clear();
+        this.buckets.clear();
+        this.hostStatistics.clear();
+    }
+
+    /**
+     * store the index to the dump file
+     */
+    public synchronized void close() {
+        if (this.dumpFile == null) return;
+        final File tmp = new File(this.dumpFile.getParentFile(), this.dumpFile.getName() + ".tmp");
+        BufferedWriter writer = null;
+        try {
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8"));
+            for (final Map.Entry<String, Long> entry: this.signatures.entrySet()) {
+                writer.write(entry.getKey());
+                writer.write('\t');
+                writer.write(Long.toString(entry.getValue().longValue()));
+                writer.write('\n');
+            }
+            writer.close();
+            writer = null;
+            this.dumpFile.delete();
+            if (!tmp.renameTo(this.dumpFile)) log.warn("cannot rename " + tmp.toString() + " to " + this.dumpFile.toString());
+            log.info("stored " + this.signatures.size() + " signatures to " + this.dumpFile.toString());
+        } catch (final IOException e) {
+            log.warn("cannot store near-duplicate index: " + e.getMessage());
+        } finally {
+            if (writer != null) try {writer.close();} catch (final IOException e) {}
+        }
+    }
+
+    private void load() {
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(this.dumpFile), "UTF-8"));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final int p = line.indexOf('\t');
+                if (p != Word.commonHashLength) continue;
+                try {
+                    add(line.substring(0, p), Long.parseLong(line.substring(p + 1)));
+                } catch (final NumberFormatException e) {
+                    continue;
+                }
+            }
+            log.info("loaded " + this.signatures.size() + " signatures from " + this.dumpFile.toString());
+        } catch (final IOException e) {
+            log.warn("cannot load near-duplicate index: " + e.getMessage());
+        } finally {
+            if (reader != null) try {reader.close();} catch (final IOException e) {}
+        }
+    }
+}
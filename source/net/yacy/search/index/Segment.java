@@ -110,6 +110,8 @@ public class Segment {
     public static final String termIndexName = "text.index";
     public static final String citationIndexName = "citation.index";
     public static final String firstseenIndexName = "firstseen.index";
+    public static final String nearDuplicatesDumpName = "nearduplicates.dump";
+    public static final String snippetStoreName = "snippets";
 
     // the reference factory
     public static final ReferenceFactory<WordReference> wordReferenceFactory = new WordReferenceFactory();
@@ -122,6 +124,8 @@ public class Segment {
     protected       IndexCell<WordReference>       termIndex;
     protected       IndexCell<CitationReference>   urlCitationIndex;
     protected       IndexTable                     firstSeenIndex;
+    protected       NearDuplicateIndex             nearDuplicates;
+    protected       SnippetStore                   snippetStore;
     protected       IODispatcher                   merger = null; // shared iodispatcher for kelondro indexes
 
     /**
@@ -143,6 +147,7 @@ public class Segment {
         this.termIndex = null;
         this.urlCitationIndex = null;
         this.firstSeenIndex = new IndexTable(new File(segmentPath, firstseenIndexName), 12, 8, false, false);
+        this.nearDuplicates = null;
     }
     
     public boolean connectedRWI() {
@@ -205,6 +210,57 @@ public class Segment {
         this.urlCitationIndex = null;
     }
 
+    public boolean connectedNearDuplicates() {
+        return this.nearDuplicates != null;
+    }
+
+    /**
+     * connect the near-duplicate index; documents which are near-duplicates of an already indexed document
+     * are stored to the fulltext with a pointer to the original document but they are not written to the
+     * term index, the citation index and the webgraph
+     * @param maxDocuments the maximum number of document signatures in the index
+     * @param maxDistance the maximum hamming distance of the signatures of near-duplicate documents
+     */
+    public void connectNearDuplicates(final int maxDocuments, final int maxDistance) {
+        if (this.nearDuplicates != null) return;
+        this.nearDuplicates = new NearDuplicateIndex(new File(this.segmentPath, nearDuplicatesDumpName), maxDocuments, maxDistance);
+    }
+
+    public void disconnectNearDuplicates() {
+        if (this.nearDuplicates == null) return;
+        this.nearDuplicates.close();
+        this.nearDuplicates = null;
+    }
+
+    public NearDuplicateIndex nearDuplicates() {
+        return this.nearDuplicates;
+    }
+
+    public boolean connectedSnippetStore() {
+        return this.snippetStore != null;
+    }
+
+    /**
+     * connect the snippet store; the sentences of all documents are written to the store at indexing time
+     * so that search result snippets can be computed without parsing the document again
+     * @param maxSize the maximum size of the store in bytes
+     * @throws IOException
+     */
+    public void connectSnippetStore(final long maxSize) throws IOException {
+        if (this.snippetStore != null) return;
+        this.snippetStore = new SnippetStore(new File(this.segmentPath, snippetStoreName), maxSize);
+    }
+
+    public void disconnectSnippetStore() {
+        if (this.snippetStore == null) return;
+        this.snippetStore.close();
+        this.snippetStore = null;
+    }
+
+    public SnippetStore snippetStore() {
+        return this.snippetStore;
+    }
+
     public int citationCount() {
         return this.urlCitationIndex == null ? 0 : this.urlCitationIndex.sizesMax();
     }
@@ -463,6 +519,7 @@ public class Segment {
             if (this.fulltext != null) this.fulltext.clearLocalSolr();
             if (this.fulltext != null) this.fulltext.clearRemoteSolr();
             if (this.urlCitationIndex != null) this.urlCitationIndex.clear();
+            if (this.snippetStore != null) this.snippetStore.clear();
         } catch (final IOException e) {
             ConcurrentLog.logException(e);
         }
@@ -483,6 +540,8 @@ public class Segment {
         if (this.fulltext != null) this.fulltext.close();
         if (this.urlCitationIndex != null) this.urlCitationIndex.close();
         if (this.firstSeenIndex != null) this.firstSeenIndex.close();
+        if (this.nearDuplicates != null) this.nearDuplicates.close();
+        if (this.snippetStore != null) this.snippetStore.close();
         if (this.merger != null) {
             this.merger.terminate();
             this.merger = null;
@@ -589,9 +648,20 @@ public class Segment {
         if (modDate.getTime() > loadDate.getTime()) modDate = loadDate;
         char docType = Response.docType(document.dc_format());
         
+        // CHECK NEAR-DUPLICATES
+        // a near-duplicate is stored to the fulltext with a pointer to the original; the term index, citations and webgraph edges are omitted
+        final NearDuplicateIndex nearDuplicateIndex = this.nearDuplicates;
+        final String duplicateOf = nearDuplicateIndex == null ? null : nearDuplicateIndex.check(id, condenser.words());
+        final boolean nearDuplicate = duplicateOf != null;
+        if (nearDuplicate && this.log.isFine()) this.log.fine("near-duplicate: " + urlNormalform + " [" + id + "] is similar to [" + duplicateOf + "]");
+        
         // CREATE SOLR DOCUMENT
         final CollectionConfiguration collectionConfig = this.fulltext.getDefaultConfiguration();
-        final CollectionConfiguration.SolrVector vector = collectionConfig.yacy2solr(this, collections, responseHeader, document, condenser, referrerURL, language, crawlProfile.isPushCrawlProfile(), this.fulltext().useWebgraph() ? this.fulltext.getWebgraphConfiguration() : null, sourceName);
+        final CollectionConfiguration.SolrVector vector = collectionConfig.yacy2solr(this, collections, responseHeader, document, condenser, referrerURL, language, crawlProfile.isPushCrawlProfile(), this.fulltext().useWebgraph() && !nearDuplicate ? this.fulltext.getWebgraphConfiguration() : null, sourceName);
+        if (nearDuplicate) {
+            if (collectionConfig.contains(CollectionSchema.fuzzy_signature_unique_b)) vector.setField(CollectionSchema.fuzzy_signature_unique_b.getSolrFieldName(), false);
+            if (collectionConfig.contains(CollectionSchema.fuzzy_signature_duplicate_of_s)) vector.setField(CollectionSchema.fuzzy_signature_duplicate_of_s.getSolrFieldName(), duplicateOf);
+        }
         
         // ENRICH DOCUMENT WITH RANKING INFORMATION
         this.fulltext.getDefaultConfiguration().postprocessing_references(this.getReferenceReportCache(), vector, url, null);
@@ -633,11 +703,15 @@ public class Segment {
         
         }
         
+        // STORE SENTENCES FOR SNIPPET COMPUTATION
+        final SnippetStore sentenceStore = this.snippetStore;
+        if (sentenceStore != null) sentenceStore.put(url.hash(), document.getSentences(false));
+        
         // REMEMBER FIRST SEEN
         setFirstSeenTime(url.hash(), Math.min(document.getLastModified().getTime(), System.currentTimeMillis())); // should exist already in the index at this time, but just to make sure
 
         // write the edges to the citation reference index
-        if (this.connectedCitation()) try {
+        if (this.connectedCitation() && !nearDuplicate) try {
             // we use the subgraph to write the citation index, that shall cause that the webgraph and the citation index is identical
             
             if (collectionConfig.contains(CollectionSchema.inboundlinks_protocol_sxt) || collectionConfig.contains(CollectionSchema.inboundlinks_urlstub_sxt)) {
@@ -685,7 +759,8 @@ public class Segment {
 
         // STORE PAGE INDEX INTO WORD INDEX DB
         // create a word prototype which is re-used for all entries
-        if ((this.termIndex != null && storeToRWI) || searchEvent != null) {
+        final boolean storeRWI = storeToRWI && !nearDuplicate;
+        if ((this.termIndex != null && storeRWI) || searchEvent != null) {
             final int outlinksSame = document.inboundLinks().size();
             final int outlinksOther = document.outboundLinks().size();
             final int urlLength = urlNormalform.length();
@@ -712,7 +787,7 @@ public class Segment {
                 assert (wprop.flags != null);
                 ientry.setWord(wprop);
                 wordhash = Word.word2hash(word);
-                if (this.termIndex != null && storeToRWI) try {
+                if (this.termIndex != null && storeRWI) try {
                     this.termIndex.add(wordhash, ientry);
                 } catch (final Exception e) {
                     ConcurrentLog.logException(e);
@@ -738,7 +813,7 @@ public class Segment {
     
             // assign the catchall word
             ientry.setWord(wprop == null ? catchallWord : wprop); // we use one of the word properties as template to get the document characteristics
-            if (this.termIndex != null) try {this.termIndex.add(catchallHash, ientry);} catch (final Throwable e) {ConcurrentLog.logException(e);}
+            if (this.termIndex != null && !nearDuplicate) try {this.termIndex.add(catchallHash, ientry);} catch (final Throwable e) {ConcurrentLog.logException(e);}
         }
 
         // finish index time
@@ -783,6 +858,7 @@ public class Segment {
             final Document document = Document.mergeDocuments(url, null, loader.loadDocuments(loader.request(url, true, false), cacheStrategy, Integer.MAX_VALUE, null, agent));
             if (document == null) {
                 // delete just the url entry
+                if (this.snippetStore != null) this.snippetStore.delete(urlhash);
                 fulltext().remove(urlhash);
                 return 0;
             }
@@ -795,6 +871,7 @@ public class Segment {
             if (words != null && termIndex() != null) count = termIndex().remove(Word.words2hashesHandles(words), urlhash);
 
             // finally delete the url entry itself
+            if (this.snippetStore != null) this.snippetStore.delete(urlhash);
             fulltext().remove(urlhash);
             return count;
         } catch (final Parser.Failure e) {
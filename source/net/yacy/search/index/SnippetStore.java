@@ -0,0 +1,253 @@
+/**
+ *  SnippetStore.java
+ *  part of YaCy, http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.search.index;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import net.yacy.cora.document.encoding.UTF8;
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.storage.HandleSet;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.document.WordTokenizer;
+import net.yacy.kelondro.blob.ArrayStack;
+import net.yacy.kelondro.blob.Compressor;
+import net.yacy.kelondro.data.word.Word;
+
+/**
+ * A store of the sentences of indexed documents which is written at indexing time, so that text snippets
+ * can be computed without loading and parsing the document again.
+ * For each document the store holds one compressed record with the sentences of the document text and a
+ * posting list from the word hashes to the numbers of the sentences which contain the word. A snippet is
+ * computed only from the sentences which contain at least one of the query words.
+ */
+public class SnippetStore {
+
+    private static final ConcurrentLog log = new ConcurrentLog("SnippetStore");
+
+    public static final int MAX_SENTENCES = 1000; // the maximum number of sentences stored for one document
+    public static final int MAX_TEXT_LENGTH = 256 * 1024; // the maximum number of characters stored for one document
+    public static final int MAX_SENTENCE_WORDS = 100; // the number of words of a sentence which are used for the snippet computation, see SnippetExtractor
+    private static final byte RECORD_VERSION = 1;
+
+    private final File location;
+    private ArrayStack backend;
+    private Compressor store;
+
+    /**
+     * open a snippet store
+     * @param location the directory of the store
+     * @param maxSize the maximum size of the store in bytes; the oldest entries are deleted if the store is larger
+     * @throws IOException
+     */
+    public SnippetStore(final File location, final long maxSize) throws IOException {
+        this.location = location;
+        try {
+            open(maxSize);
+        } catch (final IOException e) {
+            // try a healing
+            log.warn("cannot open snippet store at " + location + ", deleting it: " + e.getMessage());
+            deleteAll(location);
+            open(maxSize);
+        }
+        log.info("opened snippet store with " + this.store.size() + " documents");
+    }
+
+    private void open(final long maxSize) throws IOException {
+        this.backend = new ArrayStack(this.location, "snippets", Base64Order.enhancedCoder, Word.commonHashLength, 1024 * 1024 * 2, false, true);
+        this.backend.setMaxSize(maxSize);
+        this.store = new Compressor(this.backend, 4 * 1024 * 1024);
+    }
+
+    private static void deleteAll(final File location) {
+        final String[] files = location.list();
+        if (files != null) for (final String f: files) new File(location, f).delete();
+    }
+
+    /**
+     * store the sentences of a document
+     * @param urlhash the hash of the document url
+     * @param sentences the sentences of the document text
+     */
+    public void put(final byte[] urlhash, final List<StringBuilder> sentences) {
+        if (sentences == null || sentences.isEmpty()) {
+            delete(urlhash);
+            return;
+        }
+        try {
+            this.store.insert(urlhash, encode(sentences));
+        } catch (final IOException e) {
+            log.warn("cannot store sentences: " + e.getMessage());
+        }
+    }
+
+    /**
+     * get the sentences of a document which contain at least one of the given words
+     * @param urlhash the hash of the document url
+     * @param queryhashes the word hashes
+     * @return the matching sentences in the order of the document, or null if the document is not in the store
+     */
+    public List<StringBuilder> sentences(final byte[] urlhash, final HandleSet queryhashes) {
+        final byte[] b;
+        try {
+            b = this.store.get(urlhash);
+        } catch (final IOException e) {
+            log.warn("cannot read sentences: " + e.getMessage());
+            return null;
+        } catch (final SpaceExceededException e) {
+            return null;
+        }
+        if (b == null) return null;
+        try {
+            return decode(b, queryhashes);
+        } catch (final IOException e) {
+            log.warn("damaged record for " + UTF8.String(urlhash) + ": " + e.getMessage());
+            delete(urlhash);
+            return null;
+        }
+    }
+
+    public boolean contains(final byte[] urlhash) {
+        return this.store.containsKey(urlhash);
+    }
+
+    public void delete(final byte[] urlhash) {
+        try {
+            this.store.delete(urlhash);
+        } catch (final IOException e) {
+            log.warn("cannot delete sentences: " + e.getMessage());
+        }
+    }
+
+    public int size() {
+        return this.store.size();
+    }
+
+    public void clear() {
+        try {
+            this.store.clear();
+        } catch (final IOException e) {
+            ConcurrentLog.logException(e);
+        }
+    }
+
+    public void close() {
+        this.store.close(true);
+    }
+
+    /**
+     * encode the sentences of a document into a record:
+     * a version byte, the number of sentences, the sentences as length-prefixed UTF-8 strings,
+     * the number of posting entries and for each entry a word hash with the ascending numbers of the sentences containing the word
+     * @param sentences the sentences of the document
+     * @return the record
+     * @throws IOException
+     */
+    protected static byte[] encode(final List<StringBuilder> sentences) throws IOException {
+        final Map<byte[], List<Integer>> postings = new TreeMap<byte[], List<Integer>>(Base64Order.enhancedCoder);
+        final List<byte[]> stored = new ArrayList<byte[]>(Math.min(sentences.size(), MAX_SENTENCES));
+        int textLength = 0;
+        for (final StringBuilder sentence: sentences) {
+            if (stored.size() >= MAX_SENTENCES || textLength >= MAX_TEXT_LENGTH) break;
+            final String s = sentence.toString();
+            final Integer id = Integer.valueOf(stored.size());
+            stored.add(UTF8.getBytes(s));
+            textLength += s.length();
+            for (final byte[] wordhash: WordTokenizer.hashSentence(s, MAX_SENTENCE_WORDS).keySet()) {
+                List<Integer> ids = postings.get(wordhash);
+                if (ids == null) {
+                    ids = new ArrayList<Integer>(2);
+                    postings.put(wordhash, ids);
+                }
+                ids.add(id);
+            }
+        }
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream(textLength + postings.size() * (Word.commonHashLength + 8) + 16);
+        final DataOutputStream out = new DataOutputStream(baos);
+        out.writeByte(RECORD_VERSION);
+        out.writeInt(stored.size());
+        for (final byte[] s: stored) {
+            out.writeInt(s.length);
+            out.write(s);
+        }
+        out.writeInt(postings.size());
+        for (final Map.Entry<byte[], List<Integer>> posting: postings.entrySet()) {
+            out.write(posting.getKey());
+            out.writeShort(posting.getValue().size());
+            for (final Integer id: posting.getValue()) out.writeShort(id.intValue());
+        }
+        out.close();
+        return baos.toByteArray();
+    }
+
+    /**
+     * decode the sentences from a record which contain at least one of the given words
+     * @param b the record
+     * @param queryhashes the word hashes
+     * @return the matching sentences in the order of the document
+     * @throws IOException if the record is damaged
+     */
+    protected static List<StringBuilder> decode(final byte[] b, final HandleSet queryhashes) throws IOException {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(b));
+        if (in.readByte() != RECORD_VERSION) throw new IOException("unknown record version");
+        final int count = in.readInt();
+        if (count < 0 || count > MAX_SENTENCES) throw new IOException("bad sentence count " + count);
+        final int[] offsets = new int[count];
+        final int[] lengths = new int[count];
+        int p = 5;
+        for (int i = 0; i < count; i++) {
+            final int length = in.readInt();
+            p += 4;
+            offsets[i] = p;
+            lengths[i] = length;
+            if (in.skipBytes(length) != length) throw new IOException("truncated record");
+            p += length;
+        }
+        final int postings = in.readInt();
+        final TreeSet<Integer> ids = new TreeSet<Integer>();
+        final byte[] wordhash = new byte[Word.commonHashLength];
+        for (int i = 0; i < postings; i++) {
+            in.readFully(wordhash);
+            final int n = in.readShort() & 0xffff;
+            if (queryhashes.has(wordhash)) {
+                for (int j = 0; j < n; j++) ids.add(Integer.valueOf(in.readShort() & 0xffff));
+            } else {
+                if (in.skipBytes(2 * n) != 2 * n) throw new IOException("truncated record");
+            }
+        }
+        final List<StringBuilder> sentences = new ArrayList<StringBuilder>(ids.size());
+        for (final Integer id: ids) {
+            final int i = id.intValue();
+            if (i >= count) throw new IOException("bad sentence id " + i);
+            sentences.add(new StringBuilder(UTF8.String(b, offsets[i], lengths[i])));
+        }
+        return sentences;
+    }
+}
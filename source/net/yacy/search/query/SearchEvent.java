@@ -44,6 +44,7 @@ import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 import java.util.regex.Pattern;
 
 import net.yacy.contentcontrol.ContentControlFilterUpdateThread;
@@ -129,17 +130,18 @@ public final class SearchEvent {
     public QueryParams query;
     public final SeedDB peers;
     final WorkTables workTables;
+    public final SearchTask.Scope scope; // all tasks of this search event
     public final SecondarySearchSuperviser secondarySearchSuperviser;
     public final List<RemoteSearch> primarySearchThreadsL;
-    public final List<Thread> nodeSearchThreads;
-    public Thread[] secondarySearchThreads;
+    public final List<SearchTask> nodeSearchThreads;
+    public SearchTask[] secondarySearchThreads;
     public final SortedSet<byte[]> preselectedPeerHashes;
     private final SortedMap<byte[], Integer> IACount;
     private final SortedMap<byte[], String> IAResults;
     private final SortedMap<byte[], HeuristicResult> heuristics;
     private byte[] IAmaxcounthash, IAneardhthash;
-    public Thread rwiProcess;
-    public Thread localsolrsearch;
+    public SearchTask rwiProcess;
+    public SearchTask localsolrsearch;
     private int localsolroffset;
     private final AtomicInteger expectedRemoteReferences, maxExpectedRemoteReferences; // counter for referenced that had been sorted out for other reasons
     public final ScoreMap<String> locationNavigator; // a counter for the appearance of location coordinates
@@ -177,6 +179,8 @@ public final class SearchEvent {
     private final WeakPriorityBlockingQueue<WordReferenceVars> rwiStack; // thats the bag where the RWI search process writes to
     private final WeakPriorityBlockingQueue<URIMetadataNode> nodeStack; // thats the bag where the solr results are written to
     private final WeakPriorityBlockingQueue<URIMetadataNode>  resultList; // thats the result list where the actual search result is waiting to be displayed
+    private final Object resultSignal = new Object(); // monitor to wake up threads waiting for results
+    private long resultVersion = 0; // counter of changes of the result list, the stacks and the feeders; guarded by resultSignal
     private final boolean pollImmediately; // if this is true, then every entry in result List is polled immediately to prevent a re-ranking in the resultList. This is usefull if there is only one index source.
     public  final boolean excludeintext_image;
     
@@ -246,6 +250,7 @@ public final class SearchEvent {
         }
         
         this.eventTime = System.currentTimeMillis(); // for lifetime check
+        this.scope = new SearchTask.Scope();
         this.peers = peers;
         this.workTables = workTables;
         this.query = query;
@@ -343,15 +348,13 @@ public final class SearchEvent {
                 this.nodeSearchThreads = null;
             } else {
                 this.primarySearchThreadsL = new ArrayList<RemoteSearch>();
-                this.nodeSearchThreads = new ArrayList<Thread>();
+                this.nodeSearchThreads = new ArrayList<SearchTask>();
                 // start this concurrently because the remote search needs an enumeration
                 // of the remote peers which may block in some cases when i.e. DHT is active
                 // at the same time.
-                new Thread() {
+                new SearchTask("SearchEvent.primaryRemoteSearches(" + query.getQueryGoal().getQueryString(false) + ")", this.scope) {
                     @Override
-                    public void run() {
-                        this.setName("SearchEvent.init(" + query.getQueryGoal().getQueryString(false) + ")");
-                        Thread.currentThread().setName("SearchEvent.primaryRemoteSearches");
+                    protected void execute() {
                         RemoteSearch.primaryRemoteSearches(
                         	SearchEvent.this,
                             0, remote_maxcount,
@@ -457,17 +460,17 @@ public final class SearchEvent {
         SearchEventCache.put(this.query.id(false), this);
     }
 
-    private class RWIProcess extends Thread {
+    private class RWIProcess extends SearchTask {
     
-        final Thread waitForThread;
+        final SearchTask waitForThread;
         
-        public RWIProcess(final Thread waitForThread) {
-            super();
+        public RWIProcess(final SearchTask waitForThread) {
+            super("SearchEvent.RWIProcess", SearchEvent.this.scope);
             this.waitForThread = waitForThread;
         }
         
         @Override
-        public void run() {
+        protected void execute() {
     
             if (query.getSegment().termIndex() == null) return; // nothing to do; this index is not used
             
@@ -677,6 +680,7 @@ public final class SearchEvent {
             resourceName,
             index.size(),
             System.currentTimeMillis() - timer), false);
+        if (successcounter > 0) resultChanged();
         return successcounter;
     }
     
@@ -690,31 +694,8 @@ public final class SearchEvent {
 
     protected void cleanup() {
 
-        // stop all threads
-        if (this.localsolrsearch != null) {
-            if (localsolrsearch.isAlive()) synchronized (this.localsolrsearch) {this.localsolrsearch.interrupt();}
-        }
-        if (this.nodeSearchThreads != null) {
-            for (final Thread search : this.nodeSearchThreads) {
-                if (search != null) {
-                    synchronized (search) {if (search.isAlive()) {search.interrupt();}}
-                }
-            }
-        }
-        if (this.primarySearchThreadsL != null) {
-            for (final RemoteSearch search : this.primarySearchThreadsL) {
-                if (search != null) {
-                    synchronized (search) {if (search.isAlive()) {search.interrupt();}}
-                }
-            }
-        }
-        if (this.secondarySearchThreads != null) {
-            for (final Thread search : this.secondarySearchThreads ) {
-                if (search != null) {
-                    synchronized (search) {if (search.isAlive()) {search.interrupt();}}
-                }
-            }
-        }
+        // stop all tasks: the local and remote searches and the snippet fetches
+        this.scope.cancel();
 
         // clear all data structures
         if (this.preselectedPeerHashes != null) this.preselectedPeerHashes.clear();
@@ -754,7 +735,7 @@ public final class SearchEvent {
         return this.primarySearchThreadsL;
     }
 
-    public Thread[] getSecondarySearchThreads() {
+    public SearchTask[] getSecondarySearchThreads() {
         return this.secondarySearchThreads;
     }
 
@@ -1018,6 +999,7 @@ public final class SearchEvent {
         } catch (final SpaceExceededException e ) {
         }
         EventTracker.update(EventTracker.EClass.SEARCH, new ProfilingGraph.EventSearch(this.query.id(true), SearchEventType.PRESORT, resourceName, nodeList.size(), System.currentTimeMillis() - timer), false);
+        resultChanged();
     }
     
     public void addExpectedRemoteReferences(int x) {
@@ -1367,9 +1349,9 @@ public final class SearchEvent {
                     success = true;
                 } else {
 
-                    new Thread() {
+                    new SearchTask("SearchEvent.getSnippet", SearchEvent.this.scope) {
                         @Override
-                        public void run() {
+                        protected void execute() {
                             SearchEvent.this.oneFeederStarted();
                             try {
                                 SearchEvent.this.snippetFetchAlive.incrementAndGet();
@@ -1394,9 +1376,9 @@ public final class SearchEvent {
                 success = true;
             }
         } else {
-            Thread t = new Thread() {
+            SearchTask t = new SearchTask("SearchEvent.getSnippet", SearchEvent.this.scope) {
                 @Override
-                public void run() {
+                protected void execute() {
                     SearchEvent.this.oneFeederStarted();
                     try {
                         final URIMetadataNode noderwi = pullOneFilteredFromRWI(true);
@@ -1433,6 +1415,47 @@ public final class SearchEvent {
         this.resultList.put(new ReverseElement<URIMetadataNode>(resultEntry, ranking)); // remove smallest in case of overflow
         if (pollImmediately) this.resultList.poll(); // prevent re-ranking in case there is only a single index source which has already ranked entries.
         this.addTopics(resultEntry);
+        resultChanged();
+    }
+
+    /**
+     * signal all threads waiting for results that the result list, the stacks or the feeders have changed
+     */
+    private void resultChanged() {
+        synchronized (this.resultSignal) {
+            this.resultVersion++;
+            this.resultSignal.notifyAll();
+        }
+    }
+
+    /**
+     * @return a number which is increased with each change of the result list, the stacks or the feeders
+     */
+    public long resultVersion() {
+        synchronized (this.resultSignal) {
+            return this.resultVersion;
+        }
+    }
+
+    /**
+     * wait until the result list, the stacks or the feeders change
+     * @param version the result version which the caller knows
+     * @param timeout the maximum waiting time in milliseconds
+     * @return the current result version
+     */
+    public long awaitResultChange(final long version, final long timeout) {
+        final long deadline = System.currentTimeMillis() + timeout;
+        synchronized (this.resultSignal) {
+            long remaining;
+            while (this.resultVersion == version && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                try {
+                    this.resultSignal.wait(remaining);
+                } catch (final InterruptedException e) {
+                    break;
+                }
+            }
+            return this.resultVersion;
+        }
     }
 
     private long postRanking(final URIMetadataNode rentry, final ScoreMap<String> topwords) {
@@ -1508,7 +1531,8 @@ public final class SearchEvent {
                     ((this.query.constraint != null) && (this.query.constraint.get(Tokenizer.flag_cat_indexof))),
                     180,
                     !this.query.isLocal());
-            SearchEvent.log.info("text snippet load time for " + page.url().toNormalform(true) + ": " + (System.currentTimeMillis() - startTime) + " ms, " + (!snippet.getErrorCode().fail() ? "snippet found" : ("no snippet found (" + snippet.getError() + ")")));
+            SearchEvent.log.log(Level.INFO, "text snippet load time for {}: {} ms, {}", page.url().toNormalform(true), System.currentTimeMillis() - startTime,
+                    !snippet.getErrorCode().fail() ? "snippet found" : "no snippet found (" + snippet.getError() + ")");
 
             if (!snippet.getErrorCode().fail()) {
                 // we loaded the file and found the snippet
@@ -1527,7 +1551,7 @@ public final class SearchEvent {
                 if (this.deleteIfSnippetFail) {
                     this.workTables.failURLsRegisterMissingWord(this.query.getSegment().termIndex(), page.url(), this.query.getQueryGoal().getIncludeHashes());
                 }
-                SearchEvent.log.info("sorted out url " + page.url().toNormalform(true) + " during search: " + reason);
+                SearchEvent.log.log(Level.INFO, "sorted out url {} during search: {}", page.url().toNormalform(true), reason);
                 return null;
             }
         }
@@ -1557,7 +1581,9 @@ public final class SearchEvent {
         while ( this.resultList.sizeAvailable() <= item &&
                 (this.rwiQueueSize() > 0 || this.nodeStack.sizeQueue() > 0 ||
                 (!this.feedingIsFinished() && System.currentTimeMillis() < finishTime))) {
-            if (!drainStacksToResult()) try {Thread.sleep(10);} catch (final InterruptedException e) {ConcurrentLog.logException(e);}
+            // wait until new entries arrive instead of polling
+            final long version = this.resultVersion();
+            if (!drainStacksToResult()) awaitResultChange(version, Math.max(1, Math.min(100, finishTime - System.currentTimeMillis())));
         }
         
         // check if we have a success
@@ -1750,6 +1776,7 @@ public final class SearchEvent {
         this.feedersTerminated.incrementAndGet();
         final int c = this.feedersAlive.decrementAndGet();
         assert c >= 0 : "feeders = " + c;
+        resultChanged();
     }
 
     public void oneFeederStarted() {
@@ -32,6 +32,7 @@ import java.util.Map;
 import java.util.SortedSet;
 
 import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.cora.util.Metrics;
 import net.yacy.data.WorkTables;
 import net.yacy.kelondro.util.MemoryControl;
 import net.yacy.peers.SeedDB;
@@ -49,6 +50,24 @@ public class SearchEventCache {
     private static final long memlimitMedium = 200 * 1024 * 1024; // 100 MB
     public volatile static String lastEventID = "";
     public static long cacheInsert = 0, cacheHit = 0, cacheMiss = 0, cacheDelete = 0;
+    static {
+        final String help = "operations on the search event cache";
+        Metrics.counter("yacy_search_event_cache", help, "operation", "insert", new Metrics.Probe() {
+            @Override public double value() {return cacheInsert;}
+        });
+        Metrics.counter("yacy_search_event_cache", help, "operation", "hit", new Metrics.Probe() {
+            @Override public double value() {return cacheHit;}
+        });
+        Metrics.counter("yacy_search_event_cache", help, "operation", "miss", new Metrics.Probe() {
+            @Override public double value() {return cacheMiss;}
+        });
+        Metrics.counter("yacy_search_event_cache", help, "operation", "delete", new Metrics.Probe() {
+            @Override public double value() {return cacheDelete;}
+        });
+        Metrics.gauge("yacy_search_event_cache_size", "number of search events in the cache", new Metrics.Probe() {
+            @Override public double value() {return size();}
+        });
+    }
 
     public static int size() {
         return lastEvents.size();
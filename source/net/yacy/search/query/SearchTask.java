@@ -0,0 +1,313 @@
+/**
+ *  SearchTask.java
+ *  part of YaCy, http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.search.query;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.kelondro.util.NamePrefixThreadFactory;
+
+/**
+ * A task of a search event, like the search to a remote peer, a Solr node, the local Solr index or the local RWI index.
+ * Search tasks are executed in a shared, bounded thread pool instead of a new thread for each task, so that a high number
+ * of concurrent queries does not create an unlimited number of threads. If all threads of the pool are busy, the task is
+ * executed in the thread which starts it; this slows down the creation of new search events when the peer is overloaded.
+ * Tasks which must never run in the starting thread, because they would block it, are started with tryStart() instead.
+ *
+ * A task offers the methods of a thread which the search event uses to supervise it: isAlive(), join() and interrupt().
+ * Each task belongs to the scope of its search event. The scope can cancel all tasks of the event at once and counts
+ * the tasks and their running time for the accounting of the resources of a query.
+ */
+public abstract class SearchTask implements Runnable {
+
+    private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            0, 200,
+            60, TimeUnit.SECONDS,
+            new SynchronousQueue<Runnable>(),
+            new NamePrefixThreadFactory("SearchTask"),
+            new ThreadPoolExecutor.AbortPolicy());
+    private static final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new NamePrefixThreadFactory("SearchTask.timer"));
+    static {
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * set the maximum number of threads which execute search tasks
+     * @param maxThreads the maximum number of threads
+     */
+    public static void setMaxThreads(final int maxThreads) {
+        executor.setMaximumPoolSize(Math.max(8, maxThreads));
+    }
+
+    /**
+     * @return the number of threads which currently execute search tasks
+     */
+    public static int activeThreads() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * The scope of all tasks of a search event
+     */
+    public static class Scope {
+
+        private final ConcurrentLinkedQueue<SearchTask> tasks;
+        private final AtomicInteger started, cancelled;
+        private final AtomicLong taskTime;
+
+        public Scope() {
+            this.tasks = new ConcurrentLinkedQueue<SearchTask>();
+            this.started = new AtomicInteger(0);
+            this.cancelled = new AtomicInteger(0);
+            this.taskTime = new AtomicLong(0);
+        }
+
+        private void add(final SearchTask task) {
+            this.started.incrementAndGet();
+            // forget finished tasks to keep the scope small for long-living events
+            for (final SearchTask t: this.tasks) if (!t.isAlive()) this.tasks.remove(t);
+            this.tasks.add(task);
+        }
+
+        /**
+         * interrupt all running tasks of the scope and prevent the execution of tasks which have not yet started
+         */
+        public void cancel() {
+            for (final SearchTask task: this.tasks) {
+                if (task.isAlive()) {
+                    task.interrupt();
+                    this.cancelled.incrementAndGet();
+                }
+            }
+        }
+
+        /**
+         * wait until all tasks of the scope have terminated
+         * @param timeout the maximum waiting time in milliseconds
+         * @return true if all tasks have terminated
+         */
+        public boolean await(final long timeout) {
+            final long deadline = System.currentTimeMillis() + timeout;
+            for (final SearchTask task: this.tasks) {
+                final long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) return alive() == 0;
+                try {
+                    task.join(remaining);
+                } catch (final InterruptedException e) {
+                    return false;
+                }
+            }
+            return alive() == 0;
+        }
+
+        /**
+         * @return the number of tasks which have not yet terminated
+         */
+        public int alive() {
+            int alive = 0;
+            for (final SearchTask task: this.tasks) if (task.isAlive()) alive++;
+            return alive;
+        }
+
+        /**
+         * @return the number of tasks which were started in this scope
+         */
+        public int started() {
+            return this.started.get();
+        }
+
+        /**
+         * @return the number of tasks which were cancelled before they terminated
+         */
+        public int cancelled() {
+            return this.cancelled.get();
+        }
+
+        /**
+         * @return the sum of the running time of all terminated tasks in milliseconds
+         */
+        public long taskTime() {
+            return this.taskTime.get();
+        }
+    }
+
+    private final String name;
+    private final Scope scope;
+    private final CountDownLatch terminated;
+    private Thread runner;
+    private boolean cancelled, started;
+    private ScheduledFuture<?> deadline;
+
+    /**
+     * create a search task
+     * @param name the name of the task; the executing thread carries this name while it runs the task
+     * @param scope the scope of the search event or null if the task does not belong to an event
+     */
+    public SearchTask(final String name, final Scope scope) {
+        this.name = name;
+        this.scope = scope;
+        this.terminated = new CountDownLatch(1);
+        this.runner = null;
+        this.cancelled = false;
+        this.started = false;
+        this.deadline = null;
+    }
+
+    /**
+     * the work of the task
+     */
+    protected abstract void execute();
+
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * start the task in the search thread pool
+     * @return this task
+     */
+    public SearchTask start() {
+        return start(0);
+    }
+
+    /**
+     * start the task in the search thread pool
+     * @param timeout a deadline for the task in milliseconds after which it is interrupted; 0 for no deadline
+     * @return this task
+     */
+    public SearchTask start(final long timeout) {
+        prepare(timeout);
+        try {
+            executor.execute(this);
+        } catch (final RejectedExecutionException e) {
+            run(); // all threads are busy: run the task in the thread which starts it
+        }
+        return this;
+    }
+
+    /**
+     * start the task in the search thread pool only if a thread of the pool is available; the task is never executed
+     * in the thread which starts it
+     * @param timeout a deadline for the task in milliseconds after which it is interrupted; 0 for no deadline
+     * @return true if the task was started, false if all threads of the pool are busy and the task is dropped
+     */
+    public boolean tryStart(final long timeout) {
+        prepare(timeout);
+        try {
+            executor.execute(this);
+            return true;
+        } catch (final RejectedExecutionException e) {
+            if (this.deadline != null) this.deadline.cancel(false);
+            interrupt();
+            return false;
+        }
+    }
+
+    private void prepare(final long timeout) {
+        if (this.scope != null) this.scope.add(this);
+        if (timeout > 0) {
+            this.deadline = timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    SearchTask.this.interrupt();
+                }
+            }, timeout, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public final void run() {
+        final Thread thread = Thread.currentThread();
+        final String threadName = thread.getName();
+        synchronized (this) {
+            if (this.cancelled || this.started) {
+                this.terminated.countDown();
+                return;
+            }
+            this.started = true;
+            this.runner = thread;
+        }
+        final long start = System.currentTimeMillis();
+        thread.setName(this.name);
+        try {
+            execute();
+        } catch (final Throwable e) {
+            ConcurrentLog.logException(e);
+        } finally {
+            synchronized (this) {
+                this.runner = null;
+                Thread.interrupted(); // clear the interrupt flag, the thread may be re-used for another task
+            }
+            if (this.deadline != null) this.deadline.cancel(false);
+            thread.setName(threadName);
+            if (this.scope != null) this.scope.taskTime.addAndGet(System.currentTimeMillis() - start);
+            this.terminated.countDown();
+        }
+    }
+
+    /**
+     * @return true if the task has not yet terminated
+     */
+    public boolean isAlive() {
+        return this.terminated.getCount() > 0;
+    }
+
+    /**
+     * wait until the task has terminated
+     * @throws InterruptedException
+     */
+    public void join() throws InterruptedException {
+        this.terminated.await();
+    }
+
+    /**
+     * wait until the task has terminated
+     * @param millis the maximum waiting time in milliseconds
+     * @throws InterruptedException
+     */
+    public void join(final long millis) throws InterruptedException {
+        this.terminated.await(millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * interrupt the task if it is running or prevent its execution if it has not yet started
+     */
+    public synchronized void interrupt() {
+        this.cancelled = true;
+        if (this.runner != null) this.runner.interrupt();
+        else if (!this.started) this.terminated.countDown();
+    }
+
+    /**
+     * @return true if the task was interrupted
+     */
+    public synchronized boolean isInterrupted() {
+        return this.cancelled;
+    }
+}
@@ -47,10 +47,9 @@ public class SecondarySearchSuperviser extends Thread {
             return;
         }
         // extend the abstracts in the cache: join the single abstracts
-        new Thread() {
+        new SearchTask("SearchEvent.addAbstract:" + wordhash, this.searchEvent.scope) {
             @Override
-            public void run() {
-                Thread.currentThread().setName("SearchEvent.addAbstract:" + wordhash);
+            protected void execute() {
                 for ( final Map.Entry<String, Set<String>> oneref : singleAbstract.entrySet() ) {
                     final String urlhash = oneref.getKey();
                     final Set<String> peerlistNew = oneref.getValue();
@@ -168,7 +167,7 @@ public class SecondarySearchSuperviser extends Thread {
 
         // compute words for secondary search and start the secondary searches
         Set<String> words;
-        this.searchEvent.secondarySearchThreads = new Thread[(mypeerinvolved) ? secondarySearchURLs.size() - 1 : secondarySearchURLs.size()];
+        this.searchEvent.secondarySearchThreads = new SearchTask[(mypeerinvolved) ? secondarySearchURLs.size() - 1 : secondarySearchURLs.size()];
         int c = 0;
         for ( final Map.Entry<String, Set<String>> entry : secondarySearchURLs.entrySet() ) {
             String peer = entry.getKey();
@@ -32,7 +32,9 @@ import java.net.InetAddress;
 import java.net.MalformedURLException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -45,6 +47,8 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
@@ -62,7 +66,6 @@ import net.yacy.cora.federate.solr.SchemaConfiguration;
 import net.yacy.cora.federate.solr.SchemaDeclaration;
 import net.yacy.cora.federate.solr.connector.AbstractSolrConnector;
 import net.yacy.cora.federate.solr.connector.SolrConnector;
-import net.yacy.cora.federate.solr.connector.SolrConnector.LoadTimeURL;
 import net.yacy.cora.federate.solr.logic.BooleanLiteral;
 import net.yacy.cora.federate.solr.logic.CatchallLiteral;
 import net.yacy.cora.federate.solr.logic.Conjunction;
@@ -91,7 +94,6 @@ import net.yacy.document.parser.html.ContentScraper;
 import net.yacy.document.parser.html.ImageEntry;
 import net.yacy.kelondro.data.citation.CitationReference;
 import net.yacy.kelondro.data.meta.URIMetadataNode;
-import net.yacy.kelondro.index.RowHandleMap;
 import net.yacy.kelondro.rwi.ReferenceContainer;
 import net.yacy.kelondro.util.Bitfield;
 import net.yacy.kelondro.util.MemoryControl;
@@ -112,6 +114,8 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
 
     private static final long serialVersionUID=-499100932212840385L;
 
+    private static final int WRITEBACK_BATCH_SIZE = 100; // number of postprocessed documents which are written back to the index in one request
+
     public static boolean UNIQUE_HEURISTIC_PREFER_HTTPS = false;
     public static boolean UNIQUE_HEURISTIC_PREFER_WWWPREFIX = true;
     
@@ -1202,7 +1206,7 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
                 // do the citation rank computation
                 if (collection1hosts.get(host) <= 0) continue;
                 // select all documents for each host
-                CRHost crh = new CRHost(segment, rrCache, host, 0.85d, 6);
+                CRHost crh = new CRHost(collectionConnector, host, 0.85d, 6);
                 int convergence_attempts = 0;
                 while (convergence_attempts++ < 30) {
                     ConcurrentLog.info("CollectionConfiguration", "convergence step " + convergence_attempts + " for host " + host + " ...");
@@ -1215,7 +1219,6 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
                 ConcurrentLog.info("CollectionConfiguration", "convergence for host " + host + " after " + convergence_attempts + " steps");
                 // we have now the cr for all documents of a specific host; we store them for later use
                 Map<String, CRV> crn = crh.normalize();
-                //crh.log(crn);
                 rankings.putAll(crn); // accumulate this here for usage in document update later
                 if (MemoryControl.shortStatus()) {
                     ConcurrentLog.warn("CollectionConfiguration", "terminated crn akkumulation during postprocessing because of short memory");
@@ -1355,7 +1358,7 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
         final Set<String> omitFields = new HashSet<String>();
         omitFields.add(CollectionSchema.process_sxt.getSolrFieldName());
         omitFields.add(CollectionSchema.harvestkey_s.getSolrFieldName());
-        final Collection<String> failids = new ArrayList<String>();
+        final Collection<String> failids = Collections.synchronizedList(new ArrayList<String>()); // written by concurrent rewrite threads
         final AtomicInteger countcheck = new AtomicInteger(0);
         final AtomicInteger proccount = new AtomicInteger();
         final AtomicInteger proccount_referencechange = new AtomicInteger();
@@ -1420,6 +1423,34 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
                 final Thread rewriteThread[] = new Thread[concurrency];
                 for (int rewrite_start = 0; rewrite_start < concurrency; rewrite_start++) {
                     rewriteThread[rewrite_start] = new Thread() {
+                        // the documents are written back in bulk to reduce the number of index requests
+                        private final List<SolrInputDocument> batch = new ArrayList<SolrInputDocument>(WRITEBACK_BATCH_SIZE);
+                        private void flush() {
+                            if (this.batch.isEmpty()) return;
+                            try {
+                                if (byPartialUpdate) {
+                                    collectionConnector.update(this.batch);
+                                } else {
+                                    collectionConnector.add(this.batch);
+                                }
+                            } catch (final Throwable e) {
+                                // write the documents one by one to find the failing ones
+                                ConcurrentLog.logException(e);
+                                for (SolrInputDocument sid: this.batch) {
+                                    try {
+                                        if (byPartialUpdate) {
+                                            collectionConnector.update(sid);
+                                        } else {
+                                            collectionConnector.add(sid);
+                                        }
+                                    } catch (final Throwable e1) {
+                                        ConcurrentLog.logException(e1);
+                                        failids.add((String) sid.getFieldValue(CollectionSchema.id.getSolrFieldName()));
+                                    }
+                                }
+                            }
+                            this.batch.clear();
+                        }
                         @Override
                         public void run() {
                             SolrDocument doc;
@@ -1491,11 +1522,8 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
                                         
                                         // send back to index
                                         //collectionConnector.deleteById(i);
-                                        if (byPartialUpdate) {
-                                            collectionConnector.update(sid);
-                                        } else {
-                                            collectionConnector.add(sid);
-                                        }
+                                        this.batch.add(sid);
+                                        if (this.batch.size() >= WRITEBACK_BATCH_SIZE) flush();
                                         long thiscount = proccount.incrementAndGet(); allcount.incrementAndGet();
                                         if (thiscount % 100 == 0) {
                                             postprocessingActivity = "postprocessed " + thiscount + " from " + count + " collection documents; " +
@@ -1511,6 +1539,8 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
                                 }
                             } catch (InterruptedException e) {
                                 ConcurrentLog.logException(e);
+                            } finally {
+                                flush();
                             }
                         }
                     };
@@ -1746,30 +1776,59 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
      * Objects of that class are needed as an environment for repeated convergenceStep() computations,
      * which are iterative citation rank computations that are repeated until the ranking values
      * converge to stable values.
+     * The link graph of the host is loaded with a single sequential scan over the documents of the host:
+     * the internal links of each document are read from its inboundlinks fields. The graph is stored in a compact
+     * adjacency structure (compressed sparse rows): the documents are numbered from 0 to count-1 and the internal
+     * links pointing to document v are stored as the numbers of their source documents in
+     * linkSource[linkOffset[v] .. linkOffset[v + 1] - 1].
+     * The convergence steps are computed in parallel on that structure without any further index access.
      * The class also contains normalization methods to compute simple integer ranking values out of the
      * double relevance values.
      */
     private static final class CRHost {
-        private final Segment segment;
-        private final Map<String, double[]> crt;
+        private static final ForkJoinPool pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors()));
+        private static final int STEP_CHUNK = 4096; // number of documents computed within one fork-join task
+        private final String[] ids; // the document ids; the index in this array is the document number
+        private final int[] internalLinks; // number of links from a document to documents within the same host
+        private final int[] linkOffset, linkSource; // the adjacency of internal links in compressed sparse row format
         private final int cr_host_count;
-        private final RowHandleMap internal_links_counter;
+        private double[] cr, ncr; // the current and the next ranking values
         private double damping;
         private int converge_eq_factor;
-        private ReferenceReportCache rrCache;
-        public CRHost(final Segment segment, final ReferenceReportCache rrCache, final String host, final double damping, final int converge_digits) {
-            this.segment = segment;
+        public CRHost(final SolrConnector connector, final String host, final double damping, final int converge_digits) {
             this.damping = damping;
-            this.rrCache = rrCache;
             this.converge_eq_factor = (int) Math.pow(10.0d, converge_digits);
-            SolrConnector connector = segment.fulltext().getDefaultConnector();
-            this.crt = new ConcurrentHashMap<String, double[]>();
+            
+            // select all documents for each host together with their internal links in one query
+            final List<String> idList = new ArrayList<String>();
+            final List<Integer> linkList = new ArrayList<Integer>();
+            final List<String[]> targetList = new ArrayList<String[]>(); // the ids of the link targets of each document
+            final Map<String, String> canonical = new HashMap<String, String>(); // the id of a document with a canonical tag to the id of the canonical document
             try {
-                // select all documents for each host
-                BlockingQueue<String> ids = connector.concurrentIDsByQuery("{!cache=false raw f=" + CollectionSchema.host_s.getSolrFieldName() + "}" + host, CollectionSchema.url_chars_i.getSolrFieldName() + " asc", 0, 100000000, 86400000, 200, 1);
-                String id;
-                while ((id = ids.take()) != AbstractSolrConnector.POISON_ID) {
-                    this.crt.put(id, new double[]{0.0d,0.0d}); //{old value, new value}
+                BlockingQueue<SolrDocument> docs = connector.concurrentDocumentsByQuery("{!cache=false raw f=" + CollectionSchema.host_s.getSolrFieldName() + "}" + host, CollectionSchema.url_chars_i.getSolrFieldName() + " asc", 0, 100000000, 86400000, 200, 1, false,
+                        CollectionSchema.id.getSolrFieldName(), CollectionSchema.sku.getSolrFieldName(), CollectionSchema.canonical_s.getSolrFieldName(), CollectionSchema.inboundlinkscount_i.getSolrFieldName(),
+                        CollectionSchema.inboundlinks_protocol_sxt.getSolrFieldName(), CollectionSchema.inboundlinks_urlstub_sxt.getSolrFieldName());
+                SolrDocument doc;
+                while ((doc = docs.take()) != AbstractSolrConnector.POISON_DOCUMENT) {
+                    String id = (String) doc.getFieldValue(CollectionSchema.id.getSolrFieldName());
+                    if (id == null) continue;
+                    Object x = doc.getFieldValue(CollectionSchema.inboundlinkscount_i.getSolrFieldName());
+                    idList.add(id);
+                    linkList.add((x == null) ? 0 : (x instanceof Integer) ? ((Integer) x).intValue() : (x instanceof Long) ? ((Long) x).intValue() : 0);
+                    final Set<String> targets = new LinkedHashSet<String>();
+                    final Iterator<String> links = URIMetadataNode.getLinks(doc, true);
+                    while (links.hasNext()) {
+                        try {
+                            targets.add(ASCII.String(new DigestURL(links.next()).hash()));
+                        } catch (final MalformedURLException e) {}
+                    }
+                    targets.remove(id); // self-references are not counted
+                    targetList.add(targets.toArray(new String[targets.size()]));
+                    // links to a document with a canonical tag are counted as links to the canonical document
+                    String canonical_s = (String) doc.getFieldValue(CollectionSchema.canonical_s.getSolrFieldName());
+                    if (canonical_s != null && !canonical_s.equals(doc.getFieldValue(CollectionSchema.sku.getSolrFieldName()))) try {
+                        canonical.put(id, ASCII.String(new DigestURL(canonical_s).hash()));
+                    } catch (final MalformedURLException e) {}
                     if (MemoryControl.shortStatus()) {
                         ConcurrentLog.warn("CollectionConfiguration", "terminated CRHost collection during postprocessing because of short memory");
                         break;
@@ -1777,10 +1836,50 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
                 }
             } catch (final InterruptedException e2) {
             }
-            this.cr_host_count = this.crt.size();
-            double initval = 1.0d / cr_host_count;
-            for (Map.Entry<String, double[]> entry: this.crt.entrySet()) entry.getValue()[0] = initval;
-            this.internal_links_counter = new RowHandleMap(12, Base64Order.enhancedCoder, 8, 100, "internal_links_counter");
+            this.cr_host_count = idList.size();
+            this.ids = idList.toArray(new String[this.cr_host_count]);
+            this.internalLinks = new int[this.cr_host_count];
+            final Map<String, Integer> numbers = new HashMap<String, Integer>(this.cr_host_count * 4 / 3 + 1);
+            for (int i = 0; i < this.cr_host_count; i++) {
+                this.internalLinks[i] = linkList.get(i).intValue();
+                numbers.put(this.ids[i], i);
+            }
+            
+            // count the incoming links of each document and build the adjacency
+            final int[][] edges = new int[this.cr_host_count][]; // the numbers of the link targets of each source document
+            final int[] indegree = new int[this.cr_host_count];
+            int edgecount = 0;
+            for (int u = 0; u < this.cr_host_count; u++) {
+                final String[] targets = targetList.get(u);
+                int[] t = new int[targets.length];
+                int c = 0;
+                // a link source with no known internal links does not contribute
+                if (this.internalLinks[u] > 0) for (String target: targets) {
+                    String c_id = canonical.get(target);
+                    if (c_id != null) target = c_id;
+                    Integer v = numbers.get(target);
+                    // a link target which is not in the index of this host does not get a rank
+                    if (v == null || v.intValue() == u) continue;
+                    t[c++] = v.intValue();
+                }
+                if (c < t.length) t = Arrays.copyOf(t, c);
+                edges[u] = t;
+                for (int v: t) indegree[v]++;
+                edgecount += c;
+                targetList.set(u, null); // free memory early
+            }
+            this.linkOffset = new int[this.cr_host_count + 1];
+            for (int v = 0; v < this.cr_host_count; v++) this.linkOffset[v + 1] = this.linkOffset[v] + indegree[v];
+            this.linkSource = new int[edgecount];
+            final int[] fill = Arrays.copyOf(this.linkOffset, this.cr_host_count);
+            for (int u = 0; u < this.cr_host_count; u++) {
+                for (int v: edges[u]) this.linkSource[fill[v]++] = u;
+                edges[u] = null;
+            }
+            
+            this.cr = new double[this.cr_host_count];
+            this.ncr = new double[this.cr_host_count];
+            Arrays.fill(this.cr, 1.0d / this.cr_host_count);
         }
         /**
          * produce a map from IDs to CRV records, normalization entries containing the values that are stored to solr.
@@ -1788,11 +1887,11 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
          */
         public Map<String, CRV> normalize() {
             final TreeMap<Double, List<byte[]>> reorder = new TreeMap<Double, List<byte[]>>();
-            for (Map.Entry<String, double[]> entry: this.crt.entrySet()) {
-                Double d = entry.getValue()[0];
+            for (int i = 0; i < this.cr_host_count; i++) {
+                Double d = this.cr[i];
                 List<byte[]> ds = reorder.get(d);
                 if (ds == null) {ds = new ArrayList<byte[]>(); reorder.put(d, ds);}
-                ds.add(ASCII.getBytes(entry.getKey()));
+                ds.add(ASCII.getBytes(this.ids[i]));
             }
             int nextcount = (this.cr_host_count + 1) / 2;
             int nextcrn = 0;
@@ -1815,94 +1914,53 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
             return r;
         }
         /**
-         * log out a complete CRHost set of urls and ranking values
-         * @param rm
+         * Compute the next generation of cr values for all documents.
+         * @return true if the values converged
          */
-        @SuppressWarnings("unused")
-        public void log(final Map<byte[], CRV> rm) {
-            // print out all urls with their cr-values
-            SolrConnector connector = segment.fulltext().getDefaultConnector();
-            for (Map.Entry<byte[], CRV> entry: rm.entrySet()) {
-                if (entry == null || entry.getValue() == null) continue;
-                try {
-                    LoadTimeURL md = connector.getLoadTimeURL(ASCII.String(entry.getKey()));
-                    ConcurrentLog.info("CollectionConfiguration", "CR for " + md.url);
-                    ConcurrentLog.info("CollectionConfiguration", ">> " + entry.getValue().toString());
-                } catch (final IOException e) {
-                    ConcurrentLog.logException(e);
-                }
-            }
+        public boolean convergenceStep() {
+            if (this.cr_host_count == 0) return true;
+            boolean convergence = pool.invoke(new Step(0, this.cr_host_count)).booleanValue();
+            // after the computation, the new values become the old values
+            double[] t = this.cr;
+            this.cr = this.ncr;
+            this.ncr = t;
+            return convergence;
         }
         /**
-         * Calculate the number of internal links from a specific document, denoted by the document ID.
-         * This is a very important attribute for the ranking computation because it is the dividend for the previous ranking attribute.
-         * The internalLinks value will be requested several times for the same id during the convergenceStep()-steps; therefore it should use a cache.
-         * This cache is part of the CRHost data structure.
-         * @param id
-         * @return the number of links from the document, denoted by the ID to documents within the same domain
+         * fork-join task computing the new cr values of the documents from..to-1
          */
-        public int getInternalLinks(final byte[] id) {
-            int il = (int) this.internal_links_counter.get(id);
-            if (il >= 0) return il;
-            SolrConnector connector = this.segment.fulltext().getDefaultConnector();
-            if (connector == null) return 0;
-            try {
-                SolrDocument doc = connector.getDocumentById(ASCII.String(id), CollectionSchema.inboundlinkscount_i.getSolrFieldName());
-                if (doc == null) {
-                    this.internal_links_counter.put(id, 0);
-                    return 0;
-                }
-                Object x = doc.getFieldValue(CollectionSchema.inboundlinkscount_i.getSolrFieldName());
-                il = (x == null) ? 0 : (x instanceof Integer) ? ((Integer) x).intValue() : (x instanceof Long) ? ((Long) x).intValue() : 0;
-                this.internal_links_counter.put(id, il);
-                return il;
-            } catch (final IOException e) {
-                ConcurrentLog.logException(e);
-            } catch (final SpaceExceededException e) {
-                ConcurrentLog.logException(e);
+        private final class Step extends RecursiveTask<Boolean> {
+            private static final long serialVersionUID = 1L;
+            private final int from, to;
+            private Step(final int from, final int to) {
+                this.from = from;
+                this.to = to;
             }
-            try {this.internal_links_counter.put(id, 0);} catch (final SpaceExceededException e) {}
-            return 0;
-        }
-        /**
-         * Use the crt cache to compute the next generation of crt values.
-         * @return
-         */
-        public boolean convergenceStep() {
-            boolean convergence = true;
-            double df = (1.0d - damping) / this.cr_host_count;
-            try {
-                for (Map.Entry<String, double[]> entry: this.crt.entrySet()) {
-                    String id = entry.getKey();
-                    ReferenceReport rr = this.rrCache.getReferenceReport(id, false);
+            @Override
+            protected Boolean compute() {
+                if (this.to - this.from > STEP_CHUNK) {
+                    int mid = (this.from + this.to) >>> 1;
+                    Step left = new Step(this.from, mid);
+                    left.fork();
+                    boolean right = new Step(mid, this.to).compute().booleanValue();
+                    return left.join().booleanValue() && right;
+                }
+                final double[] cr = CRHost.this.cr, ncr = CRHost.this.ncr;
+                final int[] linkOffset = CRHost.this.linkOffset, linkSource = CRHost.this.linkSource, internalLinks = CRHost.this.internalLinks;
+                final double df = (1.0d - damping) / CRHost.this.cr_host_count;
+                boolean convergence = true;
+                for (int v = this.from; v < this.to; v++) {
                     // sum up the cr of the internal links
-                    HandleSet iids = rr.getInternallIDs();
-                    double ncr = 0.0d;
-                    for (byte[] iid: iids) {
-                        int ilc = getInternalLinks(iid);
-                        if (ilc > 0) { // if (ilc == 0) then the reference report is wrong!
-                            double[] d = this.crt.get(ASCII.String(iid));
-                            // d[] could be empty at some situations
-                            if (d != null && d.length > 0) {
-                                ncr += d[0] / ilc;
-                            } else {
-                                // Output a warning that d[] is empty
-                                ConcurrentLog.warn("COLLECTION", "d[] is empty, iid="  + ASCII.String(iid));
-                                break;
-                            }
-                        }
+                    double sum = 0.0d;
+                    for (int e = linkOffset[v]; e < linkOffset[v + 1]; e++) {
+                        int u = linkSource[e];
+                        sum += cr[u] / internalLinks[u];
                     }
-                    ncr = df + damping * ncr;
-                    if (convergence && !eqd(ncr, entry.getValue()[0])) convergence = false;
-                    entry.getValue()[1] = ncr;
-                }
-                // after the loop, replace the old value with the new value in crt
-                for (Map.Entry<String, double[]> entry: this.crt.entrySet()) {
-                    entry.getValue()[0] = entry.getValue()[1];
+                    ncr[v] = df + damping * sum;
+                    if (convergence && !eqd(ncr[v], cr[v])) convergence = false;
                 }
-            } catch (final IOException e) {
+                return convergence;
             }
-            return convergence;
         }
         /**
          * helper method to check if two doubles are equal using a specific number of digits
@@ -56,6 +56,7 @@ import net.yacy.peers.RemoteSearch;
 import net.yacy.repository.Blacklist.BlacklistType;
 import net.yacy.repository.LoaderDispatcher;
 import net.yacy.search.Switchboard;
+import net.yacy.search.index.SnippetStore;
 import net.yacy.search.query.QueryGoal;
 
 public class TextSnippet implements Comparable<TextSnippet>, Comparator<TextSnippet> {
@@ -200,23 +201,28 @@ public class TextSnippet implements Comparable<TextSnippet>, Comparator<TextSnip
             if (solrText != null && solrText.length() > 0) { // TODO: instead of join with desc, we could check if snippet already complete and skip further computation
                 // compute sentences from solr query
                 if (sentences == null) sentences = row.getSentences(pre); else sentences.addAll(row.getSentences(pre));
-            } else if (net.yacy.crawler.data.Cache.has(url.hash())) {
-                // get the sentences from the cache
-                final Request request = loader == null ? null : loader.request(url, true, reindexing);
-                Response response;
-                try {
-                    response = loader == null || request == null ? null : loader.load(request, CacheStrategy.CACHEONLY, BlacklistType.SEARCH, ClientIdentification.yacyIntranetCrawlerAgent);
-                } catch (final IOException e1) {
-                    response = null;
-                }
-                Document document = null;
-                if (response != null) {
+            } else {
+                // get the sentences from the snippet store or from the cache
+                final List<StringBuilder> storedSentences = pre ? null : storedSentences(url.hash(), remainingHashes);
+                if (storedSentences != null) {
+                    if (sentences == null) sentences = storedSentences; else sentences.addAll(storedSentences);
+                } else if (net.yacy.crawler.data.Cache.has(url.hash())) {
+                    final Request request = loader == null ? null : loader.request(url, true, reindexing);
+                    Response response;
                     try {
-                        document = Document.mergeDocuments(response.url(), response.getMimeType(), response.parse());
-                        sentences = document.getSentences(pre);
+                        response = loader == null || request == null ? null : loader.load(request, CacheStrategy.CACHEONLY, BlacklistType.SEARCH, ClientIdentification.yacyIntranetCrawlerAgent);
+                    } catch (final IOException e1) {
                         response = null;
-                        document = null;
-                    } catch (final Parser.Failure e) {
+                    }
+                    Document document = null;
+                    if (response != null) {
+                        try {
+                            document = Document.mergeDocuments(response.url(), response.getMimeType(), response.parse());
+                            sentences = document.getSentences(pre);
+                            response = null;
+                            document = null;
+                        } catch (final Parser.Failure e) {
+                        }
                     }
                 }
             }
@@ -281,49 +287,53 @@ public class TextSnippet implements Comparable<TextSnippet>, Comparator<TextSnip
         }
         sentences = null; // we don't need this here any more
 
-        // try to load the resource from the cache
-        Response response = null;
-        try {
-            response = loader == null ? null : loader.load(loader.request(url, true, reindexing), (url.isFile() || url.isSMB()) ? CacheStrategy.NOCACHE : (cacheStrategy == null ? CacheStrategy.CACHEONLY : cacheStrategy), BlacklistType.SEARCH, ClientIdentification.yacyIntranetCrawlerAgent);
-        } catch (final IOException e) {
-            response = null;
-        }
+        // try to get the sentences from the snippet store; this does not require to load and parse the document
+        sentences = pre ? null : storedSentences(url.hash(), remainingHashes);
+        if (sentences == null) {
+            // try to load the resource from the cache
+            Response response = null;
+            try {
+                response = loader == null ? null : loader.load(loader.request(url, true, reindexing), (url.isFile() || url.isSMB()) ? CacheStrategy.NOCACHE : (cacheStrategy == null ? CacheStrategy.CACHEONLY : cacheStrategy), BlacklistType.SEARCH, ClientIdentification.yacyIntranetCrawlerAgent);
+            } catch (final IOException e) {
+                response = null;
+            }
+
+            if (response == null) {
+                // in case that we did not get any result we can still return a success when we are not allowed to go online
+                if (cacheStrategy == null || cacheStrategy.mustBeOffline()) {
+                    init(url.hash(), null, false, ResultClass.ERROR_SOURCE_LOADING, "omitted network load (not allowed), no cache entry");
+                    return;
+                }
 
-        if (response == null) {
-            // in case that we did not get any result we can still return a success when we are not allowed to go online
-            if (cacheStrategy == null || cacheStrategy.mustBeOffline()) {
-                init(url.hash(), null, false, ResultClass.ERROR_SOURCE_LOADING, "omitted network load (not allowed), no cache entry");
+                // if it is still not available, report an error
+                init(url.hash(), null, false, ResultClass.ERROR_RESOURCE_LOADING, "error loading resource from net, no cache entry");
                 return;
             }
 
-            // if it is still not available, report an error
-            init(url.hash(), null, false, ResultClass.ERROR_RESOURCE_LOADING, "error loading resource from net, no cache entry");
-            return;
-        }
+            if (!response.fromCache()) {
+                // place entry on indexing queue
+                Switchboard.getSwitchboard().toIndexer(response);
+                this.resultStatus = ResultClass.SOURCE_WEB;
+            }
 
-        if (!response.fromCache()) {
-            // place entry on indexing queue
-            Switchboard.getSwitchboard().toIndexer(response);
-            this.resultStatus = ResultClass.SOURCE_WEB;
-        }
+            // parse the document to get all sentenced; available for snippet computation
+            Document document = null;
+            try {
+                document = Document.mergeDocuments(response.url(), response.getMimeType(), response.parse());
+            } catch (final Parser.Failure e) {
+                init(url.hash(), null, false, ResultClass.ERROR_PARSER_FAILED, e.getMessage()); // cannot be parsed
+                return;
+            }
+            if (document == null) {
+                init(url.hash(), null, false, ResultClass.ERROR_PARSER_FAILED, "parser error/failed"); // cannot be parsed
+                return;
+            }
 
-        // parse the document to get all sentenced; available for snippet computation
-        Document document = null;
-        try {
-            document = Document.mergeDocuments(response.url(), response.getMimeType(), response.parse());
-        } catch (final Parser.Failure e) {
-            init(url.hash(), null, false, ResultClass.ERROR_PARSER_FAILED, e.getMessage()); // cannot be parsed
-            return;
-        }
-        if (document == null) {
-            init(url.hash(), null, false, ResultClass.ERROR_PARSER_FAILED, "parser error/failed"); // cannot be parsed
-            return;
+            // compute sentences from parsed document
+            sentences = document.getSentences(pre);
+            document.close();
         }
 
-        // compute sentences from parsed document
-        sentences = document.getSentences(pre);
-        document.close();
-
         if (sentences == null) {
             init(url.hash(), null, false, ResultClass.ERROR_PARSER_NO_LINES, "parser returned no sentences");
             return;
@@ -350,6 +360,18 @@ public class TextSnippet implements Comparable<TextSnippet>, Comparator<TextSnip
         init(url.hash(), textline, false, source, null);
     }
 
+    /**
+     * get the sentences of a document from the snippet store of the index
+     * @param urlhash hash of the document url
+     * @param queryhashes the hashes of the words which shall be contained in the sentences
+     * @return the sentences which contain at least one of the words, or null if the document is not in the snippet store
+     */
+    private static List<StringBuilder> storedSentences(final byte[] urlhash, final HandleSet queryhashes) {
+        final Switchboard sb = Switchboard.getSwitchboard();
+        final SnippetStore store = sb == null || sb.index == null ? null : sb.index.snippetStore();
+        return store == null ? null : store.sentences(urlhash, queryhashes);
+    }
+
     /**
      * Init a snippet line for urlhash
      *
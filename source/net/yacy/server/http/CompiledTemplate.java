@@ -0,0 +1,457 @@
+/**
+ *  CompiledTemplate.java
+ *  part of YaCy, http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.server.http;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.document.encoding.UTF8;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.kelondro.util.FileUtils;
+import net.yacy.server.serverCore;
+import net.yacy.server.serverObjects;
+
+/**
+ * A template which is parsed only once into an immutable tree of nodes: literal slices of the template source,
+ * variables, multi templates (loops), alternatives and includes. The syntax is the same as in the TemplateEngine.
+ * Rendering a compiled template writes the literal slices and the pattern values directly to the output stream,
+ * without parsing the template again and without intermediate copies.
+ *
+ * Compiled template files are cached; a cached template is compiled again if the file was modified.
+ */
+public final class CompiledTemplate {
+
+    private static final int CACHE_MAX = 2000;
+    private static final ConcurrentHashMap<String, CompiledTemplate> cache = new ConcurrentHashMap<String, CompiledTemplate>();
+
+    private final static byte[] mClose = {'}', '#'};
+    private final static byte[] aClose = {')', '#'};
+    private final static byte[] pClose = {']', '#'};
+    private final static byte[] iClose = {'%', '#'};
+    private final static byte[] dpdp = {':', ':'};
+    private final static byte[] ssiInclude = ASCII.getBytes("<!--#include");
+    private final static byte[] UNRESOLVED_PATTERN = ASCII.getBytes("-UNRESOLVED_PATTERN-");
+
+    private final String name;
+    private final byte[] source;
+    private final Node[] nodes;
+    private final long lastModified, length;
+
+    /**
+     * compile a template
+     * @param name the name of the template, used for log messages
+     * @param source the template
+     */
+    public CompiledTemplate(final String name, final byte[] source) {
+        this(name, source, 0, source.length);
+    }
+
+    private CompiledTemplate(final String name, final byte[] source, final long lastModified, final long length) {
+        this.name = name;
+        this.source = source;
+        this.lastModified = lastModified;
+        this.length = length;
+        this.nodes = parse(name, source, 0, source.length);
+    }
+
+    /**
+     * get a compiled template file from the cache; the file is compiled if it is not cached or if it was modified
+     * @param file the template file
+     * @return the compiled template
+     * @throws IOException if the file cannot be read
+     */
+    public static CompiledTemplate get(final File file) throws IOException {
+        final String path = file.getAbsolutePath();
+        final long lastModified = file.lastModified();
+        final long length = file.length();
+        CompiledTemplate template = cache.get(path);
+        if (template != null && template.lastModified == lastModified && template.length == length) return template;
+        template = new CompiledTemplate(file.getName(), FileUtils.read(file), lastModified, length);
+        if (cache.size() >= CACHE_MAX) cache.clear();
+        cache.put(path, template);
+        return template;
+    }
+
+    /**
+     * get a compiled include file from the cache. Like in the TemplateEngine, the lines of an include file are terminated with CRLF.
+     */
+    private static CompiledTemplate getInclude(final File file) throws IOException {
+        final String path = "#%" + file.getAbsolutePath();
+        final long lastModified = file.lastModified();
+        final long length = file.length();
+        CompiledTemplate template = cache.get(path);
+        if (template != null && template.lastModified == lastModified && template.length == length) return template;
+        final ByteArrayOutputStream include = new ByteArrayOutputStream((int) length + 256);
+        final BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+        try {
+            String line;
+            while ((line = br.readLine()) != null) {
+                include.write(UTF8.getBytes(line));
+                include.write(ASCII.getBytes(serverCore.CRLF_STRING));
+            }
+        } finally {
+            br.close();
+        }
+        template = new CompiledTemplate(file.getName(), include.toByteArray(), lastModified, length);
+        if (cache.size() >= CACHE_MAX) cache.clear();
+        cache.put(path, template);
+        return template;
+    }
+
+    /**
+     * @return true if the template contains server side includes, which must be resolved in the rendered page.
+     * Template includes (#%file%#) are rendered by the template itself and do not need this.
+     */
+    public boolean hasIncludes() {
+        return indexOf(this.source, ssiInclude, 0, this.source.length) >= 0;
+    }
+
+    /**
+     * write the template with replaced patterns
+     * @param out the output stream
+     * @param pattern the pattern values; if null, the template is written without replacements
+     * @throws IOException
+     */
+    public void write(final OutputStream out, final serverObjects pattern) throws IOException {
+        if (pattern == null) {
+            out.write(this.source);
+            return;
+        }
+        write(this.nodes, out, pattern, "");
+    }
+
+    private static void write(final Node[] nodes, final OutputStream out, final serverObjects pattern, final String prefix) throws IOException {
+        for (final Node node: nodes) node.write(out, pattern, prefix);
+    }
+
+    private static abstract class Node {
+        abstract void write(OutputStream out, serverObjects pattern, String prefix) throws IOException;
+    }
+
+    /**
+     * a slice of the template source which is written unchanged
+     */
+    private static final class Literal extends Node {
+        private final byte[] source;
+        private final int offset, length;
+        private Literal(final byte[] source, final int offset, final int length) {
+            this.source = source;
+            this.offset = offset;
+            this.length = length;
+        }
+        @Override
+        void write(final OutputStream out, final serverObjects pattern, final String prefix) throws IOException {
+            out.write(this.source, this.offset, this.length);
+        }
+    }
+
+    /**
+     * #[key]#
+     */
+    private static final class Variable extends Node {
+        private final String key;
+        private Variable(final String key) {
+            this.key = key;
+        }
+        @Override
+        void write(final OutputStream out, final serverObjects pattern, final String prefix) throws IOException {
+            out.write(replacePattern(prefix + this.key, pattern));
+        }
+    }
+
+    /**
+     * #{key}# ... #{/key}#
+     */
+    private static final class Multi extends Node {
+        private final String key;
+        private final Node[] body;
+        private Multi(final String key, final Node[] body) {
+            this.key = key;
+            this.body = body;
+        }
+        @Override
+        void write(final OutputStream out, final serverObjects pattern, final String prefix) throws IOException {
+            final String value = pattern.get(prefix + this.key);
+            int num = 0;
+            if (value != null && !value.isEmpty()) {
+                try {
+                    num = Integer.parseInt(value); // the value contains the iteration number as string
+                } catch (final NumberFormatException e) {
+                    ConcurrentLog.logException(e);
+                    num = 0;
+                }
+            }
+            for (int i = 0; i < num; i++) {
+                CompiledTemplate.write(this.body, out, pattern, prefix + this.key + "_" + i + "_");
+            }
+        }
+    }
+
+    /**
+     * #(key)# ... :: ... #(/key)#
+     */
+    private static final class Alternative extends Node {
+        private final String name, key;
+        private final Node[][] alternatives;
+        private final byte[] source;
+        private final int offset, length;
+        private final ConcurrentHashMap<String, Node[]> byName; // alternatives selected by name, compiled on first use
+        private Alternative(final String name, final String key, final Node[][] alternatives, final byte[] source, final int offset, final int length) {
+            this.name = name;
+            this.key = key;
+            this.alternatives = alternatives;
+            this.source = source;
+            this.offset = offset;
+            this.length = length;
+            this.byName = new ConcurrentHashMap<String, Node[]>();
+        }
+        @Override
+        void write(final OutputStream out, final serverObjects pattern, final String prefix) throws IOException {
+            final String patternKey = prefix + this.key;
+            final String patternId = pattern.get(patternKey);
+            // lazy parsing of pattern value; numeric values, "true", "false" and no value allowed
+            int which = 0;
+            if (patternId != null) {
+                if ("true".equals(patternId)) {
+                    which = 1;
+                } else if ("false".equals(patternId)) {
+                    which = 0;
+                } else try {
+                    which = Integer.parseInt(patternId);
+                } catch (final NumberFormatException e) {
+                    final Node[] nodes = byName(patternId);
+                    if (nodes == null) {
+                        ConcurrentLog.severe("TEMPLATE", "Bad Key-Value pair in #()# construct: key=\"" + patternKey + "\", value=\"" + patternId + "\" in " + this.name);
+                    } else {
+                        CompiledTemplate.write(nodes, out, pattern, patternKey + "_");
+                    }
+                    return;
+                }
+            }
+            // a value out of range selects the last alternative
+            final Node[] nodes = which >= 0 && which < this.alternatives.length ? this.alternatives[which] : this.alternatives[this.alternatives.length - 1];
+            CompiledTemplate.write(nodes, out, pattern, patternKey + "_");
+        }
+        private Node[] byName(final String patternName) {
+            Node[] nodes = this.byName.get(patternName);
+            if (nodes != null) return nodes;
+            final byte[] marker = UTF8.getBytes("%%" + patternName);
+            final int end = this.offset + this.length;
+            final int p = indexOf(this.source, marker, this.offset, end);
+            if (p < 0) return null;
+            final int start = p + marker.length;
+            int stop = indexOf(this.source, dpdp, start, end);
+            if (stop < 0) stop = end;
+            nodes = parse(this.name, this.source, start, stop);
+            if (this.byName.size() < 100) this.byName.put(patternName, nodes);
+            return nodes;
+        }
+    }
+
+    /**
+     * #%file%# or #%[key]%#
+     */
+    private static final class Include extends Node {
+        private final String filename;
+        private final boolean isPattern;
+        private Include(final String filename, final boolean isPattern) {
+            this.filename = filename;
+            this.isPattern = isPattern;
+        }
+        @Override
+        void write(final OutputStream out, final serverObjects pattern, final String prefix) throws IOException {
+            final byte[] filename = this.isPattern ? replacePattern(prefix + this.filename, pattern) : UTF8.getBytes(this.filename);
+            if (filename.length == 0 || Arrays.equals(filename, UNRESOLVED_PATTERN)) return;
+            final CompiledTemplate include;
+            try {
+                include = getInclude(HTTPDFileHandler.getLocalizedFile(UTF8.String(filename)));
+            } catch (final IOException e) {
+                //file not found?
+                ConcurrentLog.severe("FILEHANDLER","Include Error with file " + UTF8.String(filename) + ": " + e.getMessage());
+                return;
+            }
+            CompiledTemplate.write(include.nodes, out, pattern, ""); // clear pattern prefix for include
+        }
+    }
+
+    private static byte[] replacePattern(final String key, final serverObjects pattern) {
+        final String value = pattern.get(key);
+        return value == null ? UNRESOLVED_PATTERN : UTF8.getBytes(value);
+    }
+
+    /**
+     * parse a part of a template into nodes
+     * @param name the template name for log messages
+     * @param src the template source
+     * @param start the first byte of the part
+     * @param end the byte after the part
+     * @return the nodes
+     */
+    private static Node[] parse(final String name, final byte[] src, final int start, final int end) {
+        final List<Node> nodes = new ArrayList<Node>();
+        int literal = start; // the start of the current literal
+        int p = start;
+        parse: while (p < end) {
+            final int h = indexOf(src, (byte) '#', p, end);
+            if (h < 0 || h + 1 >= end) break;
+            final byte c = src[h + 1];
+            if (c == '{') {
+                // multi template
+                final int keyEnd = indexOf(src, mClose, h + 2, end);
+                if (keyEnd < 0) {
+                    addLiteral(nodes, src, literal, h);
+                    literal = end; // an unterminated pattern hides the rest of the template
+                    break parse;
+                }
+                final String key = UTF8.String(Arrays.copyOfRange(src, h + 2, keyEnd));
+                int bodyStart = keyEnd + 2;
+                if (bodyStart < end && src[bodyStart] == '\n') bodyStart++; // kill newline
+                final byte[] close = UTF8.getBytes("#{/" + key + "}#");
+                final int bodyEnd = indexOf(src, close, bodyStart, end);
+                if (bodyEnd < 0) {
+                    ConcurrentLog.severe("TEMPLATE", "No Close Key found for #{" + key + "}# in " + name);
+                    addLiteral(nodes, src, literal, h);
+                    literal = end; // an unterminated pattern hides the rest of the template
+                    break parse;
+                }
+                literal = addLiteral(nodes, src, literal, h);
+                nodes.add(new Multi(key, parse(name, src, bodyStart, bodyEnd)));
+                p = bodyEnd + close.length;
+                if (p < end && src[p] == '\n') p++; // kill newline
+                literal = p;
+            } else if (c == '(') {
+                // alternatives
+                final int keyEnd = indexOf(src, aClose, h + 2, end);
+                if (keyEnd < 0) {
+                    addLiteral(nodes, src, literal, h);
+                    literal = end; // an unterminated pattern hides the rest of the template
+                    break parse;
+                }
+                final String key = UTF8.String(Arrays.copyOfRange(src, h + 2, keyEnd));
+                final byte[] closeKey = UTF8.getBytes("/" + key);
+                final List<Node[]> alternatives = new ArrayList<Node[]>();
+                final int bodyStart = keyEnd + 2;
+                int bodyEnd = end;
+                int segment = bodyStart;
+                int nested = 0;
+                p = bodyStart;
+                while (p < end) {
+                    if (src[p] == '#' && p + 1 < end && src[p + 1] == '(') {
+                        final int tagEnd = indexOf(src, aClose, p + 2, end);
+                        if (tagEnd < 0) {
+                            p = end;
+                            break;
+                        }
+                        if (tagEnd - p - 2 == closeKey.length && indexOf(src, closeKey, p + 2, tagEnd) == p + 2) {
+                            bodyEnd = p;
+                            p = tagEnd + 2;
+                            break;
+                        }
+                        if (nested > 0 && src[p + 2] == '/') nested--; else nested++;
+                        p = tagEnd + 2;
+                        continue;
+                    }
+                    if (src[p] == ':' && nested == 0 && p + 1 < end && src[p + 1] == ':') {
+                        alternatives.add(parse(name, src, segment, p));
+                        p += 2;
+                        segment = p;
+                        continue;
+                    }
+                    p++;
+                }
+                if (bodyEnd == end) ConcurrentLog.severe("TEMPLATE", "No Close Key found for #(" + key + ")# in " + name);
+                alternatives.add(parse(name, src, segment, bodyEnd));
+                literal = addLiteral(nodes, src, literal, h);
+                nodes.add(new Alternative(name, key, alternatives.toArray(new Node[alternatives.size()][]), src, bodyStart, bodyEnd - bodyStart));
+                literal = p;
+            } else if (c == '[') {
+                // variable
+                final int keyEnd = indexOf(src, pClose, h + 2, end);
+                if (keyEnd < 0) {
+                    addLiteral(nodes, src, literal, h);
+                    literal = end; // an unterminated pattern hides the rest of the template
+                    break parse;
+                }
+                literal = addLiteral(nodes, src, literal, h);
+                nodes.add(new Variable(UTF8.String(Arrays.copyOfRange(src, h + 2, keyEnd))));
+                p = keyEnd + 2;
+                literal = p;
+            } else if (c == '%') {
+                // include
+                final int keyEnd = indexOf(src, iClose, h + 2, end);
+                if (keyEnd < 0) {
+                    addLiteral(nodes, src, literal, h);
+                    literal = end; // an unterminated pattern hides the rest of the template
+                    break parse;
+                }
+                literal = addLiteral(nodes, src, literal, h);
+                if (keyEnd > h + 2) {
+                    final boolean isPattern = src[h + 2] == '[' && src[keyEnd - 1] == ']';
+                    final String filename = isPattern ?
+                            UTF8.String(Arrays.copyOfRange(src, h + 3, keyEnd - 1)) :
+                            UTF8.String(Arrays.copyOfRange(src, h + 2, keyEnd));
+                    nodes.add(new Include(filename, isPattern));
+                }
+                p = keyEnd + 2;
+                literal = p;
+            } else {
+                // a single '#' without meaning; the following character is not interpreted
+                p = h + 2;
+            }
+        }
+        addLiteral(nodes, src, literal, end);
+        return nodes.toArray(new Node[nodes.size()]);
+    }
+
+    private static int addLiteral(final List<Node> nodes, final byte[] src, final int start, final int end) {
+        if (end > start) nodes.add(new Literal(src, start, end - start));
+        return end;
+    }
+
+    private static int indexOf(final byte[] src, final byte b, final int start, final int end) {
+        for (int i = start; i < end; i++) if (src[i] == b) return i;
+        return -1;
+    }
+
+    private static int indexOf(final byte[] src, final byte[] pattern, final int start, final int end) {
+        final int last = end - pattern.length;
+        search: for (int i = start; i <= last; i++) {
+            for (int j = 0; j < pattern.length; j++) if (src[i + j] != pattern[j]) continue search;
+            return i;
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        return this.name;
+    }
+}
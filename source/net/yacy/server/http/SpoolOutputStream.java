@@ -0,0 +1,176 @@
+/**
+ *  SpoolOutputStream.java
+ *  part of YaCy, http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.server.http;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import net.yacy.kelondro.util.FileUtils;
+
+/**
+ * An output stream which keeps the written content for a later use, i.e. to store a proxied response
+ * into the cache after it had been sent to the client. Small content is held in memory; if the content
+ * exceeds the memory limit, it is spooled to a temporary file. If the content exceeds the maximum size
+ * or cannot be written to the file, the spool is discarded and all further content is ignored.
+ * Writing to this stream never throws an exception, so it can be used together with the client stream
+ * in a MultiOutputStream without disturbing the delivery to the client.
+ */
+public class SpoolOutputStream extends OutputStream {
+
+    private final int memoryLimit;
+    private final long maxSize;
+    private ByteArrayOutputStream memory;
+    private File file;
+    private OutputStream fileStream;
+    private long length;
+    private boolean discarded;
+
+    /**
+     * @param initialSize the expected size of the content, used to dimension the memory buffer
+     * @param memoryLimit the maximum number of bytes which are held in memory
+     * @param maxSize the maximum number of bytes which are spooled; larger content is discarded
+     */
+    public SpoolOutputStream(final int initialSize, final int memoryLimit, final long maxSize) {
+        this.memoryLimit = memoryLimit;
+        this.maxSize = maxSize;
+        this.memory = new ByteArrayOutputStream(Math.max(32, Math.min(initialSize, memoryLimit)));
+        this.file = null;
+        this.fileStream = null;
+        this.length = 0;
+        this.discarded = false;
+    }
+
+    @Override
+    public void write(final int b) {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public synchronized void write(final byte[] b, final int off, final int len) {
+        if (this.discarded) return;
+        if (this.length + len > this.maxSize) {
+            discard();
+            return;
+        }
+        try {
+            if (this.memory != null && this.length + len > this.memoryLimit) {
+                // move the content from memory to a file
+                this.file = FileUtils.createTempFile(SpoolOutputStream.class, "spool.tmp");
+                this.fileStream = new BufferedOutputStream(new FileOutputStream(this.file), 65536);
+                this.memory.writeTo(this.fileStream);
+                this.memory = null;
+            }
+            if (this.memory != null) this.memory.write(b, off, len); else this.fileStream.write(b, off, len);
+            this.length += len;
+        } catch (final IOException e) {
+            discard();
+        }
+    }
+
+    @Override
+    public synchronized void flush() {
+        if (this.fileStream != null) try {
+            this.fileStream.flush();
+        } catch (final IOException e) {
+            discard();
+        }
+    }
+
+    /**
+     * finish writing; the content can then be read with getInputStream() or getBytes()
+     */
+    @Override
+    public synchronized void close() {
+        if (this.fileStream != null) try {
+            this.fileStream.close();
+            this.fileStream = null;
+        } catch (final IOException e) {
+            discard();
+        }
+    }
+
+    /**
+     * @return true if the content exceeded the maximum size or could not be spooled
+     */
+    public synchronized boolean isDiscarded() {
+        return this.discarded;
+    }
+
+    /**
+     * @return true if the content is held in memory
+     */
+    public synchronized boolean isInMemory() {
+        return !this.discarded && this.memory != null;
+    }
+
+    /**
+     * @return the number of spooled bytes
+     */
+    public synchronized long length() {
+        return this.length;
+    }
+
+    /**
+     * get the content as byte array; content which is spooled to a file is read into memory
+     * @return the content or null if the spool was discarded
+     * @throws IOException
+     */
+    public synchronized byte[] getBytes() throws IOException {
+        if (this.discarded) return null;
+        if (this.memory != null) return this.memory.toByteArray();
+        close();
+        return FileUtils.read(this.file);
+    }
+
+    /**
+     * get the content as stream; content which is spooled to a file is read from the file
+     * @return the content stream which must be closed by the caller, or null if the spool was discarded
+     * @throws IOException
+     */
+    public synchronized InputStream getInputStream() throws IOException {
+        if (this.discarded) return null;
+        if (this.memory != null) return new ByteArrayInputStream(this.memory.toByteArray());
+        close();
+        return new FileInputStream(this.file);
+    }
+
+    /**
+     * discard the spooled content and delete the spool file
+     */
+    public synchronized void discard() {
+        this.discarded = true;
+        this.memory = null;
+        if (this.fileStream != null) {
+            try {this.fileStream.close();} catch (final IOException e) {}
+            this.fileStream = null;
+        }
+        if (this.file != null) {
+            FileUtils.deletedelete(this.file);
+            this.file = null;
+        }
+    }
+}
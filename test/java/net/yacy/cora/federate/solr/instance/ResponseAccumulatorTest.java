@@ -0,0 +1,105 @@
+package net.yacy.cora.federate.solr.instance;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.FacetParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.junit.Test;
+
+public class ResponseAccumulatorTest {
+
+    private static QueryResponse response(final String facetValue, final int facetCount, final Object... idScore) {
+        SolrDocumentList docs = new SolrDocumentList();
+        for (int i = 0; i < idScore.length; i += 2) {
+            SolrDocument doc = new SolrDocument();
+            doc.setField("id", idScore[i]);
+            doc.setField("score", idScore[i + 1]);
+            docs.add(doc);
+        }
+        docs.setNumFound(docs.size());
+        NamedList<Object> counts = new SimpleOrderedMap<Object>();
+        counts.add(facetValue, facetCount);
+        counts.add("common", 1);
+        NamedList<Object> fields = new SimpleOrderedMap<Object>();
+        fields.add("host_s", counts);
+        NamedList<Object> facets = new SimpleOrderedMap<Object>();
+        facets.add("facet_fields", fields);
+        NamedList<Object> header = new SimpleOrderedMap<Object>();
+        header.add("status", 0);
+        NamedList<Object> r = new NamedList<Object>();
+        r.add("responseHeader", header);
+        r.add("response", docs);
+        r.add("facet_counts", facets);
+        QueryResponse qr = new QueryResponse();
+        qr.setResponse(r);
+        return qr;
+    }
+
+    /**
+     * Test of combineResponses: documents are merged by score and facet counts are added
+     */
+    @Test
+    public void testCombineResponses() {
+        List<QueryResponse> qrl = new ArrayList<QueryResponse>();
+        qrl.add(response("a", 3, "a1", 9.0f, "a2", 4.0f, "a3", 1.0f));
+        qrl.add(response("b", 5, "b1", 8.0f, "b2", 5.0f));
+        QueryResponse combined = ResponseAccumulator.combineResponses(qrl, new ModifiableSolrParams());
+        SolrDocumentList docs = combined.getResults();
+        assertEquals(5, docs.getNumFound());
+        String[] expected = new String[]{"a1", "b1", "b2", "a2", "a3"};
+        for (int i = 0; i < expected.length; i++) assertEquals(expected[i], docs.get(i).getFieldValue("id"));
+        assertEquals(5, combined.getFacetField("host_s").getValues().get(0).getCount());
+        assertEquals("b", combined.getFacetField("host_s").getValues().get(0).getName());
+        assertEquals(2, combined.getFacetField("host_s").getValues().get(2).getCount());
+    }
+
+    /**
+     * Test of combineResponses with a sort order other than score: the shard results are concatenated
+     */
+    @Test
+    public void testCombineResponsesSorted() {
+        List<QueryResponse> qrl = new ArrayList<QueryResponse>();
+        qrl.add(response("a", 3, "a1", 1.0f, "a2", 4.0f));
+        qrl.add(response("b", 5, "b1", 8.0f));
+        ModifiableSolrParams params = new ModifiableSolrParams();
+        params.set(CommonParams.SORT, "load_date_dt desc");
+        SolrDocumentList docs = ResponseAccumulator.combineResponses(qrl, params).getResults();
+        assertEquals("a1", docs.get(0).getFieldValue("id"));
+        assertEquals("b1", docs.get(2).getFieldValue("id"));
+    }
+
+    /**
+     * Test of combineResponses with facet.sort and facet.limit: the merged facets are ordered and cut like a single core response
+     */
+    @Test
+    public void testCombineFacetsSortAndLimit() {
+        List<QueryResponse> qrl = new ArrayList<QueryResponse>();
+        qrl.add(response("b", 3, "a1", 1.0f));
+        qrl.add(response("a", 5, "b1", 8.0f));
+        ModifiableSolrParams params = new ModifiableSolrParams();
+        params.set(FacetParams.FACET_LIMIT, 2);
+        QueryResponse combined = ResponseAccumulator.combineResponses(qrl, params);
+        assertEquals(2, combined.getFacetField("host_s").getValues().size());
+        assertEquals("a", combined.getFacetField("host_s").getValues().get(0).getName());
+        assertEquals("b", combined.getFacetField("host_s").getValues().get(1).getName());
+        params.set(FacetParams.FACET_SORT, FacetParams.FACET_SORT_INDEX);
+        params.set(FacetParams.FACET_LIMIT, -1);
+        combined = ResponseAccumulator.combineResponses(qrl, params);
+        assertEquals(3, combined.getFacetField("host_s").getValues().size());
+        assertEquals("a", combined.getFacetField("host_s").getValues().get(0).getName());
+        assertEquals("b", combined.getFacetField("host_s").getValues().get(1).getName());
+        assertEquals("common", combined.getFacetField("host_s").getValues().get(2).getName());
+        params.set("f.host_s." + FacetParams.FACET_LIMIT, 1);
+        combined = ResponseAccumulator.combineResponses(qrl, params);
+        assertEquals(1, combined.getFacetField("host_s").getValues().size());
+    }
+}
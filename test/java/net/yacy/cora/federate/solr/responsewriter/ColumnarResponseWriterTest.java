@@ -0,0 +1,65 @@
+package net.yacy.cora.federate.solr.responsewriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.solr.common.SolrDocument;
+import org.junit.Test;
+
+public class ColumnarResponseWriterTest {
+
+    private static Map<String, List<Object>> doc(final Object... keyValues) {
+        final Map<String, List<Object>> doc = new LinkedHashMap<String, List<Object>>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            final Object v = keyValues[i + 1];
+            doc.put((String) keyValues[i], v instanceof List ? new ArrayList<Object>((List<?>) v) : new ArrayList<Object>(Arrays.asList(v)));
+        }
+        return doc;
+    }
+
+    @Test
+    public void testRoundtrip() throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final ColumnarResponseWriter.Encoder encoder = new ColumnarResponseWriter.Encoder(baos);
+        encoder.out.write(ColumnarResponseWriter.MAGIC);
+        encoder.out.writeByte(ColumnarResponseWriter.VERSION);
+        encoder.writeVarint(1);
+        encoder.writeString("numFound");
+        encoder.writeString("3");
+        final List<Map<String, List<Object>>> block = new ArrayList<Map<String, List<Object>>>();
+        block.add(doc("id", "AAAAAAAAAAAA", "host_s", "yacy.net", "size_i", Integer.valueOf(-42), "load_date_dt", new Date(1400000000000L)));
+        block.add(doc("id", "BBBBBBBBBBBB", "host_s", "yacy.net", "keywords", Arrays.asList((Object) "p2p", "search"), "size_i", Integer.valueOf(7)));
+        encoder.writeBlock(block);
+        block.clear();
+        block.add(doc("id", "CCCCCCCCCCCC", "host_s", "yacy.net", "size_i", Long.valueOf(1L << 40)));
+        encoder.writeBlock(block);
+        encoder.writeVarint(0);
+        encoder.out.flush();
+
+        final ColumnarResponseReader reader = new ColumnarResponseReader(new ByteArrayInputStream(baos.toByteArray()));
+        assertEquals("3", reader.header().get("numFound"));
+        SolrDocument doc = reader.next();
+        assertEquals("AAAAAAAAAAAA", doc.getFieldValue("id"));
+        assertEquals(Integer.valueOf(-42), doc.getFieldValue("size_i"));
+        assertEquals(new Date(1400000000000L), doc.getFieldValue("load_date_dt"));
+        assertFalse(doc.containsKey("keywords"));
+        doc = reader.next();
+        assertEquals("yacy.net", doc.getFieldValue("host_s"));
+        assertEquals(Arrays.asList((Object) "p2p", "search"), doc.getFieldValue("keywords"));
+        assertNull(doc.getFieldValue("load_date_dt"));
+        doc = reader.next();
+        assertEquals(Long.valueOf(1L << 40), doc.getFieldValue("size_i"));
+        assertNull(reader.next());
+    }
+}
@@ -0,0 +1,96 @@
+package net.yacy.cora.protocol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DomainsTest {
+
+    /**
+     * a stand-in resolver which knows only the hosts *.example.org and counts the lookups
+     */
+    private static class CountingResolver implements Domains.Resolver {
+        private final AtomicInteger count = new AtomicInteger(0);
+        @Override
+        public InetAddress resolve(final String host) throws UnknownHostException {
+            this.count.incrementAndGet();
+            if (!host.endsWith(".example.org")) throw new UnknownHostException(host);
+            return InetAddress.getByAddress(host, new byte[]{(byte) 192, 0, 2, (byte) host.length()});
+        }
+    }
+
+    private CountingResolver resolver;
+
+    @Before
+    public void setUp() {
+        this.resolver = new CountingResolver();
+        Domains.setResolver(this.resolver);
+        Domains.setNameCacheTTL(60000, 60000);
+    }
+
+    @After
+    public void tearDown() {
+        Domains.setResolver(Domains.SYSTEM_RESOLVER);
+    }
+
+    private static boolean isCached(final String host) {
+        try {
+            return Domains.dnsResolveFromCache(host) != null;
+        } catch (final UnknownHostException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Test of prefetch method, of class Domains.
+     */
+    @Test
+    public void testPrefetch() throws InterruptedException {
+        Domains.prefetch("prefetch.example.org");
+        Domains.prefetch("prefetch.example.org"); // double prefetch must not cause a second lookup
+        for (int i = 0; i < 100 && !isCached("prefetch.example.org"); i++) Thread.sleep(20);
+        final InetAddress ip = Domains.dnsResolve("prefetch.example.org");
+        assertNotNull(ip);
+        assertEquals(1, this.resolver.count.get());
+    }
+
+    /**
+     * Test of the negative cache of the dnsResolve method, of class Domains.
+     */
+    @Test
+    public void testNegativeCache() {
+        assertNull(Domains.dnsResolve("unknown.example.com"));
+        assertNull(Domains.dnsResolve("unknown.example.com"));
+        assertEquals(1, this.resolver.count.get());
+    }
+
+    /**
+     * Test of storeNameCache and loadNameCache methods, of class Domains.
+     */
+    @Test
+    public void testStoreLoadNameCache() throws IOException {
+        assertNotNull(Domains.dnsResolve("stored.example.org"));
+        final File f = File.createTempFile("dnscache", ".list");
+        try {
+            Domains.storeNameCache(f);
+            Domains.clear();
+            Domains.loadNameCache(f);
+            final InetAddress ip = Domains.dnsResolve("stored.example.org");
+            assertNotNull(ip);
+            assertEquals("stored.example.org", ip.getHostName());
+            assertEquals(1, this.resolver.count.get());
+        } finally {
+            f.delete();
+        }
+    }
+}
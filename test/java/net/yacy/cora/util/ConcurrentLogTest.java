@@ -0,0 +1,71 @@
+package net.yacy.cora.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import org.junit.Test;
+
+public class ConcurrentLogTest {
+
+    @Test
+    public void testFormat() {
+        assertEquals("a 1 b x c", ConcurrentLog.format("a {} b {} c", new Object[]{Integer.valueOf(1), "x"}));
+        assertEquals("a 1 b {}", ConcurrentLog.format("a {} b {}", new Object[]{Integer.valueOf(1)}));
+        assertEquals("[1, 2]", ConcurrentLog.format("{}", new Object[]{new int[]{1, 2}}));
+        assertEquals("null", ConcurrentLog.format("{}", new Object[]{null}));
+        assertNull(ConcurrentLog.format(null, new Object[]{"x"}));
+    }
+
+    @Test
+    public void testRingBuffer() throws InterruptedException {
+        final ConcurrentLog.RingBuffer ring = new ConcurrentLog.RingBuffer(1024);
+        final int producers = 4, messages = 10000;
+        final Thread[] threads = new Thread[producers];
+        for (int t = 0; t < producers; t++) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < messages; i++) {
+                        while (!ring.offer(new ConcurrentLog.Message())) Thread.yield();
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        int received = 0;
+        while (received < producers * messages) {
+            if (ring.poll() != null) received++; else Thread.yield();
+        }
+        for (final Thread t: threads) t.join();
+        assertTrue(ring.isEmpty());
+        assertNull(ring.poll());
+    }
+
+    @Test
+    public void testParameterizedMessage() throws InterruptedException {
+        final List<String> records = Collections.synchronizedList(new ArrayList<String>());
+        final Logger logger = Logger.getLogger("ConcurrentLogTest");
+        logger.setUseParentHandlers(false);
+        logger.addHandler(new Handler() {
+            @Override public void publish(final LogRecord record) {records.add(record.getMessage());}
+            @Override public void flush() {}
+            @Override public void close() {}
+        });
+        final ConcurrentLog log = new ConcurrentLog("ConcurrentLogTest");
+        log.log(Level.INFO, "{} hosts", Integer.valueOf(42));
+        log.log(Level.FINEST, "not logged {}", "x");
+        final long timeout = System.currentTimeMillis() + 5000;
+        while (records.isEmpty() && System.currentTimeMillis() < timeout) Thread.sleep(10);
+        assertEquals(1, records.size());
+        assertEquals("42 hosts", records.get(0));
+    }
+}
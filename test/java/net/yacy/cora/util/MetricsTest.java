@@ -0,0 +1,71 @@
+package net.yacy.cora.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+public class MetricsTest {
+
+    @Test
+    public void testHistogramBuckets() {
+        for (long v = 0; v < 1L << 30; v = v * 3 / 2 + 1) {
+            final int i = Metrics.Histogram.index(v);
+            assertTrue(v < Metrics.Histogram.upperBound(i));
+            if (i > 0) assertTrue(v >= Metrics.Histogram.upperBound(i - 1));
+        }
+    }
+
+    @Test
+    public void testPercentile() {
+        final Metrics.Histogram h = new Metrics.Histogram();
+        assertEquals(0, h.percentile(0.5d));
+        for (int i = 1; i <= 1000; i++) h.recordMillis(i);
+        assertEquals(1000, h.count());
+        assertEquals(500500000L, h.sum());
+        final long p50 = h.percentile(0.5d), p99 = h.percentile(0.99d);
+        assertTrue(p50 >= 500000 && p50 < 500000 * 1.125d);
+        assertTrue(p99 >= 990000 && p99 < 990000 * 1.125d);
+    }
+
+    @Test
+    public void testWrite() throws IOException {
+        Metrics.counter("test_requests", "requests \"served\"", "path", "/a\"b").add(3);
+        Metrics.gauge("test_load", "load", new Metrics.Probe() {
+            @Override public double value() {return 0.5d;}
+        });
+        final Metrics.Histogram h = Metrics.histogram("test_duration_seconds", "duration");
+        h.recordMillis(3);
+        h.recordMillis(200);
+
+        StringWriter w = new StringWriter();
+        Metrics.write(w, true);
+        String s = w.toString();
+        assertTrue(s.contains("# TYPE test_requests counter\n"));
+        assertTrue(s.contains("test_requests_total{path=\"/a\\\"b\"} 3\n"));
+        assertTrue(s.contains("test_load 0.5\n"));
+        assertTrue(s.contains("test_duration_seconds_bucket{le=\"0.001\"} 0\n"));
+        assertTrue(s.contains("test_duration_seconds_bucket{le=\"0.005\"} 1\n"));
+        assertTrue(s.contains("test_duration_seconds_bucket{le=\"0.25\"} 2\n"));
+        assertTrue(s.contains("test_duration_seconds_bucket{le=\"+Inf\"} 2\n"));
+        assertTrue(s.contains("test_duration_seconds_count 2\n"));
+        assertTrue(s.contains("test_duration_seconds_sum 0.203\n"));
+        assertTrue(s.endsWith("# EOF\n"));
+
+        w = new StringWriter();
+        Metrics.write(w, false);
+        s = w.toString();
+        assertTrue(s.contains("# TYPE test_requests_total counter\n"));
+        assertTrue(!s.contains("# EOF"));
+
+        Metrics.remove("test_requests", "path", "/a\"b");
+        w = new StringWriter();
+        Metrics.write(w, true);
+        assertTrue(!w.toString().contains("test_requests"));
+        Metrics.remove("test_load");
+        Metrics.remove("test_duration_seconds");
+    }
+}
@@ -0,0 +1,61 @@
+package net.yacy.crawler.robots;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import net.yacy.cora.document.id.DigestURL;
+
+import org.junit.Test;
+
+public class RobotsTxtEntryTest {
+
+    private static RobotsTxtEntry entry(final String... deny) throws MalformedURLException {
+        final List<String> denyList = new ArrayList<String>(Arrays.asList(deny));
+        return new RobotsTxtEntry(new DigestURL("http://example.com/robots.txt"), new ArrayList<String>(), denyList, new Date(), null, null, null, 0, null);
+    }
+
+    /**
+     * Test of isDisallowed method, of class RobotsTxtEntry, with overlapping prefixes.
+     */
+    @Test
+    public void testIsDisallowed() throws MalformedURLException {
+        final RobotsTxtEntry e = entry("/b/c", "/a", "/ab", "/private/", "/b");
+        assertTrue(e.isDisallowed(new DigestURL("http://example.com/a")));
+        assertTrue(e.isDisallowed(new DigestURL("http://example.com/ac")));
+        assertTrue(e.isDisallowed(new DigestURL("http://example.com/abc/d.html")));
+        assertTrue(e.isDisallowed(new DigestURL("http://example.com/b/c/d")));
+        assertTrue(e.isDisallowed(new DigestURL("http://example.com/private/x")));
+        assertFalse(e.isDisallowed(new DigestURL("http://example.com/")));
+        assertFalse(e.isDisallowed(new DigestURL("http://example.com/private")));
+        assertFalse(e.isDisallowed(new DigestURL("http://example.com/c")));
+    }
+
+    /**
+     * an entry with an empty deny path disallows everything
+     */
+    @Test
+    public void testIsDisallowedEmptyPath() throws MalformedURLException {
+        final RobotsTxtEntry e = entry("", "/x");
+        assertTrue(e.isDisallowed(new DigestURL("http://example.com/")));
+        assertTrue(e.isDisallowed(new DigestURL("http://example.com/a/b")));
+        assertFalse(entry().isDisallowed(new DigestURL("http://example.com/a/b")));
+    }
+
+    /**
+     * entries read back from the robots table are compiled the same way
+     */
+    @Test
+    public void testIsDisallowedFromMem() throws MalformedURLException {
+        final RobotsTxtEntry e = entry("/z", "/a/b");
+        final RobotsTxtEntry r = new RobotsTxtEntry(e.getHostName(), e.getMem());
+        assertTrue(r.isDisallowed(new DigestURL("http://example.com/a/b/c")));
+        assertTrue(r.isDisallowed(new DigestURL("http://example.com/zz")));
+        assertFalse(r.isDisallowed(new DigestURL("http://example.com/a/c")));
+    }
+}
@@ -0,0 +1,100 @@
+package net.yacy.http.servlets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+import net.yacy.http.servlets.AdmissionControlFilter.Limit;
+import net.yacy.http.servlets.AdmissionControlFilter.RequestClass;
+
+import org.junit.Test;
+
+public class AdmissionControlFilterTest {
+
+    private static HttpServletRequest request(final String path, final String partitions) {
+        return (HttpServletRequest) Proxy.newProxyInstance(HttpServletRequest.class.getClassLoader(), new Class<?>[]{HttpServletRequest.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                if (method.getName().equals("getRequestURI")) return path;
+                if (method.getName().equals("getParameter")) return "partitions".equals(args[0]) ? partitions : null;
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testClassify() {
+        assertEquals(RequestClass.SEARCH, AdmissionControlFilter.classify(request("/yacysearch.html", null)));
+        assertEquals(RequestClass.SEARCH, AdmissionControlFilter.classify(request("/solr/select", null)));
+        assertEquals(RequestClass.PEER_SEARCH, AdmissionControlFilter.classify(request("/solr/select", "4")));
+        assertEquals(RequestClass.PEER_SEARCH, AdmissionControlFilter.classify(request("/yacy/hello.html", null)));
+        assertEquals(RequestClass.DHT_TRANSFER, AdmissionControlFilter.classify(request("/yacy/transferRWI.html", null)));
+        assertEquals(RequestClass.STATIC, AdmissionControlFilter.classify(request("/env/base.CSS", null)));
+        assertEquals(RequestClass.ADMIN, AdmissionControlFilter.classify(request("/Status.html", null)));
+        assertNull(AdmissionControlFilter.classify(request("/yacysearch.stream", null)));
+        assertNull(AdmissionControlFilter.classify(request("/metrics", null)));
+    }
+
+    @Test
+    public void testLimitsFitIntoThreadPool() {
+        final Map<RequestClass, Limit> limits = AdmissionControlFilter.limits(200);
+        int threads = 0;
+        for (final Limit limit: limits.values()) threads += limit.limit() + limit.queueSize();
+        assertTrue(threads <= 200 - 20); // the connectors keep their threads
+        assertTrue(limits.get(RequestClass.SEARCH).limit() > limits.get(RequestClass.STATIC).limit() + limits.get(RequestClass.STATIC).queueSize());
+    }
+
+    @Test
+    public void testMultiplicativeDecrease() throws InterruptedException {
+        final Limit limit = new Limit(RequestClass.ADMIN, 2, 10, 0, 100, 1.0);
+        for (int i = 0; i < 10; i++) assertTrue(limit.acquire(0.0, true, 0));
+        assertFalse(limit.acquire(0.0, true, 0)); // no queue
+        assertEquals(1, limit.rejected());
+        limit.release(1000);
+        assertEquals(8, limit.limit());
+        limit.release(1000);
+        assertEquals(8, limit.limit()); // at most one decrease within the decrease interval
+    }
+
+    @Test
+    public void testAdditiveIncrease() throws InterruptedException {
+        final Limit limit = new Limit(RequestClass.SEARCH, 1, 10, 0, 1000, Double.MAX_VALUE);
+        for (int i = 0; i < 10; i++) assertTrue(limit.acquire(0.0, true, 0));
+        limit.release(5000);
+        assertEquals(8, limit.limit());
+        // fast responses of a saturated class increase the limit again
+        for (int i = 0; i < 50; i++) {
+            limit.release(0);
+            limit.acquire(0.0, true, 0);
+        }
+        assertTrue(limit.limit() > 8);
+        assertTrue(limit.limit() <= 10);
+    }
+
+    @Test
+    public void testShedding() throws InterruptedException {
+        final Limit limit = new Limit(RequestClass.DHT_TRANSFER, 1, 10, 5, 100, 0.75);
+        assertTrue(limit.acquire(0.8, true, 0));
+        assertFalse(limit.acquire(0.8, true, 0)); // overload: only the minimum limit is admitted
+        assertEquals(1, limit.shed());
+        assertTrue(limit.acquire(0.8, false, 0)); // requests from localhost are not shed
+        assertTrue(limit.acquire(0.5, true, 0));
+    }
+
+    @Test
+    public void testQueueTimeout() throws InterruptedException {
+        final Limit limit = new Limit(RequestClass.STATIC, 1, 1, 1, 100, 1.0);
+        assertTrue(limit.acquire(0.0, true, 0));
+        assertFalse(limit.acquire(0.0, true, 10));
+        assertEquals(1, limit.timedOut());
+        assertEquals(0, limit.queued());
+    }
+}
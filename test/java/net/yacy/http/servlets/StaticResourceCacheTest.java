@@ -0,0 +1,60 @@
+package net.yacy.http.servlets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+
+import net.yacy.cora.document.encoding.UTF8;
+import net.yacy.kelondro.util.FileUtils;
+
+import org.eclipse.jetty.http.MimeTypes;
+import org.junit.Test;
+
+public class StaticResourceCacheTest {
+
+    @Test
+    public void testVariantsAndInvalidation() throws IOException {
+        final File file = File.createTempFile("StaticResourceCacheTest", ".css");
+        try {
+            final StringBuilder css = new StringBuilder();
+            for (int i = 0; i < 100; i++) css.append(".c").append(i).append(" { color: #000; }\n");
+            final byte[] content = UTF8.getBytes(css.toString());
+            FileUtils.copy(content, file);
+            file.setLastModified(1400000000000L);
+
+            final StaticResourceCache cache = new StaticResourceCache(1024 * 1024, 64 * 1024, new MimeTypes());
+            final StaticResourceCache.Entry entry = cache.get(file);
+            assertNotNull(entry.gzip());
+            assertArrayEquals(content, entry.identity().getBytes());
+            assertArrayEquals(content, FileUtils.read(new GZIPInputStream(new ByteArrayInputStream(entry.gzip().getBytes()))));
+            assertTrue(entry.identity().getETag().startsWith("\""));
+            assertTrue(!entry.identity().getETag().equals(entry.gzip().getETag()));
+            assertEquals(content.length, entry.identity().getIndirectBuffer().remaining());
+            assertNull(entry.identity().getDirectBuffer());
+            assertSame(entry, cache.get(file));
+            assertEquals(1, cache.hits());
+
+            // a changed file is loaded again and gets a new etag
+            FileUtils.copy(UTF8.getBytes(css.append("p { margin: 0; }\n").toString()), file);
+            file.setLastModified(1400000001000L);
+            final StaticResourceCache.Entry changed = cache.get(file);
+            assertNotSame(entry, changed);
+            assertTrue(!entry.identity().getETag().equals(changed.identity().getETag()));
+            assertEquals(1, cache.size());
+
+            // files exceeding the maximum file size are not cached
+            assertNull(new StaticResourceCache(1024 * 1024, 16, new MimeTypes()).get(file));
+        } finally {
+            file.delete();
+        }
+    }
+}
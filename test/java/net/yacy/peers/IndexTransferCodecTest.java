@@ -0,0 +1,75 @@
+package net.yacy.peers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.data.word.WordReference;
+import net.yacy.kelondro.data.word.WordReferenceRow;
+import net.yacy.kelondro.rwi.ReferenceContainerCache;
+import net.yacy.search.index.Segment;
+
+import org.junit.Test;
+
+public class IndexTransferCodecTest {
+
+    private static String hash(final Random random) {
+        final byte[] b = new byte[Word.commonHashLength];
+        for (int i = 0; i < b.length; i++) b[i] = Base64Order.alpha_enhanced[random.nextInt(64)];
+        return ASCII.String(b);
+    }
+
+    /**
+     * Test of encodeRWI and decodeRWI: all postings must be restored
+     */
+    @Test
+    public void testRWIRoundtrip() throws IOException, SpaceExceededException {
+        final Random random = new Random(42);
+        final ReferenceContainerCache<WordReference> indexes = new ReferenceContainerCache<WordReference>(Segment.wordReferenceFactory, Base64Order.enhancedCoder, Word.commonHashLength);
+        final Map<String, byte[]> expected = new HashMap<String, byte[]>();
+        for (int t = 0; t < 20; t++) {
+            final String term = hash(random);
+            for (int r = 0; r < 30; r++) {
+                final byte[] row = new byte[WordReferenceRow.urlEntryRow.objectsize];
+                random.nextBytes(row);
+                System.arraycopy(ASCII.getBytes(hash(random)), 0, row, 0, Word.commonHashLength);
+                indexes.add(ASCII.getBytes(term), Segment.wordReferenceFactory.produceSlow(WordReferenceRow.urlEntryRow.newEntry(row)));
+                expected.put(term + ASCII.String(row, 0, Word.commonHashLength), row);
+            }
+        }
+        final byte[] frame = IndexTransferCodec.encodeRWI(indexes);
+        final List<Map.Entry<String, WordReference>> postings = IndexTransferCodec.decodeRWI(frame, 1000);
+        assertEquals(expected.size(), postings.size());
+        for (final Map.Entry<String, WordReference> posting: postings) {
+            final byte[] row = expected.get(posting.getKey() + ASCII.String(posting.getValue().urlhash()));
+            assertArrayEquals(row, posting.getValue().toKelondroEntry().bytes());
+        }
+        assertEquals(100, IndexTransferCodec.decodeRWI(frame, 100).size());
+    }
+
+    /**
+     * Test of encodeURLs and decodeURLs
+     */
+    @Test
+    public void testURLRoundtrip() throws IOException {
+        final List<String> urls = new ArrayList<String>();
+        urls.add("{hash=AAAAAAAAAAAA,url=http://example.org/,descr=Example}");
+        urls.add("{hash=BBBBBBBBBBBB,url=http://example.org/ä,descr=Umlaut}");
+        assertEquals(urls, IndexTransferCodec.decodeURLs(IndexTransferCodec.encodeURLs(urls), 10));
+    }
+
+    @Test(expected = IOException.class)
+    public void testBadFrame() throws IOException {
+        IndexTransferCodec.decodeRWI(new byte[]{'Y', 'I', 'T', 99, 0}, 10);
+    }
+}
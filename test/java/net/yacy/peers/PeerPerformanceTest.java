@@ -0,0 +1,87 @@
+package net.yacy.peers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Test;
+
+public class PeerPerformanceTest {
+
+    private static Seed seed(final String hash) {
+        return new Seed(hash, new ConcurrentHashMap<String, String>());
+    }
+
+    @Test
+    public void testStatistics() {
+        final PeerPerformance performance = new PeerPerformance();
+        assertNull(performance.get("AAAAAAAAAAAA"));
+        performance.success("AAAAAAAAAAAA", 80, 10);
+        performance.success("AAAAAAAAAAAA", 120, 20);
+        performance.failure("AAAAAAAAAAAA", 3000);
+        performance.cancelled("AAAAAAAAAAAA", 1500);
+        final PeerPerformance.Statistics s = performance.get("AAAAAAAAAAAA");
+        assertNotNull(s);
+        assertEquals(3.0d, s.requests(), 0.01d); // a cancelled request is not counted
+        assertEquals(1.0d / 3.0d, s.failureRate(), 0.01d);
+        assertEquals(15.0d, s.yield(), 0.01d);
+        assertEquals(2000, s.latency(0.75d)); // 100, 250, 2000, 4000 bucket entries
+    }
+
+    @Test
+    public void testFailing() {
+        final PeerPerformance performance = new PeerPerformance();
+        for (int i = 0; i < 4; i++) performance.failure("AAAAAAAAAAAA", 1000);
+        assertFalse(performance.isFailing("AAAAAAAAAAAA")); // not enough requests
+        performance.failure("AAAAAAAAAAAA", 1000);
+        assertTrue(performance.isFailing("AAAAAAAAAAAA"));
+        for (int i = 0; i < 5; i++) performance.success("BBBBBBBBBBBB", 1000, 10);
+        assertFalse(performance.isFailing("BBBBBBBBBBBB"));
+        assertFalse(performance.isFailing("CCCCCCCCCCCC"));
+    }
+
+    @Test
+    public void testRank() {
+        final PeerPerformance performance = new PeerPerformance();
+        for (int i = 0; i < 10; i++) {
+            performance.success("FASTFASTFAST", 50, 10);
+            performance.success("SLOWSLOWSLOW", 8000, 10);
+            performance.failure("FAILFAILFAIL", 1000);
+        }
+        final List<Seed> seeds = new ArrayList<Seed>();
+        seeds.add(seed("FAILFAILFAIL"));
+        seeds.add(seed("SLOWSLOWSLOW"));
+        seeds.add(seed("FASTFASTFAST"));
+        List<Seed> ranked = performance.rank(seeds, 1, new Random(0));
+        assertEquals(2, ranked.size()); // the failing peer is removed
+        assertEquals("FASTFASTFAST", ranked.get(0).hash);
+        assertEquals("SLOWSLOWSLOW", ranked.get(1).hash);
+        ranked = performance.rank(seeds, 3, new Random(0));
+        assertEquals(3, ranked.size()); // the failing peer is kept to reach the minimum
+        assertEquals("FAILFAILFAIL", ranked.get(2).hash);
+    }
+
+    @Test
+    public void testEviction() throws InterruptedException {
+        final PeerPerformance performance = new PeerPerformance(10);
+        for (int i = 0; i < 10; i++) {
+            performance.success("PEER0" + i + "AAAAAA", 100, 1);
+            Thread.sleep(2);
+        }
+        performance.success("PEER00AAAAAA", 100, 1); // the oldest peer is used again
+        Thread.sleep(2);
+        performance.success("PEER10AAAAAA", 100, 1); // a new peer causes the eviction
+        assertEquals(10, performance.size());
+        assertNotNull(performance.get("PEER00AAAAAA"));
+        assertNull(performance.get("PEER01AAAAAA")); // the least recently used peer is removed
+        assertNotNull(performance.get("PEER02AAAAAA"));
+        assertNotNull(performance.get("PEER10AAAAAA"));
+    }
+}
@@ -0,0 +1,79 @@
+package net.yacy.peers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.order.Base64Order;
+
+import org.junit.Test;
+
+public class SeedSnapshotTest {
+
+    private static Seed seed(final String hash, final String lastSeen, final int links) {
+        final ConcurrentHashMap<String, String> dna = new ConcurrentHashMap<String, String>();
+        dna.put(Seed.LASTSEEN, lastSeen);
+        dna.put(Seed.LCOUNT, Integer.toString(links));
+        return new Seed(hash, dna);
+    }
+
+    private static SeedSnapshot snapshot() {
+        final List<Seed> seeds = new ArrayList<Seed>();
+        seeds.add(seed("CCCCCCCCCCCC", "20150101000000", 30));
+        seeds.add(seed("AAAAAAAAAAAA", "20150103000000", 10));
+        seeds.add(seed("BBBBBBBBBBBB", "20150102000000", 20));
+        return SeedSnapshot.build(seeds.iterator(), 1);
+    }
+
+    @Test
+    public void testOrder() {
+        final SeedSnapshot snapshot = snapshot();
+        assertEquals(3, snapshot.size());
+        final Iterator<Seed> i = snapshot.iterator(true, false, null, 0.0d);
+        String last = null;
+        while (i.hasNext()) {
+            final String hash = i.next().hash;
+            if (last != null) assertTrue(Base64Order.enhancedCoder.compare(ASCII.getBytes(last), ASCII.getBytes(hash)) < 0);
+            last = hash;
+        }
+        assertEquals("AAAAAAAAAAAA", snapshot.byLastSeen(true, 1).get(0).hash);
+        assertEquals("CCCCCCCCCCCC", snapshot.byLastSeen(false, 1).get(0).hash);
+    }
+
+    @Test
+    public void testCopyOnWrite() {
+        final SeedSnapshot snapshot = snapshot();
+        final SeedSnapshot added = snapshot.with(seed("DDDDDDDDDDDD", "20150104000000", 40), 2);
+        assertEquals(3, snapshot.size());
+        assertEquals(4, added.size());
+        assertEquals(1, added.changedSince(1, 10).size());
+        assertEquals("DDDDDDDDDDDD", added.changedSince(1, 10).get(0).hash);
+        final SeedSnapshot removed = added.without(ASCII.getBytes("AAAAAAAAAAAA"), 3);
+        assertEquals(3, removed.size());
+        assertFalse(removed.contains(ASCII.getBytes("AAAAAAAAAAAA")));
+        assertTrue(added.contains(ASCII.getBytes("AAAAAAAAAAAA")));
+        assertEquals(3, removed.version());
+    }
+
+    @Test
+    public void testChangedSince() {
+        final Seed seed = seed("DDDDDDDDDDDD", "20150104000000", 40);
+        final SeedSnapshot s2 = snapshot().with(seed, 2);
+        final SeedSnapshot s3 = s2.with(seed("EEEEEEEEEEEE", "20150101000000", 50), 3);
+        final List<Seed> changed = s3.changedSince(0, 5);
+        assertEquals(5, changed.size());
+        assertEquals("DDDDDDDDDDDD", changed.get(3).hash); // ordered by change version, not by last-seen
+        assertEquals("EEEEEEEEEEEE", changed.get(4).hash);
+        assertEquals(1, s3.changedSince(1, 1).size());
+        assertEquals(2, s3.changedVersion(ASCII.getBytes("DDDDDDDDDDDD")));
+        assertEquals(-1, s3.changedVersion(ASCII.getBytes("FFFFFFFFFFFF")));
+        seed.put(Seed.LCOUNT, "99"); // the snapshot holds a copy of the seed
+        assertEquals(40, s3.get(ASCII.getBytes("DDDDDDDDDDDD")).getLinkCount());
+    }
+}
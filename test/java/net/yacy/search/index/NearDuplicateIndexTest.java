@@ -0,0 +1,85 @@
+package net.yacy.search.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.yacy.kelondro.data.word.Word;
+
+import org.junit.Test;
+
+public class NearDuplicateIndexTest {
+
+    private static Map<String, Word> words(final int first, final int count) {
+        final Map<String, Word> words = new HashMap<String, Word>();
+        for (int i = first; i < first + count; i++) words.put("word" + i, new Word(i, 0, 100));
+        return words;
+    }
+
+    @Test
+    public void testSimhash() {
+        final Map<String, Word> words = words(0, 200);
+        assertEquals(NearDuplicateIndex.simhash(words), NearDuplicateIndex.simhash(words(0, 200)));
+        // one more word changes only few bits of the signature
+        final Map<String, Word> similar = words(0, 200);
+        similar.put("other", new Word(0, 0, 100));
+        assertTrue(Long.bitCount(NearDuplicateIndex.simhash(words) ^ NearDuplicateIndex.simhash(similar)) <= 3);
+        // a different text has about half of the bits different
+        assertTrue(Long.bitCount(NearDuplicateIndex.simhash(words) ^ NearDuplicateIndex.simhash(words(1000, 200))) > 16);
+    }
+
+    @Test
+    public void testCheck() {
+        final NearDuplicateIndex index = new NearDuplicateIndex(null, 100, 3);
+        assertNull(index.check("AAAAAAhost01", words(0, 200)));
+        final Map<String, Word> similar = words(0, 200);
+        similar.put("other", new Word(0, 0, 100));
+        assertEquals("AAAAAAhost01", index.check("BBBBBBhost01", similar));
+        assertNull(index.check("CCCCCChost01", words(1000, 200)));
+        assertNull(index.check("DDDDDDhost01", words(5000, 10))); // too few words to be checked
+        assertNull(index.check("AAAAAAhost01", words(0, 200))); // a document is not a duplicate of its older version
+        assertEquals(2, index.size());
+        assertEquals(1, index.duplicates());
+    }
+
+    @Test
+    public void testEviction() {
+        final NearDuplicateIndex index = new NearDuplicateIndex(null, 2, 3);
+        assertNull(index.check("AAAAAAhost01", words(0, 200)));
+        assertNull(index.check("BBBBBBhost01", words(1000, 200)));
+        assertNull(index.check("CCCCCChost01", words(2000, 200)));
+        assertEquals(2, index.size());
+        assertNull(index.check("DDDDDDhost01", words(0, 200))); // the oldest signature was removed
+    }
+
+    @Test
+    public void testDuplicateRatio() {
+        final NearDuplicateIndex index = new NearDuplicateIndex(null, 1000, 3);
+        index.check("AAAAAAhost01", words(0, 200));
+        for (int i = 0; i < 29; i++) index.check(String.format("D%05dhost01", i), words(0, 200));
+        assertEquals(29.0d / 30.0d, index.duplicateRatio("host01"), 0.001d);
+        for (int i = 0; i < 10; i++) index.check(String.format("U%05dhost02", i), words(1000 * (i + 1), 200));
+        assertEquals(0.0d, index.duplicateRatio("host02"), 0.0d); // not enough documents
+        assertEquals(0.0d, index.duplicateRatio("host03"), 0.0d);
+    }
+
+    @Test
+    public void testDump() throws IOException {
+        final File dump = File.createTempFile("NearDuplicateIndexTest", ".dump");
+        try {
+            NearDuplicateIndex index = new NearDuplicateIndex(dump, 100, 3);
+            index.check("AAAAAAhost01", words(0, 200));
+            index.close();
+            index = new NearDuplicateIndex(dump, 100, 3);
+            assertEquals(1, index.size());
+            assertEquals("AAAAAAhost01", index.check("BBBBBBhost01", words(0, 200)));
+        } finally {
+            dump.delete();
+        }
+    }
+}
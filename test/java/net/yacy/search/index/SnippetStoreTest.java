@@ -0,0 +1,62 @@
+package net.yacy.search.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.storage.HandleSet;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.index.RowHandleSet;
+import net.yacy.kelondro.util.FileUtils;
+
+import org.junit.Test;
+
+public class SnippetStoreTest {
+
+    private static List<StringBuilder> sentences(final String... s) {
+        final List<StringBuilder> sentences = new ArrayList<StringBuilder>();
+        for (final String t: s) sentences.add(new StringBuilder(t));
+        return sentences;
+    }
+
+    private static HandleSet words(final String... w) throws SpaceExceededException {
+        final HandleSet words = new RowHandleSet(Word.commonHashLength, Word.commonHashOrder, 2);
+        for (final String t: w) words.put(Word.word2hash(t));
+        return words;
+    }
+
+    @Test
+    public void testRecord() throws IOException, SpaceExceededException {
+        final byte[] record = SnippetStore.encode(sentences("The quick brown fox.", "Jumps over the lazy dog.", "Grüße aus Frankfurt, the fox said."));
+        List<StringBuilder> s = SnippetStore.decode(record, words("fox"));
+        assertEquals(2, s.size());
+        assertEquals("The quick brown fox.", s.get(0).toString());
+        assertEquals("Grüße aus Frankfurt, the fox said.", s.get(1).toString());
+        s = SnippetStore.decode(record, words("lazy", "frankfurt"));
+        assertEquals(2, s.size());
+        assertEquals("Jumps over the lazy dog.", s.get(0).toString());
+        assertTrue(SnippetStore.decode(record, words("cat")).isEmpty());
+    }
+
+    @Test
+    public void testStore() throws IOException, SpaceExceededException {
+        final File location = new File("test/DATA/SnippetStoreTest");
+        FileUtils.deletedelete(location);
+        final byte[] urlhash = ASCII.getBytes("AAAAAAAAAAAA");
+        SnippetStore store = new SnippetStore(location, 1024L * 1024L * 1024L);
+        store.put(urlhash, sentences("The quick brown fox.", "Jumps over the lazy dog."));
+        store.close();
+        store = new SnippetStore(location, 1024L * 1024L * 1024L);
+        assertEquals(1, store.size());
+        assertEquals("Jumps over the lazy dog.", store.sentences(urlhash, words("dog")).get(0).toString());
+        assertEquals(null, store.sentences(ASCII.getBytes("BBBBBBBBBBBB"), words("dog")));
+        store.close();
+        FileUtils.deletedelete(location);
+    }
+}
@@ -0,0 +1,83 @@
+package net.yacy.search.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+public class SearchTaskTest {
+
+    private static SearchTask sleeper(final SearchTask.Scope scope, final long time, final AtomicBoolean interrupted) {
+        return new SearchTask("SearchTaskTest.sleeper", scope) {
+            @Override
+            protected void execute() {
+                try {
+                    Thread.sleep(time);
+                } catch (final InterruptedException e) {
+                    interrupted.set(true);
+                }
+            }
+        };
+    }
+
+    @Test
+    public void testJoin() throws InterruptedException {
+        final SearchTask.Scope scope = new SearchTask.Scope();
+        final AtomicBoolean interrupted = new AtomicBoolean(false);
+        final SearchTask task = sleeper(scope, 100, interrupted).start();
+        task.join();
+        assertFalse(task.isAlive());
+        assertFalse(interrupted.get());
+        assertEquals(1, scope.started());
+        assertTrue(scope.taskTime() >= 90);
+    }
+
+    @Test
+    public void testScopeCancel() throws InterruptedException {
+        final SearchTask.Scope scope = new SearchTask.Scope();
+        final AtomicBoolean interrupted = new AtomicBoolean(false);
+        final SearchTask task = sleeper(scope, 60000, interrupted).start();
+        Thread.sleep(50);
+        assertTrue(task.isAlive());
+        scope.cancel();
+        assertTrue(scope.await(5000));
+        assertTrue(interrupted.get());
+        assertEquals(1, scope.cancelled());
+    }
+
+    @Test
+    public void testDeadline() throws InterruptedException {
+        final AtomicBoolean interrupted = new AtomicBoolean(false);
+        final SearchTask task = sleeper(null, 60000, interrupted).start(100);
+        task.join(5000);
+        assertFalse(task.isAlive());
+        assertTrue(interrupted.get());
+    }
+
+    @Test
+    public void testTryStartSaturated() throws InterruptedException {
+        final SearchTask.Scope scope = new SearchTask.Scope();
+        final AtomicBoolean interrupted = new AtomicBoolean(false);
+        SearchTask.setMaxThreads(8);
+        try {
+            for (int i = 0; i < 8; i++) assertTrue(sleeper(scope, 60000, interrupted).tryStart(0));
+            final AtomicBoolean executed = new AtomicBoolean(false);
+            final SearchTask task = new SearchTask("SearchTaskTest.rejected", scope) {
+                @Override
+                protected void execute() {
+                    executed.set(true);
+                }
+            };
+            assertFalse(task.tryStart(0));
+            assertFalse(task.isAlive());
+            assertFalse(executed.get());
+        } finally {
+            scope.cancel();
+            assertTrue(scope.await(5000));
+            SearchTask.setMaxThreads(200);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package net.yacy.server.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import net.yacy.cora.document.encoding.UTF8;
+import net.yacy.server.serverObjects;
+
+import org.junit.Test;
+
+public class CompiledTemplateTest {
+
+    private static String interpreted(final String template, final serverObjects pattern) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TemplateEngine.writeTemplate("test", new ByteArrayInputStream(UTF8.getBytes(template)), out, pattern);
+        return UTF8.String(out.toByteArray());
+    }
+
+    private static String compiled(final String template, final serverObjects pattern) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new CompiledTemplate("test", UTF8.getBytes(template)).write(out, pattern);
+        return UTF8.String(out.toByteArray());
+    }
+
+    private static void assertSame(final String template, final serverObjects pattern) throws IOException {
+        assertEquals(interpreted(template, pattern), compiled(template, pattern));
+    }
+
+    @Test
+    public void testVariables() throws IOException {
+        final serverObjects pattern = new serverObjects();
+        pattern.put("name", "John Connor");
+        pattern.put("num", 3);
+        assertEquals("Hello John Connor!", compiled("Hello #[name]#!", pattern));
+        assertSame("Hello #[name]#, #[num]#. greeting #[unknown]# # ## #x", pattern);
+        assertSame("unterminated #[name", pattern);
+    }
+
+    @Test
+    public void testMultiAndAlternatives() throws IOException {
+        final serverObjects pattern = new serverObjects();
+        pattern.put("times", 3);
+        for (int i = 0; i < 3; i++) {
+            pattern.put("times_" + i + "_daytime", i);
+            pattern.put("times_" + i + "_name", "Name" + i);
+            pattern.put("times_" + i + "_daytime_when", "at " + i);
+        }
+        pattern.put("flag", "true");
+        pattern.put("mode", "second");
+        pattern.put("mode_x", "X");
+        final String template =
+                "<ul>\n#{times}#\n<li>Good #(daytime)#morning::evening #[when]#::night#(/daytime)#, #[name]#!</li>\n#{/times}#\n</ul>\n" +
+                "#(flag)#off::on #(inner)#a::b#(/inner)# end#(/flag)#\n" +
+                "#(mode)#%%first one::%%second two #[x]#::#(/mode)#\n" +
+                "#(missing)#zero::one#(/missing)#";
+        assertSame(template, pattern);
+    }
+
+    @Test
+    public void testHasIncludes() {
+        assertTrue(new CompiledTemplate("test", UTF8.getBytes("a <!--#include virtual=\"b.html\" --> c")).hasIncludes());
+        assertFalse(new CompiledTemplate("test", UTF8.getBytes("a #%env/templates/header.template%# c")).hasIncludes()); // rendered by the template
+        assertFalse(new CompiledTemplate("test", UTF8.getBytes("a #[b]# c")).hasIncludes());
+    }
+}
@@ -0,0 +1,57 @@
+package net.yacy.server.http;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import net.yacy.kelondro.util.FileUtils;
+
+import org.junit.Test;
+
+public class SpoolOutputStreamTest {
+
+    private static byte[] content(final int length) {
+        final byte[] b = new byte[length];
+        for (int i = 0; i < length; i++) b[i] = (byte) i;
+        return b;
+    }
+
+    @Test
+    public void testMemoryAndFile() throws IOException {
+        final byte[] small = content(100);
+        SpoolOutputStream spool = new SpoolOutputStream(0, 1000, 10000);
+        spool.write(small, 0, small.length);
+        spool.close();
+        assertTrue(spool.isInMemory());
+        assertArrayEquals(small, spool.getBytes());
+
+        final byte[] large = content(5000);
+        spool = new SpoolOutputStream(0, 1000, 10000);
+        for (int i = 0; i < large.length; i += 500) spool.write(large, i, 500);
+        spool.close();
+        assertFalse(spool.isInMemory());
+        assertEquals(5000, spool.length());
+        final InputStream in = spool.getInputStream();
+        try {
+            assertArrayEquals(large, FileUtils.read(in));
+        } finally {
+            in.close();
+        }
+        spool.discard();
+    }
+
+    @Test
+    public void testMaxSize() throws IOException {
+        final byte[] large = content(5000);
+        final SpoolOutputStream spool = new SpoolOutputStream(0, 1000, 4000);
+        spool.write(large, 0, large.length);
+        spool.close();
+        assertTrue(spool.isDiscarded());
+        assertNull(spool.getBytes());
+    }
+}